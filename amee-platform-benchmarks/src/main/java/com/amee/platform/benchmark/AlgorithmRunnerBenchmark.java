@@ -0,0 +1,72 @@
+package com.amee.platform.benchmark;
+
+import com.amee.platform.science.Algorithm;
+import com.amee.platform.science.AlgorithmRunner;
+import com.amee.platform.science.ReturnValues;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating an Algorithm through the AlgorithmRunner, which re-uses a cached CompiledScript, with
+ * evaluating the same content with ScriptEngine.eval, which parses the content every time. Both are given the same
+ * bindings, including the logger and returnValues the AlgorithmRunner adds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlgorithmRunnerBenchmark {
+
+    @Param({"simple", "series"})
+    public String content;
+
+    private AlgorithmRunner algorithmRunner;
+    private Algorithm algorithm;
+    private ScriptEngine engine;
+    private Map<String, Object> values;
+    private final Logger scienceLog = LoggerFactory.getLogger("science");
+
+    @Setup
+    public void setup() {
+        values = new HashMap<String, Object>();
+        if (content.equals("simple")) {
+            values.put("energyConsumed", 123.45);
+            values.put("kgCO2PerKWh", 0.54);
+            algorithm = new Fixtures.ContentAlgorithm("SIMPLE", "energyConsumed * kgCO2PerKWh");
+        } else {
+            values.put("startDate", Fixtures.SERIES_START.plusDays(1));
+            values.put("endDate", Fixtures.SERIES_START.plusDays(4));
+            values.put("seriesA", Fixtures.createSeries(Fixtures.SERIES_A, 3));
+            values.put("seriesB", Fixtures.createSeries(Fixtures.SERIES_B, 3));
+            values.put("seriesC", Fixtures.createSeries(Fixtures.SERIES_C, 3));
+            algorithm = new Fixtures.ContentAlgorithm("SERIES", Fixtures.SERIES_ALGORITHM);
+        }
+        algorithmRunner = new AlgorithmRunner();
+        engine = new ScriptEngineManager().getEngineByName("js");
+    }
+
+    @Benchmark
+    public ReturnValues compiled() throws ScriptException {
+        return algorithmRunner.evaluate(algorithm, values);
+    }
+
+    @Benchmark
+    public Object uncompiled() throws ScriptException {
+        Bindings bindings = engine.createBindings();
+        bindings.putAll(values);
+        bindings.put("logger", scienceLog);
+        bindings.put("returnValues", new ReturnValues());
+        return engine.eval(algorithm.getContent(), bindings);
+    }
+}
@@ -0,0 +1,51 @@
+package com.amee.platform.benchmark;
+
+import com.amee.platform.science.Amount;
+import com.amee.platform.science.AmountCompoundUnit;
+import com.amee.platform.science.AmountPerUnit;
+import com.amee.platform.science.AmountUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Amount.convert across common unit pairs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmountBenchmark {
+
+    /**
+     * Source and target units, separated by '>'.
+     */
+    @Param({"kWh>MJ", "kWh>TJ", "MWh>kWh", "kg>lb", "km>mi", "t>kg"})
+    public String units;
+
+    private Amount amount;
+    private AmountUnit targetUnit;
+    private Amount perYear;
+    private AmountPerUnit month;
+
+    @Setup
+    public void setup() {
+        String[] pair = units.split(">");
+        amount = new Amount(123.45, AmountUnit.valueOf(pair[0]));
+        targetUnit = AmountUnit.valueOf(pair[1]);
+        perYear = new Amount(123.456, AmountCompoundUnit.valueOf(AmountUnit.valueOf("kg"), AmountPerUnit.valueOf("year")));
+        month = AmountPerUnit.valueOf("month");
+    }
+
+    @Benchmark
+    public Amount convert() {
+        return amount.convert(targetUnit);
+    }
+
+    @Benchmark
+    public Amount convertPerUnit() {
+        return perYear.convert(month);
+    }
+}
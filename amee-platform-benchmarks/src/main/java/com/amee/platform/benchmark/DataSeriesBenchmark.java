@@ -0,0 +1,51 @@
+package com.amee.platform.benchmark;
+
+import com.amee.platform.science.Amount;
+import com.amee.platform.science.DataSeries;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataSeries arithmetic and integration for short, typical and very long series.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataSeriesBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private DataSeries seriesA;
+    private DataSeries seriesB;
+
+    @Setup
+    public void setup() {
+        seriesA = Fixtures.createSeries(Fixtures.SERIES_A, size);
+        seriesB = Fixtures.createSeries(Fixtures.SERIES_B, size);
+    }
+
+    @Benchmark
+    public DataSeries plusSeries() {
+        return seriesA.plus(seriesB);
+    }
+
+    @Benchmark
+    public DataSeries multiplySeries() {
+        return seriesA.multiply(seriesB);
+    }
+
+    @Benchmark
+    public DataSeries divideDouble() {
+        return seriesA.divide(2.0);
+    }
+
+    @Benchmark
+    public Amount integrate() {
+        return seriesA.integrate();
+    }
+}
@@ -0,0 +1,203 @@
+package com.amee.platform.benchmark;
+
+import com.amee.platform.science.*;
+import org.joda.time.DateTime;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Benchmark fixtures, built in memory from the values used by the amee-platform-science tests.
+ */
+public final class Fixtures {
+
+    /**
+     * The DataSeries A, B and C from AlgorithmRunnerTest. Longer series repeat the values daily.
+     */
+    public static final String[] SERIES_A = {"1", "0", "0.5"};
+    public static final String[] SERIES_B = {"0", "1", "2"};
+    public static final String[] SERIES_C = {"0", "1", "3"};
+
+    /**
+     * The start of the series in AlgorithmRunnerTest.
+     */
+    public static final DateTime SERIES_START = new DateTime(2010, 1, 1, 0, 0, 0, 0);
+
+    /**
+     * The multiple DataSeries Algorithm from AlgorithmRunnerTest.
+     */
+    public static final String SERIES_ALGORITHM =
+            "series = seriesA.plus(seriesB).plus(seriesC);\n" +
+                    "series.setSeriesStartDate(startDate);\n" +
+                    "series.setSeriesEndDate(endDate);\n" +
+                    "series.integrate()";
+
+    private Fixtures() {
+        super();
+    }
+
+    /**
+     * Create a DataSeries with a point per day, cycling through the values.
+     *
+     * @param values the values
+     * @param size   the number of points
+     * @return the DataSeries
+     */
+    public static DataSeries createSeries(String[] values, int size) {
+        DataSeries series = new DataSeries();
+        for (int i = 0; i < size; i++) {
+            series.addDataPoint(new DataPoint(SERIES_START.plusDays(i), new Amount(values[i % values.length])));
+        }
+        series.setSeriesStartDate(SERIES_START.plusDays(1));
+        series.setSeriesEndDate(SERIES_START.plusDays(size + 1));
+        return series;
+    }
+
+    /**
+     * Create a history of values a minute apart, as in InternalValueTest.
+     *
+     * @param start the time of the first value
+     * @param size  the number of values
+     * @return the values
+     */
+    public static List<ExternalGenericValue> createHistory(DateTime start, int size) {
+        List<ExternalGenericValue> values = new ArrayList<ExternalGenericValue>();
+        for (int i = 0; i < size; i++) {
+            values.add(new HistoryValue(start.plusMinutes(i + 1).toDate(), i % 7 + 0.5));
+        }
+        return values;
+    }
+
+    /**
+     * A minimal Algorithm which compiles its content against the supplied engine.
+     */
+    public static class ContentAlgorithm implements Algorithm {
+
+        private final String uid;
+        private final String content;
+
+        public ContentAlgorithm(String uid, String content) {
+            this.uid = uid;
+            this.content = content;
+        }
+
+        @Override
+        public String getUid() {
+            return uid;
+        }
+
+        @Override
+        public String getLabel() {
+            return uid;
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public String getFullContent() {
+            return content;
+        }
+
+        @Override
+        public CompiledScript getCompiledScript(ScriptEngine engine) throws ScriptException {
+            return ((Compilable) engine).compile(content);
+        }
+
+        @Override
+        public AlgorithmBackend getBackend() {
+            return AlgorithmBackend.INTERPRETED;
+        }
+    }
+
+    /**
+     * A unit-less historical number value.
+     */
+    public static class HistoryValue implements ExternalValue {
+
+        private final StartEndDate startDate;
+        private final double value;
+
+        public HistoryValue(Date startDate, double value) {
+            this.startDate = new StartEndDate(startDate);
+            this.value = value;
+        }
+
+        @Override
+        public boolean isDouble() {
+            return true;
+        }
+
+        @Override
+        public boolean isConvertible() {
+            return false;
+        }
+
+        @Override
+        public String getLabel() {
+            return "history";
+        }
+
+        @Override
+        public Double getValueAsDouble() {
+            return value;
+        }
+
+        @Override
+        public AmountUnit getUnit() {
+            return AmountUnit.ONE;
+        }
+
+        @Override
+        public AmountPerUnit getPerUnit() {
+            return AmountPerUnit.ONE;
+        }
+
+        @Override
+        public AmountUnit getCanonicalUnit() {
+            return AmountUnit.ONE;
+        }
+
+        @Override
+        public AmountPerUnit getCanonicalPerUnit() {
+            return AmountPerUnit.ONE;
+        }
+
+        @Override
+        public AmountCompoundUnit getCompoundUnit() {
+            return AmountCompoundUnit.valueOf(AmountUnit.ONE, AmountPerUnit.ONE);
+        }
+
+        @Override
+        public AmountCompoundUnit getCanonicalCompoundUnit() {
+            return getCompoundUnit();
+        }
+
+        @Override
+        public boolean hasUnit() {
+            return false;
+        }
+
+        @Override
+        public boolean hasPerUnit() {
+            return false;
+        }
+
+        @Override
+        public String getUsableValue() {
+            return Double.toString(value);
+        }
+
+        @Override
+        public StartEndDate getStartDate() {
+            return startDate;
+        }
+    }
+}
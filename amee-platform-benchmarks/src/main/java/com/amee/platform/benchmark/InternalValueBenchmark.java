@@ -0,0 +1,44 @@
+package com.amee.platform.benchmark;
+
+import com.amee.platform.science.ExternalGenericValue;
+import com.amee.platform.science.InternalValue;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InternalValue construction for time series, which filters the history to the query window and builds a DataSeries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InternalValueBenchmark {
+
+    @Param({"10", "1000"})
+    public int size;
+
+    private List<ExternalGenericValue> values;
+    private Date startDate;
+    private Date endDate;
+
+    @Setup
+    public void setup() {
+        DateTime start = new DateTime(2010, 1, 1, 0, 0, 0, 0);
+        values = Fixtures.createHistory(start, size);
+
+        // Query the middle half of the history.
+        startDate = start.plusMinutes(size / 4).toDate();
+        endDate = start.plusMinutes(size * 3 / 4).toDate();
+    }
+
+    @Benchmark
+    public InternalValue timeSeries() {
+        return new InternalValue(values, startDate, endDate);
+    }
+}
@@ -0,0 +1,99 @@
+package com.amee.platform.benchmark;
+
+import com.amee.domain.ValueDefinition;
+import com.amee.domain.ValueType;
+import com.amee.domain.data.ItemValueDefinition;
+import com.amee.domain.data.ItemValueMap;
+import com.amee.domain.item.BaseItemValue;
+import com.amee.domain.item.data.DataItemNumberValue;
+import com.amee.domain.item.data.DataItemNumberValueHistory;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ItemValueMap building and lookups for paths with a single value and with long histories, such as decades of monthly
+ * grid intensities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ItemValueMapBenchmark {
+
+    private static final String PATH = "kgCO2PerKWh";
+    private static final String OTHER_PATH = "source";
+
+    @Param({"1", "100", "10000"})
+    public int historySize;
+
+    private List<BaseItemValue> itemValues;
+    private ItemValueMap itemValueMap;
+    private Date latest;
+    private Date middle;
+    private Date beforeHistory;
+
+    @Setup
+    public void setup() {
+        DateTime start = new DateTime(1980, 1, 1, 0, 0, 0, 0);
+        ItemValueDefinition itemValueDefinition = createItemValueDefinition(PATH);
+        itemValues = new ArrayList<BaseItemValue>();
+        DataItemNumberValue itemValue = new DataItemNumberValue();
+        itemValue.setItemValueDefinition(itemValueDefinition);
+        itemValues.add(itemValue);
+        for (int i = 1; i < historySize; i++) {
+            DataItemNumberValueHistory itemValueHistory = new DataItemNumberValueHistory();
+            itemValueHistory.setItemValueDefinition(itemValueDefinition);
+            itemValueHistory.setStartDate(start.plusDays(i).toDate());
+            itemValues.add(itemValueHistory);
+        }
+        DataItemNumberValue otherItemValue = new DataItemNumberValue();
+        otherItemValue.setItemValueDefinition(createItemValueDefinition(OTHER_PATH));
+        itemValues.add(otherItemValue);
+
+        itemValueMap = build();
+        latest = start.plusDays(historySize + 1).toDate();
+        middle = start.plusDays(historySize / 2).toDate();
+        beforeHistory = start.toDate();
+    }
+
+    @Benchmark
+    public ItemValueMap build() {
+        ItemValueMap map = new ItemValueMap();
+        map.putAll(itemValues);
+        return map;
+    }
+
+    @Benchmark
+    public BaseItemValue getLatest() {
+        return itemValueMap.get(PATH, latest);
+    }
+
+    @Benchmark
+    public BaseItemValue getMiddle() {
+        return itemValueMap.get(PATH, middle);
+    }
+
+    @Benchmark
+    public BaseItemValue getNonHistorical() {
+        return itemValueMap.get(PATH, beforeHistory);
+    }
+
+    @Benchmark
+    public List<BaseItemValue> getAllAtDate() {
+        return itemValueMap.getAll(middle);
+    }
+
+    private static ItemValueDefinition createItemValueDefinition(String path) {
+        ItemValueDefinition itemValueDefinition = new ItemValueDefinition();
+        itemValueDefinition.setPath(path);
+        itemValueDefinition.setValueDefinition(new ValueDefinition(path, ValueType.DOUBLE));
+        return itemValueDefinition;
+    }
+}
@@ -0,0 +1,34 @@
+package com.amee.platform.benchmark;
+
+import com.amee.base.utils.UidGen;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UID generation, which happens for every new entity.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UidGenBenchmark {
+
+    @Benchmark
+    public String uid12() {
+        return UidGen.INSTANCE_12.getUid();
+    }
+
+    @Benchmark
+    public String uid16() {
+        return UidGen.INSTANCE_16.getUid();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String uid12Contended() {
+        return UidGen.INSTANCE_12.getUid();
+    }
+}
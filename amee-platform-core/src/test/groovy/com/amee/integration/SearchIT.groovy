@@ -21,6 +21,7 @@ class SearchIT extends BaseApiTest {
      *     <li>types: comma separated list of the types of entity to return. [DC, DI]</li>
      *     <li>tags: only include results with the given tags</li>
      *     <li>excTags: do not include results with the given tags</li>
+     *     <li>facets: comma separated list of drill down paths to count values for over all results (since 3.6)</li>
      * </ul>
      *
      * Searchable fields are:
@@ -157,6 +158,52 @@ class SearchIT extends BaseApiTest {
         }
     }
 
+    /**
+     * Search for Data Items with counts of the fuel drill down values over all results, using JSON response.
+     */
+    @Test
+    void searchJsonWithFacets() {
+        versions.each { version -> searchJsonWithFacets(version) }
+    }
+
+    def searchJsonWithFacets(version) {
+        if (version >= 3.6) {
+            client.contentType = JSON
+            def response = client.get(path: "/$version/search", query: [q: 'cooking', types: 'DI', facets: 'fuel'])
+            assert response.status == SUCCESS_OK.code
+            assert response.contentType == 'application/json'
+            assert response.data.status == 'OK'
+            assert response.data.facets.size() == 1
+            assert response.data.facets[0].name == 'fuel'
+            response.data.facets[0].values.each { value ->
+                assert value.count > 0
+            }
+        }
+    }
+
+    /**
+     * Search for Data Items with counts of the fuel drill down values over all results, using XML response.
+     */
+    @Test
+    void searchXmlWithFacets() {
+        versions.each { version -> searchXmlWithFacets(version) }
+    }
+
+    def searchXmlWithFacets(version) {
+        if (version >= 3.6) {
+            client.contentType = XML
+            def response = client.get(path: "/$version/search", query: [q: 'cooking', types: 'DI', facets: 'fuel'])
+            assert response.status == SUCCESS_OK.code
+            assert response.contentType == 'application/xml'
+            assert response.data.Status.text() == 'OK'
+            assert response.data.Facets.Facet.size() == 1
+            assert response.data.Facets.Facet.Name.text() == 'fuel'
+            response.data.Facets.Facet.Values.Value.each { value ->
+                assert value.@count.toInteger() > 0
+            }
+        }
+    }
+
     /**
      * See: https://jira.amee.com/browse/PL-5516
      * Platform assumes query string is valid lucene syntax.
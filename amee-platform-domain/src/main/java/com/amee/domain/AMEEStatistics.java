@@ -1,9 +1,17 @@
 package com.amee.domain;
 
+import com.amee.platform.science.AlgorithmCacheStatistics;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Service("ameeStatistics")
-public class AMEEStatistics {
+public class AMEEStatistics implements AlgorithmCacheStatistics {
 
     // Profiles
     private long profileCreateCount;
@@ -55,6 +63,33 @@ public class AMEEStatistics {
         }
     };
 
+    // Calculations - Elapsed nanoseconds on the request thread
+    private ThreadLocal<Long> threadCalculationElapsed = new ThreadLocal<Long>() {
+        protected Long initialValue() {
+            return 0L;
+        }
+    };
+
+    // Calculations - Count
+    private ThreadLocal<Long> threadCalculationCount = new ThreadLocal<Long>() {
+        protected Long initialValue() {
+            return 0L;
+        }
+    };
+
+    // Calculations - Parallel
+    private final AtomicLong parallelCalculationCount = new AtomicLong();
+
+    // Algorithm Cache
+    private final AtomicLong algorithmCacheHitCount = new AtomicLong();
+    private final AtomicLong algorithmCacheMissCount = new AtomicLong();
+
+    // Algorithm Compilation - Nanoseconds
+    private final AtomicLong algorithmCompileDuration = new AtomicLong();
+
+    // Cache Evictions - Elements removed by targeted invalidation, keyed by cache name
+    private final ConcurrentMap<String, AtomicLong> cacheEvictionCounts = new ConcurrentHashMap<String, AtomicLong>();
+
     // Transactions
     private long transactionCommitCount;
     private long transactionRollbackCount;
@@ -79,6 +114,8 @@ public class AMEEStatistics {
         threadProfileItemValueModifyCount.set(0L);
         // Calculations
         threadCalculationDuration.set(0L);
+        threadCalculationElapsed.set(0L);
+        threadCalculationCount.set(0L);
     }
 
     public void commitThread() {
@@ -177,6 +214,105 @@ public class AMEEStatistics {
         addToCalculationDuration(duration);
     }
 
+    /**
+     * Get the elapsed time spent calculating on this thread, in nanoseconds. When calculations are evaluated in
+     * parallel this is less than the thread calculation duration, which is the sum of the individual calculations.
+     *
+     * @return elapsed nanoseconds
+     */
+    public long getThreadCalculationElapsed() {
+        return threadCalculationElapsed.get();
+    }
+
+    public void addToThreadCalculationElapsed(long elapsed) {
+        threadCalculationElapsed.set(threadCalculationElapsed.get() + elapsed);
+    }
+
+    public long getThreadCalculationCount() {
+        return threadCalculationCount.get();
+    }
+
+    public void addToThreadCalculationCount(long count) {
+        threadCalculationCount.set(threadCalculationCount.get() + count);
+    }
+
+    /**
+     * Get the speed-up of calculations on this thread from parallel evaluation. This is 1.0 if all calculations were
+     * sequential, or there have been no calculations.
+     *
+     * @return the ratio of calculation duration to elapsed time
+     */
+    public double getThreadCalculationSpeedUp() {
+        long elapsed = getThreadCalculationElapsed();
+        return elapsed > 0 ? (double) getThreadCalculationDuration() / elapsed : 1.0;
+    }
+
+    public void addToParallelCalculationCount(long count) {
+        parallelCalculationCount.addAndGet(count);
+    }
+
+    public long getParallelCalculationCount() {
+        return parallelCalculationCount.get();
+    }
+
+    // Algorithm Cache
+
+    @Override
+    public void algorithmCacheHit() {
+        algorithmCacheHitCount.incrementAndGet();
+    }
+
+    public long getAlgorithmCacheHitCount() {
+        return algorithmCacheHitCount.get();
+    }
+
+    @Override
+    public void algorithmCacheMiss() {
+        algorithmCacheMissCount.incrementAndGet();
+    }
+
+    public long getAlgorithmCacheMissCount() {
+        return algorithmCacheMissCount.get();
+    }
+
+    @Override
+    public void addToAlgorithmCompileDuration(long duration) {
+        if (duration > 0) {
+            algorithmCompileDuration.addAndGet(duration);
+        }
+    }
+
+    public long getAlgorithmCompileDuration() {
+        return algorithmCompileDuration.get();
+    }
+
+    // Cache Evictions
+
+    public void addToCacheEvictionCount(String cacheName, long count) {
+        AtomicLong evictionCount = cacheEvictionCounts.get(cacheName);
+        if (evictionCount == null) {
+            cacheEvictionCounts.putIfAbsent(cacheName, new AtomicLong());
+            evictionCount = cacheEvictionCounts.get(cacheName);
+        }
+        evictionCount.addAndGet(count);
+    }
+
+    public long getCacheEvictionCount(String cacheName) {
+        AtomicLong evictionCount = cacheEvictionCounts.get(cacheName);
+        return evictionCount != null ? evictionCount.get() : 0;
+    }
+
+    /**
+     * @return the eviction counts keyed by cache name
+     */
+    public Map<String, Long> getCacheEvictionCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : cacheEvictionCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
     // Transactions
 
     public void transactionCommit() {
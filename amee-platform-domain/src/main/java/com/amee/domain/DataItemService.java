@@ -38,6 +38,8 @@ public interface DataItemService extends ItemService {
 
     List<DataItem> getDataItems(IDataCategoryReference dataCategory, boolean checkDataItems);
 
+    List<DataItem> getDataItems(IDataCategoryReference dataCategory, int maxResults);
+
     List<DataItem> getDataItems(Set<Long> dataItemIds);
 
     DataItem getDataItemByIdentifier(DataCategory parent, String path);
@@ -37,6 +37,8 @@ public interface LocaleService {
 
     public void loadLocaleNames(ObjectType objectType, Collection<IAMEEEntityReference> entities);
 
+    public void loadLocaleNames(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities);
+
     public void clearLocaleNames();
 
     public void persist(LocaleName localeName);
@@ -24,6 +24,8 @@ public interface MetadataService {
 
     public void loadMetadatas(ObjectType objectType, Collection<IAMEEEntityReference> entities);
 
+    public void loadMetadatas(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities);
+
     public void clearMetadatas();
 
     public void persist(Metadata metadata);
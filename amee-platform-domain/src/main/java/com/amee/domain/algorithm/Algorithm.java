@@ -6,6 +6,7 @@ import com.amee.domain.IAMEEEntityReference;
 import com.amee.domain.ObjectType;
 import com.amee.domain.data.ItemDefinition;
 import com.amee.domain.path.Pathable;
+import com.amee.platform.science.AlgorithmBackend;
 import com.amee.platform.science.AlgorithmException;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONException;
@@ -143,6 +144,19 @@ public class Algorithm extends AbstractAlgorithm implements com.amee.platform.sc
         return compiledScript;
     }
 
+    /**
+     * Get the backend to evaluate this Algorithm with, as configured on the ItemDefinition.
+     *
+     * @return the AlgorithmBackend
+     */
+    @Override
+    public AlgorithmBackend getBackend() {
+        if (getItemDefinition() == null) {
+            return AlgorithmBackend.INTERPRETED;
+        }
+        return AlgorithmBackend.fromName(getItemDefinition().getAlgorithmBackend());
+    }
+
     public String getLabel() {
         return getItemDefinition() + "/" + getName();
     }
@@ -10,6 +10,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class CacheHelper implements Serializable {
 
@@ -17,6 +25,26 @@ public class CacheHelper implements Serializable {
 
     private static CacheHelper instance = new CacheHelper();
 
+    // Key indexes and stale values keyed by cache name, for the caches decorated here.
+    private final transient ConcurrentMap<String, CacheKeyIndex> keyIndexes = new ConcurrentHashMap<String, CacheKeyIndex>();
+    private final transient ConcurrentMap<String, StaleValues> staleValues = new ConcurrentHashMap<String, StaleValues>();
+
+    // Values being created, keyed by cache name and element key.
+    private final transient ConcurrentMap<String, FutureTask<Object>> populations =
+            new ConcurrentHashMap<String, FutureTask<Object>>();
+
+    // Milliseconds to wait for a value being created by another caller.
+    private volatile long populationTimeout = 30000;
+
+    // Seconds to cache a failure to create a value.
+    private volatile int negativeTimeToLive = 10;
+
+    // The most stale values to keep for each cache.
+    private volatile int staleMaxEntries = 1000;
+
+    // Seconds to keep a stale value.
+    private volatile int staleTimeToLive = 600;
+
     private CacheHelper() {
         super();
     }
@@ -40,6 +68,12 @@ public class CacheHelper implements Serializable {
             synchronized (this) {
                 cache = cacheManager.getEhcache(cacheName);
                 if ((cache != null) && !(cache instanceof BlockingCache)) {
+                    CacheKeyIndex keyIndex = new CacheKeyIndex(cache);
+                    cache.getCacheEventNotificationService().registerListener(keyIndex);
+                    keyIndexes.put(cacheName, keyIndex);
+                    StaleValues stale = new StaleValues(staleMaxEntries, staleTimeToLive);
+                    cache.getCacheEventNotificationService().registerListener(stale);
+                    staleValues.put(cacheName, stale);
                     BlockingCache newBlockingCache = new BlockingCache(cache);
                     cacheManager.replaceCacheWithDecoratedCache(cache, newBlockingCache);
                 }
@@ -48,6 +82,16 @@ public class CacheHelper implements Serializable {
         return (BlockingCache) cacheManager.getEhcache(cacheName);
     }
 
+    /**
+     * Get a value from the cache, creating it with the factory if it is not cached.
+     * <p/>
+     * Concurrent callers for the same key share a single call to the factory. Callers waiting on another caller for
+     * longer than the population timeout are given the stale value for the key, if any, or a RuntimeException. If the
+     * factory fails then the failure is cached for the negative time to live and rethrown to callers in that time.
+     *
+     * @param factory the CacheableFactory
+     * @return the cached value
+     */
     public Object getCacheable(CacheableFactory factory) {
         Object o = null;
         String cacheName = factory.getCacheName();
@@ -59,20 +103,11 @@ public class CacheHelper implements Serializable {
             }
             String originalThreadName = Thread.currentThread().getName();
             try {
-                Element element = cache.get(key);
-                if (element == null) {
-                    try {
-                        // element is not cached - build it
-                        o = factory.create();
-                        cache.put(new Element(key, o));
-                    } catch (final Throwable throwable) {
-                        // must unlock the cache if the above fails
-                        cache.put(new Element(key, null));
-                        // TODO: what should we really be throwing here?
-                        throw new RuntimeException(throwable);
-                    }
+                CacheKeyIndex keyIndex = getKeyIndex(cache);
+                if (keyIndex != null) {
+                    o = getCacheable(factory, keyIndex.getCache(), key);
                 } else {
-                    o = element.getObjectValue();
+                    o = getCacheable(factory, cache, key);
                 }
             } finally {
                 Thread.currentThread().setName(originalThreadName);
@@ -84,22 +119,171 @@ public class CacheHelper implements Serializable {
         return o;
     }
 
+    /**
+     * Get a value from a cache decorated here, sharing the creation of the value between concurrent callers.
+     *
+     * @param factory the CacheableFactory
+     * @param cache   the undecorated cache
+     * @param key     the element key
+     * @return the cached value
+     */
+    private Object getCacheable(final CacheableFactory factory, final Ehcache cache, final String key) {
+        Element element = cache.get(key);
+        if (element != null) {
+            return getValue(element);
+        }
+        String populationKey = cache.getName() + "_" + key;
+        FutureTask<Object> population = new FutureTask<Object>(new Callable<Object>() {
+            @Override
+            public Object call() {
+                // The value may have been put since the caller looked.
+                Element element = cache.get(key);
+                return (element != null) ? getValue(element) : create(factory, cache, key);
+            }
+        });
+        FutureTask<Object> existing = populations.putIfAbsent(populationKey, population);
+        try {
+            if (existing == null) {
+                try {
+                    population.run();
+                } finally {
+                    populations.remove(populationKey, population);
+                }
+                return population.get();
+            } else {
+                return await(existing, cache.getName(), key);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Wait for a value being created by another caller, up to the population timeout.
+     *
+     * @param population the population to wait for
+     * @param cacheName  the name of the cache
+     * @param key        the element key
+     * @return the created value, or the stale value if the wait times out
+     * @throws ExecutionException   if the factory failed
+     * @throws InterruptedException if the wait is interrupted
+     */
+    private Object await(Future<Object> population, String cacheName, String key)
+            throws ExecutionException, InterruptedException {
+        try {
+            return population.get(populationTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            StaleValues stale = staleValues.get(cacheName);
+            Object o = (stale != null) ? stale.get(key) : null;
+            if (o != null) {
+                log.warn("getCacheable() - using stale value after " + populationTimeout + "ms - cache: " +
+                        cacheName + " key: " + key);
+                return o;
+            }
+            throw new RuntimeException("Timed out after " + populationTimeout + "ms waiting for cache: " +
+                    cacheName + " key: " + key, e);
+        }
+    }
+
+    /**
+     * Create a value with the factory and put it in the cache. A failure is put in the cache for the negative time to
+     * live.
+     *
+     * @param factory the CacheableFactory
+     * @param cache   the cache
+     * @param key     the element key
+     * @return the created value
+     */
+    private Object create(CacheableFactory factory, Ehcache cache, String key) {
+        Object o;
+        try {
+            // element is not cached - build it
+            o = factory.create();
+        } catch (final Throwable throwable) {
+            log.warn("getCacheable() - caching failure for " + negativeTimeToLive + "s - cache: " + cache.getName() +
+                    " key: " + key);
+            Element element = new Element(key, new NegativeResult(throwable));
+            element.setTimeToLive(negativeTimeToLive);
+            cache.put(element);
+            // Wrapped as getValue wraps the cached failure, so every caller sees the same exception.
+            throw new RuntimeException(throwable);
+        }
+        cache.put(new Element(key, o));
+        return o;
+    }
+
+    /**
+     * Get a value from a BlockingCache, which holds a lock on the key while the value is created.
+     *
+     * @param factory the CacheableFactory
+     * @param cache   the BlockingCache
+     * @param key     the element key
+     * @return the cached value
+     */
+    private Object getCacheable(CacheableFactory factory, BlockingCache cache, String key) {
+        Object o;
+        Element element = cache.get(key);
+        if (element == null) {
+            try {
+                // element is not cached - build it
+                o = factory.create();
+                cache.put(new Element(key, o));
+            } catch (final Throwable throwable) {
+                // must unlock the cache if the above fails
+                cache.put(new Element(key, null));
+                // TODO: what should we really be throwing here?
+                throw new RuntimeException(throwable);
+            }
+        } else {
+            o = getValue(element);
+        }
+        return o;
+    }
+
+    private static Object getValue(Element element) {
+        Object o = element.getObjectValue();
+        if (o instanceof NegativeResult) {
+            throw new RuntimeException(((NegativeResult) o).getThrowable());
+        }
+        return o;
+    }
+
     public void clearCache(CacheableFactory factory) {
         remove(factory.getCacheName(), factory.getKey());
     }
 
-    public void clearCache(String cacheName, String elementKeyPrefix) {
+    /**
+     * Remove all elements with keys starting with the prefix. The keys are found from the key index of the cache, so
+     * this takes time in proportion to the number of matching keys. Caches not decorated here are scanned.
+     *
+     * @param cacheName        the name of the cache
+     * @param elementKeyPrefix the key prefix
+     * @return the number of elements removed
+     */
+    public int clearCache(String cacheName, String elementKeyPrefix) {
+        int removed = 0;
         BlockingCache cache = getBlockingCache(cacheName);
         if (cache != null) {
             log.debug("cache: {} elementKeyPrefix: {}", cacheName, elementKeyPrefix);
-            for (Object o : cache.getKeys()) {
+            CacheKeyIndex keyIndex = getKeyIndex(cache);
+            List keys = (keyIndex != null) ? keyIndex.getKeys(elementKeyPrefix) : cache.getKeys();
+            for (Object o : keys) {
                 String elementKey = (String) o;
                 if (elementKey.startsWith(elementKeyPrefix)) {
                     log.debug("removing: {}", elementKey);
-                    cache.remove(elementKey);
+                    if (cache.remove(elementKey)) {
+                        removed++;
+                    }
                 }
             }
         }
+        return removed;
     }
 
     public void clearCache(String cacheName) {
@@ -119,12 +303,20 @@ public class CacheHelper implements Serializable {
         remove(cacheName, getCacheKey(key, scope));
     }
 
-    public void remove(String cacheName, String key) {
+    /**
+     * Remove an element.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the element key
+     * @return true if an element was removed
+     */
+    public boolean remove(String cacheName, String key) {
         BlockingCache cache = getBlockingCache(cacheName);
         if (cache != null) {
             log.debug("remove() - cache: {} key: {}", cacheName, key);
-            cache.remove(key);
+            return cache.remove(key);
         }
+        return false;
     }
 
     public void add(String cacheName, String scope, String key, Object o) {
@@ -139,6 +331,33 @@ public class CacheHelper implements Serializable {
         }
     }
 
+    /**
+     * Get the number of keys in the key index of a cache.
+     *
+     * @param cacheName the name of the cache
+     * @return the number of indexed keys, or -1 if the cache is not indexed
+     */
+    int getIndexedKeyCount(String cacheName) {
+        BlockingCache cache = getBlockingCache(cacheName);
+        CacheKeyIndex keyIndex = (cache != null) ? getKeyIndex(cache) : null;
+        return (keyIndex != null) ? keyIndex.size() : -1;
+    }
+
+    /**
+     * Get the key index registered with a cache. A cache replaced in the CacheManager since it was decorated here is
+     * not indexed.
+     *
+     * @param cache the cache
+     * @return the CacheKeyIndex, or null if the cache is not indexed
+     */
+    private CacheKeyIndex getKeyIndex(Ehcache cache) {
+        CacheKeyIndex keyIndex = keyIndexes.get(cache.getName());
+        if ((keyIndex != null) && cache.getCacheEventNotificationService().getCacheEventListeners().contains(keyIndex)) {
+            return keyIndex;
+        }
+        return null;
+    }
+
     public List getKeys(String cacheName) {
         BlockingCache cache = getBlockingCache(cacheName);
         return cache.getKeys();
@@ -148,12 +367,19 @@ public class CacheHelper implements Serializable {
         return get(cacheName, getCacheKey(key, scope));
     }
 
+    /**
+     * Get a value from the cache. A failure cached by getCacheable for the key is rethrown.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the element key
+     * @return the cached value, or null if there is none
+     */
     public Object get(String cacheName, Object key) {
         BlockingCache cache = getBlockingCache(cacheName);
         if ((cache != null) && cache.isKeyInCache(key)) {
             Element element = cache.get(key);
             if (element != null) {
-                return element.getValue();
+                return getValue(element);
             } else {
                 // unlock the blocking cache if cache.get fails
                 cache.put(new Element(key, null));
@@ -166,12 +392,19 @@ public class CacheHelper implements Serializable {
         return getAndBlock(cacheName, getCacheKey(key, scope));
     }
 
+    /**
+     * Get a value from the cache. A failure cached by getCacheable for the key is rethrown.
+     *
+     * @param cacheName the name of the cache
+     * @param key       the element key
+     * @return the cached value, or null if there is none
+     */
     public Object getAndBlock(String cacheName, Object key) {
         BlockingCache cache = getBlockingCache(cacheName);
         if ((cache != null) && cache.isKeyInCache(key)) {
             Element element = cache.get(key);
             if (element != null) {
-                return element.getValue();
+                return getValue(element);
             }
         }
         return null;
@@ -187,7 +420,7 @@ public class CacheHelper implements Serializable {
             Element element = cache.get(key);
             if (element != null) {
                 cache.remove(key);
-                return element.getValue();
+                return getValue(element);
             } else {
                 // unlock the blocking cache if cache.get fails
                 cache.put(new Element(key, null));
@@ -211,4 +444,36 @@ public class CacheHelper implements Serializable {
     public void remove(String cacheName, IdentityObject identityObject) {
         remove(cacheName, identityObject.getUid());
     }
+
+    public void setPopulationTimeout(long populationTimeout) {
+        this.populationTimeout = populationTimeout;
+    }
+
+    public void setNegativeTimeToLive(int negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    public void setStaleMaxEntries(int staleMaxEntries) {
+        this.staleMaxEntries = staleMaxEntries;
+    }
+
+    public void setStaleTimeToLive(int staleTimeToLive) {
+        this.staleTimeToLive = staleTimeToLive;
+    }
+
+    /**
+     * A cached failure to create a value.
+     */
+    static class NegativeResult implements Serializable {
+
+        private final Throwable throwable;
+
+        NegativeResult(Throwable throwable) {
+            this.throwable = throwable;
+        }
+
+        Throwable getThrowable() {
+            return throwable;
+        }
+    }
 }
@@ -0,0 +1,129 @@
+package com.amee.domain.cache;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A sorted index of the String keys in a cache, so the keys starting with a prefix are found without scanning the
+ * whole cache.
+ * <p/>
+ * The index is maintained from the cache events for puts, removals, expiries and evictions. Events for a key may be
+ * delivered out of order, so a key is checked against the cache after it is removed from the index and indexed again if
+ * it is still present. The index may briefly hold keys which are no longer cached but does not miss keys which are.
+ */
+class CacheKeyIndex implements CacheEventListener {
+
+    private final Ehcache cache;
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<String>();
+
+    /**
+     * Create an index of the keys already in the cache. The index must then be registered for the cache events.
+     *
+     * @param cache the cache to index
+     */
+    CacheKeyIndex(Ehcache cache) {
+        super();
+        this.cache = cache;
+        addAll(cache);
+    }
+
+    /**
+     * @return the indexed cache, undecorated
+     */
+    Ehcache getCache() {
+        return cache;
+    }
+
+    /**
+     * Get the indexed keys starting with the prefix.
+     *
+     * @param prefix the key prefix
+     * @return a new List of the keys
+     */
+    List<String> getKeys(String prefix) {
+        List<String> matching = new ArrayList<String>();
+        for (String key : keys.tailSet(prefix, true)) {
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            matching.add(key);
+        }
+        return matching;
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) {
+        add(element);
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) {
+        add(element);
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) {
+        remove(cache, element);
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        remove(cache, element);
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        remove(cache, element);
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        keys.clear();
+        // Keep any keys put since the cache was cleared.
+        addAll(cache);
+    }
+
+    @Override
+    public void dispose() {
+        keys.clear();
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("CacheKeyIndex is bound to a single cache.");
+    }
+
+    private void add(Element element) {
+        if ((element != null) && (element.getObjectKey() instanceof String)) {
+            keys.add((String) element.getObjectKey());
+        }
+    }
+
+    private void remove(Ehcache cache, Element element) {
+        if ((element != null) && (element.getObjectKey() instanceof String)) {
+            String key = (String) element.getObjectKey();
+            if (keys.remove(key) && cache.isKeyInCache(key)) {
+                // Put again before this removal was notified.
+                keys.add(key);
+            }
+        }
+    }
+
+    private void addAll(Ehcache cache) {
+        for (Object key : cache.getKeys()) {
+            if (key instanceof String) {
+                keys.add((String) key);
+            }
+        }
+    }
+}
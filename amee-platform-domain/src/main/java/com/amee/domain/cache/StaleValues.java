@@ -0,0 +1,131 @@
+package com.amee.domain.cache;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The last values of elements removed or expired from a cache, kept until the key is put again or until they are
+ * timeToLive seconds old. These can be served while a new value is being created and takes too long.
+ * <p/>
+ * At most maxEntries values are kept. The oldest value is dropped to make room for another.
+ */
+class StaleValues implements CacheEventListener {
+
+    // Stale values in the order they were removed from the cache.
+    private final Map<Object, StaleValue> values;
+    private final long timeToLive;
+
+    StaleValues(final int maxEntries, int timeToLive) {
+        super();
+        this.timeToLive = timeToLive * 1000L;
+        values = new LinkedHashMap<Object, StaleValue>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, StaleValue> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the stale value for a key.
+     *
+     * @param key the element key
+     * @return the stale value, or null if there is none or it has expired
+     */
+    Object get(Object key) {
+        synchronized (values) {
+            StaleValue value = values.get(key);
+            if (value == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - value.removed > timeToLive) {
+                values.remove(key);
+                return null;
+            }
+            return value.value;
+        }
+    }
+
+    int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache cache, Element element) {
+        forget(element);
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache cache, Element element) {
+        forget(element);
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache cache, Element element) {
+        remember(element);
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache cache, Element element) {
+        remember(element);
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache cache, Element element) {
+        // Evicted for space so not worth keeping.
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache cache) {
+        // The removed elements are not available.
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (values) {
+            values.clear();
+        }
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("StaleValues is bound to a single cache.");
+    }
+
+    private void remember(Element element) {
+        if ((element != null) &&
+                (element.getObjectValue() != null) &&
+                !(element.getObjectValue() instanceof CacheHelper.NegativeResult)) {
+            synchronized (values) {
+                // Removed first so the value moves to the end of the order.
+                values.remove(element.getObjectKey());
+                values.put(element.getObjectKey(), new StaleValue(element.getObjectValue()));
+            }
+        }
+    }
+
+    private void forget(Element element) {
+        // A failure does not replace the stale value.
+        if ((element != null) && !(element.getObjectValue() instanceof CacheHelper.NegativeResult)) {
+            synchronized (values) {
+                values.remove(element.getObjectKey());
+            }
+        }
+    }
+
+    private static class StaleValue {
+
+        private final Object value;
+        private final long removed = System.currentTimeMillis();
+
+        private StaleValue(Object value) {
+            this.value = value;
+        }
+    }
+}
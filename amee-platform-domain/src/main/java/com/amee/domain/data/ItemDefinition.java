@@ -7,6 +7,7 @@ import com.amee.domain.algorithm.Algorithm;
 import com.amee.domain.environment.Environment;
 import com.amee.domain.path.Pathable;
 import com.amee.domain.sheet.Choice;
+import com.amee.platform.science.AlgorithmBackend;
 import com.amee.platform.science.InternalValue;
 import net.sf.cglib.beans.BeanGenerator;
 import org.hibernate.annotations.Cache;
@@ -453,6 +454,47 @@ public class ItemDefinition extends AMEEEntity implements Pathable {
         return usagesList;
     }
 
+    /**
+     * Returns the name of the {@link AlgorithmBackend} used to evaluate Algorithms for this ItemDefinition.
+     *
+     * @return the algorithmBackend property, empty if not set
+     */
+    public String getAlgorithmBackend() {
+        return getMetadataValue("algorithmBackend");
+    }
+
+    /**
+     * Set the name of the {@link AlgorithmBackend} used to evaluate Algorithms for this ItemDefinition. An empty
+     * value means Algorithms are interpreted.
+     *
+     * @param algorithmBackend value to set
+     */
+    public void setAlgorithmBackend(String algorithmBackend) {
+        getOrCreateMetadata("algorithmBackend").setValue(algorithmBackend);
+        onModify();
+    }
+
+    /**
+     * Returns the content hash of the Algorithms which last passed an offline comparison of the interpreted and
+     * translated backends.
+     *
+     * @return the algorithmBackendVerified property, empty if the Algorithms have not been verified
+     */
+    public String getAlgorithmBackendVerified() {
+        return getMetadataValue("algorithmBackendVerified");
+    }
+
+    /**
+     * Set the content hash of the Algorithms which passed an offline comparison of the backends, or empty if they
+     * did not pass.
+     *
+     * @param algorithmBackendVerified value to set
+     */
+    public void setAlgorithmBackendVerified(String algorithmBackendVerified) {
+        getOrCreateMetadata("algorithmBackendVerified").setValue(algorithmBackendVerified);
+        onModify();
+    }
+
     public List<ItemValueUsage> getItemValueUsages() {
         List<ItemValueUsage> itemValueUsages = new ArrayList<ItemValueUsage>();
         for (String usage : getUsages()) {
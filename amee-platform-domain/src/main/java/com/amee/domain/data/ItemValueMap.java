@@ -10,17 +10,18 @@ import java.util.*;
 /**
  * A Map of {@link BaseItemValue} instances.
  * <p/>
- * The keys will be the {@link BaseItemValue} paths. The entries will be a SortedSet of {@link BaseItemValue} instances. The Set will
- * consist of a single entry for single-valued {@link BaseItemValue} histories and a set of {@link BaseItemValue}s sorted in
- * descending order (most recent first) for multi-valued histories. The non-historical value is the last item in the set.
- * <p/>
- * Note: This class has a natural ordering that is inconsistent with equals.
+ * The keys will be the {@link BaseItemValue} paths. Each entry holds the non-historical value, if any, and an immutable
+ * array of the historical values sorted by startDate, so the value active at a date is found with a binary search.
+ * There is at most one non-historical value and one historical value per startDate for each path. The first one added
+ * is kept.
  */
 public class ItemValueMap {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private Map<String, SortedSet<BaseItemValue>> map = new HashMap<String, SortedSet<BaseItemValue>>();
+    private static final Comparator<BaseItemValue> START_DATE_COMPARATOR = new BaseItemValueStartDateComparator();
+
+    private Map<String, Series> map = new HashMap<String, Series>();
 
     /**
      * Get the head {@link BaseItemValue} in the historical sequence (the earliest value).
@@ -30,9 +31,9 @@ public class ItemValueMap {
      */
     public BaseItemValue get(String path) {
         BaseItemValue itemValue = null;
-        SortedSet<BaseItemValue> series = map.get(path);
+        Series series = map.get(path);
         if (series != null) {
-            itemValue = series.last();
+            itemValue = series.getEarliest();
         }
         return itemValue;
     }
@@ -45,12 +46,13 @@ public class ItemValueMap {
      */
     public List<BaseItemValue> getAll(Date startDate) {
         List<BaseItemValue> itemValues = new ArrayList<BaseItemValue>();
-        for (String path : map.keySet()) {
-            BaseItemValue itemValue = get(path, startDate);
+        long time = getTime(startDate);
+        for (Map.Entry<String, Series> entry : map.entrySet()) {
+            BaseItemValue itemValue = entry.getValue().find(time);
             if (itemValue != null) {
                 itemValues.add(itemValue);
             } else {
-                log.warn("getAll() Got null BaseItemValue: path=" + path + ", startDate=" + startDate);
+                log.warn("getAll() Got null BaseItemValue: path=" + entry.getKey() + ", startDate=" + startDate);
             }
         }
         return itemValues;
@@ -65,67 +67,202 @@ public class ItemValueMap {
      */
     public BaseItemValue get(String path, Date startDate) {
         BaseItemValue itemValue = null;
-        SortedSet<BaseItemValue> series = map.get(path);
+        Series series = map.get(path);
         if (series != null) {
-            itemValue = find(series, startDate);
+            itemValue = series.find(getTime(startDate));
         }
         return itemValue;
     }
 
+    /**
+     * Add a {@link BaseItemValue}. Each call copies the history for the path, so use {@link #putAll(Collection)} to
+     * add many values.
+     *
+     * @param path      - the {@link BaseItemValue} path.
+     * @param itemValue - the {@link BaseItemValue} to add.
+     */
     public void put(String path, BaseItemValue itemValue) {
-        // Create TreeSet if it does not exist for this path.
-        if (!map.containsKey(path)) {
-            map.put(path, new TreeSet<BaseItemValue>(Collections.reverseOrder(new BaseItemValueStartDateComparator())));
+        Series series = map.get(path);
+        if (series == null) {
+            series = new Series(Collections.singletonList(itemValue));
+        } else {
+            series = series.with(itemValue);
+        }
+        map.put(path, series);
+    }
+
+    /**
+     * Add {@link BaseItemValue}s keyed by their display path, sorting each history once.
+     *
+     * @param itemValues - the {@link BaseItemValue}s to add.
+     */
+    public void putAll(Collection<? extends BaseItemValue> itemValues) {
+        Map<String, List<BaseItemValue>> itemValuesByPath = new HashMap<String, List<BaseItemValue>>();
+        for (BaseItemValue itemValue : itemValues) {
+            String path = itemValue.getDisplayPath();
+            List<BaseItemValue> pathItemValues = itemValuesByPath.get(path);
+            if (pathItemValues == null) {
+                pathItemValues = new ArrayList<BaseItemValue>();
+                Series series = map.get(path);
+                if (series != null) {
+                    // Values already in the map come first so they are kept.
+                    pathItemValues.addAll(series.getAll());
+                }
+                itemValuesByPath.put(path, pathItemValues);
+            }
+            pathItemValues.add(itemValue);
+        }
+        for (Map.Entry<String, List<BaseItemValue>> entry : itemValuesByPath.entrySet()) {
+            map.put(entry.getKey(), new Series(entry.getValue()));
         }
-        // Add itemValue to the TreeSet for this path.
-        SortedSet<BaseItemValue> itemValues = map.get(path);
-        itemValues.add(itemValue);
     }
 
     /**
      * Get all instances of {@link BaseItemValue} with the passed path.
      *
      * @param path - the {@link BaseItemValue} path.
-     * @return the List of {@link BaseItemValue}. Will be empty is there exists no {@link BaseItemValue}s with this path.
+     * @return the List of {@link BaseItemValue} sorted by startDate, most recent first, with the non-historical value
+     *         last. Will be empty is there exists no {@link BaseItemValue}s with this path.
      */
     public List<BaseItemValue> getAll(String path) {
-        SortedSet<BaseItemValue> series = map.get(path);
-        return series != null ? new ArrayList<BaseItemValue>(series) : new ArrayList<BaseItemValue>();
+        Series series = map.get(path);
+        return series != null ? series.getAll() : new ArrayList<BaseItemValue>();
+    }
+
+    public Set<String> keySet() {
+        return map.keySet();
+    }
+
+    private static long getTime(Date startDate) {
+        // Default to the current date.
+        return startDate != null ? startDate.getTime() : System.currentTimeMillis();
+    }
+
+    private static long getStartTime(BaseItemValue itemValue) {
+        return ((ExternalHistoryValue) itemValue).getStartDate().getTime();
     }
 
     /**
-     * Find the active BaseItemValue at startDate. The active BaseItemValue is the one occurring at or
-     * immediately before startDate.
-     *
-     * @param itemValues the item values sorted by startDate, most recent first (descending).
-     * @param startDate  - the active {@link BaseItemValue} will be that starting immediately prior-to or on this date.
-     * @return the discovered BaseItemValue, or null if not found
+     * The values for a path. The non-historical value is held apart from the historical values, which are sorted by
+     * startDate, earliest first.
      */
-    private static BaseItemValue find(SortedSet<BaseItemValue> itemValues, Date startDate) {
-        // Default to the current date.
-        if (startDate == null) {
-            startDate = new Date();
-        }
-        // Find active BaseItemValue.
-        BaseItemValue selected = null;
-        for (BaseItemValue itemValue : itemValues) {
-            if (BaseItemValueStartDateComparator.isHistoricValue(itemValue)) {
-                if (!((ExternalHistoryValue) itemValue).getStartDate().after(startDate)) {
-                    selected = itemValue;
-                    break;
+    private static final class Series {
+
+        private final BaseItemValue defaultValue;
+        private final BaseItemValue[] history;
+        private final long[] startTimes;
+
+        /**
+         * @param itemValues the values in the order they were added
+         */
+        private Series(List<BaseItemValue> itemValues) {
+            BaseItemValue nonHistorical = null;
+            List<BaseItemValue> historical = new ArrayList<BaseItemValue>(itemValues.size());
+            for (BaseItemValue itemValue : itemValues) {
+                if (BaseItemValueStartDateComparator.isHistoricValue(itemValue)) {
+                    historical.add(itemValue);
+                } else if (nonHistorical == null) {
+                    nonHistorical = itemValue;
+                }
+            }
+
+            // The sort is stable so the first value added at a startDate comes first and is kept.
+            Collections.sort(historical, START_DATE_COMPARATOR);
+            BaseItemValue[] values = new BaseItemValue[historical.size()];
+            long[] times = new long[historical.size()];
+            int size = 0;
+            for (BaseItemValue itemValue : historical) {
+                long time = getStartTime(itemValue);
+                if ((size == 0) || (times[size - 1] != time)) {
+                    values[size] = itemValue;
+                    times[size] = time;
+                    size++;
                 }
-            } else {
-                // No historical values match so use the non-historical value.
-                selected = itemValue;
             }
+            defaultValue = nonHistorical;
+            history = Arrays.copyOf(values, size);
+            startTimes = Arrays.copyOf(times, size);
         }
-        if (selected != null) {
-            selected.setHistoryAvailable(itemValues.size() > 1);
+
+        private Series(BaseItemValue defaultValue, BaseItemValue[] history, long[] startTimes) {
+            this.defaultValue = defaultValue;
+            this.history = history;
+            this.startTimes = startTimes;
         }
-        return selected;
-    }
 
-    public Set<String> keySet() {
-        return map.keySet();
+        /**
+         * Get a Series with the value added, unless a value is already present for the same startDate.
+         *
+         * @param itemValue the value to add
+         * @return the new Series, or this Series if the value was not added
+         */
+        private Series with(BaseItemValue itemValue) {
+            if (!BaseItemValueStartDateComparator.isHistoricValue(itemValue)) {
+                return defaultValue == null ? new Series(itemValue, history, startTimes) : this;
+            }
+            long time = getStartTime(itemValue);
+            int index = Arrays.binarySearch(startTimes, time);
+            if (index >= 0) {
+                return this;
+            }
+            int insert = -(index + 1);
+            BaseItemValue[] values = new BaseItemValue[history.length + 1];
+            long[] times = new long[history.length + 1];
+            System.arraycopy(history, 0, values, 0, insert);
+            System.arraycopy(startTimes, 0, times, 0, insert);
+            values[insert] = itemValue;
+            times[insert] = time;
+            System.arraycopy(history, insert, values, insert + 1, history.length - insert);
+            System.arraycopy(startTimes, insert, times, insert + 1, history.length - insert);
+            return new Series(defaultValue, values, times);
+        }
+
+        /**
+         * Find the active BaseItemValue at a time. The active BaseItemValue is the latest historical value starting at
+         * or before the time, or the non-historical value if there is none.
+         *
+         * @param time the time in milliseconds
+         * @return the discovered BaseItemValue, or null if not found
+         */
+        private BaseItemValue find(long time) {
+            BaseItemValue selected = defaultValue;
+            int index = Arrays.binarySearch(startTimes, time);
+            if (index < 0) {
+                // Not an exact match, so take the floor.
+                index = -(index + 1) - 1;
+            }
+            if (index >= 0) {
+                selected = history[index];
+            }
+            if (selected != null) {
+                selected.setHistoryAvailable(size() > 1);
+            }
+            return selected;
+        }
+
+        private BaseItemValue getEarliest() {
+            if (defaultValue != null) {
+                return defaultValue;
+            }
+            return history.length > 0 ? history[0] : null;
+        }
+
+        /**
+         * @return the values, most recent first, with the non-historical value last
+         */
+        private List<BaseItemValue> getAll() {
+            List<BaseItemValue> itemValues = new ArrayList<BaseItemValue>(size());
+            for (int i = history.length - 1; i >= 0; i--) {
+                itemValues.add(history[i]);
+            }
+            if (defaultValue != null) {
+                itemValues.add(defaultValue);
+            }
+            return itemValues;
+        }
+
+        private int size() {
+            return history.length + (defaultValue != null ? 1 : 0);
+        }
     }
 }
@@ -186,6 +186,15 @@ public class ProfileItem extends BaseItem {
                 (getEndDate() == null || date.before(getEndDate()));
     }
 
+    /**
+     * Returns true if the GHG amounts for this ProfileItem have already been calculated.
+     *
+     * @return true if amounts is not empty
+     */
+    public boolean hasAmounts() {
+        return !amounts.getReturnValues().isEmpty();
+    }
+
     /**
      * Get the GHG {@link com.amee.platform.science.ReturnValues ReturnValues} for this ProfileItem.
      * <p/>
@@ -0,0 +1,316 @@
+package com.amee.domain.cache;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CacheHelperTest {
+
+    private static final String CACHE_NAME = "CacheHelperTest";
+    private static final int ENTITIES = 5000;
+    private static final int KEYS_PER_ENTITY = 10;
+
+    private CacheHelper cacheHelper = CacheHelper.getInstance();
+
+    @Before
+    public void setUp() {
+        addCache(0);
+    }
+
+    @After
+    public void tearDown() {
+        CacheManager.getInstance().removeCache(CACHE_NAME);
+        cacheHelper.setPopulationTimeout(30000);
+        cacheHelper.setNegativeTimeToLive(10);
+    }
+
+    @Test
+    public void prefixClearShouldRemoveOnlyMatchingKeys() {
+        populate();
+        assertEquals(ENTITIES * KEYS_PER_ENTITY, cacheHelper.getIndexedKeyCount(CACHE_NAME));
+
+        assertEquals(KEYS_PER_ENTITY, cacheHelper.clearCache(CACHE_NAME, getPrefix(7)));
+        assertEquals(0, cacheHelper.clearCache(CACHE_NAME, getPrefix(7)));
+        assertEquals(null, cacheHelper.get(CACHE_NAME, getKey(7, 0)));
+        assertEquals("value", cacheHelper.get(CACHE_NAME, getKey(8, 0)));
+
+        // Prefixes need not end on a separator. Entities 4990 to 4999 less those with a key removed below.
+        cacheHelper.remove(CACHE_NAME, getKey(4995, 3));
+        assertEquals(10 * KEYS_PER_ENTITY - 1, cacheHelper.clearCache(CACHE_NAME, "Entity_00000000499"));
+        assertEquals((ENTITIES - 11) * KEYS_PER_ENTITY, cacheHelper.getCacheManager().getEhcache(CACHE_NAME).getSize());
+        assertEquals((ENTITIES - 11) * KEYS_PER_ENTITY, cacheHelper.getIndexedKeyCount(CACHE_NAME));
+    }
+
+    @Test
+    public void indexShouldMatchCacheAfterConcurrentUpdates() throws Exception {
+        populate();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Future<?>[] futures = new Future<?>[8];
+        for (int t = 0; t < futures.length; t++) {
+            final int thread = t;
+            futures[t] = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(thread);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (running.get()) {
+                        int entity = random.nextInt(ENTITIES);
+                        if (thread % 2 == 0) {
+                            cacheHelper.add(CACHE_NAME, getKey(entity, random.nextInt(KEYS_PER_ENTITY)), "value");
+                        } else if (thread % 4 == 1) {
+                            cacheHelper.clearCache(CACHE_NAME, getPrefix(entity));
+                        } else {
+                            cacheHelper.remove(CACHE_NAME, getKey(entity, random.nextInt(KEYS_PER_ENTITY)));
+                        }
+                    }
+                }
+            });
+        }
+        start.countDown();
+        Thread.sleep(2000);
+        running.set(false);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // Every cached key must be found through the index.
+        int size = cacheHelper.getCacheManager().getEhcache(CACHE_NAME).getSize();
+        assertTrue(size > 0);
+        int removed = 0;
+        for (int entity = 0; entity < ENTITIES; entity++) {
+            removed += cacheHelper.clearCache(CACHE_NAME, getPrefix(entity));
+        }
+        assertEquals(size, removed);
+        assertEquals(0, cacheHelper.getCacheManager().getEhcache(CACHE_NAME).getSize());
+        assertEquals(0, cacheHelper.getIndexedKeyCount(CACHE_NAME));
+    }
+
+    @Test
+    public void indexShouldDropEvictedKeys() {
+        CacheManager.getInstance().removeCache(CACHE_NAME);
+        addCache(1000);
+        populate();
+        assertEquals(1000, cacheHelper.getCacheManager().getEhcache(CACHE_NAME).getSize());
+        assertEquals(1000, cacheHelper.getIndexedKeyCount(CACHE_NAME));
+
+        cacheHelper.clearCache(CACHE_NAME);
+        assertEquals(0, cacheHelper.getIndexedKeyCount(CACHE_NAME));
+    }
+
+    @Test
+    public void concurrentCallersShouldShareOneCreate() throws Exception {
+        final TestFactory factory = new TestFactory("shared");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return cacheHelper.getCacheable(factory);
+                }
+            }));
+        }
+        assertTrue(factory.started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        factory.release.countDown();
+        for (Future<Object> future : futures) {
+            assertEquals("shared", future.get());
+        }
+        executor.shutdown();
+        assertEquals(1, factory.creates.get());
+    }
+
+    @Test
+    public void failureShouldBeCachedUntilNegativeTimeToLive() {
+        cacheHelper.setNegativeTimeToLive(5);
+        TestFactory factory = new TestFactory(null);
+        factory.release.countDown();
+        for (int i = 0; i < 3; i++) {
+            try {
+                cacheHelper.getCacheable(factory);
+                fail("Expected the failure to be rethrown.");
+            } catch (RuntimeException e) {
+                assertEquals("create failed", e.getCause().getMessage());
+            }
+        }
+        assertEquals(1, factory.creates.get());
+        Element element = cacheHelper.getCacheManager().getEhcache(CACHE_NAME).getQuiet(factory.getKey());
+        assertEquals(5, element.getTimeToLive());
+
+        // The failure is rethrown to callers sharing the key, not returned.
+        try {
+            cacheHelper.get(CACHE_NAME, factory.getKey());
+            fail("Expected the failure to be rethrown.");
+        } catch (RuntimeException e) {
+            assertEquals("create failed", e.getCause().getMessage());
+        }
+
+        // Invalidation also removes the failure.
+        cacheHelper.clearCache(factory);
+        factory.value = "recovered";
+        assertEquals("recovered", cacheHelper.getCacheable(factory));
+        assertEquals(2, factory.creates.get());
+    }
+
+    @Test
+    public void waitingCallerShouldFallBackToStaleValue() throws Exception {
+        cacheHelper.setPopulationTimeout(100);
+        TestFactory factory = new TestFactory("fresh");
+        cacheHelper.add(CACHE_NAME, factory.getKey(), "stale");
+        cacheHelper.clearCache(CACHE_NAME, factory.getKey());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Object> owner = executor.submit(new CreateCall(factory));
+        assertTrue(factory.started.await(10, TimeUnit.SECONDS));
+        assertEquals("stale", cacheHelper.getCacheable(factory));
+
+        // Without a stale value the wait fails.
+        TestFactory otherFactory = new TestFactory("other");
+        otherFactory.key = "Other_key";
+        Future<Object> otherOwner = executor.submit(new CreateCall(otherFactory));
+        factory.release.countDown();
+        assertEquals("fresh", owner.get());
+        assertTrue(otherFactory.started.await(10, TimeUnit.SECONDS));
+        try {
+            cacheHelper.getCacheable(otherFactory);
+            fail("Expected the wait to time out.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        otherFactory.release.countDown();
+        assertEquals("other", otherOwner.get());
+        executor.shutdown();
+        assertEquals("fresh", cacheHelper.getCacheable(factory));
+        assertEquals(1, factory.creates.get());
+    }
+
+    @Test
+    public void staleValuesShouldDropOldestAndExpire() throws Exception {
+        Cache cache = new Cache(new CacheConfiguration("StaleValuesTest", 0));
+        StaleValues stale = new StaleValues(2, 1);
+        for (int i = 0; i < 3; i++) {
+            stale.notifyElementRemoved(cache, new Element("key" + i, "value" + i));
+        }
+        assertEquals(2, stale.size());
+        assertEquals(null, stale.get("key0"));
+        assertEquals("value1", stale.get("key1"));
+        assertEquals("value2", stale.get("key2"));
+
+        // A value removed again is the newest.
+        stale.notifyElementRemoved(cache, new Element("key1", "value1"));
+        stale.notifyElementRemoved(cache, new Element("key3", "value3"));
+        assertEquals(null, stale.get("key2"));
+        assertEquals("value1", stale.get("key1"));
+
+        Thread.sleep(1100);
+        assertEquals(null, stale.get("key3"));
+        assertEquals(1, stale.size());
+    }
+
+    private void addCache(int maxEntries) {
+        CacheConfiguration configuration = new CacheConfiguration(CACHE_NAME, maxEntries);
+        configuration.setEternal(true);
+        CacheManager.getInstance().addCache(new Cache(configuration));
+    }
+
+    private void populate() {
+        for (int entity = 0; entity < ENTITIES; entity++) {
+            for (int i = 0; i < KEYS_PER_ENTITY; i++) {
+                cacheHelper.add(CACHE_NAME, getKey(entity, i), "value");
+            }
+        }
+    }
+
+    private class CreateCall implements Callable<Object> {
+
+        private final CacheableFactory factory;
+
+        private CreateCall(CacheableFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public Object call() {
+            return cacheHelper.getCacheable(factory);
+        }
+    }
+
+    /**
+     * A CacheableFactory which counts calls and waits to be released before creating the value, or failing if the
+     * value is null.
+     */
+    private static class TestFactory implements CacheableFactory {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger creates = new AtomicInteger();
+        private volatile String value;
+        private String key = "Test_key";
+
+        private TestFactory(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public String getCacheName() {
+            return CACHE_NAME;
+        }
+
+        @Override
+        public Object create() {
+            creates.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (value == null) {
+                throw new IllegalStateException("create failed");
+            }
+            return value;
+        }
+    }
+
+    private static String getPrefix(int entity) {
+        return String.format("Entity_%012d_", entity);
+    }
+
+    private static String getKey(int entity, int i) {
+        return getPrefix(entity) + i;
+    }
+}
@@ -1,5 +1,7 @@
 package com.amee.domain.data;
 
+import com.amee.domain.ValueDefinition;
+import com.amee.domain.ValueType;
 import com.amee.domain.item.data.DataItemTextValue;
 import com.amee.domain.item.data.DataItemTextValueHistory;
 import org.joda.time.format.DateTimeFormat;
@@ -7,11 +9,12 @@ import org.joda.time.format.DateTimeFormatter;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class ItemValueMapTest {
 
@@ -65,9 +68,54 @@ public class ItemValueMapTest {
         assertEquals(tv1, map.get("/foo", dt("01:00")));
     }
 
+    @Test
+    public void getBeforeHistoryWithoutNonHistoricalValue() {
+        map.put("/bar", tvh1);
+        assertNull(map.get("/bar", dt("12:00")));
+        assertEquals(tvh1, map.get("/bar", dt("12:20")));
+        assertEquals(tvh1, map.get("/bar"));
+    }
+
+    @Test
+    public void historyAvailable() {
+        map.put("/bar", tv2);
+        assertFalse(map.get("/bar", dt("12:00")).isHistoryAvailable());
+        assertTrue(map.get("/foo", dt("12:00")).isHistoryAvailable());
+    }
+
+    @Test
+    public void firstValueAtStartDateIsKept() {
+        DataItemTextValueHistory tvh3 = new DataItemTextValueHistory();
+        tvh3.setStartDate(dt("12:20"));
+        map.put("/foo", tvh3);
+        assertEquals(Arrays.asList(tvh1, tvh2, tv1), map.getAll("/foo"));
+    }
+
+    @Test
+    public void putAllMatchesPut() {
+        ItemValueDefinition foo = new ItemValueDefinition();
+        foo.setPath("/foo");
+        foo.setValueDefinition(new ValueDefinition("text", ValueType.TEXT));
+        List<DataItemTextValueHistory> history = new ArrayList<DataItemTextValueHistory>();
+        ItemValueMap bulkMap = new ItemValueMap();
+        ItemValueMap singleMap = new ItemValueMap();
+        for (int i = 0; i < 100; i++) {
+            // Add in an order that is not sorted by startDate.
+            DataItemTextValueHistory tvh = new DataItemTextValueHistory();
+            tvh.setItemValueDefinition(foo);
+            tvh.setStartDate(new Date(((i * 37) % 100) * 60000L));
+            history.add(tvh);
+            singleMap.put("/foo", tvh);
+        }
+        bulkMap.putAll(history);
+        assertEquals(singleMap.getAll("/foo"), bulkMap.getAll("/foo"));
+        assertEquals(100, bulkMap.getAll("/foo").size());
+        assertEquals(new Date(99 * 60000L), ((DataItemTextValueHistory) bulkMap.getAll("/foo").get(0)).getStartDate());
+        assertEquals(new Date(42 * 60000L), ((DataItemTextValueHistory) bulkMap.get("/foo", new Date(42 * 60000L + 59999L))).getStartDate());
+    }
+
     private Date dt(String s) {
         DateTimeFormatter fmt = DateTimeFormat.forPattern("HH:mm");
         return fmt.parseDateTime(s).toDate();
     }
-
 }
@@ -7,10 +7,14 @@ import com.amee.messaging.config.QueueConfig;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.ShutdownListener;
 import com.rabbitmq.client.ShutdownSignalException;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
@@ -20,6 +24,15 @@ import org.springframework.stereotype.Service;
 
 /**
  * A Spring service bean to manage RabbitMQ message sending, channels, exchanges, queues and connections.
+ * <p/>
+ * Messages are published on a small pool of channels kept open on the shared connection. Each publishing thread
+ * always uses the same pooled channel, so messages from one thread are published in order, and threads sharing a
+ * channel take turns as a channel must not be used by two threads at once.
+ * <p/>
+ * Exchanges, queues and bindings are only declared the first time they are used on a connection. They are declared
+ * again when a new connection is made after the last one was lost, and the next time they are used after a channel
+ * was closed by the broker, in case the broker no longer has them. Auto-delete queues can go when their consumer
+ * stops so are always declared.
  */
 @Service
 public class MessageService {
@@ -35,22 +48,88 @@ public class MessageService {
     // Must be declared volatile for double-check locking.
     private volatile Connection connection;
 
+    // Pooled publishing channels and the locks guarding them, by slot.
+    private Channel[] publishChannels;
+    private Object[] publishLocks;
+
+    // Exchanges, queues and bindings declared on the current connection, keyed by name.
+    private final ConcurrentMap<String, ExchangeConfig> declaredExchanges =
+            new ConcurrentHashMap<String, ExchangeConfig>();
+    private final ConcurrentMap<String, QueueConfig> declaredQueues = new ConcurrentHashMap<String, QueueConfig>();
+    private final ConcurrentMap<String, Binding> declaredBindings = new ConcurrentHashMap<String, Binding>();
+
+    private final MessagingMetrics metrics = new MessagingMetrics();
+
+    // Forgets the connection when the broker or network closes it, so the next caller makes a new one.
+    private final ShutdownListener connectionShutdownListener = new ShutdownListener() {
+        @Override
+        public void shutdownCompleted(ShutdownSignalException cause) {
+            if (!cause.isInitiatedByApplication()) {
+                log.warn("shutdownCompleted() Connection lost: " + cause.getMessage());
+                synchronized (MessageService.this) {
+                    if (connection == cause.getReference()) {
+                        connection = null;
+                    }
+                }
+            }
+        }
+    };
+
+    // Forgets declarations when the broker closes a channel, which it does if a declared exchange or queue has gone.
+    private final ShutdownListener channelShutdownListener = new ShutdownListener() {
+        @Override
+        public void shutdownCompleted(ShutdownSignalException cause) {
+            if (!cause.isHardError() && !cause.isInitiatedByApplication()) {
+                log.warn("shutdownCompleted() Channel closed by broker: " + cause.getMessage());
+                clearDeclarations();
+            }
+        }
+    };
+
+    /**
+     * A callback method called when this bean has been created by the Spring container. Sets up the pool of
+     * publishing channels, which are opened when first used.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        log.info("start()");
+        int size = Math.max(1, connectionConfig.getChannelPoolSize());
+        publishChannels = new Channel[size];
+        publishLocks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            publishLocks[i] = new Object();
+        }
+    }
+
     /**
      * A callback method called when this bean is in the process of being removed by the Spring container.
      */
     @PreDestroy
-    public synchronized void stop() {
-        log.info("stop()");
-        if (connection != null) {
+    public void stop() {
+        log.info("stop() {}", metrics);
+        if (publishChannels != null) {
+            for (int slot = 0; slot < publishChannels.length; slot++) {
+                synchronized (publishLocks[slot]) {
+                    closePublishChannel(slot);
+                }
+            }
+        }
+        // Close outside the lock as closing waits for shutdown listeners which may need it.
+        Connection closing;
+        synchronized (this) {
+            closing = connection;
+            connection = null;
+        }
+        if (closing != null) {
             try {
-                connection.close();
+                closing.close();
             } catch (IOException e) {
                 // Swallow.
             } catch (ShutdownSignalException e) {
                 // Swallow.
             }
-            connection = null;
         }
+        clearDeclarations();
     }
 
     /**
@@ -67,31 +146,73 @@ public class MessageService {
             String routingKey,
             Message message) {
         log.debug("publish() {}", routingKey);
-        try {
-            // Try to get a channel.
-            Channel channel = getChannel();
-            if (channel != null) {
-                // Ensure exchange is declared.
-                exchangeDeclare(channel, exchangeConfig);
-                // Publish.
-                channel.basicPublish(
-                        exchangeConfig.getName(),
-                        routingKey,
-                        publishConfig.isMandatory(),
-                        publishConfig.isImmediate(),
-                        publishConfig.getProperties(),
-                        message.getMessage().getBytes());
-                // We're done with the channel.
+        long start = System.nanoTime();
+        // Threads keep to one slot so their messages go out in order.
+        int slot = (int) (Thread.currentThread().getId() % publishChannels.length);
+        synchronized (publishLocks[slot]) {
+            try {
+                // Try to get the pooled channel.
+                Channel channel = getPublishChannel(slot);
+                if (channel != null) {
+                    // Ensure exchange is declared.
+                    exchangeDeclare(channel, exchangeConfig);
+                    // Publish.
+                    channel.basicPublish(
+                            exchangeConfig.getName(),
+                            routingKey,
+                            publishConfig.isMandatory(),
+                            publishConfig.isImmediate(),
+                            publishConfig.getProperties(),
+                            message.getMessage().getBytes());
+                    metrics.published(System.nanoTime() - start);
+                } else {
+                    log.warn("publish() Unable to get a channel.");
+                }
+            } catch (IOException e) {
+                log.warn("publish() Caught IOException: " + e.getMessage());
+                closePublishChannel(slot);
+            } catch (ShutdownSignalException e) {
+                log.warn("publish() Caught ShutdownSignalException: " + e.getMessage());
+                closePublishChannel(slot);
+            } catch (MessagingException e) {
+                log.warn("publish() Caught MessagingException: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Get the open pooled publishing {@link Channel} for a slot, opening a new one if needed. The caller must hold
+     * the lock for the slot.
+     *
+     * @param slot the pool slot
+     * @return the open Channel, or null if one could not be opened
+     * @throws IOException thrown by RabbitMQ
+     */
+    private Channel getPublishChannel(int slot) throws IOException {
+        Channel channel = publishChannels[slot];
+        if ((channel == null) || !channel.isOpen()) {
+            channel = getChannel();
+            publishChannels[slot] = channel;
+        }
+        return channel;
+    }
+
+    /**
+     * Close and forget the pooled publishing {@link Channel} for a slot. The caller must hold the lock for the slot.
+     *
+     * @param slot the pool slot
+     */
+    private void closePublishChannel(int slot) {
+        Channel channel = publishChannels[slot];
+        publishChannels[slot] = null;
+        if ((channel != null) && channel.isOpen()) {
+            try {
                 channel.close();
-            } else {
-                log.warn("publish() Unable to get a channel.");
+            } catch (IOException e) {
+                // Swallow.
+            } catch (ShutdownSignalException e) {
+                // Swallow.
             }
-        } catch (IOException e) {
-            log.warn("publish() Caught IOException: " + e.getMessage());
-        } catch (ShutdownSignalException e) {
-            log.warn("publish() Caught ShutdownSignalException: " + e.getMessage());
-        } catch (MessagingException e) {
-            log.warn("publish() Caught MessagingException: " + e.getMessage());
         }
     }
 
@@ -140,13 +261,21 @@ public class MessageService {
     }
 
     /**
-     * Declare a new RabbitMQ exchange based on the supplied {@link Channel} and {@link ExchangeConfig}.
+     * Declare a new RabbitMQ exchange based on the supplied {@link Channel} and {@link ExchangeConfig}. Does nothing
+     * if the exchange has already been declared on the current connection.
      *
      * @param channel        to base exchange on
      * @param exchangeConfig to base exchange on
      * @throws IOException thrown by RabbitMQ
      */
     public void exchangeDeclare(Channel channel, ExchangeConfig exchangeConfig) throws IOException {
+        if (!declaredExchanges.containsKey(exchangeConfig.getName())) {
+            doExchangeDeclare(channel, exchangeConfig);
+            declaredExchanges.put(exchangeConfig.getName(), exchangeConfig);
+        }
+    }
+
+    private void doExchangeDeclare(Channel channel, ExchangeConfig exchangeConfig) throws IOException {
         channel.exchangeDeclare(
                 exchangeConfig.getName(),
                 exchangeConfig.getType(),
@@ -156,13 +285,23 @@ public class MessageService {
     }
 
     /**
-     * Declare a new RabbitMQ queue based on the supplied {@link Channel} and {@link QueueConfig}.
+     * Declare a new RabbitMQ queue based on the supplied {@link Channel} and {@link QueueConfig}. Does nothing if
+     * the queue has already been declared on the current connection and is not an auto-delete queue.
      *
      * @param channel     to base queue on
      * @param queueConfig to base queue on
      * @throws IOException thrown by RabbitMQ
      */
     public void queueDeclare(Channel channel, QueueConfig queueConfig) throws IOException {
+        if (!declaredQueues.containsKey(queueConfig.getName())) {
+            doQueueDeclare(channel, queueConfig);
+            if (isCached(queueConfig)) {
+                declaredQueues.put(queueConfig.getName(), queueConfig);
+            }
+        }
+    }
+
+    private void doQueueDeclare(Channel channel, QueueConfig queueConfig) throws IOException {
         channel.queueDeclare(
                 queueConfig.getName(),
                 queueConfig.isDurable(),
@@ -182,11 +321,65 @@ public class MessageService {
      * @throws IOException thrown by RabbitMQ
      */
     public void queueBind(Channel channel, QueueConfig queueConfig, ExchangeConfig exchangeConfig, String bindingKey) throws IOException {
-        channel.queueBind(
-                queueConfig.getName(),
-                exchangeConfig.getName(),
-                bindingKey,
-                null);
+        Binding binding = new Binding(queueConfig, exchangeConfig, bindingKey);
+        if (!declaredBindings.containsKey(binding.getKey())) {
+            binding.bind(channel);
+            if (isCached(queueConfig)) {
+                declaredBindings.put(binding.getKey(), binding);
+            }
+        }
+    }
+
+    /**
+     * Auto-delete queues, and queues named by the broker, are not cached as they can go while the connection is up.
+     */
+    private static boolean isCached(QueueConfig queueConfig) {
+        return !queueConfig.isAutoDelete() && (queueConfig.getName() != null) && !queueConfig.getName().isEmpty();
+    }
+
+    /**
+     * Declare the exchanges, queues and bindings declared on the last connection on a new {@link Connection}. If
+     * this fails they are forgotten so they will be declared again when next used.
+     *
+     * @param newConnection the new Connection
+     */
+    private void redeclare(Connection newConnection) {
+        if (declaredExchanges.isEmpty() && declaredQueues.isEmpty() && declaredBindings.isEmpty()) {
+            return;
+        }
+        log.info("redeclare() Exchanges: {}, queues: {}, bindings: {}",
+                new Object[]{declaredExchanges.size(), declaredQueues.size(), declaredBindings.size()});
+        Channel channel = null;
+        try {
+            channel = newConnection.createChannel();
+            if (channel == null) {
+                clearDeclarations();
+                return;
+            }
+            metrics.channelOpened();
+            for (ExchangeConfig exchangeConfig : declaredExchanges.values()) {
+                doExchangeDeclare(channel, exchangeConfig);
+            }
+            for (QueueConfig queueConfig : declaredQueues.values()) {
+                doQueueDeclare(channel, queueConfig);
+            }
+            for (Binding binding : declaredBindings.values()) {
+                binding.bind(channel);
+            }
+            channel.close();
+        } catch (IOException e) {
+            log.warn("redeclare() Caught IOException: " + e.getMessage());
+            clearDeclarations();
+        } catch (ShutdownSignalException e) {
+            log.warn("redeclare() Caught ShutdownSignalException: " + e.getMessage());
+            clearDeclarations();
+        }
+    }
+
+    private void clearDeclarations() {
+        declaredExchanges.clear();
+        declaredQueues.clear();
+        declaredBindings.clear();
     }
 
     /**
@@ -196,20 +389,26 @@ public class MessageService {
      * @throws IOException thrown by RabbitMQ
      */
     public Channel getChannel() throws IOException {
+        Channel channel;
         try {
-            return getConnection().createChannel();
+            channel = getConnection().createChannel();
         } catch (ShutdownSignalException e) {
             log.warn("getChannel() Caught ShutdownSignalException. We'll try to ignore once. Message was: " + e.getMessage());
             connection = null;
-            return getConnection().createChannel();
+            channel = getConnection().createChannel();
+        }
+        if (channel != null) {
+            metrics.channelOpened();
+            channel.addShutdownListener(channelShutdownListener);
         }
+        return channel;
     }
 
     /**
      * Get an existing or new RabbitMQ {@link Connection}. The addresses configured in the
      * current {@link ConnectionConfig} instance are used.
      *
-     * Uses double-check idiom.
+     * Uses double-check idiom. Anything declared on the last connection is declared again on a new connection.
      *
      * @return the existing or a new {@link Connection}
      * @throws IOException thrown by RabbitMQ
@@ -224,7 +423,10 @@ public class MessageService {
             synchronized (this) {
                 result = connection;
                 if (result == null) {
-                    connection = result = getConnectionFactory().newConnection(connectionConfig.getAddresses());
+                    result = getConnectionFactory().newConnection(connectionConfig.getAddresses());
+                    result.addShutdownListener(connectionShutdownListener);
+                    redeclare(result);
+                    connection = result;
                 }
             }
         }
@@ -239,4 +441,41 @@ public class MessageService {
     public ConnectionFactory getConnectionFactory() {
         return connectionFactory;
     }
+
+    /**
+     * Get the channel and publish counters.
+     *
+     * @return the {@link MessagingMetrics}
+     */
+    public MessagingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * A queue binding remembered so it can be declared again on a new connection.
+     */
+    private static class Binding {
+
+        private final QueueConfig queueConfig;
+        private final ExchangeConfig exchangeConfig;
+        private final String bindingKey;
+
+        private Binding(QueueConfig queueConfig, ExchangeConfig exchangeConfig, String bindingKey) {
+            this.queueConfig = queueConfig;
+            this.exchangeConfig = exchangeConfig;
+            this.bindingKey = bindingKey;
+        }
+
+        private String getKey() {
+            return queueConfig.getName() + "/" + exchangeConfig.getName() + "/" + bindingKey;
+        }
+
+        private void bind(Channel channel) throws IOException {
+            channel.queueBind(
+                    queueConfig.getName(),
+                    exchangeConfig.getName(),
+                    bindingKey,
+                    null);
+        }
+    }
 }
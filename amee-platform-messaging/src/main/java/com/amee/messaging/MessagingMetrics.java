@@ -0,0 +1,111 @@
+package com.amee.messaging;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for {@link MessageService}: the rate at which RabbitMQ channels are opened and the latency of recent
+ * publishes.
+ * <p/>
+ * Channel opens are counted in one second buckets over the last minute. Publish latencies are kept for the most
+ * recent publishes only, so percentiles follow current behaviour rather than the whole life of the service.
+ */
+public class MessagingMetrics {
+
+    private static final int WINDOW_SECONDS = 60;
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final AtomicLong channelOpenCount = new AtomicLong();
+    private final AtomicLong publishCount = new AtomicLong();
+
+    // Channel opens in the second held in the matching element of openSeconds.
+    private final long[] openSeconds = new long[WINDOW_SECONDS];
+    private final int[] openCounts = new int[WINDOW_SECONDS];
+
+    // Latencies in nanoseconds of the most recent publishes, written round-robin.
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+
+    public void channelOpened() {
+        channelOpenCount.incrementAndGet();
+        long second = currentSecond();
+        int bucket = (int) (second % WINDOW_SECONDS);
+        synchronized (openCounts) {
+            if (openSeconds[bucket] != second) {
+                openSeconds[bucket] = second;
+                openCounts[bucket] = 0;
+            }
+            openCounts[bucket]++;
+        }
+    }
+
+    /**
+     * @param nanos the time taken by the publish in nanoseconds
+     */
+    public void published(long nanos) {
+        publishCount.incrementAndGet();
+        synchronized (latencies) {
+            latencies[latencyCount++ % LATENCY_SAMPLES] = nanos;
+            if (latencyCount == 2 * LATENCY_SAMPLES) {
+                // Keep the count from overflowing while remembering the buffer is full.
+                latencyCount = LATENCY_SAMPLES;
+            }
+        }
+    }
+
+    public long getChannelOpenCount() {
+        return channelOpenCount.get();
+    }
+
+    /**
+     * @return the mean number of channels opened per second over the last minute
+     */
+    public double getChannelOpensPerSecond() {
+        long second = currentSecond();
+        int opens = 0;
+        synchronized (openCounts) {
+            for (int i = 0; i < WINDOW_SECONDS; i++) {
+                if ((second - openSeconds[i]) < WINDOW_SECONDS) {
+                    opens += openCounts[i];
+                }
+            }
+        }
+        return (double) opens / WINDOW_SECONDS;
+    }
+
+    public long getPublishCount() {
+        return publishCount.get();
+    }
+
+    /**
+     * Returns a percentile of the latency of recent publishes.
+     *
+     * @param percentile the percentile, greater than 0 and at most 100
+     * @return the latency in microseconds, or 0 if nothing has been published
+     */
+    public long getPublishLatencyPercentile(double percentile) {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "MessagingMetrics{channelOpenCount=" + getChannelOpenCount() +
+                ", channelOpensPerSecond=" + getChannelOpensPerSecond() +
+                ", publishCount=" + getPublishCount() +
+                ", publishLatency50=" + getPublishLatencyPercentile(50) +
+                "us, publishLatency99=" + getPublishLatencyPercentile(99) + "us}";
+    }
+}
@@ -21,6 +21,11 @@ public class ConnectionConfig implements Serializable {
      */
     private Address[] addresses;
 
+    /**
+     * The most channels kept open for publishing messages. Publishing threads are spread over these.
+     */
+    private int channelPoolSize = 4;
+
     public ConnectionConfig() {
         super();
     }
@@ -32,4 +37,12 @@ public class ConnectionConfig implements Serializable {
     public void setAddresses(Address[] addresses) {
         this.addresses = addresses;
     }
+
+    public int getChannelPoolSize() {
+        return channelPoolSize;
+    }
+
+    public void setChannelPoolSize(int channelPoolSize) {
+        this.channelPoolSize = channelPoolSize;
+    }
 }
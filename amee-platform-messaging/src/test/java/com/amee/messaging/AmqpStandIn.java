@@ -0,0 +1,241 @@
+package com.amee.messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.impl.AMQImpl;
+import com.rabbitmq.client.impl.Frame;
+import com.rabbitmq.client.impl.LongStringHelper;
+import com.rabbitmq.client.impl.Method;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process server for enough of AMQP 0-9-1 for {@link com.rabbitmq.client.ConnectionFactory} to connect, open
+ * and close channels, declare exchanges and queues, bind queues and publish. Frames are read and written with the
+ * RabbitMQ client's own codec. Published messages are kept rather than routed and nothing can be consumed.
+ * <p/>
+ * As with a real broker, publishing to an exchange which has not been declared closes the channel.
+ */
+public class AmqpStandIn {
+
+    private final Set<String> exchanges = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<String> messages = new CopyOnWriteArrayList<String>();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger channelOpenCount = new AtomicInteger();
+    private final AtomicInteger exchangeDeclareCount = new AtomicInteger();
+    private final AtomicInteger queueDeclareCount = new AtomicInteger();
+    private final AtomicInteger queueBindCount = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private ServerSocket serverSocket;
+
+    /**
+     * Start listening on a free local port.
+     *
+     * @return the port
+     * @throws IOException if the socket cannot be opened
+     */
+    public int start() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        sockets.add(socket);
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                    } catch (IOException e) {
+                        // Closed.
+                    }
+                }
+            }
+        });
+        return serverSocket.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        dropConnections();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Close every client connection without the AMQP close handshake, as when the broker goes away.
+     */
+    public void dropConnections() {
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+        sockets.clear();
+    }
+
+    /**
+     * Forget an exchange, as when it is deleted by an administrator.
+     *
+     * @param name of the exchange
+     */
+    public void deleteExchange(String name) {
+        exchanges.remove(name);
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    public int getChannelOpenCount() {
+        return channelOpenCount.get();
+    }
+
+    public int getExchangeDeclareCount() {
+        return exchangeDeclareCount.get();
+    }
+
+    public int getQueueDeclareCount() {
+        return queueDeclareCount.get();
+    }
+
+    public int getQueueBindCount() {
+        return queueBindCount.get();
+    }
+
+    /**
+     * @return the bodies of published messages, in the order they arrived
+     */
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            // Protocol header.
+            in.readFully(new byte[8]);
+            connectionCount.incrementAndGet();
+            send(out, 0, new AMQImpl.Connection.Start(0, 9, new HashMap<String, Object>(),
+                    LongStringHelper.asLongString("PLAIN"), LongStringHelper.asLongString("en_US")));
+            // Publishes waiting for content, and channels waiting for the client to confirm a close, by channel.
+            Map<Integer, Publish> publishes = new HashMap<Integer, Publish>();
+            Set<Integer> closing = new HashSet<Integer>();
+            Frame frame;
+            while ((frame = Frame.readFrom(in)) != null) {
+                int channel = frame.channel;
+                if (frame.type == AMQP.FRAME_METHOD) {
+                    Method method = AMQImpl.readMethodFrom(frame.getInputStream());
+                    if (closing.contains(channel) && !(method instanceof AMQP.Channel.CloseOk)) {
+                        // A closing channel ignores everything but the close confirmation.
+                        continue;
+                    }
+                    if (method instanceof AMQP.Connection.StartOk) {
+                        send(out, 0, new AMQImpl.Connection.Tune(0, AMQP.FRAME_MIN_SIZE * 32, 0));
+                    } else if (method instanceof AMQP.Connection.Open) {
+                        send(out, 0, new AMQImpl.Connection.OpenOk(""));
+                    } else if (method instanceof AMQP.Connection.Close) {
+                        send(out, 0, new AMQImpl.Connection.CloseOk());
+                        return;
+                    } else if (method instanceof AMQP.Channel.Open) {
+                        channelOpenCount.incrementAndGet();
+                        send(out, channel, new AMQImpl.Channel.OpenOk(LongStringHelper.asLongString("")));
+                    } else if (method instanceof AMQP.Channel.Close) {
+                        send(out, channel, new AMQImpl.Channel.CloseOk());
+                    } else if (method instanceof AMQP.Channel.CloseOk) {
+                        closing.remove(channel);
+                    } else if (method instanceof AMQP.Exchange.Declare) {
+                        AMQP.Exchange.Declare declare = (AMQP.Exchange.Declare) method;
+                        exchangeDeclareCount.incrementAndGet();
+                        exchanges.add(declare.getExchange());
+                        if (!declare.getNowait()) {
+                            send(out, channel, new AMQImpl.Exchange.DeclareOk());
+                        }
+                    } else if (method instanceof AMQP.Queue.Declare) {
+                        AMQP.Queue.Declare declare = (AMQP.Queue.Declare) method;
+                        queueDeclareCount.incrementAndGet();
+                        if (!declare.getNowait()) {
+                            send(out, channel, new AMQImpl.Queue.DeclareOk(declare.getQueue(), 0, 0));
+                        }
+                    } else if (method instanceof AMQP.Queue.Bind) {
+                        queueBindCount.incrementAndGet();
+                        if (!((AMQP.Queue.Bind) method).getNowait()) {
+                            send(out, channel, new AMQImpl.Queue.BindOk());
+                        }
+                    } else if (method instanceof AMQP.Basic.Publish) {
+                        publishes.put(channel, new Publish(((AMQP.Basic.Publish) method).getExchange()));
+                    }
+                } else if ((frame.type == AMQP.FRAME_HEADER) || (frame.type == AMQP.FRAME_BODY)) {
+                    Publish publish = publishes.get(channel);
+                    if (publish == null) {
+                        continue;
+                    }
+                    if (frame.type == AMQP.FRAME_HEADER) {
+                        publish.size = AMQImpl.readContentHeaderFrom(frame.getInputStream()).getBodySize();
+                    } else {
+                        publish.body.write(frame.getPayload());
+                    }
+                    if (publish.body.size() >= publish.size) {
+                        publishes.remove(channel);
+                        if (exchanges.contains(publish.exchange)) {
+                            messages.add(publish.body.toString("UTF-8"));
+                        } else {
+                            closing.add(channel);
+                            send(out, channel, new AMQImpl.Channel.Close(AMQP.NOT_FOUND,
+                                    "NOT_FOUND - no exchange '" + publish.exchange + "'",
+                                    AMQImpl.Basic.INDEX, AMQImpl.Basic.Publish.INDEX));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Disconnected.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+    }
+
+    private static void send(DataOutputStream out, int channel, Method method) throws IOException {
+        method.toFrame(channel).writeTo(out);
+        out.flush();
+    }
+
+    private static class Publish {
+
+        private final String exchange;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private long size = Long.MAX_VALUE;
+
+        private Publish(String exchange) {
+            this.exchange = exchange;
+        }
+    }
+}
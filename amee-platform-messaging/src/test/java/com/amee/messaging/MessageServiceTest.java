@@ -0,0 +1,203 @@
+package com.amee.messaging;
+
+import com.amee.messaging.config.ConnectionConfig;
+import com.amee.messaging.config.ExchangeConfig;
+import com.amee.messaging.config.PublishConfig;
+import com.amee.messaging.config.QueueConfig;
+import com.rabbitmq.client.Address;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MessageServiceTest {
+
+    private AmqpStandIn standIn;
+    private MessageService messageService;
+    private ExchangeConfig exchangeConfig;
+    private PublishConfig publishConfig;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new AmqpStandIn();
+        int port = standIn.start();
+        ConnectionConfig connectionConfig = new ConnectionConfig();
+        connectionConfig.setAddresses(new Address[]{new Address("localhost", port)});
+        connectionConfig.setChannelPoolSize(2);
+        messageService = new MessageService();
+        ReflectionTestUtils.setField(messageService, "connectionConfig", connectionConfig);
+        ReflectionTestUtils.setField(messageService, "connectionFactory", new ConnectionFactory());
+        messageService.start();
+        exchangeConfig = new ExchangeConfig();
+        exchangeConfig.setName("platform.test.invalidation");
+        exchangeConfig.setType("topic");
+        publishConfig = new PublishConfig();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        messageService.stop();
+        standIn.stop();
+    }
+
+    @Test
+    public void publishesShouldShareChannelAndDeclareExchangeOnce() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            publish("message" + i);
+        }
+        awaitMessages(100);
+
+        assertEquals("message0", standIn.getMessages().get(0));
+        assertEquals("message99", standIn.getMessages().get(99));
+        assertEquals(1, standIn.getChannelOpenCount());
+        assertEquals(1, standIn.getExchangeDeclareCount());
+        MessagingMetrics metrics = messageService.getMetrics();
+        assertEquals(1, metrics.getChannelOpenCount());
+        assertEquals(100, metrics.getPublishCount());
+        assertTrue(metrics.getPublishLatencyPercentile(50) <= metrics.getPublishLatencyPercentile(99));
+    }
+
+    @Test
+    public void publishingThreadsShouldShareBoundedPool() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 50; i++) {
+                        publish(thread + ":" + i);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        awaitMessages(400);
+
+        assertTrue(standIn.getChannelOpenCount() <= 2);
+        // The first publish on each pooled channel may declare the exchange if they race.
+        assertTrue(standIn.getExchangeDeclareCount() <= 2);
+        // Messages from each thread arrive in order.
+        int[] next = new int[8];
+        for (String message : standIn.getMessages()) {
+            String[] parts = message.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void declarationsShouldBeCachedForConsumers() throws Exception {
+        QueueConfig queueConfig = new QueueConfig();
+        queueConfig.setName("platform.test.calculation");
+        QueueConfig autoDeleteQueueConfig = new QueueConfig();
+        autoDeleteQueueConfig.setName("platform.test.invalidation.host");
+        autoDeleteQueueConfig.setAutoDelete(true);
+        for (int i = 0; i < 3; i++) {
+            messageService.getChannelAndBind(exchangeConfig, queueConfig, "calculation").close();
+            messageService.getChannelAndBind(exchangeConfig, autoDeleteQueueConfig, "#").close();
+        }
+
+        assertEquals(1, standIn.getExchangeDeclareCount());
+        // The auto-delete queue is declared and bound every time.
+        assertEquals(1 + 3, standIn.getQueueDeclareCount());
+        assertEquals(1 + 3, standIn.getQueueBindCount());
+    }
+
+    @Test
+    public void declarationsShouldBeRestoredOnNewConnection() throws Exception {
+        QueueConfig queueConfig = new QueueConfig();
+        queueConfig.setName("platform.test.calculation");
+        Channel channel = messageService.getChannelAndBind(exchangeConfig, queueConfig, "calculation");
+        publish("before");
+        awaitMessages(1);
+
+        standIn.dropConnections();
+        assertTrue(awaitClosed(channel));
+        publishUntilReceived("after", 2);
+
+        assertEquals(2, standIn.getConnectionCount());
+        assertEquals(2, standIn.getExchangeDeclareCount());
+        assertEquals(2, standIn.getQueueDeclareCount());
+        assertEquals(2, standIn.getQueueBindCount());
+    }
+
+    @Test
+    public void exchangeShouldBeDeclaredAgainAfterBrokerClosesChannel() throws Exception {
+        publish("before");
+        awaitMessages(1);
+
+        standIn.deleteExchange(exchangeConfig.getName());
+        publishUntilReceived("after", 2);
+
+        assertEquals(1, standIn.getConnectionCount());
+        assertEquals(2, standIn.getExchangeDeclareCount());
+        assertEquals("after", standIn.getMessages().get(1));
+    }
+
+    private void publish(String body) {
+        messageService.publish(exchangeConfig, publishConfig, "test", new TestMessage(body));
+    }
+
+    /**
+     * Keep publishing until the message arrives, as a publish can be lost when made just as a channel closes.
+     */
+    private void publishUntilReceived(String body, int count) throws InterruptedException {
+        for (int i = 0; (i < 50) && (standIn.getMessages().size() < count); i++) {
+            publish(body);
+            Thread.sleep(20);
+        }
+        assertTrue(standIn.getMessages().size() >= count);
+    }
+
+    private void awaitMessages(int count) throws InterruptedException {
+        for (int i = 0; (i < 100) && (standIn.getMessages().size() < count); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, standIn.getMessages().size());
+    }
+
+    private static boolean awaitClosed(Channel channel) throws InterruptedException {
+        for (int i = 0; (i < 100) && channel.isOpen(); i++) {
+            Thread.sleep(20);
+        }
+        return !channel.isOpen();
+    }
+
+    private static class TestMessage extends Message {
+
+        private String message;
+
+        private TestMessage(String message) {
+            super(MessageServiceTest.class);
+            this.message = message;
+        }
+
+        @Override
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
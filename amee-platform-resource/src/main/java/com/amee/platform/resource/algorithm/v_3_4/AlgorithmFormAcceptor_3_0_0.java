@@ -11,6 +11,7 @@ import com.amee.domain.data.ItemDefinition;
 import com.amee.platform.resource.ResourceService;
 import com.amee.platform.resource.algorithm.AlgorithmResource;
 import com.amee.service.auth.ResourceAuthorizationService;
+import com.amee.service.definition.DefinitionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Since("3.0.0")
 public class AlgorithmFormAcceptor_3_0_0 implements AlgorithmResource.FormAcceptor {
 
+    @Autowired
+    private DefinitionService definitionService;
+
     @Autowired
     private ResourceAuthorizationService resourceAuthorizationService;
 
@@ -58,6 +62,7 @@ public class AlgorithmFormAcceptor_3_0_0 implements AlgorithmResource.FormAccept
 
         // Do the validation.
         if (validator.isValid(requestWrapper.getFormParameters())) {
+            definitionService.invalidate(algorithm);
             return ResponseHelper.getOK(requestWrapper, null, algorithm.getUid());
         } else {
             throw new ValidationException(validator.getValidationResult());
@@ -47,6 +47,7 @@ public class AlgorithmRemover_3_4_0 implements AlgorithmResource.Remover {
 
         // Handle Algorithm removal.
         definitionService.remove(algorithm);
+        definitionService.invalidate(algorithm);
         definitionService.invalidate(itemDefinition);
         return ResponseHelper.getOK(requestWrapper, null, algorithm.getUid());
     }
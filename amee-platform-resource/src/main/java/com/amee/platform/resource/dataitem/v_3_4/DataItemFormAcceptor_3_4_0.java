@@ -69,8 +69,9 @@ public class DataItemFormAcceptor_3_4_0 implements DataItemResource.FormAcceptor
 
         // Is the DataItem valid?
         if (validator.isValid(requestWrapper.getFormParameters())) {
-            // DataItem was valid, we'll allow it to persist and invalidate the DataCategory.
+            // DataItem was valid, we'll allow it to persist and invalidate the DataItem and DataCategory.
             updateDataItemValues(dataItem);
+            invalidationService.add(dataItem);
             invalidationService.add(dataItem.getDataCategory());
             return ResponseHelper.getOK(requestWrapper, null, dataItem.getUid());
         } else {
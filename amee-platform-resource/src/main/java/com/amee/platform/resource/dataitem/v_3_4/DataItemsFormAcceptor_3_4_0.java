@@ -79,8 +79,9 @@ public class DataItemsFormAcceptor_3_4_0 implements DataItemsResource.FormAccept
         validator.setObject(dataItem);
         validator.initialise();
         if (validator.isValid(requestWrapper.getFormParameters())) {
-            // DataItem was valid, we'll allow it to persist and invalidate the DataCategory.
+            // DataItem was valid, we'll allow it to persist and invalidate the DataItem and DataCategory.
             dataItemService.updateDataItemValues(dataItem);
+            invalidationService.add(dataItem);
             invalidationService.add(dataItem.getDataCategory());
             return ResponseHelper.getOK(
                     requestWrapper,
@@ -71,7 +71,8 @@ public class DataItemValueFormAcceptor_3_4_0 implements DataItemValueResource.Fo
 
         // Is the Data Item Value valid?
         if (validator.isValid(requestWrapper.getFormParameters())) {
-            // BaseDataItemValue was valid, we'll allow it to persist and invalidate the DataCategory.
+            // BaseDataItemValue was valid, we'll allow it to persist and invalidate the DataItem and DataCategory.
+            invalidationService.add(dataItemValue.getDataItem());
             invalidationService.add(dataItemValue.getDataItem().getDataCategory());
             // Mark the DataItem as modified.
             dataItemValue.getDataItem().onModify();
@@ -82,8 +82,9 @@ public class DataItemValueHistoryFormAcceptor_3_4_0 implements DataItemValueHist
         // Validate the BaseDataItemValue.
         if (validator.isValid(requestWrapper.getFormParameters())) {
 
-            // BaseDataItemValue was valid, we'll allow it to persist and invalidate the DataCategory.
+            // BaseDataItemValue was valid, we'll allow it to persist and invalidate the DataItem and DataCategory.
             dataItemService.persist(dataItemValue);
+            invalidationService.add(dataItemValue.getDataItem());
             invalidationService.add(dataItemValue.getDataItem().getDataCategory());
 
             // Mark the DataItem as modified.
@@ -3,15 +3,19 @@ package com.amee.platform.resource.itemdefinition.v_3_1;
 import com.amee.base.domain.Since;
 import com.amee.base.resource.RequestWrapper;
 import com.amee.base.resource.ResponseHelper;
+import com.amee.base.resource.ValidationResult;
 import com.amee.base.transaction.AMEETransaction;
 import com.amee.base.validation.ValidationException;
+import com.amee.calculation.service.AlgorithmBackendVerifier;
 import com.amee.domain.data.ItemDefinition;
+import com.amee.platform.science.AlgorithmBackend;
 import com.amee.platform.resource.ResourceService;
 import com.amee.platform.resource.itemdefinition.ItemDefinitionAcceptor;
 import com.amee.platform.resource.itemdefinition.ItemDefinitionResource;
 import com.amee.service.auth.ResourceAuthorizationService;
 import com.amee.service.definition.DefinitionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -31,6 +35,12 @@ public class ItemDefinitionFormAcceptor_3_1_0 extends ItemDefinitionAcceptor imp
     @Autowired
     private ResourceService resourceService;
 
+    @Autowired
+    private AlgorithmBackendVerifier algorithmBackendVerifier;
+
+    @Autowired
+    private MessageSource messageSource;
+
     @Override
     @AMEETransaction
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
@@ -50,7 +60,14 @@ public class ItemDefinitionFormAcceptor_3_1_0 extends ItemDefinitionAcceptor imp
     protected Object handle(RequestWrapper requestWrapper, ItemDefinition itemDefinition) {
         ItemDefinitionResource.ItemDefinitionValidator validator = getValidator(requestWrapper);
         validator.setObject(itemDefinition);
+        AlgorithmBackend previousBackend = AlgorithmBackend.fromName(itemDefinition.getAlgorithmBackend());
         if (validator.isValid(requestWrapper.getFormParameters())) {
+            // Only switch to the translated backend once an offline verification has passed for the Algorithms.
+            if ((previousBackend != AlgorithmBackend.TRANSLATED) &&
+                    (AlgorithmBackend.fromName(itemDefinition.getAlgorithmBackend()) == AlgorithmBackend.TRANSLATED) &&
+                    !algorithmBackendVerifier.isVerified(itemDefinition)) {
+                throw new ValidationException(new ValidationResult(messageSource, "algorithmBackend", "unverified"));
+            }
             definitionService.invalidate(itemDefinition);
             return ResponseHelper.getOK(requestWrapper, null, itemDefinition.getUid());
         } else {
@@ -25,6 +25,7 @@ public class ItemDefinitionValidator_3_1_0 extends BaseValidator implements Item
         addName();
         addDrillDown();
         addUsages();
+        addAlgorithmBackend();
     }
 
     private void addName() {
@@ -53,6 +54,14 @@ public class ItemDefinitionValidator_3_1_0 extends BaseValidator implements Item
         );
     }
 
+    private void addAlgorithmBackend() {
+        add(new ValidationSpecification()
+                .setName("algorithmBackend")
+                .setFormat("(?i)interpreted|translated")
+                .setAllowEmpty(true)
+        );
+    }
+
     @Override
     public String getName() {
         return "itemDefinition";
@@ -69,6 +78,7 @@ public class ItemDefinitionValidator_3_1_0 extends BaseValidator implements Item
             allowedFields.add("name");
             allowedFields.add("drillDown");
             allowedFields.add("usagesString");
+            allowedFields.add("algorithmBackend");
         }
         return allowedFields.toArray(new String[]{});
     }
@@ -6,6 +6,7 @@ import com.amee.base.resource.RequestWrapper;
 import com.amee.base.resource.ResourceBeanFinder;
 import com.amee.base.transaction.AMEETransaction;
 import com.amee.base.validation.ValidationException;
+import com.amee.calculation.service.CalculationService;
 import com.amee.domain.ProfileItemService;
 import com.amee.domain.ProfileItemsFilter;
 import com.amee.domain.item.profile.ProfileItem;
@@ -21,6 +22,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TimeZone;
 
 @Service
@@ -37,6 +40,9 @@ public class ProfileItemsBuilder_3_6_0 implements ProfileItemsResource.Builder {
     @Autowired
     private ProfileItemService profileItemService;
 
+    @Autowired
+    private CalculationService calculationService;
+
     @Autowired
     private ResourceBeanFinder resourceBeanFinder;
     
@@ -81,6 +87,19 @@ public class ProfileItemsBuilder_3_6_0 implements ProfileItemsResource.Builder {
         // Add Profile Items to Renderer and build.
         ResultsWrapper<ProfileItem> resultsWrapper = profileItemService.getProfileItems(profile, filter);
         renderer.setTruncated(resultsWrapper.isTruncated());
+
+        // Calculate the Amounts for all Profile Items in one batch, rather than one at a time when rendered.
+        if (requestWrapper.getMatrixParameters().containsKey("amounts") ||
+            requestWrapper.getMatrixParameters().containsKey("full")) {
+            List<ProfileItem> uncalculated = new ArrayList<ProfileItem>();
+            for (ProfileItem profileItem : resultsWrapper.getResults()) {
+                if (!profileItem.hasAmounts()) {
+                    uncalculated.add(profileItem);
+                }
+            }
+            calculationService.calculateAll(uncalculated);
+        }
+
         ProfileItemResource.Builder profileItemBuilder = getProfileItemBuilder(requestWrapper);
         for (ProfileItem profileItem : resultsWrapper.getResults()) {
             profileItemBuilder.handle(requestWrapper, profileItem);
@@ -7,6 +7,8 @@ import com.amee.platform.resource.datacategory.DataCategoryResource;
 import com.amee.platform.resource.dataitem.DataItemResource;
 import com.amee.platform.search.SearchFilter;
 
+import java.util.Map;
+
 public interface SearchResource {
 
     public static interface Builder extends ResourceBuilder {
@@ -19,6 +21,10 @@ public interface SearchResource {
         public void newDataItem(DataItemResource.Renderer dataItemRenderer);
 
         public void setTruncated(boolean truncated);
+
+        public void startFacets();
+
+        public void newFacet(String path, Map<String, Integer> counts);
     }
 
     public static interface SearchFilterValidationHelper extends ResourceValidator<SearchFilter> {
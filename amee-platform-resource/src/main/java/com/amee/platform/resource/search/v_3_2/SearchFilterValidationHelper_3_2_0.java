@@ -1,37 +1,32 @@
 package com.amee.platform.resource.search.v_3_2;
 
 import com.amee.base.domain.Since;
-import com.amee.base.validation.BaseValidator;
-import com.amee.platform.resource.search.SearchFilterValidator;
-import com.amee.platform.resource.search.SearchResource;
+import com.amee.platform.resource.search.v_3_6.SearchFilterValidationHelper_3_6_0;
 import com.amee.platform.search.MultiFieldQueryParserEditor;
 import com.amee.platform.search.ObjectTypesEditor;
 import com.amee.platform.search.QueryParserEditor;
-import com.amee.platform.search.SearchFilter;
+import org.apache.lucene.search.Query;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+import org.springframework.validation.DataBinder;
 
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.lucene.search.Query;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
-import org.springframework.stereotype.Service;
-import org.springframework.validation.DataBinder;
-import org.springframework.validation.Validator;
-
 @Service
 @Scope("prototype")
 @Since("3.2.0")
-public class SearchFilterValidationHelper_3_2_0 extends BaseValidator implements SearchResource.SearchFilterValidationHelper {
-
-    @Autowired
-    protected SearchFilterValidator validator;
-
-    protected SearchFilter searchFilter;
-    protected Set<String> allowedFields;
+public class SearchFilterValidationHelper_3_2_0 extends SearchFilterValidationHelper_3_6_0 {
 
+    /**
+     * Hook for registering custom Spring editors.
+     * <p/>
+     * Version 3.2 does not support the facets parameter introduced in 3.6.
+     *
+     * @param dataBinder DataBinder to register editors with.
+     */
     @Override
     protected void registerCustomEditors(DataBinder dataBinder) {
         String[] fields = {
@@ -43,7 +38,7 @@ public class SearchFilterValidationHelper_3_2_0 extends BaseValidator implements
                 "wikiDoc",
                 "itemDefinitionName",
                 "label",
-                "tags" };
+                "tags"};
         Map<String, Float> boosts = new HashMap<String, Float>();
         boosts.put("wikiName", 10.0f);
         boosts.put("tags", 10.0f);
@@ -53,26 +48,13 @@ public class SearchFilterValidationHelper_3_2_0 extends BaseValidator implements
         dataBinder.registerCustomEditor(Query.class, "excTags", QueryParserEditor.getTagQueryParserEditor("tags"));
     }
 
-    @Override
-    public SearchFilter getObject() {
-        return searchFilter;
-    }
-
-    @Override
-    public void setObject(SearchFilter searchFilter) {
-        this.searchFilter = searchFilter;
-    }
-
-    @Override
-    protected Validator getValidator() {
-        return validator;
-    }
-
-    @Override
-    public String getName() {
-        return "searchFilter";
-    }
-
+    /**
+     * Returns an array of fields supported.
+     * <p/>
+     * Version 3.2 does not support the facets parameter introduced in 3.6.
+     *
+     * @return array of allowed fields
+     */
     @Override
     public String[] getAllowedFields() {
         if (allowedFields == null) {
@@ -84,11 +66,6 @@ public class SearchFilterValidationHelper_3_2_0 extends BaseValidator implements
             allowedFields.add("tags");
             allowedFields.add("excTags");
         }
-        return allowedFields.toArray(new String[] {});
-    }
-
-    @Override
-    public boolean supports(Class<?> clazz) {
-        return validator.supports(clazz);
+        return allowedFields.toArray(new String[]{});
     }
-}
\ No newline at end of file
+}
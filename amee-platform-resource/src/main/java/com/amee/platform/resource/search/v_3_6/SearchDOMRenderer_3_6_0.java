@@ -0,0 +1,68 @@
+package com.amee.platform.resource.search.v_3_6;
+
+import com.amee.base.domain.Since;
+import com.amee.platform.resource.datacategory.DataCategoryResource;
+import com.amee.platform.resource.dataitem.DataItemResource;
+import com.amee.platform.resource.search.SearchResource;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+@Service
+@Scope("prototype")
+@Since("3.6.0")
+public class SearchDOMRenderer_3_6_0 implements SearchResource.Renderer {
+
+    private Element rootElem;
+    private Element resultsElem;
+    private Element facetsElem;
+
+    public void start() {
+        rootElem = new Element("Representation");
+        resultsElem = new Element("Results");
+        rootElem.addContent(resultsElem);
+    }
+
+    public void ok() {
+        rootElem.addContent(new Element("Status").setText("OK"));
+    }
+
+    public void newDataCategory(DataCategoryResource.Renderer dataCategoryRenderer) {
+        resultsElem.addContent(((Document) dataCategoryRenderer.getObject()).getRootElement().getChild("Category").detach());
+    }
+
+    public void newDataItem(DataItemResource.Renderer dataItemRenderer) {
+        resultsElem.addContent(((Document) dataItemRenderer.getObject()).getRootElement().getChild("Item").detach());
+    }
+
+    public void setTruncated(boolean truncated) {
+        resultsElem.setAttribute("truncated", "" + truncated);
+    }
+
+    public void startFacets() {
+        facetsElem = new Element("Facets");
+        rootElem.addContent(facetsElem);
+    }
+
+    public void newFacet(String path, Map<String, Integer> counts) {
+        Element facetElem = new Element("Facet");
+        facetElem.addContent(new Element("Name").setText(path));
+        Element valuesElem = new Element("Values");
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            valuesElem.addContent(new Element("Value").setText(count.getKey()).setAttribute("count", "" + count.getValue()));
+        }
+        facetElem.addContent(valuesElem);
+        facetsElem.addContent(facetElem);
+    }
+
+    public String getMediaType() {
+        return "application/xml";
+    }
+
+    public Document getObject() {
+        return new Document(rootElem);
+    }
+}
@@ -0,0 +1,89 @@
+package com.amee.platform.resource.search.v_3_6;
+
+import com.amee.base.domain.Since;
+import com.amee.base.resource.ResponseHelper;
+import com.amee.platform.resource.datacategory.DataCategoryResource;
+import com.amee.platform.resource.dataitem.DataItemResource;
+import com.amee.platform.resource.search.SearchResource;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+@Service
+@Scope("prototype")
+@Since("3.6.0")
+public class SearchJSONRenderer_3_6_0 implements SearchResource.Renderer {
+
+    private JSONObject rootObj;
+    private JSONArray resultsArr;
+    private JSONArray facetsArr;
+
+    public void start() {
+        rootObj = new JSONObject();
+        resultsArr = new JSONArray();
+        ResponseHelper.put(rootObj, "results", resultsArr);
+    }
+
+    public void ok() {
+        ResponseHelper.put(rootObj, "status", "OK");
+    }
+
+    @Override
+    public void newDataCategory(DataCategoryResource.Renderer dataCategoryRenderer) {
+        try {
+            JSONObject category = ((JSONObject) dataCategoryRenderer.getObject()).getJSONObject("category");
+            ResponseHelper.put(category, "type", "category");
+            resultsArr.put(category);
+        } catch (JSONException e) {
+            throw new RuntimeException("Caught JSONException: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void newDataItem(DataItemResource.Renderer dataItemRenderer) {
+        try {
+            JSONObject item = ((JSONObject) dataItemRenderer.getObject()).getJSONObject("item");
+            ResponseHelper.put(item, "type", "item");
+            resultsArr.put(item);
+        } catch (JSONException e) {
+            throw new RuntimeException("Caught JSONException: " + e.getMessage(), e);
+        }
+    }
+
+    public void setTruncated(boolean truncated) {
+        ResponseHelper.put(rootObj, "resultsTruncated", truncated);
+    }
+
+    @Override
+    public void startFacets() {
+        facetsArr = new JSONArray();
+        ResponseHelper.put(rootObj, "facets", facetsArr);
+    }
+
+    @Override
+    public void newFacet(String path, Map<String, Integer> counts) {
+        JSONObject facetObj = new JSONObject();
+        ResponseHelper.put(facetObj, "name", path);
+        JSONArray valuesArr = new JSONArray();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            JSONObject valueObj = new JSONObject();
+            ResponseHelper.put(valueObj, "value", count.getKey());
+            ResponseHelper.put(valueObj, "count", count.getValue());
+            valuesArr.put(valueObj);
+        }
+        ResponseHelper.put(facetObj, "values", valuesArr);
+        facetsArr.put(facetObj);
+    }
+
+    public String getMediaType() {
+        return "application/json";
+    }
+
+    public Object getObject() {
+        return rootObj;
+    }
+}
@@ -84,8 +84,11 @@ public class UnitValidator_3_5_0 extends BaseValidator implements UnitResource.U
                                     }
                                 }
                                 // Ensure Unit symbol is valid.
+                                // UnitFormat is not thread-safe and this is the instance shared with AmountUnit.
                                 try {
-                                    UNIT_FORMAT.parseProductUnit(unit.getInternalSymbol(), new ParsePosition(0));
+                                    synchronized (UNIT_FORMAT) {
+                                        UNIT_FORMAT.parseProductUnit(unit.getInternalSymbol(), new ParsePosition(0));
+                                    }
                                 } catch (ParseException e) {
                                     errors.rejectValue("internalSymbol", "format");
                                 }
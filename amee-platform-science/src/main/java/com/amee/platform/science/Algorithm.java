@@ -6,9 +6,30 @@ import javax.script.ScriptException;
 
 public interface Algorithm {
 
+    /**
+     * Get the UID of the Algorithm. May be null for transient Algorithms.
+     *
+     * @return the UID
+     */
+    String getUid();
+
     String getLabel();
 
     String getContent();
 
+    /**
+     * Get the Algorithm content along with any additional context content.
+     *
+     * @return the full content
+     */
+    String getFullContent();
+
     CompiledScript getCompiledScript(ScriptEngine engine) throws ScriptException;
+
+    /**
+     * Get the backend to evaluate the Algorithm with. May be null, in which case the Algorithm is interpreted.
+     *
+     * @return the AlgorithmBackend
+     */
+    AlgorithmBackend getBackend();
 }
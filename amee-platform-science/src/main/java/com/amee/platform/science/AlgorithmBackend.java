@@ -0,0 +1,35 @@
+package com.amee.platform.science;
+
+/**
+ * The ways in which an {@link AlgorithmRunner} can evaluate an {@link Algorithm}.
+ */
+public enum AlgorithmBackend {
+
+    /**
+     * Evaluate with the JavaScript ScriptEngine.
+     */
+    INTERPRETED,
+
+    /**
+     * Evaluate with Java bytecode produced by the {@link AlgorithmTranslator}, falling back to the interpreter for
+     * content which can not be translated.
+     */
+    TRANSLATED;
+
+    /**
+     * Get the AlgorithmBackend with the supplied name, ignoring case.
+     *
+     * @param name of the backend, may be null
+     * @return the AlgorithmBackend, INTERPRETED if the name is blank or not recognised
+     */
+    public static AlgorithmBackend fromName(String name) {
+        if (name != null) {
+            for (AlgorithmBackend backend : values()) {
+                if (backend.name().equalsIgnoreCase(name.trim())) {
+                    return backend;
+                }
+            }
+        }
+        return INTERPRETED;
+    }
+}
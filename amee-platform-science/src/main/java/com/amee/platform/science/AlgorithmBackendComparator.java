@@ -0,0 +1,167 @@
+package com.amee.platform.science;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A differential test harness which evaluates an Algorithm with both the INTERPRETED and TRANSLATED backends and
+ * reports any difference in the {@link ReturnValues} and {@link Note}s produced.
+ * <p/>
+ * Thread-safe.
+ */
+public class AlgorithmBackendComparator {
+
+    private final AlgorithmRunner algorithmRunner;
+
+    public AlgorithmBackendComparator() {
+        this(new AlgorithmRunner());
+    }
+
+    public AlgorithmBackendComparator(AlgorithmRunner algorithmRunner) {
+        this.algorithmRunner = algorithmRunner;
+    }
+
+    /**
+     * Evaluate the Algorithm with both backends and compare the results.
+     *
+     * @param algorithm to evaluate
+     * @param values    the input values, each backend gets its own copy
+     * @return the Comparison
+     */
+    public Comparison compare(Algorithm algorithm, Map<String, Object> values) {
+        Comparison comparison = new Comparison(algorithm.getLabel());
+
+        // Interpreted.
+        ReturnValues interpreted = null;
+        Exception interpretedException = null;
+        try {
+            interpreted = algorithmRunner.evaluateInterpreted(algorithm, new HashMap<String, Object>(values));
+        } catch (Exception e) {
+            interpretedException = e;
+        }
+
+        // Translated.
+        ReturnValues translated = null;
+        Exception translatedException = null;
+        try {
+            translated = algorithmRunner.evaluateTranslated(algorithm, new HashMap<String, Object>(values));
+        } catch (UnsupportedAlgorithmException e) {
+            comparison.outcome = Outcome.UNSUPPORTED;
+            comparison.differences.add("Unsupported: " + e.getMessage());
+            return comparison;
+        } catch (Exception e) {
+            translatedException = e;
+        }
+
+        if (translatedException != null) {
+            // The runner does not retry with the interpreter, so this only matches if the interpreter fails too.
+            comparison.outcome = interpretedException != null ? Outcome.MATCH : Outcome.DIVERGENT;
+            comparison.differences.add("Translated failed: " + translatedException);
+        } else if (interpretedException != null) {
+            comparison.outcome = Outcome.DIVERGENT;
+            comparison.differences.add("Interpreted failed but translated succeeded: " + interpretedException);
+        } else {
+            compare(interpreted, translated, comparison.differences);
+            comparison.outcome = comparison.differences.isEmpty() ? Outcome.MATCH : Outcome.DIVERGENT;
+        }
+        return comparison;
+    }
+
+    private void compare(ReturnValues interpreted, ReturnValues translated, List<String> differences) {
+        if (!equal(interpreted.getDefaultType(), translated.getDefaultType())) {
+            differences.add("Default type: " + interpreted.getDefaultType() + " != " + translated.getDefaultType());
+        }
+
+        // Values, in type order.
+        TreeSet<String> types = new TreeSet<String>(interpreted.getReturnValues().keySet());
+        types.addAll(translated.getReturnValues().keySet());
+        for (String type : types) {
+            ReturnValue a = interpreted.getReturnValues().get(type);
+            ReturnValue b = translated.getReturnValues().get(type);
+            if ((a == null) || (b == null)) {
+                differences.add("Value " + type + ": " + a + " != " + b);
+            } else if (!equal(a.getUnit(), b.getUnit()) ||
+                    !equal(a.getPerUnit(), b.getPerUnit()) ||
+                    (Double.compare(a.getValue(), b.getValue()) != 0)) {
+                differences.add("Value " + type + ": " + a + " != " + b);
+            }
+        }
+
+        // Notes, in order.
+        List<Note> notesA = interpreted.getNotes();
+        List<Note> notesB = translated.getNotes();
+        if (notesA.size() != notesB.size()) {
+            differences.add("Notes: " + notesA + " != " + notesB);
+        } else {
+            for (int i = 0; i < notesA.size(); i++) {
+                if (!equal(notesA.get(i).getType(), notesB.get(i).getType()) ||
+                        !equal(notesA.get(i).getValue(), notesB.get(i).getValue())) {
+                    differences.add("Note " + i + ": " + notesA.get(i) + " != " + notesB.get(i));
+                }
+            }
+        }
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * The possible outcomes of a comparison.
+     */
+    public enum Outcome {
+
+        /**
+         * Both backends produced the same output, or both failed.
+         */
+        MATCH,
+
+        /**
+         * The backends produced different output.
+         */
+        DIVERGENT,
+
+        /**
+         * The Algorithm can not be translated.
+         */
+        UNSUPPORTED
+    }
+
+    /**
+     * The result of comparing the backends for a single evaluation.
+     */
+    public static class Comparison {
+
+        private final String label;
+        private Outcome outcome;
+        private final List<String> differences = new ArrayList<String>();
+
+        private Comparison(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public boolean isDivergent() {
+            return outcome == Outcome.DIVERGENT;
+        }
+
+        public List<String> getDifferences() {
+            return differences;
+        }
+
+        @Override
+        public String toString() {
+            return label + ": " + outcome + (differences.isEmpty() ? "" : " " + differences);
+        }
+    }
+}
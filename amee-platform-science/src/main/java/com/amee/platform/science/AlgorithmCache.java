@@ -0,0 +1,216 @@
+package com.amee.platform.science;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of {@link CompiledScript} instances for {@link Algorithm}s.
+ * <p/>
+ * Entries are keyed by the Algorithm UID and hold a hash of the full Algorithm content (including any
+ * AlgorithmContext). A lookup for an Algorithm whose content hash no longer matches is treated as a miss and
+ * the entry is replaced. The least recently used entry is evicted once maxSize is reached.
+ * <p/>
+ * Compilation happens outside of the cache lock so concurrent callers are never blocked by a slow compile.
+ * Two callers missing on the same Algorithm at the same time may both compile it, the last one wins.
+ * <p/>
+ * Algorithms without a UID (e.g. transient Algorithms used in tests) are always compiled and never cached.
+ * <p/>
+ * Thread-safe.
+ */
+public class AlgorithmCache {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    public final static int DEFAULT_MAX_SIZE = 1000;
+
+    // The cached scripts, in access order.
+    private final Map<String, Entry> entries;
+
+    // Counters, independent of any AlgorithmCacheStatistics.
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong compileDuration = new AtomicLong();
+
+    // Optional external statistics.
+    private AlgorithmCacheStatistics statistics;
+
+    public AlgorithmCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public AlgorithmCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than zero.");
+        }
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a CompiledScript for the Algorithm, compiling it against the ScriptEngine if it is not already cached
+     * or if the Algorithm content has changed.
+     *
+     * @param algorithm to get a CompiledScript for
+     * @param engine    to compile with
+     * @return the CompiledScript
+     * @throws ScriptException if the Algorithm cannot be compiled
+     */
+    public CompiledScript getCompiledScript(Algorithm algorithm, ScriptEngine engine) throws ScriptException {
+
+        // Transient Algorithms cannot be cached.
+        String uid = algorithm.getUid();
+        if (uid == null) {
+            return compile(algorithm, engine);
+        }
+
+        // Look for an existing script with matching content.
+        String contentHash = getContentHash(algorithm.getFullContent());
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(uid);
+        }
+        if ((entry != null) && entry.contentHash.equals(contentHash) && (entry.engine == engine)) {
+            hit();
+            return entry.compiledScript;
+        }
+
+        // Compile and store.
+        miss();
+        CompiledScript compiledScript = compile(algorithm, engine);
+        synchronized (entries) {
+            entries.put(uid, new Entry(contentHash, engine, compiledScript));
+        }
+        return compiledScript;
+    }
+
+    /**
+     * Remove the cached script for the Algorithm with the supplied UID.
+     *
+     * @param uid of the Algorithm
+     */
+    public void remove(String uid) {
+        synchronized (entries) {
+            if (entries.remove(uid) != null) {
+                log.debug("remove() Removed Algorithm {}", uid);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached scripts.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private CompiledScript compile(Algorithm algorithm, ScriptEngine engine) throws ScriptException {
+        final long startTime = System.nanoTime();
+        try {
+            return algorithm.getCompiledScript(engine);
+        } finally {
+            long duration = System.nanoTime() - startTime;
+            compileDuration.addAndGet(duration);
+            if (statistics != null) {
+                statistics.addToAlgorithmCompileDuration(duration);
+            }
+        }
+    }
+
+    private void hit() {
+        hitCount.incrementAndGet();
+        if (statistics != null) {
+            statistics.algorithmCacheHit();
+        }
+    }
+
+    private void miss() {
+        missCount.incrementAndGet();
+        if (statistics != null) {
+            statistics.algorithmCacheMiss();
+        }
+    }
+
+    /**
+     * Returns a SHA-1 hex digest of the supplied content.
+     *
+     * @param content to hash
+     * @return the hash
+     */
+    public static String getContentHash(String content) {
+        if (content == null) {
+            content = "";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return new BigInteger(1, digest.digest(content.getBytes("UTF-8"))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Caught NoSuchAlgorithmException: " + e.getMessage(), e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("Caught UnsupportedEncodingException: " + e.getMessage(), e);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the total time spent compiling Algorithms.
+     *
+     * @return duration in nanoseconds
+     */
+    public long getCompileDuration() {
+        return compileDuration.get();
+    }
+
+    public AlgorithmCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(AlgorithmCacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * A cached CompiledScript along with the content hash and ScriptEngine it was compiled with.
+     */
+    private static class Entry {
+
+        private final String contentHash;
+        private final ScriptEngine engine;
+        private final CompiledScript compiledScript;
+
+        private Entry(String contentHash, ScriptEngine engine, CompiledScript compiledScript) {
+            this.contentHash = contentHash;
+            this.engine = engine;
+            this.compiledScript = compiledScript;
+        }
+    }
+}
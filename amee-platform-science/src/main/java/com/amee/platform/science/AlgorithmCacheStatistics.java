@@ -0,0 +1,19 @@
+package com.amee.platform.science;
+
+/**
+ * Receives counters from an {@link AlgorithmCache}. Implemented outside of the science module so that cache
+ * activity can be reported alongside other platform statistics.
+ */
+public interface AlgorithmCacheStatistics {
+
+    void algorithmCacheHit();
+
+    void algorithmCacheMiss();
+
+    /**
+     * Record the time taken to compile an Algorithm.
+     *
+     * @param duration in nanoseconds
+     */
+    void addToAlgorithmCompileDuration(long duration);
+}
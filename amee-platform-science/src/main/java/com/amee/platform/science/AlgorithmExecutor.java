@@ -0,0 +1,113 @@
+package com.amee.platform.science;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates independent {@link AlgorithmTask}s in parallel on a shared ForkJoinPool.
+ * <p/>
+ * Each call to {@link #execute(List, int)} is limited to a concurrency budget. The tasks are split into at most that
+ * many contiguous chunks, each evaluated sequentially on one worker, so a single large request can not occupy the
+ * whole pool. The calling thread blocks until all tasks have completed. Outcomes are held by the tasks, so the order
+ * of the results is the order of the tasks.
+ */
+public class AlgorithmExecutor {
+
+    public static final int DEFAULT_REQUEST_PARALLELISM = 4;
+
+    private final AlgorithmRunner algorithmRunner;
+    private final ForkJoinPool pool;
+
+    // Tasks evaluated and calls to execute.
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong executeCount = new AtomicLong();
+
+    /**
+     * @param algorithmRunner the AlgorithmRunner to evaluate with
+     * @param parallelism     the number of worker threads, or zero for one per available processor
+     */
+    public AlgorithmExecutor(AlgorithmRunner algorithmRunner, int parallelism) {
+        this.algorithmRunner = algorithmRunner;
+        if (parallelism > 0) {
+            pool = new ForkJoinPool(parallelism);
+        } else {
+            pool = new ForkJoinPool();
+        }
+    }
+
+    /**
+     * Evaluate the tasks, using at most requestParallelism workers.
+     *
+     * @param tasks              the tasks to evaluate
+     * @param requestParallelism the maximum number of workers to use for these tasks
+     */
+    public void execute(List<AlgorithmTask> tasks, int requestParallelism) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        int chunks = Math.max(1, Math.min(requestParallelism, tasks.size()));
+        if (chunks == 1) {
+            for (AlgorithmTask task : tasks) {
+                task.run(algorithmRunner);
+            }
+        } else {
+            pool.invoke(new ChunkAction(tasks, 0, tasks.size(), chunks));
+        }
+        taskCount.addAndGet(tasks.size());
+        executeCount.incrementAndGet();
+    }
+
+    /**
+     * Stop the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    public long getExecuteCount() {
+        return executeCount.get();
+    }
+
+    /**
+     * Splits a range of tasks in two until there is one chunk per worker, then evaluates the chunk.
+     */
+    private class ChunkAction extends RecursiveAction {
+
+        private final List<AlgorithmTask> tasks;
+        private final int from;
+        private final int to;
+        private final int chunks;
+
+        private ChunkAction(List<AlgorithmTask> tasks, int from, int to, int chunks) {
+            this.tasks = tasks;
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            if (chunks <= 1) {
+                for (int i = from; i < to; i++) {
+                    tasks.get(i).run(algorithmRunner);
+                }
+            } else {
+                int leftChunks = chunks / 2;
+                int middle = from + (int) ((long) (to - from) * leftChunks / chunks);
+                invokeAll(
+                        new ChunkAction(tasks, from, middle, leftChunks),
+                        new ChunkAction(tasks, middle, to, chunks - leftChunks));
+            }
+        }
+    }
+}
@@ -9,16 +9,26 @@ import sun.org.mozilla.javascript.internal.ScriptableObject;
 
 import javax.script.Bindings;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AlgorithmRunner {
 
+    private final Logger log = LoggerFactory.getLogger(getClass());
     private final Logger scienceLog = LoggerFactory.getLogger("science");
 
-    // The ScriptEngine for the JavaScript context.
-    private final ScriptEngine engine = new ScriptEngineManager().getEngineByName("js");
+    // Supplies ScriptEngines, each with their own global scope and cache of CompiledScripts.
+    private ScriptEngineProvider engineProvider = new ThreadLocalScriptEngineProvider();
+
+    // Algorithms translated to Java bytecode, for the TRANSLATED backend.
+    private TranslatedAlgorithmCache translatedAlgorithmCache = new TranslatedAlgorithmCache();
+
+    // Evaluations by the TRANSLATED backend, and those evaluated with the interpreter as the Algorithm can not be
+    // translated.
+    private final AtomicLong translatedEvaluationCount = new AtomicLong();
+    private final AtomicLong fallbackEvaluationCount = new AtomicLong();
 
     // Default single return value is in kg of CO2 per year
     private static final String DEFAULT_TYPE = "CO2";
@@ -26,7 +36,11 @@ public class AlgorithmRunner {
     private static final String DEFAULT_PER_UNIT = "year";
 
     /**
-     * Evaluate an Algorithm.
+     * Evaluate an Algorithm with the backend it specifies.
+     * <p/>
+     * Algorithms using the TRANSLATED backend are evaluated with the interpreter only if they can not be translated.
+     * Once translated, failures during evaluation are not retried with the interpreter. They are thrown as
+     * ScriptExceptions, as the interpreter would throw them.
      *
      * @param algorithm - the Algorithm to evaluate
      * @param values    - map of key/value input pairs
@@ -35,14 +49,104 @@ public class AlgorithmRunner {
      * @throws AlgorithmException if the algorithm returns no value.
      */
     public ReturnValues evaluate(Algorithm algorithm, Map<String, Object> values) throws ScriptException {
-        Bindings bindings = getBindings();
-        bindings.putAll(values);
-        bindings.put("logger", scienceLog);
+        if (algorithm.getBackend() == AlgorithmBackend.TRANSLATED) {
+            TranslatedAlgorithm translatedAlgorithm = null;
+            try {
+                translatedAlgorithm = translatedAlgorithmCache.getTranslatedAlgorithm(algorithm);
+            } catch (UnsupportedAlgorithmException e) {
+                fallbackEvaluationCount.incrementAndGet();
+            }
+            if (translatedAlgorithm != null) {
+                translatedEvaluationCount.incrementAndGet();
+                return evaluateTranslated(algorithm, translatedAlgorithm, values);
+            }
+        }
+        return evaluateInterpreted(algorithm, values);
+    }
 
+    /**
+     * Evaluate an Algorithm with the JavaScript ScriptEngine.
+     *
+     * @param algorithm - the Algorithm to evaluate
+     * @param values    - map of key/value input pairs
+     * @return the values calculated by the Algorithm.
+     * @throws ScriptException - re-throws exception generated by script execution
+     * @throws AlgorithmException if the algorithm returns no value.
+     */
+    public ReturnValues evaluateInterpreted(Algorithm algorithm, Map<String, Object> values) throws ScriptException {
         ReturnValues returnValues = new ReturnValues();
-        bindings.put("returnValues", returnValues);
+        Object result;
+
+        // Evaluate against an engine held exclusively for this calculation.
+        ScriptEngineHolder holder = engineProvider.acquire();
+        try {
+            ScriptEngine engine = holder.getEngine();
+            Bindings bindings = engine.createBindings();
+            bindings.putAll(values);
+            bindings.put("logger", scienceLog);
+            bindings.put("returnValues", returnValues);
+            result = holder.getAlgorithmCache().getCompiledScript(algorithm, engine).eval(bindings);
+            holder.evaluated();
+        } finally {
+            engineProvider.release(holder);
+        }
 
-        Object result = algorithm.getCompiledScript(getEngine()).eval(bindings);
+        return getReturnValues(algorithm, returnValues, result);
+    }
+
+    /**
+     * Evaluate an Algorithm with Java bytecode produced by the {@link AlgorithmTranslator}, without falling back to
+     * the interpreter.
+     *
+     * @param algorithm - the Algorithm to evaluate
+     * @param values    - map of key/value input pairs
+     * @return the values calculated by the Algorithm.
+     * @throws UnsupportedAlgorithmException if the Algorithm can not be translated
+     * @throws ScriptException               if evaluation fails
+     * @throws AlgorithmException if the algorithm returns no value.
+     */
+    public ReturnValues evaluateTranslated(Algorithm algorithm, Map<String, Object> values)
+            throws UnsupportedAlgorithmException, ScriptException {
+        return evaluateTranslated(algorithm, translatedAlgorithmCache.getTranslatedAlgorithm(algorithm), values);
+    }
+
+    private ReturnValues evaluateTranslated(
+            Algorithm algorithm,
+            TranslatedAlgorithm translatedAlgorithm,
+            Map<String, Object> values) throws ScriptException {
+        ReturnValues returnValues = new ReturnValues();
+        Map<String, Object> scope = new HashMap<String, Object>(values);
+        scope.put("logger", scienceLog);
+        scope.put("returnValues", returnValues);
+        Object result;
+        try {
+            result = translatedAlgorithm.evaluate(scope);
+        } catch (Exception e) {
+            throw getScriptException(algorithm, e);
+        }
+        return getReturnValues(algorithm, returnValues, result);
+    }
+
+    /**
+     * Wrap a failure of a translated Algorithm in a ScriptException. An IllegalArgumentException thrown by a method
+     * the Algorithm called becomes the cause, so {@link #getIllegalArgumentException(ScriptException)} finds it as it
+     * would for the interpreter.
+     *
+     * @param algorithm the Algorithm which failed
+     * @param e         the failure
+     * @return the ScriptException
+     */
+    private static ScriptException getScriptException(Algorithm algorithm, Exception e) {
+        ScriptException se = new ScriptException(e.getMessage() + " (" + algorithm.getLabel() + ")");
+        if ((e instanceof AlgorithmRuntimeException) && (e.getCause() instanceof IllegalArgumentException)) {
+            se.initCause(e.getCause());
+        } else {
+            se.initCause(e);
+        }
+        return se;
+    }
+
+    private ReturnValues getReturnValues(Algorithm algorithm, ReturnValues returnValues, Object result) {
 
         // First check for multiple return values
         if (returnValues.hasReturnValues()) {
@@ -61,21 +165,37 @@ public class AlgorithmRunner {
     }
 
     /**
-     * Get the Bindings instances from the ScriptEngine.
+     * Remove any cached scripts or translations for the Algorithm with the supplied UID.
      *
-     * @return the Bindings instance
+     * @param uid of the Algorithm
      */
-    protected Bindings getBindings() {
-        return getEngine().createBindings();
+    public void remove(String uid) {
+        engineProvider.remove(uid);
+        translatedAlgorithmCache.remove(uid);
     }
 
-    /**
-     * Get the ScriptEngine.
-     *
-     * @return the ScriptEngine instance
-     */
-    protected ScriptEngine getEngine() {
-        return engine;
+    public ScriptEngineProvider getEngineProvider() {
+        return engineProvider;
+    }
+
+    public void setEngineProvider(ScriptEngineProvider engineProvider) {
+        this.engineProvider = engineProvider;
+    }
+
+    public TranslatedAlgorithmCache getTranslatedAlgorithmCache() {
+        return translatedAlgorithmCache;
+    }
+
+    public void setTranslatedAlgorithmCache(TranslatedAlgorithmCache translatedAlgorithmCache) {
+        this.translatedAlgorithmCache = translatedAlgorithmCache;
+    }
+
+    public long getTranslatedEvaluationCount() {
+        return translatedEvaluationCount.get();
+    }
+
+    public long getFallbackEvaluationCount() {
+        return fallbackEvaluationCount.get();
     }
 
     /**
@@ -0,0 +1,452 @@
+package com.amee.platform.science;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Runtime support for {@link TranslatedAlgorithm}s generated by the {@link AlgorithmTranslator}.
+ * <p/>
+ * Provides the JavaScript value semantics (type conversion, arithmetic, comparison and method calls on Java
+ * objects) needed by the subset the translator supports. JavaScript numbers are represented as Doubles, strings as
+ * Strings and booleans as Booleans. JavaScript undefined is represented by {@link #UNDEFINED}.
+ * <p/>
+ * Any situation where the behaviour of the interpreter cannot be reproduced exactly results in an
+ * {@link AlgorithmRuntimeException}, which the {@link AlgorithmRunner} wraps in a ScriptException. The
+ * {@link AlgorithmBackendComparator} reports these cases so the Algorithm is not switched to the translated backend.
+ * <p/>
+ * Thread-safe.
+ */
+public final class AlgorithmRuntime {
+
+    /**
+     * The JavaScript undefined value.
+     */
+    public final static Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    // Matches a JavaScript StrDecimalLiteral, as accepted by ToNumber.
+    private final static Pattern NUMBER = Pattern.compile("[+-]?(Infinity|(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?)");
+    private final static Pattern HEX_NUMBER = Pattern.compile("0[xX][0-9a-fA-F]+");
+
+    // Methods, indexed by class, name and arity.
+    private final static ConcurrentMap<String, List<Method>> METHODS = new ConcurrentHashMap<String, List<Method>>();
+
+    private AlgorithmRuntime() {
+        super();
+    }
+
+    // Scope
+
+    public static Object get(Map<String, Object> scope, String name) {
+        if (!scope.containsKey(name)) {
+            throw new AlgorithmRuntimeException("ReferenceError: \"" + name + "\" is not defined.");
+        }
+        return wrap(scope.get(name));
+    }
+
+    public static Object set(Map<String, Object> scope, String name, Object value) {
+        scope.put(name, value);
+        return value;
+    }
+
+    /**
+     * Get the initial value of a variable declared by the Algorithm. Declaring a variable which is already in scope
+     * does not change the value.
+     *
+     * @param scope the Algorithm scope
+     * @param name  of the variable
+     * @return the value, or UNDEFINED if not in scope
+     */
+    public static Object declare(Map<String, Object> scope, String name) {
+        return scope.containsKey(name) ? wrap(scope.get(name)) : UNDEFINED;
+    }
+
+    /**
+     * Convert the result of a translated Algorithm in the same way as the interpreter.
+     *
+     * @param value the completion value of the Algorithm
+     * @return the value, with undefined mapped to null
+     */
+    public static Object result(Object value) {
+        return value == UNDEFINED ? null : value;
+    }
+
+    // Conversion
+
+    /**
+     * Convert a Java value into the representation used by translated Algorithms.
+     *
+     * @param value to convert
+     * @return the converted value
+     */
+    public static Object wrap(Object value) {
+        if ((value instanceof Number) && !(value instanceof BigDecimal) && !(value instanceof BigInteger)) {
+            return value instanceof Double ? value : Double.valueOf(((Number) value).doubleValue());
+        } else if (value instanceof Character) {
+            return value.toString();
+        } else {
+            return value;
+        }
+    }
+
+    public static boolean truthy(Object value) {
+        if ((value == null) || (value == UNDEFINED)) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            return (d != 0.0) && !Double.isNaN(d);
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        } else {
+            return true;
+        }
+    }
+
+    public static double toNumber(Object value) {
+        if (value == null) {
+            return 0.0;
+        } else if (value == UNDEFINED) {
+            return Double.NaN;
+        } else if (value instanceof Double) {
+            return (Double) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1.0 : 0.0;
+        } else if (value instanceof String) {
+            String s = ((String) value).trim();
+            if (s.isEmpty()) {
+                return 0.0;
+            } else if (HEX_NUMBER.matcher(s).matches()) {
+                return new BigInteger(s.substring(2), 16).doubleValue();
+            } else if (NUMBER.matcher(s).matches()) {
+                return s.endsWith("Infinity") ?
+                        (s.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY) :
+                        Double.parseDouble(s);
+            } else {
+                return Double.NaN;
+            }
+        } else {
+            throw new AlgorithmRuntimeException("Unsupported conversion to number: " + value.getClass().getName());
+        }
+    }
+
+    public static String toStr(Object value) {
+        if (value instanceof Double) {
+            return numberToString((Double) value);
+        } else if (value == null) {
+            return "null";
+        } else {
+            return value.toString();
+        }
+    }
+
+    /**
+     * Format a number as JavaScript does (ECMA-262 9.8.1).
+     *
+     * @param d the number
+     * @return the String representation
+     */
+    public static String numberToString(double d) {
+        if (Double.isNaN(d)) {
+            return "NaN";
+        } else if (Double.isInfinite(d)) {
+            return d > 0 ? "Infinity" : "-Infinity";
+        } else if (d == 0.0) {
+            return "0";
+        } else if (d < 0) {
+            return "-" + numberToString(-d);
+        }
+
+        // Find the shortest digits (s) and exponent (n) such that d = 0.s * 10^n.
+        BigDecimal bd = new BigDecimal(Double.toString(d)).stripTrailingZeros();
+        String digits = bd.unscaledValue().toString();
+        int k = digits.length();
+        int n = k - bd.scale();
+
+        StringBuilder sb = new StringBuilder();
+        if ((k <= n) && (n <= 21)) {
+            sb.append(digits);
+            for (int i = 0; i < n - k; i++) {
+                sb.append('0');
+            }
+        } else if ((0 < n) && (n <= 21)) {
+            sb.append(digits, 0, n).append('.').append(digits, n, k);
+        } else if ((-6 < n) && (n <= 0)) {
+            sb.append("0.");
+            for (int i = 0; i < -n; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        } else {
+            sb.append(digits.charAt(0));
+            if (k > 1) {
+                sb.append('.').append(digits, 1, k);
+            }
+            sb.append('e').append(n - 1 >= 0 ? "+" : "-").append(Math.abs(n - 1));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isPrimitive(Object value) {
+        return (value == null) || (value == UNDEFINED) || (value instanceof Double) ||
+                (value instanceof Boolean) || (value instanceof String);
+    }
+
+    // Operators
+
+    public static Object add(Object a, Object b) {
+        if ((a instanceof Double) && (b instanceof Double)) {
+            return (Double) a + (Double) b;
+        } else if (((a instanceof Number) && !isPrimitive(a)) || ((b instanceof Number) && !isPrimitive(b))) {
+            // Only BigDecimal and BigInteger remain unwrapped.
+            throw new AlgorithmRuntimeException("Unsupported addition of Java Number.");
+        } else if ((a instanceof String) || (b instanceof String) || !isPrimitive(a) || !isPrimitive(b)) {
+            return toStr(a) + toStr(b);
+        } else {
+            return toNumber(a) + toNumber(b);
+        }
+    }
+
+    public static Object sub(Object a, Object b) {
+        return toNumber(a) - toNumber(b);
+    }
+
+    public static Object mul(Object a, Object b) {
+        return toNumber(a) * toNumber(b);
+    }
+
+    public static Object div(Object a, Object b) {
+        return toNumber(a) / toNumber(b);
+    }
+
+    public static Object mod(Object a, Object b) {
+        return toNumber(a) % toNumber(b);
+    }
+
+    public static Object neg(Object a) {
+        return -toNumber(a);
+    }
+
+    public static Object not(Object a) {
+        return !truthy(a);
+    }
+
+    public static Object lt(Object a, Object b) {
+        if ((a instanceof String) && (b instanceof String)) {
+            return ((String) a).compareTo((String) b) < 0;
+        }
+        return toNumber(a) < toNumber(b);
+    }
+
+    public static Object gt(Object a, Object b) {
+        return lt(b, a);
+    }
+
+    public static Object le(Object a, Object b) {
+        if ((a instanceof String) && (b instanceof String)) {
+            return ((String) a).compareTo((String) b) <= 0;
+        }
+        return toNumber(a) <= toNumber(b);
+    }
+
+    public static Object ge(Object a, Object b) {
+        return le(b, a);
+    }
+
+    public static Object eq(Object a, Object b) {
+        return looselyEquals(a, b);
+    }
+
+    public static Object ne(Object a, Object b) {
+        return !looselyEquals(a, b);
+    }
+
+    private static boolean looselyEquals(Object a, Object b) {
+        boolean aNull = (a == null) || (a == UNDEFINED);
+        boolean bNull = (b == null) || (b == UNDEFINED);
+        if (aNull || bNull) {
+            return aNull && bNull;
+        } else if ((a.getClass() == b.getClass()) && isPrimitive(a)) {
+            return strictlyEquals(a, b);
+        } else if (!isPrimitive(a) && !isPrimitive(b)) {
+            return a == b;
+        } else if (!isPrimitive(a) || !isPrimitive(b)) {
+            throw new AlgorithmRuntimeException("Unsupported comparison of Java object with primitive.");
+        } else {
+            return toNumber(a) == toNumber(b);
+        }
+    }
+
+    private static boolean strictlyEquals(Object a, Object b) {
+        if ((a instanceof Double) && (b instanceof Double)) {
+            return ((Double) a).doubleValue() == ((Double) b).doubleValue();
+        } else if ((a instanceof String) || (a instanceof Boolean)) {
+            return a.equals(b);
+        } else {
+            return a == b;
+        }
+    }
+
+    /**
+     * Call a function on the JavaScript Math object.
+     *
+     * @param name of the function
+     * @param args the arguments
+     * @return the result
+     */
+    public static Object math(String name, Object[] args) {
+        double a = args.length > 0 ? toNumber(args[0]) : Double.NaN;
+        double b = args.length > 1 ? toNumber(args[1]) : Double.NaN;
+        if (name.equals("abs")) {
+            return Math.abs(a);
+        } else if (name.equals("ceil")) {
+            return Math.ceil(a);
+        } else if (name.equals("floor")) {
+            return Math.floor(a);
+        } else if (name.equals("sqrt")) {
+            return Math.sqrt(a);
+        } else if (name.equals("exp")) {
+            return Math.exp(a);
+        } else if (name.equals("log")) {
+            return Math.log(a);
+        } else if (name.equals("pow")) {
+            return Math.pow(a, b);
+        } else if ((name.equals("min") || name.equals("max")) && (args.length == 2)) {
+            if (Double.isNaN(a) || Double.isNaN(b)) {
+                return Double.NaN;
+            }
+            return name.equals("min") ? Math.min(a, b) : Math.max(a, b);
+        }
+        throw new AlgorithmRuntimeException("Unsupported Math function: " + name);
+    }
+
+    // Java objects
+
+    /**
+     * Call a method on an object, choosing the overload and converting arguments as the interpreter would.
+     *
+     * @param target the object
+     * @param name   of the method
+     * @param args   the arguments
+     * @return the result
+     */
+    public static Object call(Object target, String name, Object[] args) {
+        if ((target == null) || (target == UNDEFINED)) {
+            throw new AlgorithmRuntimeException("TypeError: Cannot call method \"" + name + "\" of " + target);
+        }
+        if (isPrimitive(target)) {
+            throw new AlgorithmRuntimeException("Unsupported method on primitive: " + name);
+        }
+
+        // Overload resolution differs between script engines, so only a single applicable method is supported.
+        Method applicable = null;
+        for (Method method : getMethods(target.getClass(), name, args.length)) {
+            if (isApplicable(method.getParameterTypes(), args)) {
+                if (applicable != null) {
+                    throw new AlgorithmRuntimeException("Ambiguous method: " + name + " (" + args.length + " args)");
+                }
+                applicable = method;
+            }
+        }
+        if (applicable == null) {
+            throw new AlgorithmRuntimeException("No applicable method: " + name + " (" + args.length + " args)");
+        }
+
+        // Convert arguments and call.
+        Class[] types = applicable.getParameterTypes();
+        Object[] converted = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            converted[i] = convert(args[i], types[i]);
+        }
+        return invoke(applicable, target, converted);
+    }
+
+    private static List<Method> getMethods(Class clazz, String name, int arity) {
+        String key = clazz.getName() + "#" + name + "#" + arity;
+        List<Method> methods = METHODS.get(key);
+        if (methods == null) {
+            methods = new ArrayList<Method>();
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().equals(name) &&
+                        (method.getParameterTypes().length == arity) &&
+                        !method.isVarArgs() &&
+                        !Modifier.isStatic(method.getModifiers())) {
+                    method.setAccessible(true);
+                    methods.add(method);
+                }
+            }
+            METHODS.putIfAbsent(key, methods);
+        }
+        return methods;
+    }
+
+    private static boolean isApplicable(Class[] types, Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!isApplicable(types[i], args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isApplicable(Class type, Object arg) {
+        if (arg == UNDEFINED) {
+            return false;
+        } else if (arg == null) {
+            return !type.isPrimitive();
+        } else if (arg instanceof Double) {
+            return (type == double.class) || (type == float.class) || (type == long.class) || (type == int.class) ||
+                    type.isAssignableFrom(Double.class) || (type == String.class);
+        } else if (arg instanceof Boolean) {
+            return (type == boolean.class) || type.isAssignableFrom(Boolean.class);
+        } else {
+            return type.isInstance(arg);
+        }
+    }
+
+    private static Object convert(Object arg, Class type) {
+        if (arg == null) {
+            return null;
+        } else if ((type == double.class) || (type == Double.class)) {
+            return toNumber(arg);
+        } else if ((type == float.class) || (type == Float.class)) {
+            return (float) toNumber(arg);
+        } else if ((type == long.class) || (type == Long.class)) {
+            return (long) toNumber(arg);
+        } else if ((type == int.class) || (type == Integer.class)) {
+            return (int) toNumber(arg);
+        } else if ((type == boolean.class) || (type == Boolean.class)) {
+            return truthy(arg);
+        } else if ((type == String.class) && !(arg instanceof String)) {
+            return toStr(arg);
+        } else {
+            return arg;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) {
+        try {
+            Object result = method.invoke(target, args);
+            return method.getReturnType() == void.class ? UNDEFINED : wrap(result);
+        } catch (IllegalAccessException e) {
+            throw new AlgorithmRuntimeException("Cannot call method: " + method.getName());
+        } catch (InvocationTargetException e) {
+            throw new AlgorithmRuntimeException(
+                    "Method " + method.getName() + " threw: " + e.getCause(), e.getCause());
+        }
+    }
+}
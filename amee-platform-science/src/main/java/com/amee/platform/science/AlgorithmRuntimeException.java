@@ -0,0 +1,17 @@
+package com.amee.platform.science;
+
+/**
+ * Thrown by {@link TranslatedAlgorithm}s when evaluation cannot continue, or when the behaviour of the interpreter
+ * cannot be reproduced. The {@link AlgorithmRunner} wraps it in a ScriptException, as the interpreter would report
+ * a script error. It is not retried with the interpreter.
+ */
+public class AlgorithmRuntimeException extends RuntimeException {
+
+    public AlgorithmRuntimeException(String message) {
+        super(message);
+    }
+
+    public AlgorithmRuntimeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,64 @@
+package com.amee.platform.science;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+/**
+ * An immutable copy of an Algorithm. Snapshots are taken on the thread owning the Algorithm (e.g. with an open
+ * Hibernate session) so that the Algorithm can be evaluated safely on other threads.
+ */
+public final class AlgorithmSnapshot implements Algorithm {
+
+    private final String uid;
+    private final String label;
+    private final String content;
+    private final String fullContent;
+    private final AlgorithmBackend backend;
+
+    public AlgorithmSnapshot(Algorithm algorithm) {
+        this.uid = algorithm.getUid();
+        this.label = algorithm.getLabel();
+        this.content = algorithm.getContent();
+        this.fullContent = algorithm.getFullContent();
+        this.backend = algorithm.getBackend();
+    }
+
+    @Override
+    public String getUid() {
+        return uid;
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String getContent() {
+        return content;
+    }
+
+    @Override
+    public String getFullContent() {
+        return fullContent;
+    }
+
+    @Override
+    public CompiledScript getCompiledScript(ScriptEngine engine) throws ScriptException {
+        if ((content == null) || content.trim().isEmpty()) {
+            throw new AlgorithmException("Algorithm content is null (" + label + ").");
+        }
+        CompiledScript compiledScript = ((Compilable) engine).compile(content);
+        if (compiledScript == null) {
+            throw new AlgorithmException("CompiledScript is null (" + label + ").");
+        }
+        return compiledScript;
+    }
+
+    @Override
+    public AlgorithmBackend getBackend() {
+        return backend;
+    }
+}
@@ -0,0 +1,67 @@
+package com.amee.platform.science;
+
+import java.util.Map;
+
+/**
+ * A single Algorithm evaluation for the {@link AlgorithmExecutor}. The outcome, either the ReturnValues or the
+ * Exception thrown by the evaluation, is held by the task for the calling thread to collect.
+ */
+public class AlgorithmTask {
+
+    private final Algorithm algorithm;
+    private final Map<String, Object> values;
+    private ReturnValues returnValues;
+    private Exception exception;
+    private long duration;
+
+    /**
+     * @param algorithm the Algorithm to evaluate, which must be safe to use from other threads
+     * @param values    input values for the Algorithm, which must be safe to use from other threads
+     */
+    public AlgorithmTask(Algorithm algorithm, Map<String, Object> values) {
+        this.algorithm = algorithm;
+        this.values = values;
+    }
+
+    /**
+     * Evaluate the Algorithm, recording the outcome and duration.
+     *
+     * @param algorithmRunner the AlgorithmRunner to evaluate with
+     */
+    public void run(AlgorithmRunner algorithmRunner) {
+        long startTime = System.nanoTime();
+        try {
+            returnValues = algorithmRunner.evaluate(algorithm, values);
+        } catch (Exception e) {
+            exception = e;
+        } finally {
+            duration = System.nanoTime() - startTime;
+        }
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    public ReturnValues getReturnValues() {
+        return returnValues;
+    }
+
+    /**
+     * @return the Exception thrown by the evaluation, or null
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * @return the duration of the evaluation in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,756 @@
+package com.amee.platform.science;
+
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassBodyEvaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translates Algorithm content into Java bytecode, via Janino, producing a {@link TranslatedAlgorithm}.
+ * <p/>
+ * Only the arithmetic subset of JavaScript used by most Algorithms is supported: var declarations, assignment,
+ * if/else, blocks, the arithmetic, comparison, logical and conditional operators, the Math functions and method calls
+ * on Java objects in scope (e.g. dataFinder, profileFinder and returnValues). Anything else results in an
+ * {@link UnsupportedAlgorithmException} and the Algorithm is evaluated with the interpreter instead.
+ * <p/>
+ * Variables declared with var become Java locals. Other identifiers are looked up in the scope on each access.
+ * JavaScript value semantics are provided by {@link AlgorithmRuntime}.
+ * <p/>
+ * Thread-safe.
+ */
+public class AlgorithmTranslator {
+
+    // Reserved words and globals which can not be translated.
+    private final static Set<String> UNSUPPORTED_NAMES = new HashSet<String>(Arrays.asList(
+            "break", "case", "catch", "class", "const", "continue", "debugger", "default", "delete", "do", "enum",
+            "export", "extends", "finally", "for", "function", "import", "in", "instanceof", "let", "new", "return",
+            "super", "switch", "this", "throw", "try", "void", "while", "with", "yield", "arguments", "eval",
+            "java", "javax", "Packages", "importClass", "importPackage", "typeof", "undefined", "NaN",
+            "Infinity"));
+
+    // Names with a fixed meaning which can not be declared or assigned.
+    private final static Set<String> BUILTIN_NAMES = new HashSet<String>(Arrays.asList(
+            "var", "if", "else", "true", "false", "null", "Math"));
+
+    private final static Set<String> MATH_FUNCTIONS = new HashSet<String>(Arrays.asList(
+            "abs", "ceil", "floor", "sqrt", "exp", "log", "pow", "min", "max"));
+
+    // Punctuators, longest first. All are tokenized so that unsupported operators are not mistaken for shorter ones.
+    private final static String[] PUNCTUATORS = {
+            ">>>=", "===", "!==", ">>>", "<<=", ">>=", "==", "!=", "<=", ">=", "&&", "||", "+=", "-=", "*=", "/=",
+            "%=", "++", "--", "<<", ">>", "&=", "|=", "^=", "{", "}", "(", ")", "[", "]", ";", ",", "<", ">", "+",
+            "-", "*", "/", "%", "&", "|", "^", "!", "~", "?", ":", "=", "."};
+
+    /**
+     * Translate Algorithm content into a TranslatedAlgorithm.
+     *
+     * @param content the Algorithm content
+     * @return the TranslatedAlgorithm
+     * @throws UnsupportedAlgorithmException if the content can not be translated
+     */
+    public TranslatedAlgorithm translate(String content) throws UnsupportedAlgorithmException {
+        String classBody = generate(content);
+        try {
+            ClassBodyEvaluator evaluator = new ClassBodyEvaluator();
+            evaluator.setParentClassLoader(AlgorithmTranslator.class.getClassLoader());
+            evaluator.setDefaultImports(new String[]{AlgorithmRuntime.class.getName()});
+            evaluator.setImplementedInterfaces(new Class[]{TranslatedAlgorithm.class});
+            evaluator.cook(classBody);
+            return (TranslatedAlgorithm) evaluator.getClazz().newInstance();
+        } catch (CompileException e) {
+            throw new UnsupportedAlgorithmException("Could not compile translated Algorithm: " + e.getMessage());
+        } catch (InstantiationException e) {
+            throw new UnsupportedAlgorithmException("Could not create translated Algorithm: " + e.getMessage());
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedAlgorithmException("Could not create translated Algorithm: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Generate the Java class body for Algorithm content.
+     *
+     * @param content the Algorithm content
+     * @return the Java class body, implementing TranslatedAlgorithm
+     * @throws UnsupportedAlgorithmException if the content can not be translated
+     */
+    public String generate(String content) throws UnsupportedAlgorithmException {
+        if (StringUtils.isBlank(content)) {
+            throw new UnsupportedAlgorithmException("Algorithm content is blank.");
+        }
+        List<Token> tokens = tokenize(content);
+
+        // The first pass finds declared variables, which are hoisted. The second pass generates code.
+        Parser declarations = new Parser(tokens, Collections.<String>emptySet());
+        declarations.parseProgram();
+        Parser parser = new Parser(tokens, declarations.declared);
+        String body = parser.parseProgram();
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Object, String> constant : parser.constants.entrySet()) {
+            sb.append("private static final Object ").append(constant.getValue()).append(" = ");
+            if (constant.getKey() instanceof Double) {
+                long bits = Double.doubleToRawLongBits((Double) constant.getKey());
+                sb.append("Double.valueOf(Double.longBitsToDouble(0x").append(Long.toHexString(bits)).append("L))");
+            } else {
+                // Janino can not assign a String constant to an Object field.
+                sb.append(quote((String) constant.getKey())).append(".toString()");
+            }
+            sb.append(";\n");
+        }
+        sb.append("public Object evaluate(java.util.Map scope) throws Exception {\n");
+        sb.append("Object result = AlgorithmRuntime.UNDEFINED;\n");
+        if (parser.temps > 0) {
+            sb.append("Object[] t = new Object[").append(parser.temps).append("];\n");
+        }
+        for (String name : parser.declared) {
+            sb.append("Object v_").append(name).append(" = AlgorithmRuntime.declare(scope, \"")
+                    .append(name).append("\");\n");
+        }
+        sb.append(body);
+        sb.append("return AlgorithmRuntime.result(result);\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // Tokenizer
+
+    private static List<Token> tokenize(String s) throws UnsupportedAlgorithmException {
+        List<Token> tokens = new ArrayList<Token>();
+        boolean newline = false;
+        int i = 0;
+        int n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            int start = i;
+            if (isLineTerminator(c)) {
+                newline = true;
+                i++;
+                continue;
+            } else if (Character.isWhitespace(c) || Character.isSpaceChar(c) || (c == '\ufeff')) {
+                i++;
+                continue;
+            } else if (s.startsWith("//", i)) {
+                while ((i < n) && !isLineTerminator(s.charAt(i))) {
+                    i++;
+                }
+                continue;
+            } else if (s.startsWith("/*", i)) {
+                int end = s.indexOf("*/", i + 2);
+                if (end < 0) {
+                    throw new UnsupportedAlgorithmException("Unterminated comment.");
+                }
+                for (int j = i; j < end; j++) {
+                    if (isLineTerminator(s.charAt(j))) {
+                        newline = true;
+                    }
+                }
+                i = end + 2;
+                continue;
+            }
+
+            Token token;
+            if (isNameStart(c)) {
+                while ((i < n) && isNamePart(s.charAt(i))) {
+                    i++;
+                }
+                if ((i < n) && ((s.charAt(i) == '\\') || Character.isLetterOrDigit(s.charAt(i)))) {
+                    throw new UnsupportedAlgorithmException("Unsupported identifier at " + start + ".");
+                }
+                token = new Token(TokenType.NAME, s.substring(start, i));
+            } else if (isDigit(c) || ((c == '.') && (i + 1 < n) && isDigit(s.charAt(i + 1)))) {
+                if ((c == '0') && (i + 1 < n) && (isDigit(s.charAt(i + 1)) || isNameStart(s.charAt(i + 1)))) {
+                    throw new UnsupportedAlgorithmException("Unsupported number at " + start + ".");
+                }
+                i = skipDigits(s, i);
+                if ((i < n) && (s.charAt(i) == '.')) {
+                    i = skipDigits(s, i + 1);
+                }
+                if ((i < n) && ((s.charAt(i) == 'e') || (s.charAt(i) == 'E'))) {
+                    i++;
+                    if ((i < n) && ((s.charAt(i) == '+') || (s.charAt(i) == '-'))) {
+                        i++;
+                    }
+                    int digits = i;
+                    i = skipDigits(s, i);
+                    if (i == digits) {
+                        throw new UnsupportedAlgorithmException("Invalid number at " + start + ".");
+                    }
+                }
+                double value = Double.parseDouble(s.substring(start, i));
+                if ((i < n) && (isNamePart(s.charAt(i)) || (s.charAt(i) == '\\'))) {
+                    throw new UnsupportedAlgorithmException("Invalid number at " + start + ".");
+                }
+                token = new Token(TokenType.NUMBER, s.substring(start, i));
+                token.value = value;
+            } else if ((c == '"') || (c == '\'')) {
+                StringBuilder sb = new StringBuilder();
+                i++;
+                while (true) {
+                    if ((i >= n) || isLineTerminator(s.charAt(i))) {
+                        throw new UnsupportedAlgorithmException("Unterminated string at " + start + ".");
+                    }
+                    char d = s.charAt(i++);
+                    if (d == c) {
+                        break;
+                    } else if (d != '\\') {
+                        sb.append(d);
+                        continue;
+                    }
+                    if (i >= n) {
+                        throw new UnsupportedAlgorithmException("Unterminated string at " + start + ".");
+                    }
+                    // Only escaped quotes and backslashes are supported.
+                    char e = s.charAt(i++);
+                    if ((e != '\'') && (e != '"') && (e != '\\')) {
+                        throw new UnsupportedAlgorithmException("Unsupported escape at " + i + ".");
+                    }
+                    sb.append(e);
+                }
+                token = new Token(TokenType.STRING, s.substring(start, i));
+                token.value = sb.toString();
+            } else {
+                String punctuator = null;
+                for (String p : PUNCTUATORS) {
+                    if (s.startsWith(p, i)) {
+                        punctuator = p;
+                        break;
+                    }
+                }
+                if (punctuator == null) {
+                    throw new UnsupportedAlgorithmException("Unsupported character '" + c + "' at " + start + ".");
+                }
+                i += punctuator.length();
+                token = new Token(TokenType.PUNCTUATOR, punctuator);
+            }
+            token.newlineBefore = newline;
+            newline = false;
+            tokens.add(token);
+        }
+        Token end = new Token(TokenType.END, "end of content");
+        end.newlineBefore = true;
+        tokens.add(end);
+        return tokens;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return (c == '\n') || (c == '\r') || (c == '\u2028') || (c == '\u2029');
+    }
+
+    private static boolean isNameStart(char c) {
+        return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || (c == '_') || (c == '$');
+    }
+
+    private static boolean isNamePart(char c) {
+        return isNameStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    private static int skipDigits(String s, int i) {
+        while ((i < s.length()) && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Quote a String as a Java string literal. Characters outside printable ASCII are escaped.
+     */
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                sb.append("\\\"");
+            } else if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else if (c == '\r') {
+                sb.append("\\r");
+            } else if ((c < 0x20) || (c > 0x7e)) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private enum TokenType {
+        NAME, NUMBER, STRING, PUNCTUATOR, END
+    }
+
+    private static class Token {
+
+        private final TokenType type;
+        private final String text;
+        private Object value;
+        private boolean newlineBefore;
+
+        private Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A translated expression. The name is set if the expression is a bare identifier.
+     */
+    private static class Expression {
+
+        private final String code;
+        private final String name;
+
+        private Expression(String code) {
+            this(code, null);
+        }
+
+        private Expression(String code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+    }
+
+    // Parser
+
+    /**
+     * A recursive descent parser which generates Java code as it goes.
+     */
+    private static class Parser {
+
+        private final List<Token> tokens;
+        private int position = 0;
+
+        // Variables known to be declared, these become Java locals.
+        private final Set<String> locals;
+
+        // Variables declared during this pass.
+        private final Set<String> declared = new LinkedHashSet<String>();
+
+        // Literal values and their field names.
+        private final Map<Object, String> constants = new LinkedHashMap<Object, String>();
+
+        // The number of temporary slots needed by logical operators.
+        private int temps = 0;
+
+        private Parser(List<Token> tokens, Set<String> locals) {
+            this.tokens = tokens;
+            this.locals = locals;
+        }
+
+        private String parseProgram() throws UnsupportedAlgorithmException {
+            StringBuilder sb = new StringBuilder();
+            while (peek().type != TokenType.END) {
+                sb.append(parseStatement());
+            }
+            return sb.toString();
+        }
+
+        private String parseStatement() throws UnsupportedAlgorithmException {
+            Token token = peek();
+            if (isPunctuator("{")) {
+                next();
+                StringBuilder sb = new StringBuilder("{\n");
+                while (!isPunctuator("}")) {
+                    if (peek().type == TokenType.END) {
+                        throw unsupported("Unterminated block");
+                    }
+                    sb.append(parseStatement());
+                }
+                next();
+                return sb.append("}\n").toString();
+            } else if (isPunctuator(";")) {
+                next();
+                return "";
+            } else if (isName("var")) {
+                next();
+                String code = parseVariableDeclarations();
+                consumeSemicolon();
+                return code;
+            } else if (isName("if")) {
+                next();
+                expect("(");
+                String condition = parseExpression();
+                expect(")");
+                StringBuilder sb = new StringBuilder();
+                sb.append("if (AlgorithmRuntime.truthy(").append(condition).append(")) {\n");
+                sb.append(parseStatement());
+                sb.append("}\n");
+                if (isName("else")) {
+                    next();
+                    sb.append("else {\n").append(parseStatement()).append("}\n");
+                }
+                return sb.toString();
+            } else if ((token.type == TokenType.NAME) && UNSUPPORTED_NAMES.contains(token.text)) {
+                throw unsupported("Unsupported statement");
+            } else {
+                String code = parseExpression();
+                consumeSemicolon();
+                return "result = " + code + ";\n";
+            }
+        }
+
+        private String parseVariableDeclarations() throws UnsupportedAlgorithmException {
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                String name = expectDeclarableName();
+                declared.add(name);
+                if (isPunctuator("=")) {
+                    next();
+                    String value = parseAssignment();
+                    if (locals.contains(name)) {
+                        sb.append("v_").append(name).append(" = ").append(value).append(";\n");
+                    } else {
+                        sb.append(assign(name, value)).append(";\n");
+                    }
+                }
+                if (!isPunctuator(",")) {
+                    return sb.toString();
+                }
+                next();
+            }
+        }
+
+        private String parseExpression() throws UnsupportedAlgorithmException {
+            String code = parseAssignment();
+            if (isPunctuator(",")) {
+                throw unsupported("Unsupported comma operator");
+            }
+            return code;
+        }
+
+        private String parseAssignment() throws UnsupportedAlgorithmException {
+            Expression left = parseConditional();
+            if (isPunctuator("=")) {
+                if ((left.name == null) || BUILTIN_NAMES.contains(left.name)) {
+                    throw unsupported("Unsupported assignment target");
+                }
+                next();
+                return assign(left.name, parseAssignment());
+            } else if ((peek().type == TokenType.PUNCTUATOR) && peek().text.endsWith("=") &&
+                    !isPunctuator("==") && !isPunctuator("!=") && !isPunctuator("<=") && !isPunctuator(">=")) {
+                throw unsupported("Unsupported assignment operator");
+            }
+            return left.code;
+        }
+
+        private Expression parseConditional() throws UnsupportedAlgorithmException {
+            Expression condition = parseOr();
+            if (!isPunctuator("?")) {
+                return condition;
+            }
+            next();
+            String whenTrue = parseAssignment();
+            expect(":");
+            String whenFalse = parseAssignment();
+            return new Expression("(AlgorithmRuntime.truthy(" + condition.code + ") ? (Object) " +
+                    whenTrue + " : (Object) " + whenFalse + ")");
+        }
+
+        private Expression parseOr() throws UnsupportedAlgorithmException {
+            Expression left = parseAnd();
+            while (isPunctuator("||")) {
+                next();
+                Expression right = parseAnd();
+                String temp = "t[" + temps++ + "]";
+                left = new Expression("(AlgorithmRuntime.truthy(" + temp + " = " + left.code + ") ? " +
+                        temp + " : (Object) " + right.code + ")");
+            }
+            return left;
+        }
+
+        private Expression parseAnd() throws UnsupportedAlgorithmException {
+            Expression left = parseEquality();
+            while (isPunctuator("&&")) {
+                next();
+                Expression right = parseEquality();
+                String temp = "t[" + temps++ + "]";
+                left = new Expression("(!AlgorithmRuntime.truthy(" + temp + " = " + left.code + ") ? " +
+                        temp + " : (Object) " + right.code + ")");
+            }
+            return left;
+        }
+
+        private Expression parseEquality() throws UnsupportedAlgorithmException {
+            Expression left = parseRelational();
+            while (true) {
+                String function;
+                if (isPunctuator("==")) {
+                    function = "eq";
+                } else if (isPunctuator("!=")) {
+                    function = "ne";
+                } else if (isPunctuator("===") || isPunctuator("!==")) {
+                    throw unsupported("Unsupported operator");
+                } else {
+                    return left;
+                }
+                next();
+                left = binary(function, left, parseRelational());
+            }
+        }
+
+        private Expression parseRelational() throws UnsupportedAlgorithmException {
+            Expression left = parseAdditive();
+            while (true) {
+                String function;
+                if (isPunctuator("<")) {
+                    function = "lt";
+                } else if (isPunctuator("<=")) {
+                    function = "le";
+                } else if (isPunctuator(">")) {
+                    function = "gt";
+                } else if (isPunctuator(">=")) {
+                    function = "ge";
+                } else {
+                    return left;
+                }
+                next();
+                left = binary(function, left, parseAdditive());
+            }
+        }
+
+        private Expression parseAdditive() throws UnsupportedAlgorithmException {
+            Expression left = parseMultiplicative();
+            while (true) {
+                String function;
+                if (isPunctuator("+")) {
+                    function = "add";
+                } else if (isPunctuator("-")) {
+                    function = "sub";
+                } else {
+                    return left;
+                }
+                next();
+                left = binary(function, left, parseMultiplicative());
+            }
+        }
+
+        private Expression parseMultiplicative() throws UnsupportedAlgorithmException {
+            Expression left = parseUnary();
+            while (true) {
+                String function;
+                if (isPunctuator("*")) {
+                    function = "mul";
+                } else if (isPunctuator("/")) {
+                    function = "div";
+                } else if (isPunctuator("%")) {
+                    function = "mod";
+                } else {
+                    return left;
+                }
+                next();
+                left = binary(function, left, parseUnary());
+            }
+        }
+
+        private Expression parseUnary() throws UnsupportedAlgorithmException {
+            if (isPunctuator("-")) {
+                next();
+                return new Expression("AlgorithmRuntime.neg(" + parseUnary().code + ")");
+            } else if (isPunctuator("!")) {
+                next();
+                return new Expression("AlgorithmRuntime.not(" + parseUnary().code + ")");
+            } else if (isPunctuator("+") || isPunctuator("++") || isPunctuator("--") || isPunctuator("~")) {
+                throw unsupported("Unsupported operator");
+            }
+            return parseMember();
+        }
+
+        private Expression parseMember() throws UnsupportedAlgorithmException {
+            Expression expression;
+            if (isName("Math") && isPunctuator(peek(1), ".")) {
+                next();
+                next();
+                String name = expectName();
+                if (isPunctuator("(")) {
+                    if (!MATH_FUNCTIONS.contains(name)) {
+                        throw unsupported("Unsupported Math function");
+                    }
+                    expression = new Expression(
+                            "AlgorithmRuntime.math(\"" + name + "\", " + toArray(parseArguments()) + ")");
+                } else {
+                    throw unsupported("Unsupported Math property");
+                }
+            } else {
+                expression = parsePrimary();
+            }
+
+            // Method calls.
+            while (true) {
+                if (isPunctuator(".")) {
+                    next();
+                    String name = expectName();
+                    if (!isPunctuator("(")) {
+                        throw unsupported("Unsupported property access");
+                    }
+                    expression = new Expression("AlgorithmRuntime.call(" + expression.code + ", \"" + name +
+                            "\", " + toArray(parseArguments()) + ")");
+                } else if (isPunctuator("(")) {
+                    throw unsupported("Unsupported function call");
+                } else if (isPunctuator("[")) {
+                    throw unsupported("Unsupported indexed access");
+                } else if ((isPunctuator("++") || isPunctuator("--")) && !peek().newlineBefore) {
+                    throw unsupported("Unsupported operator");
+                } else {
+                    return expression;
+                }
+            }
+        }
+
+        private Expression parsePrimary() throws UnsupportedAlgorithmException {
+            Token token = peek();
+            if (token.type == TokenType.NUMBER) {
+                next();
+                return new Expression(constant(token.value));
+            } else if (token.type == TokenType.STRING) {
+                next();
+                return new Expression(constant(token.value));
+            } else if (isPunctuator("(")) {
+                next();
+                String code = parseExpression();
+                expect(")");
+                return new Expression("(" + code + ")");
+            } else if (token.type == TokenType.NAME) {
+                String name = token.text;
+                if (UNSUPPORTED_NAMES.contains(name)) {
+                    throw unsupported("Unsupported expression");
+                }
+                next();
+                if (name.equals("true")) {
+                    return new Expression("Boolean.TRUE");
+                } else if (name.equals("false")) {
+                    return new Expression("Boolean.FALSE");
+                } else if (name.equals("null")) {
+                    return new Expression("(Object) null");
+                } else if (BUILTIN_NAMES.contains(name)) {
+                    throw unsupported("Unsupported use of " + name);
+                } else if (locals.contains(name)) {
+                    return new Expression("v_" + name, name);
+                } else {
+                    return new Expression("AlgorithmRuntime.get(scope, \"" + name + "\")", name);
+                }
+            }
+            throw unsupported("Unexpected token");
+        }
+
+        private List<String> parseArguments() throws UnsupportedAlgorithmException {
+            expect("(");
+            List<String> arguments = new ArrayList<String>();
+            if (!isPunctuator(")")) {
+                while (true) {
+                    arguments.add(parseAssignment());
+                    if (!isPunctuator(",")) {
+                        break;
+                    }
+                    next();
+                }
+            }
+            expect(")");
+            return arguments;
+        }
+
+        private String toArray(List<String> arguments) {
+            return "new Object[]{" + StringUtils.join(arguments, ", ") + "}";
+        }
+
+        private Expression binary(String function, Expression left, Expression right) {
+            return new Expression("AlgorithmRuntime." + function + "(" + left.code + ", " + right.code + ")");
+        }
+
+        private String assign(String name, String value) {
+            if (locals.contains(name)) {
+                return "(v_" + name + " = " + value + ")";
+            } else {
+                return "AlgorithmRuntime.set(scope, \"" + name + "\", " + value + ")";
+            }
+        }
+
+        private String constant(Object value) {
+            String field = constants.get(value);
+            if (field == null) {
+                field = "c" + constants.size();
+                constants.put(value, field);
+            }
+            return field;
+        }
+
+        // Tokens
+
+        private Token peek() {
+            return peek(0);
+        }
+
+        private Token peek(int offset) {
+            return tokens.get(Math.min(position + offset, tokens.size() - 1));
+        }
+
+        private Token next() {
+            Token token = peek();
+            if (token.type != TokenType.END) {
+                position++;
+            }
+            return token;
+        }
+
+        private boolean isPunctuator(String text) {
+            return isPunctuator(peek(), text);
+        }
+
+        private boolean isPunctuator(Token token, String text) {
+            return (token.type == TokenType.PUNCTUATOR) && token.text.equals(text);
+        }
+
+        private boolean isName(String text) {
+            return (peek().type == TokenType.NAME) && peek().text.equals(text);
+        }
+
+        private void expect(String text) throws UnsupportedAlgorithmException {
+            if (!isPunctuator(text)) {
+                throw unsupported("Expected '" + text + "'");
+            }
+            next();
+        }
+
+        private String expectName() throws UnsupportedAlgorithmException {
+            if (peek().type != TokenType.NAME) {
+                throw unsupported("Expected a name");
+            }
+            return next().text;
+        }
+
+        private String expectDeclarableName() throws UnsupportedAlgorithmException {
+            String name = expectName();
+            if (UNSUPPORTED_NAMES.contains(name) || BUILTIN_NAMES.contains(name)) {
+                throw new UnsupportedAlgorithmException("Unsupported variable name: " + name);
+            }
+            return name;
+        }
+
+        /**
+         * Consume a semicolon, allowing for automatic semicolon insertion.
+         */
+        private void consumeSemicolon() throws UnsupportedAlgorithmException {
+            if (isPunctuator(";")) {
+                next();
+            } else if (!isPunctuator("}") && !peek().newlineBefore) {
+                throw unsupported("Expected ';'");
+            }
+        }
+
+        private UnsupportedAlgorithmException unsupported(String message) {
+            return new UnsupportedAlgorithmException(message + " at '" + peek().text + "'.");
+        }
+    }
+}
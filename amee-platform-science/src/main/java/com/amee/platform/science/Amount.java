@@ -1,6 +1,5 @@
 package com.amee.platform.science;
 
-import javax.measure.Measure;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 
@@ -70,8 +69,7 @@ public class Amount {
         if (value == 0.0 || unit.equals(targetUnit)) {
             return new Amount(getValue(), unit);
         } else {
-            Measure measure = Measure.valueOf(value, unit.toUnit());
-            double valueInTargetUnit = measure.doubleValue(targetUnit.toUnit());
+            double valueInTargetUnit = AmountUnit.getConverter(unit.toUnit(), targetUnit.toUnit()).convert(value);
             return new Amount(valueInTargetUnit, targetUnit);
         }
     }
@@ -91,8 +89,9 @@ public class Amount {
         AmountCompoundUnit cUnit = (AmountCompoundUnit) unit;
 
         if (cUnit.hasDifferentPerUnit(targetPerUnit)) {
-            Measure measure = Measure.valueOf(value, cUnit.getPerUnit().toUnit().inverse());
-            return new Amount(measure.doubleValue(targetPerUnit.toUnit().inverse()), targetPerUnit);
+            double valueInTargetPerUnit = AmountUnit.getConverter(
+                    cUnit.getPerUnit().toInverseUnit(), targetPerUnit.toInverseUnit()).convert(value);
+            return new Amount(valueInTargetPerUnit, targetPerUnit);
         } else {
             return new Amount(getValue(), unit);
         }
@@ -1,6 +1,10 @@
 package com.amee.platform.science;
 
 import javax.measure.unit.Unit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Represents a 'compound unit' - a unit and a dimension. Eg, km/h, kg/m.
@@ -8,20 +12,31 @@ import javax.measure.unit.Unit;
  */
 public class AmountCompoundUnit extends AmountUnit {
 
+    // AmountCompoundUnits keyed by unit, perUnit and perUnit label. AmountPerUnit equality ignores the label.
+    private final static ConcurrentMap<List<Object>, AmountCompoundUnit> AMOUNT_COMPOUND_UNITS =
+            new ConcurrentHashMap<List<Object>, AmountCompoundUnit>();
+
     private AmountPerUnit perUnit;
+    private Unit compoundUnit;
 
     protected AmountCompoundUnit(AmountUnit unit, AmountPerUnit perUnit) {
         super(unit.toUnit());
         this.perUnit = perUnit;
+        this.compoundUnit = this.unit.divide(perUnit.toUnit());
     }
 
     public static AmountCompoundUnit valueOf(AmountUnit unit, AmountPerUnit perUnit) {
-        return new AmountCompoundUnit(unit, perUnit);
+        List<Object> key = Arrays.<Object>asList(unit, perUnit, (perUnit != null) ? perUnit.toString() : null);
+        AmountCompoundUnit amountCompoundUnit = AMOUNT_COMPOUND_UNITS.get(key);
+        if (amountCompoundUnit == null) {
+            amountCompoundUnit = cache(AMOUNT_COMPOUND_UNITS, key, new AmountCompoundUnit(unit, perUnit));
+        }
+        return amountCompoundUnit;
     }
 
     @Override
     public Unit toUnit() {
-        return unit.divide(perUnit.toUnit());
+        return compoundUnit;
     }
 
     public boolean hasDifferentPerUnit(AmountPerUnit perUnit) {
@@ -7,14 +7,23 @@ import org.joda.time.format.ISOPeriodFormat;
 import javax.measure.unit.Dimension;
 import javax.measure.unit.SI;
 import javax.measure.unit.Unit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class AmountPerUnit extends AmountUnit {
 
+    // AmountPerUnits keyed by unit string.
+    private final static ConcurrentMap<String, AmountPerUnit> AMOUNT_PER_UNITS =
+            new ConcurrentHashMap<String, AmountPerUnit>();
+
     public static final AmountPerUnit ONE = new AmountPerUnit(Unit.ONE);
     public static final AmountPerUnit MONTH = AmountPerUnit.valueOf("month");
 
     private String string;
 
+    // The inverse of the unit, created on first use.
+    private Unit inverse;
+
     public AmountPerUnit(Unit unit) {
         super(unit);
         this.string = unit.toString();
@@ -26,7 +35,11 @@ public class AmountPerUnit extends AmountUnit {
     }
 
     public static AmountPerUnit valueOf(String unit) {
-        return new AmountPerUnit(internalValueOf(unit));
+        AmountPerUnit amountPerUnit = (unit != null) ? AMOUNT_PER_UNITS.get(unit) : null;
+        if (amountPerUnit == null) {
+            amountPerUnit = cache(AMOUNT_PER_UNITS, unit, new AmountPerUnit(internalValueOf(unit)));
+        }
+        return amountPerUnit;
     }
 
     public static AmountPerUnit valueOf(Duration duration) {
@@ -38,6 +51,18 @@ public class AmountPerUnit extends AmountUnit {
         return StringUtils.isNotBlank(unit) && ("none".equals(unit) || this.unit.isCompatible(internalValueOf(unit)));
     }
 
+    /**
+     * Get the inverse of the unit, which is the unit that per unit values are converted through.
+     *
+     * @return the inverse Unit
+     */
+    public Unit toInverseUnit() {
+        if (inverse == null) {
+            inverse = toUnit().inverse();
+        }
+        return inverse;
+    }
+
     public boolean isTime() {
         return toUnit().getDimension().equals(Dimension.TIME);
     }
@@ -2,6 +2,7 @@ package com.amee.platform.science;
 
 import org.apache.commons.lang3.StringUtils;
 
+import javax.measure.converter.UnitConverter;
 import javax.measure.quantity.Power;
 import javax.measure.quantity.Quantity;
 import javax.measure.unit.NonSI;
@@ -10,14 +11,32 @@ import javax.measure.unit.Unit;
 import javax.measure.unit.UnitFormat;
 import java.text.ParseException;
 import java.text.ParsePosition;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An AmountUnit represents the unit of an Amount, eg kWh.
+ * <p/>
+ * Parsed units, AmountUnits and UnitConverters are cached, as the same few units are parsed and converted between
+ * for every item value in every calculation. AmountUnits are immutable so cached instances are shared.
  */
 public class AmountUnit {
 
+    // UnitFormat is not thread-safe. Parsing with UNIT_FORMAT must synchronize on it.
     protected final static UnitFormat UNIT_FORMAT = UnitFormat.getInstance();
 
+    // The maximum number of entries in each unit cache. Unit strings can come from requests so the caches are bounded.
+    protected final static int MAX_CACHE_SIZE = 1000;
+
+    // Parsed Units and AmountUnits keyed by unit string.
+    private final static ConcurrentMap<String, Unit<? extends Quantity>> PARSED_UNITS =
+            new ConcurrentHashMap<String, Unit<? extends Quantity>>();
+    private final static ConcurrentMap<String, AmountUnit> AMOUNT_UNITS = new ConcurrentHashMap<String, AmountUnit>();
+
+    // UnitConverters keyed by source Unit then target Unit.
+    private final static ConcurrentMap<Unit, ConcurrentMap<Unit, UnitConverter>> CONVERTERS =
+            new ConcurrentHashMap<Unit, ConcurrentMap<Unit, UnitConverter>>();
+
     // Define various watt based units.
     private final static Unit<Power> KILOWATT = SI.WATT.times(1000);
     private final static Unit<Power> MEGAWATT = KILOWATT.times(1000);
@@ -55,7 +74,7 @@ public class AmountUnit {
     // Define pound-mole
     private final static Unit<? extends Quantity> POUND_MOLE = SI.MOLE.times(453.59237);
 
-    {
+    static {
         // Create usable ASCII representations. JScience will use non-ASCII characters by default.
         UNIT_FORMAT.label(KILOWATT_HOUR, "kWh");
         UNIT_FORMAT.label(MEGAWATT_HOUR, "MWh");
@@ -167,7 +186,11 @@ public class AmountUnit {
     }
 
     public static AmountUnit valueOf(String unit) {
-        return new AmountUnit(internalValueOf(unit));
+        AmountUnit amountUnit = (unit != null) ? AMOUNT_UNITS.get(unit) : null;
+        if (amountUnit == null) {
+            amountUnit = cache(AMOUNT_UNITS, unit, new AmountUnit(internalValueOf(unit)));
+        }
+        return amountUnit;
     }
 
     public AmountCompoundUnit with(AmountPerUnit perUnit) {
@@ -183,17 +206,72 @@ public class AmountUnit {
         if ((unit == null) || (unit.length() == 0)) {
             throw new IllegalArgumentException("The unit argument is blank.");
         }
+        String key = unit.toString();
+        Unit<? extends Quantity> parsed = PARSED_UNITS.get(key);
+        if (parsed == null) {
+            parsed = cache(PARSED_UNITS, key, parse(key));
+        }
+        return parsed;
+    }
+
+    private static Unit<? extends Quantity> parse(String unit) {
         try {
             // Check for Ecoinvent units first.
-            if (EcoinventUnits.isValidEcoinventUnit(unit.toString())) {
-                return EcoinventUnits.getEcoinventUnit(unit.toString()).getUnit();
+            if (EcoinventUnits.isValidEcoinventUnit(unit)) {
+                return EcoinventUnits.getEcoinventUnit(unit).getUnit();
+            }
+            synchronized (UNIT_FORMAT) {
+                return UNIT_FORMAT.parseProductUnit(unit, new ParsePosition(0));
             }
-            return UNIT_FORMAT.parseProductUnit(unit, new ParsePosition(0));
         } catch (ParseException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    /**
+     * Get the UnitConverter from the source Unit to the target Unit. Converters are cached so that a conversion is a
+     * single arithmetic operation rather than a search for a path between the units.
+     *
+     * @param source the Unit to convert from
+     * @param target the Unit to convert to
+     * @return the UnitConverter
+     * @throws javax.measure.converter.ConversionException
+     *          if the units are not compatible
+     */
+    @SuppressWarnings("unchecked")
+    protected static UnitConverter getConverter(Unit source, Unit target) {
+        if (source.equals(target)) {
+            return UnitConverter.IDENTITY;
+        }
+        ConcurrentMap<Unit, UnitConverter> converters = CONVERTERS.get(source);
+        if (converters == null) {
+            converters = cache(CONVERTERS, source, new ConcurrentHashMap<Unit, UnitConverter>());
+        }
+        UnitConverter converter = converters.get(target);
+        if (converter == null) {
+            converter = cache(converters, target, source.getConverterTo(target));
+        }
+        return converter;
+    }
+
+    /**
+     * Add a value to a cache, unless the cache is full.
+     *
+     * @param cache the cache
+     * @param key   the key
+     * @param value the value
+     * @return the cached value, which may have been added by another thread, or the given value
+     */
+    protected static <K, V> V cache(ConcurrentMap<K, V> cache, K key, V value) {
+        if (cache.size() < MAX_CACHE_SIZE) {
+            V existing = cache.putIfAbsent(key, value);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return value;
+    }
+
     /**
      * Compares this AmountUnit with the specified Object for equality.
      * This method considers two AmountUnit objects equal only if they are equal type and unit.
@@ -1,7 +1,5 @@
 package com.amee.platform.science;
 
-import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.Transformer;
 import org.joda.time.DateTime;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -14,11 +12,22 @@ import java.util.*;
 /**
  * A class representing a series of {@link DataPoint} values. Provides various mathematical operations
  * such as plus, subtract and multiply along with the crucial integrate method.
+ * <p/>
+ * The points are held in parallel arrays of epoch milliseconds, values and units, sorted by time. Points are
+ * returned as {@link DataPoint}s on demand, with DateTimes in the default time zone. As with a sorted set, adding a
+ * point at the same time as an existing point has no effect.
  */
 public class DataSeries {
 
     private final Logger log = LoggerFactory.getLogger("science");
-    private SortedSet<DataPoint> dataPoints = new TreeSet<DataPoint>();
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    // The points, sorted by time. Only the first size elements of each array are used.
+    private long[] times;
+    private double[] values;
+    private AmountUnit[] units;
+    private int size;
 
     /// These dates will be used to define a query window on the series.
     private DateTime seriesStartDate;
@@ -28,7 +37,7 @@ public class DataSeries {
      * Construct an empty series.
      */
     public DataSeries() {
-        this(new TreeSet<DataPoint>());
+        this(INITIAL_CAPACITY);
     }
 
     /**
@@ -37,7 +46,10 @@ public class DataSeries {
      * @param dataPoints - the list of {@link DataPoint} values
      */
     public DataSeries(Set<DataPoint> dataPoints) {
-        this.dataPoints = new TreeSet<DataPoint>(dataPoints);
+        this(dataPoints.size());
+        for (DataPoint dataPoint : dataPoints) {
+            addDataPoint(dataPoint);
+        }
     }
 
     /**
@@ -46,9 +58,18 @@ public class DataSeries {
      * @param dataSeries to copy
      */
     protected DataSeries(DataSeries dataSeries) {
-        for (DataPoint dataPoint : dataSeries.dataPoints) {
-            this.addDataPoint(new DataPoint(dataPoint));
-        }
+        this.times = Arrays.copyOf(dataSeries.times, dataSeries.size);
+        this.values = Arrays.copyOf(dataSeries.values, dataSeries.size);
+        this.units = Arrays.copyOf(dataSeries.units, dataSeries.size);
+        this.size = dataSeries.size;
+        this.seriesStartDate = dataSeries.seriesStartDate;
+        this.seriesEndDate = dataSeries.seriesEndDate;
+    }
+
+    private DataSeries(int capacity) {
+        times = new long[capacity];
+        values = new double[capacity];
+        units = new AmountUnit[capacity];
     }
 
     /**
@@ -71,8 +92,8 @@ public class DataSeries {
     public JSONObject getJSONObject() throws JSONException {
         JSONObject obj = new JSONObject();
         JSONArray arr = new JSONArray();
-        for (DataPoint dataPoint : dataPoints) {
-            arr.put(dataPoint.getJSONArray());
+        for (int i = 0; i < size; i++) {
+            arr.put(getDataPointAt(i).getJSONArray());
         }
         obj.put("dataPoints", arr);
         if (seriesStartDate != null) {
@@ -85,16 +106,10 @@ public class DataSeries {
     }
 
     protected Long getSeriesTimeInMillis() {
-        if (dataPoints.isEmpty()) {
+        if (size == 0) {
             return 0l;
         }
-        DateTime seriesStart = getSeriesStartDate();
-        DateTime seriesEnd = getSeriesEndDate();
-        if ((seriesEnd == null || seriesStart == null)) {
-            // the range of interest is undef
-            return null;
-        }
-        return seriesEnd.getMillis() - seriesStart.getMillis();
+        return getSeriesEndMillis() - getSeriesStartMillis();
     }
 
     /**
@@ -103,9 +118,9 @@ public class DataSeries {
      * @return return the seriesStartDate if set and after the first DataPoint, otherwise the date of the first DataPoint.
      */
     public DateTime getSeriesStartDate() {
-        if (!dataPoints.isEmpty()) {
-            DateTime first = dataPoints.first().getDateTime();
-            return (seriesStartDate != null) && seriesStartDate.isAfter(first) ? seriesStartDate : first;
+        if (size > 0) {
+            return (seriesStartDate != null) && (seriesStartDate.getMillis() > times[0]) ?
+                    seriesStartDate : new DateTime(times[0]);
         } else {
             return null;
         }
@@ -117,37 +132,69 @@ public class DataSeries {
      * @return return the seriesEndDate if set, otherwise the date of the last DataPoint.
      */
     public DateTime getSeriesEndDate() {
-        if (!dataPoints.isEmpty()) {
-            return (seriesEndDate != null) ? seriesEndDate : dataPoints.last().getDateTime();
+        if (size > 0) {
+            return (seriesEndDate != null) ? seriesEndDate : new DateTime(times[size - 1]);
         } else {
             return null;
         }
     }
 
+    // The series start and end dates in milliseconds. Only valid if the series is not empty.
+
+    private long getSeriesStartMillis() {
+        return (seriesStartDate != null) ? Math.max(seriesStartDate.getMillis(), times[0]) : times[0];
+    }
+
+    private long getSeriesEndMillis() {
+        return (seriesEndDate != null) ? seriesEndDate.getMillis() : times[size - 1];
+    }
+
     /**
      * Combine this DataSeries with another DataSeries using the given Operation.
+     * <p/>
+     * The two series are merged in a single pass. At each point in time in either series the active value of each
+     * series is combined; a series with no active value contributes zero.
      *
      * @param series
      * @param operation
      * @return
      */
-    @SuppressWarnings("unchecked")
     private DataSeries combine(DataSeries series, Operation operation) {
 
-        // Create a union of all DateTime points in the two DataSeries and sort the resultant collection (DESC).
-        List<DateTime> dateTimePoints = (List<DateTime>) CollectionUtils.union(getDateTimePoints(), series.getDateTimePoints());
-        Collections.sort(dateTimePoints);
-
-        // For each DateTime point, find the nearest corresponding DataPoint in each series and apply the desired
-        // Operation.
-        SortedSet<DataPoint> combinedSeries = new TreeSet<DataPoint>();
-        for (DateTime dateTimePoint : dateTimePoints) {
-            DataPoint lhs = getDataPoint(dateTimePoint);
-            DataPoint rhs = series.getDataPoint(dateTimePoint);
-            operation.setOperands(lhs, rhs);
-            combinedSeries.add(new DataPoint(dateTimePoint, operation.operate().getValue()));
+        DataSeries result = new DataSeries(Math.max(INITIAL_CAPACITY, size + series.size));
+        int lhsIndex = -1;
+        int rhsIndex = -1;
+        while ((lhsIndex + 1 < size) || (rhsIndex + 1 < series.size)) {
+
+            // The next point in time in either series.
+            long time;
+            if (rhsIndex + 1 >= series.size) {
+                time = times[lhsIndex + 1];
+            } else if (lhsIndex + 1 >= size) {
+                time = series.times[rhsIndex + 1];
+            } else {
+                time = Math.min(times[lhsIndex + 1], series.times[rhsIndex + 1]);
+            }
+
+            // Move each series to its active point at this time.
+            if ((lhsIndex + 1 < size) && (times[lhsIndex + 1] == time)) {
+                lhsIndex++;
+            }
+            if ((rhsIndex + 1 < series.size) && (series.times[rhsIndex + 1] == time)) {
+                rhsIndex++;
+            }
+
+            // Apply the Operation.
+            double lhsValue = (lhsIndex >= 0) ? values[lhsIndex] : 0.0;
+            AmountUnit lhsUnit = (lhsIndex >= 0) ? units[lhsIndex] : AmountUnit.ONE;
+            double rhsValue = (rhsIndex >= 0) ? series.values[rhsIndex] : 0.0;
+            AmountUnit rhsUnit = (rhsIndex >= 0) ? series.units[rhsIndex] : AmountUnit.ONE;
+            if (!canOperate(lhsUnit, rhsUnit)) {
+                // Let Amount report the incompatible units.
+                operation.operate(new Amount(lhsValue, lhsUnit), new Amount(rhsValue, rhsUnit));
+            }
+            result.append(time, operation.operate(lhsValue, rhsValue), lhsUnit);
         }
-        DataSeries result = new DataSeries(combinedSeries);
 
         // the new series's start/end dates in terms of the 'window of interest' are then the largest overlap of the two
         // although usually they'll be the same as they'll be set by the query range
@@ -160,6 +207,40 @@ public class DataSeries {
         return result;
     }
 
+    /**
+     * Combine each value in this DataSeries with a double value using the given Operation.
+     *
+     * @param d         the double value
+     * @param invert    if true the double value is the left hand operand
+     * @param operation the Operation
+     * @return a new DataSeries with the same window of interest as this DataSeries
+     */
+    private DataSeries combine(double d, boolean invert, Operation operation) {
+        DataSeries result = new DataSeries(Math.max(INITIAL_CAPACITY, size));
+        for (int i = 0; i < size; i++) {
+            if (invert) {
+                if (!canOperate(AmountUnit.ONE, units[i])) {
+                    // Let Amount report the incompatible units.
+                    operation.operate(new Amount(d), new Amount(values[i], units[i]));
+                }
+                result.append(times[i], operation.operate(d, values[i]), AmountUnit.ONE);
+            } else {
+                result.append(times[i], operation.operate(values[i], d), units[i]);
+            }
+        }
+        // make the window of interest be the same as the current one
+        result.setSeriesStartDate(getSeriesStartDate());
+        result.setSeriesEndDate(getSeriesEndDate());
+        return result;
+    }
+
+    /**
+     * Tests if the units permit an operation, as for {@link Amount}.
+     */
+    private static boolean canOperate(AmountUnit lhsUnit, AmountUnit rhsUnit) {
+        return (lhsUnit == rhsUnit) || rhsUnit.equals(lhsUnit) || rhsUnit.equals(AmountUnit.ONE);
+    }
+
     /**
      * Add a DataSeries to this DataSeries.
      *
@@ -204,15 +285,7 @@ public class DataSeries {
      * @return a new DataSeries representing the addition of the double value and the DataSeries
      */
     public DataSeries plus(double d, boolean invert) {
-        SortedSet<DataPoint> combinedDataPoints = new TreeSet<DataPoint>();
-        for (DataPoint dp : dataPoints) {
-            combinedDataPoints.add(dp.plus(d));
-        }
-        DataSeries result = new DataSeries(combinedDataPoints);
-        // make the window of interest be the same as the current one
-        result.setSeriesStartDate(getSeriesStartDate());
-        result.setSeriesEndDate(getSeriesEndDate());
-        return result;
+        return combine(d, false, new PlusOperation());
     }
 
     /**
@@ -258,15 +331,7 @@ public class DataSeries {
      * @return a new DataSeries representing the subtraction of the double value from this DataSeries
      */
     public DataSeries subtract(double d, boolean invert) {
-        SortedSet<DataPoint> combinedDataPoints = new TreeSet<DataPoint>();
-        for (DataPoint dp : dataPoints) {
-            combinedDataPoints.add(dp.subtract(d, invert));
-        }
-        DataSeries result = new DataSeries(combinedDataPoints);
-        // make the window of interest be the same as the current one
-        result.setSeriesStartDate(getSeriesStartDate());
-        result.setSeriesEndDate(getSeriesEndDate());
-        return result;
+        return combine(d, invert, new SubtractOperation());
     }
 
     /**
@@ -313,15 +378,7 @@ public class DataSeries {
      * @return a new DataSeries representing the division of this DataSeries by the double value
      */
     public DataSeries divide(double d, boolean invert) {
-        SortedSet<DataPoint> combinedDataPoints = new TreeSet<DataPoint>();
-        for (DataPoint dp : dataPoints) {
-            combinedDataPoints.add(dp.divide(d, invert));
-        }
-        DataSeries result = new DataSeries(combinedDataPoints);
-        // make the window of interest be the same as the current one
-        result.setSeriesStartDate(getSeriesStartDate());
-        result.setSeriesEndDate(getSeriesEndDate());
-        return result;
+        return combine(d, invert, new DivideOperation());
     }
 
     /**
@@ -367,15 +424,7 @@ public class DataSeries {
      * @return a new DataSeries representing the multiplication of the DataSeries and the double value
      */
     public DataSeries multiply(double d, boolean invert) {
-        SortedSet<DataPoint> combinedDataPoints = new TreeSet<DataPoint>();
-        for (DataPoint dp : dataPoints) {
-            combinedDataPoints.add(dp.multiply(d));
-        }
-        DataSeries result = new DataSeries(combinedDataPoints);
-        // make the window of interest be the same as the current one
-        result.setSeriesStartDate(getSeriesStartDate());
-        result.setSeriesEndDate(getSeriesEndDate());
-        return result;
+        return combine(d, false, new MultiplyOperation());
     }
 
     /**
@@ -389,39 +438,35 @@ public class DataSeries {
     public Amount integrate() {
 
         double integral = 0.0;
-        Long seriesTimeInMillis = getSeriesTimeInMillis();
 
-        log.debug("integrate() Integrating, time range: {}->{}, series length: {}",
-                getSeriesStartDate(), getSeriesEndDate(), dataPoints.size());
+        if (log.isDebugEnabled()) {
+            log.debug("integrate() Integrating, time range: {}->{}, series length: {}",
+                    new Object[]{getSeriesStartDate(), getSeriesEndDate(), size});
+        }
+
+        if (size == 0) {
+            return new Amount(integral);
+        }
+
+        long seriesStart = getSeriesStartMillis();
+        long seriesEnd = getSeriesEndMillis();
+        long seriesTimeInMillis = seriesEnd - seriesStart;
 
-        // If there is no defined time period or, in the case of data (non-profile) calculations, just an instant in time.
-        if (seriesTimeInMillis == null || (seriesTimeInMillis == 0 && dataPoints.size() == 1)) {
-            integral = dataPoints.last().getValue().getValue();
+        // If there is, in the case of data (non-profile) calculations, just an instant in time.
+        if (seriesTimeInMillis == 0 && size == 1) {
+            integral = values[size - 1];
         } else if (seriesTimeInMillis > 0) {
-            DataPoint[] pointArray = dataPoints.toArray(new DataPoint[dataPoints.size()]);
-            for (int i = 0; i < pointArray.length; i++) {
+            for (int i = 0; i < size; i++) {
                 // Work out segment time series.
-                DataPoint current = pointArray[i];
-                DateTime end;
-                if (i == (pointArray.length - 1)) {
-                    end = getSeriesEndDate();
-                } else {
-                    DataPoint next = pointArray[i + 1];
-                    end = getSeriesEndDate().isBefore(next.getDateTime()) ? getSeriesEndDate() : next.getDateTime();
-                }
-                DateTime start = getSeriesStartDate().isAfter(current.getDateTime()) ?
-                        getSeriesStartDate() : current.getDateTime();
-                double segmentInMillis = end.getMillis() - start.getMillis();
+                long end = (i == (size - 1)) ? seriesEnd : Math.min(seriesEnd, times[i + 1]);
+                long start = Math.max(seriesStart, times[i]);
+                double segmentInMillis = end - start;
                 // the filtering should have removed points after the end of the window of interest
                 // but in case it hasn't (and for direct testing not via internal value)
+                if (start > end) continue;
 
                 // Add weighted average value.
-                double weightedAverage = current.getValue().getValue() * segmentInMillis / seriesTimeInMillis.doubleValue();
-                log.debug("integrate() Diagnostics from integrate() weightedAverage: {}, current value: {}, {}, " +
-                    "datapoints size: {}, segment millis / series millis: {}",
-                        weightedAverage, current.getValue(), i, pointArray.length, segmentInMillis / (seriesTimeInMillis.doubleValue()));
-                if (start.isAfter(end)) continue;
-                integral = integral + weightedAverage;
+                integral = integral + values[i] * segmentInMillis / seriesTimeInMillis;
             }
         }
         return new Amount(integral);
@@ -433,11 +478,11 @@ public class DataSeries {
      * @return the Collection of {@link org.joda.time.DateTime} points in the DataSeries
      */
     public Collection<DateTime> getDateTimePoints() {
-        return CollectionUtils.collect(dataPoints, new Transformer<DataPoint, DateTime>() {
-            public DateTime transform(DataPoint input) {
-                return input.getDateTime();
-            }
-        });
+        List<DateTime> dateTimePoints = new ArrayList<DateTime>(size);
+        for (int i = 0; i < size; i++) {
+            dateTimePoints.add(new DateTime(times[i]));
+        }
+        return dateTimePoints;
     }
 
     /**
@@ -447,17 +492,16 @@ public class DataSeries {
      * @return the {@link DataPoint} at dateTime
      */
     public DataPoint getDataPoint(DateTime dateTime) {
-        DataPoint selected = DataPoint.NULL;
-
-        // datapoints must be sorted in ascending order (earliest first)
-        for (DataPoint dataPoint : dataPoints) {
-            if (!dataPoint.getDateTime().isAfter(dateTime)) {
-                selected = dataPoint;
-            } else {
-                break;
-            }
+        int index = Arrays.binarySearch(times, 0, size, dateTime.getMillis());
+        if (index < 0) {
+            // The index of the last point before dateTime.
+            index = -index - 2;
         }
-        return selected;
+        return (index >= 0) ? getDataPointAt(index) : DataPoint.NULL;
+    }
+
+    private DataPoint getDataPointAt(int index) {
+        return new DataPoint(new DateTime(times[index]), new Amount(values[index], units[index]));
     }
 
     /**
@@ -466,7 +510,40 @@ public class DataSeries {
      * @param dataPoint - the {@link DataPoint} to add to this series.
      */
     public void addDataPoint(DataPoint dataPoint) {
-        dataPoints.add(dataPoint);
+        long time = dataPoint.getDateTime().getMillis();
+        if ((size == 0) || (time > times[size - 1])) {
+            append(time, dataPoint.getValue().getValue(), dataPoint.getValue().getUnit());
+        } else {
+            int index = Arrays.binarySearch(times, 0, size, time);
+            if (index < 0) {
+                insert(-index - 1, time, dataPoint.getValue().getValue(), dataPoint.getValue().getUnit());
+            }
+        }
+    }
+
+    /**
+     * Add a point after all existing points.
+     */
+    private void append(long time, double value, AmountUnit unit) {
+        insert(size, time, value, unit);
+    }
+
+    private void insert(int index, long time, double value, AmountUnit unit) {
+        if (size == times.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity);
+            units = Arrays.copyOf(units, capacity);
+        }
+        if (index < size) {
+            System.arraycopy(times, index, times, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            System.arraycopy(units, index, units, index + 1, size - index);
+        }
+        times[index] = time;
+        values[index] = value;
+        units[index] = unit;
+        size++;
     }
 
     /**
@@ -494,41 +571,51 @@ public class DataSeries {
 
 /**
  * Represents an abstract mathematical operation
- * one would want to perform on a pair of {@link DataPoint} values.
+ * one would want to perform on a pair of values.
  */
 abstract class Operation {
 
-    protected DataPoint lhs;
-    protected DataPoint rhs;
-
-    void setOperands(DataPoint lhs, DataPoint rhs) {
-        this.lhs = lhs;
-        this.rhs = rhs;
-    }
+    abstract double operate(double lhs, double rhs);
 
-    abstract DataPoint operate();
+    abstract Amount operate(Amount lhs, Amount rhs);
 }
 
 class PlusOperation extends Operation {
-    public DataPoint operate() {
-        return lhs.plus(rhs);
+    double operate(double lhs, double rhs) {
+        return lhs + rhs;
+    }
+
+    Amount operate(Amount lhs, Amount rhs) {
+        return lhs.add(rhs);
     }
 }
 
 class SubtractOperation extends Operation {
-    public DataPoint operate() {
+    double operate(double lhs, double rhs) {
+        return lhs - rhs;
+    }
+
+    Amount operate(Amount lhs, Amount rhs) {
         return lhs.subtract(rhs);
     }
 }
 
 class DivideOperation extends Operation {
-    public DataPoint operate() {
+    double operate(double lhs, double rhs) {
+        return lhs / rhs;
+    }
+
+    Amount operate(Amount lhs, Amount rhs) {
         return lhs.divide(rhs);
     }
 }
 
 class MultiplyOperation extends Operation {
-    public DataPoint operate() {
+    double operate(double lhs, double rhs) {
+        return lhs * rhs;
+    }
+
+    Amount operate(Amount lhs, Amount rhs) {
         return lhs.multiply(rhs);
     }
 }
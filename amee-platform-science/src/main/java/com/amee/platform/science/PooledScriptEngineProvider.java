@@ -0,0 +1,132 @@
+package com.amee.platform.science;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ScriptEngineProvider} which shares a bounded pool of ScriptEngines between all threads.
+ * <p/>
+ * Engines are created lazily up to maxSize. Once all engines are in use callers wait up to maxWait milliseconds
+ * for one to be released, after which an {@link AlgorithmException} is thrown.
+ * <p/>
+ * Thread-safe.
+ */
+public class PooledScriptEngineProvider extends ScriptEngineProvider {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    public final static int DEFAULT_MAX_SIZE = 16;
+    public final static long DEFAULT_MAX_WAIT = 5000L;
+
+    private final int maxSize;
+    private final long maxWait;
+
+    // Engines which are not currently acquired.
+    private final BlockingQueue<ScriptEngineHolder> idle = new LinkedBlockingQueue<ScriptEngineHolder>();
+
+    // All engines created by this pool.
+    private final List<ScriptEngineHolder> holders = new ArrayList<ScriptEngineHolder>();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    public PooledScriptEngineProvider() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_WAIT, AlgorithmCache.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Construct a PooledScriptEngineProvider.
+     *
+     * @param maxSize            the maximum number of engines
+     * @param maxWait            the maximum time to wait for an engine, in milliseconds
+     * @param algorithmCacheSize the maximum number of CompiledScripts to cache per engine
+     */
+    public PooledScriptEngineProvider(int maxSize, long maxWait, int algorithmCacheSize) {
+        super(algorithmCacheSize);
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than zero.");
+        }
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public ScriptEngineHolder acquire() {
+        final long startTime = System.nanoTime();
+        try {
+            ScriptEngineHolder holder = idle.poll();
+            if (holder == null) {
+                holder = createHolderIfBelowMaxSize();
+            }
+            if (holder == null) {
+                holder = idle.poll(maxWait, TimeUnit.MILLISECONDS);
+            }
+            if (holder == null) {
+                log.warn("acquire() Timed out waiting for a ScriptEngine ({} in use).", activeCount.get());
+                throw new AlgorithmException("Timed out waiting for a ScriptEngine.");
+            }
+            activeCount.incrementAndGet();
+            return holder;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AlgorithmException("Interrupted waiting for a ScriptEngine.");
+        } finally {
+            addToWaitDuration(System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    public void release(ScriptEngineHolder holder) {
+        activeCount.decrementAndGet();
+        idle.offer(holder);
+    }
+
+    private ScriptEngineHolder createHolderIfBelowMaxSize() {
+        synchronized (holders) {
+            if (holders.size() < maxSize) {
+                ScriptEngineHolder holder = createHolder();
+                holders.add(holder);
+                log.debug("createHolderIfBelowMaxSize() Created ScriptEngine {} of {}.", holders.size(), maxSize);
+                return holder;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<ScriptEngineHolder> getHolders() {
+        synchronized (holders) {
+            return new ArrayList<ScriptEngineHolder>(holders);
+        }
+    }
+
+    @Override
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Get the proportion of the maximum pool size currently in use.
+     *
+     * @return the utilisation, between 0 and 1
+     */
+    @Override
+    public double getUtilisation() {
+        return (double) getActiveCount() / maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+}
@@ -0,0 +1,52 @@
+package com.amee.platform.science;
+
+import javax.script.ScriptEngine;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds a {@link ScriptEngine} along with the {@link AlgorithmCache} of scripts compiled against it.
+ * <p/>
+ * A ScriptEngineHolder is handed out by a {@link ScriptEngineProvider} to a single caller at a time. Each engine
+ * has its own global scope so Algorithms evaluated against different holders cannot see each other's state.
+ */
+public class ScriptEngineHolder {
+
+    private final ScriptEngine engine;
+    private final AlgorithmCache algorithmCache;
+    private final AtomicLong evaluationCount = new AtomicLong();
+
+    public ScriptEngineHolder(ScriptEngine engine, AlgorithmCache algorithmCache) {
+        if (engine == null) {
+            throw new AlgorithmException("ScriptEngine is null.");
+        }
+        this.engine = engine;
+        this.algorithmCache = algorithmCache;
+    }
+
+    public void evaluated() {
+        evaluationCount.incrementAndGet();
+    }
+
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    public AlgorithmCache getAlgorithmCache() {
+        return algorithmCache;
+    }
+
+    public long getEvaluationCount() {
+        return evaluationCount.get();
+    }
+
+    /**
+     * Get the proportion of evaluations on this engine which re-used an already compiled script.
+     *
+     * @return the re-use ratio, between 0 and 1
+     */
+    public double getCompiledScriptReuse() {
+        long hits = algorithmCache.getHitCount();
+        long total = hits + algorithmCache.getMissCount();
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+}
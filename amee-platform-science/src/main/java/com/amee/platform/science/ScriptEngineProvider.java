@@ -0,0 +1,162 @@
+package com.amee.platform.science;
+
+import javax.script.ScriptEngineManager;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Supplies {@link ScriptEngineHolder}s to the {@link AlgorithmRunner}. A holder is acquired for each evaluation and
+ * must be released afterwards.
+ * <p/>
+ * Implementations decide how engines are shared between threads. See {@link ThreadLocalScriptEngineProvider} and
+ * {@link PooledScriptEngineProvider}.
+ */
+public abstract class ScriptEngineProvider {
+
+    private final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
+
+    // The maximum number of CompiledScripts to cache per engine.
+    private final int algorithmCacheSize;
+
+    // Optional external statistics, shared by all engine caches.
+    private AlgorithmCacheStatistics statistics;
+
+    // Time spent waiting to acquire an engine, in nanoseconds.
+    private final AtomicLong waitDuration = new AtomicLong();
+    private final AtomicLong acquireCount = new AtomicLong();
+
+    public ScriptEngineProvider(int algorithmCacheSize) {
+        this.algorithmCacheSize = algorithmCacheSize;
+    }
+
+    /**
+     * Acquire a ScriptEngineHolder for exclusive use by the caller.
+     *
+     * @return the ScriptEngineHolder
+     * @throws AlgorithmException if no engine could be acquired
+     */
+    public abstract ScriptEngineHolder acquire();
+
+    /**
+     * Return a ScriptEngineHolder previously obtained from acquire.
+     *
+     * @param holder to release
+     */
+    public abstract void release(ScriptEngineHolder holder);
+
+    /**
+     * Get all ScriptEngineHolders created by this provider which are still live.
+     *
+     * @return the ScriptEngineHolders
+     */
+    public abstract Collection<ScriptEngineHolder> getHolders();
+
+    /**
+     * Get the number of engines currently acquired.
+     *
+     * @return the number of engines in use
+     */
+    public abstract int getActiveCount();
+
+    /**
+     * Remove the cached script for the Algorithm with the supplied UID from every engine.
+     *
+     * @param uid of the Algorithm
+     */
+    public void remove(String uid) {
+        for (ScriptEngineHolder holder : getHolders()) {
+            holder.getAlgorithmCache().remove(uid);
+        }
+    }
+
+    /**
+     * Remove all cached scripts from every engine.
+     */
+    public void clear() {
+        for (ScriptEngineHolder holder : getHolders()) {
+            holder.getAlgorithmCache().clear();
+        }
+    }
+
+    /**
+     * Create a new ScriptEngineHolder with a new JavaScript ScriptEngine and an empty AlgorithmCache. Synchronized
+     * as ScriptEngineManager is not documented as thread-safe.
+     *
+     * @return the new ScriptEngineHolder
+     */
+    protected synchronized ScriptEngineHolder createHolder() {
+        AlgorithmCache algorithmCache = new AlgorithmCache(algorithmCacheSize);
+        algorithmCache.setStatistics(statistics);
+        return new ScriptEngineHolder(scriptEngineManager.getEngineByName("js"), algorithmCache);
+    }
+
+    protected void addToWaitDuration(long duration) {
+        acquireCount.incrementAndGet();
+        if (duration > 0) {
+            waitDuration.addAndGet(duration);
+        }
+    }
+
+    public int getEngineCount() {
+        return getHolders().size();
+    }
+
+    /**
+     * Get the proportion of engines currently in use.
+     *
+     * @return the utilisation, between 0 and 1
+     */
+    public double getUtilisation() {
+        int engineCount = getEngineCount();
+        return engineCount > 0 ? (double) getActiveCount() / engineCount : 0.0;
+    }
+
+    /**
+     * Get the total time spent waiting to acquire engines.
+     *
+     * @return duration in nanoseconds
+     */
+    public long getWaitDuration() {
+        return waitDuration.get();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Get the proportion of evaluations, across all engines, which re-used an already compiled script.
+     *
+     * @return the re-use ratio, between 0 and 1
+     */
+    public double getCompiledScriptReuse() {
+        long hits = 0;
+        long total = 0;
+        for (ScriptEngineHolder holder : getHolders()) {
+            long holderHits = holder.getAlgorithmCache().getHitCount();
+            hits += holderHits;
+            total += holderHits + holder.getAlgorithmCache().getMissCount();
+        }
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    public int getAlgorithmCacheSize() {
+        return algorithmCacheSize;
+    }
+
+    public AlgorithmCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Set the statistics for engine caches. Applies to existing and future engines.
+     *
+     * @param statistics the AlgorithmCacheStatistics
+     */
+    public void setStatistics(AlgorithmCacheStatistics statistics) {
+        this.statistics = statistics;
+        for (ScriptEngineHolder holder : getHolders()) {
+            holder.getAlgorithmCache().setStatistics(statistics);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.amee.platform.science;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ScriptEngineProvider} which gives each thread its own ScriptEngine. Acquisition never waits.
+ * <p/>
+ * Engines are held weakly against their owning thread so engines belonging to threads which have terminated
+ * (e.g. idle threads reclaimed by a container pool) can be garbage collected. Each live thread still holds an
+ * engine and up to algorithmCacheSize compiled scripts, so {@link PooledScriptEngineProvider} should be preferred
+ * where there are many request threads.
+ * <p/>
+ * Thread-safe.
+ */
+public class ThreadLocalScriptEngineProvider extends ScriptEngineProvider {
+
+    // The engine for the current thread.
+    private final ThreadLocal<ScriptEngineHolder> holder = new ThreadLocal<ScriptEngineHolder>() {
+        protected ScriptEngineHolder initialValue() {
+            ScriptEngineHolder holder = createHolder();
+            holders.put(Thread.currentThread(), holder);
+            return holder;
+        }
+    };
+
+    // All engines, indexed by owning thread.
+    private final Map<Thread, ScriptEngineHolder> holders =
+            Collections.synchronizedMap(new WeakHashMap<Thread, ScriptEngineHolder>());
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    public ThreadLocalScriptEngineProvider() {
+        this(AlgorithmCache.DEFAULT_MAX_SIZE);
+    }
+
+    public ThreadLocalScriptEngineProvider(int algorithmCacheSize) {
+        super(algorithmCacheSize);
+    }
+
+    @Override
+    public ScriptEngineHolder acquire() {
+        addToWaitDuration(0);
+        activeCount.incrementAndGet();
+        return holder.get();
+    }
+
+    @Override
+    public void release(ScriptEngineHolder holder) {
+        activeCount.decrementAndGet();
+    }
+
+    @Override
+    public Collection<ScriptEngineHolder> getHolders() {
+        synchronized (holders) {
+            return new ArrayList<ScriptEngineHolder>(holders.values());
+        }
+    }
+
+    @Override
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+}
@@ -0,0 +1,19 @@
+package com.amee.platform.science;
+
+import java.util.Map;
+
+/**
+ * An Algorithm which has been translated to Java bytecode by the {@link AlgorithmTranslator}.
+ */
+public interface TranslatedAlgorithm {
+
+    /**
+     * Evaluate the Algorithm.
+     *
+     * @param scope the values available to the Algorithm, including logger and returnValues. Assignments to
+     *              undeclared variables are written to the scope.
+     * @return the completion value of the Algorithm, or null if there is none
+     * @throws Exception if evaluation fails
+     */
+    Object evaluate(Map<String, Object> scope) throws Exception;
+}
@@ -0,0 +1,174 @@
+package com.amee.platform.science;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of {@link TranslatedAlgorithm}s, produced by an {@link AlgorithmTranslator}.
+ * <p/>
+ * Entries are keyed by the Algorithm UID and hold a hash of the Algorithm content. Content which can not be
+ * translated is also cached so translation is only attempted once per revision of an Algorithm. The least recently
+ * used entry is evicted once maxSize is reached.
+ * <p/>
+ * Translation happens outside of the cache lock. Algorithms without a UID are always translated and never cached.
+ * <p/>
+ * Thread-safe.
+ */
+public class TranslatedAlgorithmCache {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final AlgorithmTranslator translator = new AlgorithmTranslator();
+
+    // The cached translations, in access order.
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong translatedCount = new AtomicLong();
+    private final AtomicLong unsupportedCount = new AtomicLong();
+    private final AtomicLong translateDuration = new AtomicLong();
+
+    public TranslatedAlgorithmCache() {
+        this(AlgorithmCache.DEFAULT_MAX_SIZE);
+    }
+
+    public TranslatedAlgorithmCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be greater than zero.");
+        }
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a TranslatedAlgorithm for the Algorithm, translating it if it is not already cached or if the Algorithm
+     * content has changed.
+     *
+     * @param algorithm to get a TranslatedAlgorithm for
+     * @return the TranslatedAlgorithm
+     * @throws UnsupportedAlgorithmException if the Algorithm can not be translated
+     */
+    public TranslatedAlgorithm getTranslatedAlgorithm(Algorithm algorithm) throws UnsupportedAlgorithmException {
+
+        // Transient Algorithms cannot be cached.
+        String uid = algorithm.getUid();
+        if (uid == null) {
+            return translate(algorithm).getTranslatedAlgorithm();
+        }
+
+        // Look for an existing translation with matching content.
+        String contentHash = AlgorithmCache.getContentHash(algorithm.getContent());
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(uid);
+        }
+        if ((entry == null) || !entry.contentHash.equals(contentHash)) {
+            entry = translate(algorithm);
+            synchronized (entries) {
+                entries.put(uid, entry);
+            }
+        }
+        return entry.getTranslatedAlgorithm();
+    }
+
+    /**
+     * Remove the cached translation for the Algorithm with the supplied UID.
+     *
+     * @param uid of the Algorithm
+     */
+    public void remove(String uid) {
+        synchronized (entries) {
+            if (entries.remove(uid) != null) {
+                log.debug("remove() Removed Algorithm {}", uid);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached translations.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Entry translate(Algorithm algorithm) {
+        final long startTime = System.nanoTime();
+        String content = algorithm.getContent();
+        try {
+            Entry entry = new Entry(AlgorithmCache.getContentHash(content), translator.translate(content), null);
+            translatedCount.incrementAndGet();
+            return entry;
+        } catch (UnsupportedAlgorithmException e) {
+            log.debug("translate() Algorithm can not be translated ({}): {}", algorithm.getLabel(), e.getMessage());
+            unsupportedCount.incrementAndGet();
+            return new Entry(AlgorithmCache.getContentHash(content), null, e.getMessage());
+        } finally {
+            translateDuration.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Get the number of Algorithms successfully translated.
+     *
+     * @return the count
+     */
+    public long getTranslatedCount() {
+        return translatedCount.get();
+    }
+
+    /**
+     * Get the number of Algorithms which could not be translated.
+     *
+     * @return the count
+     */
+    public long getUnsupportedCount() {
+        return unsupportedCount.get();
+    }
+
+    /**
+     * Get the total time spent translating Algorithms.
+     *
+     * @return duration in nanoseconds
+     */
+    public long getTranslateDuration() {
+        return translateDuration.get();
+    }
+
+    /**
+     * A cached TranslatedAlgorithm, or the reason the Algorithm could not be translated.
+     */
+    private static class Entry {
+
+        private final String contentHash;
+        private final TranslatedAlgorithm translatedAlgorithm;
+        private final String unsupportedReason;
+
+        private Entry(String contentHash, TranslatedAlgorithm translatedAlgorithm, String unsupportedReason) {
+            this.contentHash = contentHash;
+            this.translatedAlgorithm = translatedAlgorithm;
+            this.unsupportedReason = unsupportedReason;
+        }
+
+        private TranslatedAlgorithm getTranslatedAlgorithm() throws UnsupportedAlgorithmException {
+            if (translatedAlgorithm == null) {
+                throw new UnsupportedAlgorithmException(unsupportedReason);
+            }
+            return translatedAlgorithm;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.amee.platform.science;
+
+/**
+ * Thrown by the {@link AlgorithmTranslator} when Algorithm content contains constructs which cannot be translated.
+ */
+public class UnsupportedAlgorithmException extends Exception {
+
+    public UnsupportedAlgorithmException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,104 @@
+package com.amee.platform.science;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AlgorithmCacheTest {
+
+    private AlgorithmCache algorithmCache;
+
+    @Mock private ScriptEngine mockEngine;
+    @Mock private CompiledScript mockScriptA;
+    @Mock private CompiledScript mockScriptB;
+    @Mock private AlgorithmCacheStatistics mockStatistics;
+
+    @Before
+    public void init() {
+        algorithmCache = new AlgorithmCache(2);
+        algorithmCache.setStatistics(mockStatistics);
+    }
+
+    @Test
+    public void shouldCacheCompiledScript() throws ScriptException {
+        Algorithm algorithm = mockAlgorithm("UID_A", "1;", mockScriptA);
+        assertSame(mockScriptA, algorithmCache.getCompiledScript(algorithm, mockEngine));
+        assertSame(mockScriptA, algorithmCache.getCompiledScript(algorithm, mockEngine));
+        verify(algorithm, times(1)).getCompiledScript(mockEngine);
+        assertEquals(1, algorithmCache.getHitCount());
+        assertEquals(1, algorithmCache.getMissCount());
+        verify(mockStatistics, times(1)).algorithmCacheHit();
+        verify(mockStatistics, times(1)).algorithmCacheMiss();
+        verify(mockStatistics, times(1)).addToAlgorithmCompileDuration(anyLong());
+    }
+
+    @Test
+    public void shouldRecompileWhenContentChanges() throws ScriptException {
+        Algorithm algorithm = mockAlgorithm("UID_A", "1;", mockScriptA);
+        algorithmCache.getCompiledScript(algorithm, mockEngine);
+
+        // Simulate an edit to the Algorithm or its AlgorithmContext.
+        when(algorithm.getFullContent()).thenReturn("var x = 2;\n1;");
+        when(algorithm.getCompiledScript(mockEngine)).thenReturn(mockScriptB);
+        assertSame(mockScriptB, algorithmCache.getCompiledScript(algorithm, mockEngine));
+        assertEquals(0, algorithmCache.getHitCount());
+        assertEquals(2, algorithmCache.getMissCount());
+        assertEquals(1, algorithmCache.size());
+    }
+
+    @Test
+    public void shouldRemoveByUid() throws ScriptException {
+        Algorithm algorithm = mockAlgorithm("UID_A", "1;", mockScriptA);
+        algorithmCache.getCompiledScript(algorithm, mockEngine);
+        algorithmCache.remove("UID_A");
+        assertEquals(0, algorithmCache.size());
+        algorithmCache.getCompiledScript(algorithm, mockEngine);
+        verify(algorithm, times(2)).getCompiledScript(mockEngine);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsed() throws ScriptException {
+        Algorithm algorithmA = mockAlgorithm("UID_A", "1;", mockScriptA);
+        Algorithm algorithmB = mockAlgorithm("UID_B", "2;", mockScriptB);
+        Algorithm algorithmC = mockAlgorithm("UID_C", "3;", mockScriptB);
+        algorithmCache.getCompiledScript(algorithmA, mockEngine);
+        algorithmCache.getCompiledScript(algorithmB, mockEngine);
+        algorithmCache.getCompiledScript(algorithmA, mockEngine);
+        algorithmCache.getCompiledScript(algorithmC, mockEngine);
+        assertEquals(2, algorithmCache.size());
+
+        // A was used more recently than B so B should have been evicted.
+        algorithmCache.getCompiledScript(algorithmA, mockEngine);
+        verify(algorithmA, times(1)).getCompiledScript(mockEngine);
+        algorithmCache.getCompiledScript(algorithmB, mockEngine);
+        verify(algorithmB, times(2)).getCompiledScript(mockEngine);
+    }
+
+    @Test
+    public void shouldNotCacheTransientAlgorithm() throws ScriptException {
+        Algorithm algorithm = mockAlgorithm(null, "1;", mockScriptA);
+        algorithmCache.getCompiledScript(algorithm, mockEngine);
+        algorithmCache.getCompiledScript(algorithm, mockEngine);
+        verify(algorithm, times(2)).getCompiledScript(mockEngine);
+        assertEquals(0, algorithmCache.size());
+    }
+
+    private Algorithm mockAlgorithm(String uid, String content, CompiledScript compiledScript) throws ScriptException {
+        Algorithm algorithm = mock(Algorithm.class);
+        when(algorithm.getUid()).thenReturn(uid);
+        when(algorithm.getContent()).thenReturn(content);
+        when(algorithm.getFullContent()).thenReturn(content);
+        when(algorithm.getCompiledScript(mockEngine)).thenReturn(compiledScript);
+        return algorithm;
+    }
+}
@@ -0,0 +1,77 @@
+package com.amee.platform.science;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AlgorithmExecutorTest {
+
+    private AlgorithmExecutor executor;
+    private AlgorithmSnapshot algorithm;
+
+    @Before
+    public void init() {
+        executor = new AlgorithmExecutor(new AlgorithmRunner(), 4);
+        Algorithm mockAlgorithm = mock(Algorithm.class);
+        when(mockAlgorithm.getUid()).thenReturn("UID_A");
+        when(mockAlgorithm.getLabel()).thenReturn("UID_A");
+        when(mockAlgorithm.getContent()).thenReturn("if (x < 0) { undefinedValue * 1; } else { x * 2; }");
+        algorithm = new AlgorithmSnapshot(mockAlgorithm);
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void resultsShouldKeepTaskOrder() {
+        List<AlgorithmTask> tasks = createTasks(500);
+        executor.execute(tasks, 3);
+        for (int i = 0; i < tasks.size(); i++) {
+            assertNull(tasks.get(i).getException());
+            assertEquals(i * 2.0, tasks.get(i).getReturnValues().defaultValueAsDouble(), 0.0);
+        }
+        assertEquals(500, executor.getTaskCount());
+    }
+
+    @Test
+    public void failuresShouldBeHeldByTask() {
+        List<AlgorithmTask> tasks = createTasks(10);
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("x", -1.0);
+        tasks.set(5, new AlgorithmTask(algorithm, values));
+        executor.execute(tasks, 4);
+        assertTrue(tasks.get(5).getException() instanceof ScriptException);
+        assertNull(tasks.get(5).getReturnValues());
+        assertEquals(12.0, tasks.get(6).getReturnValues().defaultValueAsDouble(), 0.0);
+    }
+
+    @Test
+    public void singleChunkShouldRunOnCallingThread() {
+        List<AlgorithmTask> tasks = createTasks(3);
+        executor.execute(tasks, 1);
+        assertEquals(4.0, tasks.get(2).getReturnValues().defaultValueAsDouble(), 0.0);
+        assertTrue(tasks.get(2).getDuration() > 0);
+    }
+
+    private List<AlgorithmTask> createTasks(int count) {
+        List<AlgorithmTask> tasks = new ArrayList<AlgorithmTask>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("x", (double) i);
+            tasks.add(new AlgorithmTask(algorithm, values));
+        }
+        return tasks;
+    }
+}
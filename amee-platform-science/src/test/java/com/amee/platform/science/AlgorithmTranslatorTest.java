@@ -0,0 +1,247 @@
+package com.amee.platform.science;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Compares the TRANSLATED backend against the interpreter for a range of Algorithm content.
+ */
+public class AlgorithmTranslatorTest {
+
+    private AlgorithmRunner algorithmRunner;
+    private AlgorithmBackendComparator comparator;
+    private Map<String, Object> values;
+
+    @Before
+    public void init() {
+        algorithmRunner = new AlgorithmRunner();
+        comparator = new AlgorithmBackendComparator(algorithmRunner);
+        values = new HashMap<String, Object>();
+        values.put("distance", 10.0);
+        values.put("mass", 12.5);
+        values.put("count", 3);
+        values.put("fuel", "");
+        values.put("type", "diesel");
+    }
+
+    @Test
+    public void arithmeticShouldMatch() {
+        assertMatch("var a = 2; var b = 3; a * b + 1;");
+        assertMatch("distance * 0.5");
+        assertMatch("count * distance / 7 - mass % 5");
+        assertMatch("-distance + '4' - -count");
+        assertMatch("total = distance * 2; total + 1");
+    }
+
+    @Test
+    public void controlFlowShouldMatch() {
+        assertMatch("if (mass > 10) { mass * 2 } else { mass / 2 }");
+        assertMatch("if (mass < 10) mass * 2; else if (type == 'diesel') 5; else 6;");
+        assertMatch("var s = fuel || 'petrol'; s == 'petrol' ? 1 : 0");
+        assertMatch("var d = type && distance; d");
+        assertMatch("var a = 1\nvar b = a +\n 2\nb * 2");
+        assertMatch("var r = 1; if (distance) { var r = 2; } r;");
+        assertMatch("// Comment\n/* Block\n comment */ distance;");
+    }
+
+    @Test
+    public void comparisonShouldMatch() {
+        assertMatch("'abc' < 'abd' ? 1 : 0");
+        assertMatch("(1 == '1') && (null == null) && !(0 == 'a') && (fuel == 0) ? 1 : 0");
+        assertMatch("(type != 'petrol') && (count >= 3) && (count <= 3) && !(count > 3) ? 1 : 0");
+    }
+
+    @Test
+    public void functionsShouldMatch() {
+        assertMatch("Math.max(mass, 3) + Math.pow(2, 10) + Math.floor(2.7) + Math.abs(-1)");
+        assertMatch("Math.sqrt(distance) + Math.log(mass) + Math.exp(1) + Math.ceil(0.2) + Math.min(1, 2)");
+    }
+
+    @Test
+    public void returnValuesAndNotesShouldMatch() {
+        assertMatch(
+                "returnValues.putValue('CO2', 'kg', 'year', distance * 2);\n" +
+                        "returnValues.putValue('CH4', 'kg', null, 1.5);\n" +
+                        "returnValues.setDefaultType('CO2');\n" +
+                        "returnValues.addNote('comment', 'Distance was ' + distance);\n" +
+                        "returnValues.addNote('size', '' + returnValues.size());");
+        assertMatch(
+                "returnValues.putValue('CO2', 'kg', 'year', 1);\n" +
+                        "returnValues.addNote('numbers', '' + (0.1 + 0.2) + ',' + 1e21 + ',' + 1 / 3 + ',' +\n" +
+                        "    123456789012 + ',' + 0.000001 + ',' + 1e-7 + ',' + -0.5 + ',' + 1 / 0);\n" +
+                        "returnValues.addNote('strings', 'a\\'b' + \"it's\" + true + null);");
+    }
+
+    @Test
+    public void unsupportedContentShouldBeReported() {
+        assertUnsupported("for (var i = 0; i < 3; i++) { i; }");
+        assertUnsupported("function f() { return 1; } f();");
+        assertUnsupported("[1, 2][0]");
+        assertUnsupported("var i = 0; i++;");
+        assertUnsupported("new java.lang.Object()");
+        assertUnsupported("a = 1, b = 2");
+        assertUnsupported("var a = 1 var b = 2");
+        assertUnsupported("var t = 1; t += 2;");
+        assertUnsupported("typeof distance == 'number'");
+        assertUnsupported("distance === 10");
+        assertUnsupported("+distance");
+        assertUnsupported("parseFloat('3.5')");
+        assertUnsupported("Math.PI * distance");
+        assertUnsupported("type.length");
+        assertUnsupported("0x1A");
+        assertUnsupported("'a\\nb'");
+        assertUnsupported("a = undefined");
+    }
+
+    @Test
+    public void translatedBackendShouldBeUsedWhenSelected() throws ScriptException {
+        ReturnValues returnValues = algorithmRunner.evaluate(
+                new TestAlgorithm("UID_A", "distance * 2", AlgorithmBackend.TRANSLATED), values);
+        assertEquals(20.0, returnValues.defaultValueAsDouble(), 0.0);
+        assertEquals(1, algorithmRunner.getTranslatedEvaluationCount());
+        assertEquals(0, algorithmRunner.getFallbackEvaluationCount());
+        assertEquals(1, algorithmRunner.getTranslatedAlgorithmCache().size());
+    }
+
+    @Test
+    public void unsupportedContentShouldFallBackToInterpreter() throws ScriptException {
+        ReturnValues returnValues = algorithmRunner.evaluate(
+                new TestAlgorithm("UID_A", "var t = 0; for (var i = 0; i < 3; i++) { t += i; } t;",
+                        AlgorithmBackend.TRANSLATED), values);
+        assertEquals(3.0, returnValues.defaultValueAsDouble(), 0.0);
+        assertEquals(0, algorithmRunner.getTranslatedEvaluationCount());
+        assertEquals(1, algorithmRunner.getFallbackEvaluationCount());
+    }
+
+    @Test
+    public void failedTranslatedEvaluationShouldNotFallBackToInterpreter() {
+        try {
+            algorithmRunner.evaluate(new TestAlgorithm("UID_A", "missing * 2", AlgorithmBackend.TRANSLATED), values);
+            fail("The translated Algorithm should report the missing variable.");
+        } catch (ScriptException e) {
+            assertTrue(e.getCause() instanceof AlgorithmRuntimeException);
+        }
+        assertEquals(1, algorithmRunner.getTranslatedEvaluationCount());
+        assertEquals(0, algorithmRunner.getFallbackEvaluationCount());
+    }
+
+    @Test
+    public void illegalArgumentShouldBeFoundAsForInterpreter() {
+        values.put("checker", new Checker());
+        try {
+            algorithmRunner.evaluate(
+                    new TestAlgorithm("UID_A", "checker.check(mass)", AlgorithmBackend.TRANSLATED), values);
+            fail("The IllegalArgumentException should be thrown.");
+        } catch (ScriptException e) {
+            // AlgorithmRunner.getIllegalArgumentException returns the cause directly.
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void unexpectedTranslatedFailureShouldNotFallBackToInterpreter() {
+        algorithmRunner.setTranslatedAlgorithmCache(new TranslatedAlgorithmCache() {
+            @Override
+            public TranslatedAlgorithm getTranslatedAlgorithm(Algorithm algorithm) {
+                return new TranslatedAlgorithm() {
+                    @Override
+                    public Object evaluate(Map<String, Object> scope) {
+                        throw new ClassCastException("Fault in translation.");
+                    }
+                };
+            }
+        });
+        try {
+            algorithmRunner.evaluate(new TestAlgorithm("UID_A", "distance * 2", AlgorithmBackend.TRANSLATED), values);
+            fail("The fault should be thrown.");
+        } catch (ScriptException e) {
+            assertTrue(e.getCause() instanceof ClassCastException);
+        }
+        assertEquals(0, algorithmRunner.getFallbackEvaluationCount());
+    }
+
+    @Test
+    public void translatedFailureShouldBeDivergent() {
+        values.put("amount", new java.math.BigDecimal("1.5"));
+        AlgorithmBackendComparator.Comparison comparison =
+                comparator.compare(new TestAlgorithm(null, "amount + 1", AlgorithmBackend.TRANSLATED), values);
+        assertTrue(comparison.toString(), comparison.isDivergent());
+    }
+
+    private void assertMatch(String content) {
+        AlgorithmBackendComparator.Comparison comparison =
+                comparator.compare(new TestAlgorithm(null, content, AlgorithmBackend.TRANSLATED), values);
+        assertEquals(comparison.toString(), AlgorithmBackendComparator.Outcome.MATCH, comparison.getOutcome());
+    }
+
+    private void assertUnsupported(String content) {
+        try {
+            new AlgorithmTranslator().translate(content);
+            fail("Content should not be translated: " + content);
+        } catch (UnsupportedAlgorithmException e) {
+            // Expected.
+        }
+    }
+
+    public static class Checker {
+
+        public double check(double value) {
+            throw new IllegalArgumentException("Value is not valid: " + value);
+        }
+    }
+
+    /**
+     * A minimal Algorithm which compiles its content against the supplied engine.
+     */
+    static class TestAlgorithm implements Algorithm {
+
+        private final String uid;
+        private final String content;
+        private final AlgorithmBackend backend;
+
+        TestAlgorithm(String uid, String content, AlgorithmBackend backend) {
+            this.uid = uid;
+            this.content = content;
+            this.backend = backend;
+        }
+
+        @Override
+        public String getUid() {
+            return uid;
+        }
+
+        @Override
+        public String getLabel() {
+            return content;
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public String getFullContent() {
+            return content;
+        }
+
+        @Override
+        public CompiledScript getCompiledScript(ScriptEngine engine) throws ScriptException {
+            return ((Compilable) engine).compile(content);
+        }
+
+        @Override
+        public AlgorithmBackend getBackend() {
+            return backend;
+        }
+    }
+}
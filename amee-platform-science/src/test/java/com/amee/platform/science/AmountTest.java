@@ -2,6 +2,7 @@ package com.amee.platform.science;
 
 import org.junit.Test;
 
+import javax.measure.converter.ConversionException;
 import javax.measure.unit.NonSI;
 import javax.measure.unit.SI;
 
@@ -106,4 +107,17 @@ public class AmountTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void repeatedConvertShouldUseCachedConverter() {
+        Amount kwh = new Amount(0.1, AmountUnit.valueOf("kWh"));
+        Amount first = kwh.convert(AmountUnit.valueOf("MJ"));
+        Amount second = kwh.convert(AmountUnit.valueOf("MJ"));
+        assertEquals(new Amount(0.36, AmountUnit.valueOf("MJ")), first);
+        assertEquals(first, second);
+    }
+
+    @Test(expected = ConversionException.class)
+    public void testInvalidConvert() {
+        new Amount(0.1, AmountUnit.valueOf("kWh")).convert(AmountUnit.valueOf("kg"));
+    }
 }
@@ -5,10 +5,17 @@ import org.junit.Test;
 import javax.measure.unit.NonSI;
 import javax.measure.unit.SI;
 import javax.measure.unit.Unit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
 
 public class AmountUnitTest {
 
@@ -160,4 +167,35 @@ public class AmountUnitTest {
     public void testInvalidUnit() {
         AmountUnit.valueOf("This is not a unit");
     }
+
+    @Test
+    public void valueOfShouldReturnCachedInstances() {
+        assertSame(AmountUnit.valueOf("kWh"), AmountUnit.valueOf("kWh"));
+        assertSame(AmountPerUnit.valueOf("month"), AmountPerUnit.valueOf("month"));
+        assertSame(AmountCompoundUnit.valueOf(KILOGRAM, YEAR), AmountCompoundUnit.valueOf(KILOGRAM, YEAR));
+        assertFalse(AmountUnit.valueOf("h").equals(AmountPerUnit.valueOf("h")));
+    }
+
+    @Test
+    public void concurrentParsingShouldBeConsistent() throws Exception {
+        final String[] units = {"kWh", "MBTU_IT", "thm_us", "gal", "kg/m^2", "lb*mi", "oz_fl_uk", "lbmol"};
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Unit>> futures = new ArrayList<Future<Unit>>();
+            for (int i = 0; i < 400; i++) {
+                final String unit = units[i % units.length];
+                futures.add(executor.submit(new Callable<Unit>() {
+                    @Override
+                    public Unit call() {
+                        return AmountUnit.internalValueOf(unit);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(AmountUnit.valueOf(units[i % units.length]).toUnit(), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
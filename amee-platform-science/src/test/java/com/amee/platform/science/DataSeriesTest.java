@@ -5,7 +5,7 @@ import org.joda.time.DateTimeZone;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.TimeZone;
+import java.util.*;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -332,6 +332,57 @@ public class DataSeriesTest {
             expectedValue, series.integrate().getValue(), DELTA);
     }
 
+    @Test
+    public void copyShouldKeepStartAndEndDate() {
+        DataSeries copy = lhSeries.copy();
+        assertEquals("Should have same time window.", lhSeries.getSeriesTimeInMillis(), copy.getSeriesTimeInMillis());
+        assertEquals("Should integrate to same value.",
+            lhSeries.integrate().getValue(), copy.integrate().getValue(), DELTA);
+    }
+
+    @Test
+    public void pointsShouldBeSortedAndUnique() {
+        DataSeries series = new DataSeries();
+        series.addDataPoint(new DataPoint(now.plusDays(3), new Amount("3")));
+        series.addDataPoint(new DataPoint(now.plusDays(1), new Amount("1")));
+        series.addDataPoint(new DataPoint(now.plusDays(2), new Amount("2")));
+        series.addDataPoint(new DataPoint(now.plusDays(2), new Amount("20")));
+        assertEquals(Arrays.asList(now.plusDays(1), now.plusDays(2), now.plusDays(3)),
+            new ArrayList<DateTime>(series.getDateTimePoints()));
+        assertEquals("The first point at a time should be kept.",
+            2.0, series.getDataPoint(now.plusDays(2)).getValue().getValue(), DELTA);
+        assertEquals(DataPoint.NULL, series.getDataPoint(now));
+        assertEquals(3.0, series.getDataPoint(now.plusDays(10)).getValue().getValue(), DELTA);
+    }
+
+    @Test
+    public void combineShouldUseActivePoints() {
+        Random random = new Random(42);
+        DataSeries lhs = new DataSeries();
+        DataSeries rhs = new DataSeries();
+        for (int i = 0; i < 200; i++) {
+            lhs.addDataPoint(new DataPoint(now.plusHours(random.nextInt(1000)), new Amount(random.nextDouble())));
+            rhs.addDataPoint(new DataPoint(now.plusHours(random.nextInt(1000)), new Amount(random.nextDouble())));
+        }
+        DataSeries product = lhs.multiply(rhs);
+        Set<DateTime> expectedPoints = new TreeSet<DateTime>(lhs.getDateTimePoints());
+        expectedPoints.addAll(rhs.getDateTimePoints());
+        assertEquals(new ArrayList<DateTime>(expectedPoints), new ArrayList<DateTime>(product.getDateTimePoints()));
+        for (DateTime dateTime : expectedPoints) {
+            assertEquals(lhs.getDataPoint(dateTime).multiply(rhs.getDataPoint(dateTime)).getValue().getValue(),
+                product.getDataPoint(dateTime).getValue().getValue(), DELTA);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void combineShouldRejectIncompatibleUnits() {
+        DataSeries lhs = new DataSeries();
+        lhs.addDataPoint(new DataPoint(now, new Amount(1.0, AmountUnit.valueOf("kg"))));
+        DataSeries rhs = new DataSeries();
+        rhs.addDataPoint(new DataPoint(now, new Amount(1.0, AmountUnit.valueOf("km"))));
+        lhs.plus(rhs);
+    }
+
     private void print(DataSeries expected, DataSeries actual) {
 
         for (DateTime dt : expected.getDateTimePoints()) {
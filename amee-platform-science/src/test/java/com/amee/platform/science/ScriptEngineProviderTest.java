@@ -0,0 +1,126 @@
+package com.amee.platform.science;
+
+import org.junit.Test;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.Assert.*;
+
+public class ScriptEngineProviderTest {
+
+    @Test
+    public void threadLocalProviderShouldGiveEachThreadItsOwnEngine() throws Exception {
+        final ThreadLocalScriptEngineProvider provider = new ThreadLocalScriptEngineProvider();
+        ScriptEngineHolder first = provider.acquire();
+        provider.release(first);
+        ScriptEngineHolder second = provider.acquire();
+        provider.release(second);
+        assertSame("Same thread should get the same engine.", first, second);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ScriptEngineHolder other = executor.submit(new Callable<ScriptEngineHolder>() {
+                @Override
+                public ScriptEngineHolder call() {
+                    ScriptEngineHolder holder = provider.acquire();
+                    provider.release(holder);
+                    return holder;
+                }
+            }).get();
+            assertNotSame("Other threads should get a different engine.", first, other);
+            assertNotSame(first.getEngine(), other.getEngine());
+            assertEquals(2, provider.getEngineCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void pooledProviderShouldReuseReleasedEngines() {
+        PooledScriptEngineProvider provider = new PooledScriptEngineProvider(2, 100, 10);
+        ScriptEngineHolder first = provider.acquire();
+        ScriptEngineHolder second = provider.acquire();
+        assertNotSame(first, second);
+        assertEquals(2, provider.getActiveCount());
+        assertEquals(1.0, provider.getUtilisation(), 0.0001);
+        provider.release(first);
+        assertSame(first, provider.acquire());
+        assertEquals(2, provider.getEngineCount());
+        assertEquals(3, provider.getAcquireCount());
+    }
+
+    @Test(expected = AlgorithmException.class)
+    public void pooledProviderShouldTimeOutWhenExhausted() {
+        PooledScriptEngineProvider provider = new PooledScriptEngineProvider(1, 10, 10);
+        provider.acquire();
+        provider.acquire();
+    }
+
+    @Test
+    public void removeShouldApplyToAllEngines() throws Exception {
+        PooledScriptEngineProvider provider = new PooledScriptEngineProvider(2, 100, 10);
+        ScriptEngineHolder first = provider.acquire();
+        ScriptEngineHolder second = provider.acquire();
+        Algorithm algorithm = new TestAlgorithm("UID_A", "1;");
+        first.getAlgorithmCache().getCompiledScript(algorithm, first.getEngine());
+        second.getAlgorithmCache().getCompiledScript(algorithm, second.getEngine());
+        second.getAlgorithmCache().getCompiledScript(algorithm, second.getEngine());
+        assertEquals(0.0, first.getCompiledScriptReuse(), 0.0001);
+        assertEquals(0.5, second.getCompiledScriptReuse(), 0.0001);
+        assertEquals(1.0 / 3.0, provider.getCompiledScriptReuse(), 0.0001);
+
+        provider.remove("UID_A");
+        assertEquals(0, first.getAlgorithmCache().size());
+        assertEquals(0, second.getAlgorithmCache().size());
+    }
+
+    /**
+     * A minimal Algorithm which compiles its content against the supplied engine.
+     */
+    private static class TestAlgorithm implements Algorithm {
+
+        private final String uid;
+        private final String content;
+
+        private TestAlgorithm(String uid, String content) {
+            this.uid = uid;
+            this.content = content;
+        }
+
+        @Override
+        public String getUid() {
+            return uid;
+        }
+
+        @Override
+        public String getLabel() {
+            return uid;
+        }
+
+        @Override
+        public String getContent() {
+            return content;
+        }
+
+        @Override
+        public String getFullContent() {
+            return content;
+        }
+
+        @Override
+        public CompiledScript getCompiledScript(ScriptEngine engine) throws ScriptException {
+            return ((Compilable) engine).compile(content);
+        }
+
+        @Override
+        public AlgorithmBackend getBackend() {
+            return null;
+        }
+    }
+}
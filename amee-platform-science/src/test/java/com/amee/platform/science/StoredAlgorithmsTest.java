@@ -0,0 +1,134 @@
+package com.amee.platform.science;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Runs the AlgorithmBackendComparator over the Algorithms stored in the test database (import.sql), so the build fails
+ * if the translator gives a different result to the interpreter for any of them.
+ */
+public class StoredAlgorithmsTest {
+
+    private final static Pattern INSERT = Pattern.compile(
+            "^INSERT INTO algorithm \\(([^)]*)\\) VALUES \\((.*)\\);$", Pattern.CASE_INSENSITIVE);
+
+    // Identifiers used as values, rather than as objects or functions.
+    private final static Pattern IDENTIFIER = Pattern.compile("(?<![\\w$.])([A-Za-z_$][\\w$]*)(?![\\w$])(?!\\s*[.(])");
+
+    // Names which are not Algorithm inputs.
+    private final static Set<String> NOT_INPUTS = new HashSet<String>(Arrays.asList(
+            "var", "if", "else", "true", "false", "null", "undefined", "NaN", "Infinity", "typeof", "try", "catch",
+            "new", "function", "return", "this", "returnValues", "logger"));
+
+    @Test
+    public void storedAlgorithmsShouldNotDiverge() throws IOException {
+        AlgorithmBackendComparator comparator = new AlgorithmBackendComparator();
+        List<String> contents = getStoredAlgorithms();
+        assertFalse("No stored Algorithms found.", contents.isEmpty());
+        List<String> divergent = new ArrayList<String>();
+        for (String content : contents) {
+            Algorithm algorithm = new AlgorithmTranslatorTest.TestAlgorithm(null, content, AlgorithmBackend.TRANSLATED);
+
+            // Compare with no inputs, then with every input as a number and as a String.
+            List<Map<String, Object>> inputs = new ArrayList<Map<String, Object>>();
+            inputs.add(new HashMap<String, Object>());
+            inputs.add(getInputs(content, 2.5));
+            inputs.add(getInputs(content, "2.5"));
+            for (Map<String, Object> values : inputs) {
+                AlgorithmBackendComparator.Comparison comparison = comparator.compare(algorithm, values);
+                if (comparison.isDivergent()) {
+                    divergent.add(comparison + " with " + values);
+                }
+            }
+        }
+        assertTrue(divergent.toString(), divergent.isEmpty());
+    }
+
+    private Map<String, Object> getInputs(String content, Object value) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        Matcher matcher = IDENTIFIER.matcher(content);
+        while (matcher.find()) {
+            if (!NOT_INPUTS.contains(matcher.group(1))) {
+                values.put(matcher.group(1), value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Read the content of each Algorithm inserted by import.sql.
+     *
+     * @return the Algorithm content
+     * @throws IOException if import.sql can not be read
+     */
+    private List<String> getStoredAlgorithms() throws IOException {
+        InputStream in = getClass().getResourceAsStream("/import.sql");
+        assertNotNull("import.sql is not on the test classpath.", in);
+        List<String> contents = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = INSERT.matcher(line.trim());
+                if (matcher.matches()) {
+                    List<String> columns = Arrays.asList(matcher.group(1).replace(" ", "").split(","));
+                    contents.add(parseValues(matcher.group(2)).get(columns.indexOf("content")));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return contents;
+    }
+
+    /**
+     * Split a list of SQL values, unquoting string literals.
+     *
+     * @param values the values, as in a VALUES clause
+     * @return the values
+     */
+    private List<String> parseValues(String values) {
+        List<String> result = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < values.length(); i++) {
+            char c = values.charAt(i);
+            if (quoted) {
+                if ((c == '\'') && (i + 1 < values.length()) && (values.charAt(i + 1) == '\'')) {
+                    value.append(c);
+                    i++;
+                } else if (c == '\'') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '\'') {
+                quoted = true;
+            } else if (c == ',') {
+                result.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        result.add(value.toString().trim());
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package com.amee.calculation.service;
+
+import com.amee.domain.AMEEEntityReference;
+import com.amee.domain.DataItemService;
+import com.amee.domain.algorithm.Algorithm;
+import com.amee.domain.data.DataCategory;
+import com.amee.domain.data.ItemDefinition;
+import com.amee.domain.item.data.DataItem;
+import com.amee.platform.science.AlgorithmBackend;
+import com.amee.platform.science.AlgorithmBackendComparator;
+import com.amee.platform.science.AlgorithmCache;
+import com.amee.service.data.DataService;
+import com.amee.service.definition.DefinitionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs stored Algorithms with both the interpreted and translated backends, using DataItems from each DataCategory
+ * as input, and reports any divergence.
+ * <p/>
+ * Verification runs offline, from {@link AlgorithmBackendVerifierRunner}, and records on each ItemDefinition the content
+ * hash of the Algorithms which passed. ItemDefinitionFormAcceptor only allows a switch to the translated backend
+ * when {@link #isVerified(ItemDefinition)} shows the current Algorithms passed.
+ */
+@Service
+public class AlgorithmBackendVerifier {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    // The maximum number of DataItems to evaluate per DataCategory.
+    public final static int DEFAULT_MAX_DATA_ITEMS = 10;
+
+    @Autowired
+    private CalculationService calculationService;
+
+    @Autowired
+    private DataService dataService;
+
+    @Autowired
+    private DataItemService dataItemService;
+
+    @Autowired
+    private DefinitionService definitionService;
+
+    /**
+     * Compare the backends for the active Algorithms of every ItemDefinition and record the outcome on each. An
+     * ItemDefinition using the translated backend whose Algorithms no longer pass is switched back to interpreted.
+     *
+     * @return the number of ItemDefinitions which passed
+     */
+    @Transactional(propagation = Propagation.REQUIRED)
+    public int verifyAll() {
+        int checked = 0;
+        int passed = 0;
+        for (ItemDefinition itemDefinition : definitionService.getItemDefinitions()) {
+            if (!itemDefinition.getActiveAlgorithms().isEmpty()) {
+                checked++;
+                if (record(itemDefinition, verify(itemDefinition, DEFAULT_MAX_DATA_ITEMS))) {
+                    passed++;
+                }
+            }
+        }
+        log.info("verifyAll() Verified {} ItemDefinitions, {} passed.", checked, passed);
+        return passed;
+    }
+
+    /**
+     * Compare the backends for the active Algorithms of an ItemDefinition, using DataItems from each DataCategory
+     * with the ItemDefinition.
+     *
+     * @param itemDefinition the ItemDefinition
+     * @param maxDataItems   the maximum number of DataItems to evaluate per DataCategory
+     * @return the Comparisons
+     */
+    public List<AlgorithmBackendComparator.Comparison> verify(ItemDefinition itemDefinition, int maxDataItems) {
+        List<AlgorithmBackendComparator.Comparison> comparisons = new ArrayList<AlgorithmBackendComparator.Comparison>();
+        for (AMEEEntityReference reference : dataService.getDataCategoryReferences(itemDefinition)) {
+            DataCategory dataCategory = dataService.getDataCategoryByUid(reference.getEntityUid());
+            if (dataCategory != null) {
+                verify(dataCategory, maxDataItems, comparisons);
+            }
+        }
+        log.info("verify() Compared {} evaluations for ItemDefinition {}, {} divergent.",
+                new Object[]{comparisons.size(), itemDefinition.getUid(), getDivergentCount(comparisons)});
+        return comparisons;
+    }
+
+    /**
+     * Returns true if the current Algorithms of the ItemDefinition passed the last offline verification. This does
+     * not evaluate anything.
+     *
+     * @param itemDefinition the ItemDefinition
+     * @return true if the translated backend can be used for the ItemDefinition
+     */
+    public boolean isVerified(ItemDefinition itemDefinition) {
+        String verified = itemDefinition.getAlgorithmBackendVerified();
+        return !verified.isEmpty() && verified.equals(getAlgorithmsHash(itemDefinition));
+    }
+
+    /**
+     * Record the outcome of a verification on the ItemDefinition. Verification only passes if at least one
+     * evaluation was compared and none diverged.
+     *
+     * @param itemDefinition the ItemDefinition
+     * @param comparisons    the Comparisons for the ItemDefinition
+     * @return true if the ItemDefinition passed
+     */
+    private boolean record(ItemDefinition itemDefinition, List<AlgorithmBackendComparator.Comparison> comparisons) {
+        boolean passed = !comparisons.isEmpty() && (getDivergentCount(comparisons) == 0);
+        String verified = passed ? getAlgorithmsHash(itemDefinition) : "";
+        boolean modified = false;
+        if (!verified.equals(itemDefinition.getAlgorithmBackendVerified())) {
+            itemDefinition.setAlgorithmBackendVerified(verified);
+            modified = true;
+        }
+        if (!passed && (AlgorithmBackend.fromName(itemDefinition.getAlgorithmBackend()) == AlgorithmBackend.TRANSLATED)) {
+            log.warn("record() Switching ItemDefinition {} back to the interpreted backend.", itemDefinition.getUid());
+            itemDefinition.setAlgorithmBackend(AlgorithmBackend.INTERPRETED.name().toLowerCase());
+            modified = true;
+        }
+        if (modified) {
+            definitionService.invalidate(itemDefinition);
+        }
+        return passed;
+    }
+
+    private void verify(
+            DataCategory dataCategory,
+            int maxDataItems,
+            List<AlgorithmBackendComparator.Comparison> comparisons) {
+        ItemDefinition itemDefinition = dataCategory.getItemDefinition();
+        if ((itemDefinition == null) || itemDefinition.getActiveAlgorithms().isEmpty()) {
+            return;
+        }
+        for (DataItem dataItem : dataItemService.getDataItems(dataCategory, maxDataItems)) {
+            for (Algorithm algorithm : itemDefinition.getActiveAlgorithms()) {
+                AlgorithmBackendComparator.Comparison comparison =
+                        calculationService.compareBackends(algorithm, dataItem);
+                if (comparison.isDivergent()) {
+                    log.warn("verify() Divergence for DataItem {}: {}", dataItem.getUid(), comparison);
+                }
+                comparisons.add(comparison);
+            }
+        }
+    }
+
+    /**
+     * Returns a hash of the UIDs and content of the active Algorithms of the ItemDefinition, so a verification no
+     * longer applies once any of them change.
+     *
+     * @param itemDefinition the ItemDefinition
+     * @return the hash
+     */
+    private static String getAlgorithmsHash(ItemDefinition itemDefinition) {
+        StringBuilder content = new StringBuilder();
+        for (Algorithm algorithm : itemDefinition.getActiveAlgorithms()) {
+            content.append(algorithm.getUid()).append('\n').append(algorithm.getFullContent()).append('\n');
+        }
+        return AlgorithmCache.getContentHash(content.toString());
+    }
+
+    private static int getDivergentCount(List<AlgorithmBackendComparator.Comparison> comparisons) {
+        int divergent = 0;
+        for (AlgorithmBackendComparator.Comparison comparison : comparisons) {
+            if (comparison.isDivergent()) {
+                divergent++;
+            }
+        }
+        return divergent;
+    }
+}
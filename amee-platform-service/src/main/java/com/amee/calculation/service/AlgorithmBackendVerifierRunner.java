@@ -0,0 +1,77 @@
+package com.amee.calculation.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Runs {@link AlgorithmBackendVerifier#verifyAll()} in its own thread once the application has started, if
+ * calculation.verifyAlgorithmBackends is set. This keeps the evaluation of stored Algorithms out of requests.
+ */
+public class AlgorithmBackendVerifierRunner implements Runnable, SmartLifecycle {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private AlgorithmBackendVerifier algorithmBackendVerifier;
+
+    // Should verification run when the application starts?
+    private boolean verifyAlgorithmBackends = false;
+
+    // A Thread to do the verification work in.
+    private Thread thread;
+
+    @Override
+    public void run() {
+        try {
+            algorithmBackendVerifier.verifyAll();
+        } catch (RuntimeException e) {
+            log.error("run() Caught RuntimeException: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return verifyAlgorithmBackends;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public int getPhase() {
+        // Start as late as possible.
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized void start() {
+        log.info("start()");
+        thread = new Thread(this, "AlgorithmBackendVerifier");
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        log.info("stop()");
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return (thread != null) && (thread.isAlive());
+    }
+
+    @Value("${calculation.verifyAlgorithmBackends}")
+    public void setVerifyAlgorithmBackends(Boolean verifyAlgorithmBackends) {
+        this.verifyAlgorithmBackends = verifyAlgorithmBackends;
+    }
+}
@@ -15,10 +15,20 @@ import com.amee.domain.item.profile.ProfileItemNumberValue;
 import com.amee.domain.item.profile.ProfileItemTextValue;
 import com.amee.domain.profile.CO2CalculationService;
 import com.amee.domain.sheet.Choices;
+import com.amee.platform.science.AlgorithmBackendComparator;
+import com.amee.platform.science.AlgorithmCache;
+import com.amee.platform.science.AlgorithmExecutor;
 import com.amee.platform.science.AlgorithmRunner;
+import com.amee.platform.science.AlgorithmSnapshot;
+import com.amee.platform.science.AlgorithmTask;
+import com.amee.platform.science.DataSeries;
 import com.amee.platform.science.ExternalGenericValue;
 import com.amee.platform.science.InternalValue;
+import com.amee.platform.science.PooledScriptEngineProvider;
 import com.amee.platform.science.ReturnValues;
+import com.amee.platform.science.ScriptEngineProvider;
+import com.amee.platform.science.ThreadLocalScriptEngineProvider;
+import com.amee.service.invalidation.InvalidationMessage;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,16 +36,19 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Service;
 import sun.org.mozilla.javascript.internal.JavaScriptException;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.script.ScriptException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.regex.Pattern;
 
 @Service
-public class CalculationService implements CO2CalculationService, BeanFactoryAware {
+public class CalculationService implements CO2CalculationService, BeanFactoryAware, ApplicationListener<InvalidationMessage> {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final Logger scienceLog = LoggerFactory.getLogger("science");
@@ -51,9 +64,85 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
 
     private AlgorithmRunner algorithmRunner = new AlgorithmRunner();
 
+    // The maximum number of CompiledScripts to cache per ScriptEngine.
+    private int algorithmCacheSize = AlgorithmCache.DEFAULT_MAX_SIZE;
+
+    // How ScriptEngines are shared between threads, either 'pool' or 'thread'.
+    private String scriptEngineMode = "pool";
+
+    // The maximum number of ScriptEngines in 'pool' mode.
+    private int scriptEnginePoolSize = PooledScriptEngineProvider.DEFAULT_MAX_SIZE;
+
+    // The maximum time to wait for a ScriptEngine in 'pool' mode, in milliseconds.
+    private long scriptEnginePoolMaxWait = PooledScriptEngineProvider.DEFAULT_MAX_WAIT;
+
+    // The number of threads used for parallel calculations, or zero for one per available processor.
+    private int parallelism = 0;
+
+    // The maximum number of threads used for the calculations of a single request. Parallel calculation is disabled
+    // if this is one or less.
+    private int requestParallelism = AlgorithmExecutor.DEFAULT_REQUEST_PARALLELISM;
+
+    // The minimum number of calculations in a batch before they are evaluated in parallel.
+    private int parallelThreshold = 100;
+
+    // Evaluates calculations in parallel, or null if parallel calculation is disabled.
+    private AlgorithmExecutor algorithmExecutor;
+
+    // Algorithms referring to these finders must be evaluated on the request thread as the finders use the session.
+    private static final Pattern FINDER_PATTERN = Pattern.compile("\\b(dataFinder|profileFinder|serviceFinder)\\b");
+
     // Set by Spring context. The BeanFactory used to retrieve ProfileFinder and DataFinder instances.
     private BeanFactory beanFactory;
 
+    /**
+     * Configure the ScriptEngineProvider once all properties have been set.
+     */
+    @PostConstruct
+    public void init() {
+        ScriptEngineProvider engineProvider;
+        if (scriptEngineMode.equalsIgnoreCase("thread")) {
+            engineProvider = new ThreadLocalScriptEngineProvider(algorithmCacheSize);
+        } else {
+            engineProvider = new PooledScriptEngineProvider(
+                    scriptEnginePoolSize, scriptEnginePoolMaxWait, algorithmCacheSize);
+        }
+        engineProvider.setStatistics(ameeStatistics);
+        algorithmRunner.setEngineProvider(engineProvider);
+        log.info("init() Using " + engineProvider.getClass().getSimpleName());
+        if (requestParallelism > 1) {
+            algorithmExecutor = new AlgorithmExecutor(algorithmRunner, parallelism);
+            log.info("init() Using parallel calculations (parallelism: " + algorithmExecutor.getParallelism() +
+                    ", requestParallelism: " + requestParallelism + ")");
+        }
+    }
+
+    /**
+     * Stop the parallel calculation threads.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (algorithmExecutor != null) {
+            algorithmExecutor.shutdown();
+        }
+    }
+
+    // Events
+
+    /**
+     * Evict CompiledScripts and translations for modified or removed Algorithms.
+     *
+     * @param invalidationMessage the InvalidationMessage
+     */
+    @Override
+    public void onApplicationEvent(InvalidationMessage invalidationMessage) {
+        if ((invalidationMessage.isLocal() || invalidationMessage.isFromOtherInstance()) &&
+                invalidationMessage.getObjectType().equals(ObjectType.AL)) {
+            log.trace("onApplicationEvent() Handling InvalidationMessage.");
+            algorithmRunner.remove(invalidationMessage.getEntityUid());
+        }
+    }
+
     /**
      * Calculate and always set the GHG amounts for a ProfileItem.
      *
@@ -68,12 +157,128 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
         if (!profileItem.isEnd() && profileItem.supportsCalculation()) {
             Algorithm algorithm = profileItem.getItemDefinition().getAlgorithm(Algorithm.DEFAULT);
             if (algorithm != null) {
-                Map<String, Object> values = getValues(profileItem);
+                Map<String, Object> values = getValues(profileItem, new CalculationContext(), true);
                 profileItem.setAmounts(calculate(algorithm, values));
             }
         }
     }
 
+    /**
+     * Calculate and always set the GHG amounts for many ProfileItems in one pass.
+     * <p/>
+     * ProfileItems are grouped by Algorithm. Values for each ItemDefinition and each shared DataItem are collected
+     * once for the whole batch, DataItem values are bulk loaded and a single set of finders is re-used. Within a group
+     * each evaluation re-uses the CompiledScript held in the AlgorithmCache.
+     * <p/>
+     * Large batches are evaluated in parallel, up to the requestParallelism budget. All entities are read on the
+     * calling thread; the worker threads only see AlgorithmSnapshots and the collected input values. Algorithms using
+     * finders are always evaluated on the calling thread.
+     * <p/>
+     * The results are the same as calling {@link #calculate(ProfileItem)} for each ProfileItem.
+     *
+     * @param profileItems the ProfileItems for which to calculate GHG amounts
+     */
+    public void calculateAll(Collection<ProfileItem> profileItems) {
+
+        // Group ProfileItems that support calculations by Algorithm, and find the DataItems they share.
+        Map<Algorithm, List<ProfileItem>> groups = new LinkedHashMap<Algorithm, List<ProfileItem>>();
+        Set<BaseItem> dataItems = new LinkedHashSet<BaseItem>();
+        for (ProfileItem profileItem : profileItems) {
+            if (!profileItem.isEnd() && profileItem.supportsCalculation()) {
+                Algorithm algorithm = profileItem.getItemDefinition().getAlgorithm(Algorithm.DEFAULT);
+                if (algorithm != null) {
+                    List<ProfileItem> group = groups.get(algorithm);
+                    if (group == null) {
+                        group = new ArrayList<ProfileItem>();
+                        groups.put(algorithm, group);
+                    }
+                    group.add(profileItem);
+                    dataItems.add(profileItem.getDataItem());
+                }
+            }
+        }
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        // Load values for all DataItems in one go.
+        dataItemService.loadItemValuesForItems(dataItems);
+
+        // Calculate each group with shared values and finders. Collect independent calculations for the parallel stage.
+        CalculationContext context = new CalculationContext();
+        List<ProfileItem> parallelItems = new ArrayList<ProfileItem>();
+        List<Algorithm> parallelAlgorithms = new ArrayList<Algorithm>();
+        List<AlgorithmTask> tasks = new ArrayList<AlgorithmTask>();
+        for (Map.Entry<Algorithm, List<ProfileItem>> group : groups.entrySet()) {
+            Algorithm algorithm = group.getKey();
+            log.debug("calculateAll() - algorithm uid: {}, items: {}", algorithm.getUid(), group.getValue().size());
+            if ((algorithmExecutor != null) && !usesFinders(algorithm)) {
+                AlgorithmSnapshot snapshot = new AlgorithmSnapshot(algorithm);
+                for (ProfileItem profileItem : group.getValue()) {
+                    parallelItems.add(profileItem);
+                    parallelAlgorithms.add(algorithm);
+                    tasks.add(new AlgorithmTask(snapshot, getValues(profileItem, context, false)));
+                }
+            } else {
+                for (ProfileItem profileItem : group.getValue()) {
+                    profileItem.setAmounts(calculate(algorithm, getValues(profileItem, context, true)));
+                }
+            }
+        }
+
+        if (tasks.size() < parallelThreshold) {
+            for (int i = 0; i < tasks.size(); i++) {
+                parallelItems.get(i).setAmounts(calculate(parallelAlgorithms.get(i), tasks.get(i).getValues()));
+            }
+        } else {
+            calculateInParallel(parallelItems, parallelAlgorithms, tasks);
+        }
+    }
+
+    /**
+     * Evaluate the tasks in parallel then set the results, in order, on the ProfileItems.
+     *
+     * @param profileItems the ProfileItem for each task
+     * @param algorithms   the Algorithm for each task
+     * @param tasks        the tasks to evaluate
+     */
+    private void calculateInParallel(List<ProfileItem> profileItems, List<Algorithm> algorithms, List<AlgorithmTask> tasks) {
+        log.debug("calculateInParallel() - items: {}", tasks.size());
+
+        final long startTime = System.nanoTime();
+        algorithmExecutor.execute(tasks, requestParallelism);
+        ameeStatistics.addToThreadCalculationElapsed(System.nanoTime() - startTime);
+        ameeStatistics.addToThreadCalculationCount(tasks.size());
+        ameeStatistics.addToParallelCalculationCount(tasks.size());
+
+        for (int i = 0; i < tasks.size(); i++) {
+            AlgorithmTask task = tasks.get(i);
+            ameeStatistics.addToThreadCalculationDuration(task.getDuration());
+            ReturnValues returnValues;
+            if (task.getException() == null) {
+                returnValues = task.getReturnValues();
+            } else if (task.getException() instanceof ScriptException) {
+                returnValues = getReturnValues(algorithms.get(i), (ScriptException) task.getException());
+            } else if (task.getException() instanceof RuntimeException) {
+                throw (RuntimeException) task.getException();
+            } else {
+                throw new CalculationException("Caught Exception in Algorithm (" +
+                        algorithms.get(i).getLabel() + "): " + task.getException().getMessage());
+            }
+            profileItems.get(i).setAmounts(returnValues);
+        }
+    }
+
+    /**
+     * Returns true if the Algorithm refers to the finders, which must only be used on the request thread.
+     *
+     * @param algorithm the Algorithm to check
+     * @return true if the Algorithm uses finders
+     */
+    private boolean usesFinders(Algorithm algorithm) {
+        return FINDER_PATTERN.matcher(algorithm.getFullContent()).find();
+    }
+
     /**
      * Calculate and return the GHG amounts for a DataItem and a set of user specified values.
      *
@@ -114,75 +319,105 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
         try {
             returnValues = algorithmRunner.evaluate(algorithm, values);
         } catch (ScriptException e) {
+            returnValues = getReturnValues(algorithm, e);
+        } finally {
+            long duration = System.nanoTime() - startTime;
+            ameeStatistics.addToThreadCalculationDuration(duration);
+            ameeStatistics.addToThreadCalculationElapsed(duration);
+            ameeStatistics.addToThreadCalculationCount(1);
+        }
 
-            // Bubble up parameter missing or format exceptions from the
-            // algorithms (the only place where these validations can be performed.
-            IllegalArgumentException iae = AlgorithmRunner.getIllegalArgumentException(e);
-            if (iae != null) {
-                throw iae;
-            }
+        log.debug("calculate() - finished calculation");
+        log.debug("calculate() - Amounts: {}", returnValues);
 
-            // Throw CalculationException for Exceptions from the JavaScript 'throw' keyword.
-            if ((e.getCause() != null) && e.getCause() instanceof JavaScriptException) {
-
-                // Writing java programs that rely on sun.* is risky: they are not portable, and are not supported.
-                // http://java.sun.com/products/jdk/faq/faq-sun-packages.html
-                JavaScriptException jse = (JavaScriptException) e.getCause();
-                throw new CalculationException(
-                        "Caught Exception in Algorithm (" +
-                                algorithm.getItemDefinition().getName() +
-                                ", " +
-                                algorithm.getName() +
-                                ", " +
-                                jse.lineNumber() +
-                                ", " +
-                                jse.columnNumber() +
-                                "): " + jse.getValue());
+        return returnValues;
+    }
 
-            }
+    /**
+     * Handle a ScriptException from an Algorithm evaluation.
+     * <p/>
+     * Parameter missing or format errors and errors thrown by the Algorithm are re-thrown. All other errors are logged
+     * and an empty result returned.
+     *
+     * @param algorithm the Algorithm which was evaluated
+     * @param e         the ScriptException
+     * @return an empty result with an error note
+     */
+    private ReturnValues getReturnValues(Algorithm algorithm, ScriptException e) {
 
-            // Log all other errors to the science log...
-            scienceLog.warn(
-                    "Caught ScriptException in Algorithm (" +
+        // Bubble up parameter missing or format exceptions from the
+        // algorithms (the only place where these validations can be performed.
+        IllegalArgumentException iae = AlgorithmRunner.getIllegalArgumentException(e);
+        if (iae != null) {
+            throw iae;
+        }
+
+        // Throw CalculationException for Exceptions from the JavaScript 'throw' keyword.
+        if ((e.getCause() != null) && e.getCause() instanceof JavaScriptException) {
+
+            // Writing java programs that rely on sun.* is risky: they are not portable, and are not supported.
+            // http://java.sun.com/products/jdk/faq/faq-sun-packages.html
+            JavaScriptException jse = (JavaScriptException) e.getCause();
+            throw new CalculationException(
+                    "Caught Exception in Algorithm (" +
                             algorithm.getItemDefinition().getName() +
                             ", " +
                             algorithm.getName() +
-                            "): " + e.getMessage());
+                            ", " +
+                            jse.lineNumber() +
+                            ", " +
+                            jse.columnNumber() +
+                            "): " + jse.getValue());
 
-            // ...and return an empty result by default.
-            returnValues = new ReturnValues();
-            returnValues.addNote("error", "Algorithm error.");
-        } finally {
-            ameeStatistics.addToThreadCalculationDuration(System.nanoTime() - startTime);
         }
 
-        log.debug("calculate() - finished calculation");
-        log.debug("calculate() - Amounts: {}", returnValues);
-
+        // Log all other errors to the science log...
+        scienceLog.warn(
+                "Caught ScriptException in Algorithm (" +
+                        algorithm.getItemDefinition().getName() +
+                        ", " +
+                        algorithm.getName() +
+                        "): " + e.getMessage());
+
+        // ...and return an empty result by default.
+        ReturnValues returnValues = new ReturnValues();
+        returnValues.addNote("error", "Algorithm error.");
         return returnValues;
     }
 
+    /**
+     * Evaluate an Algorithm for a DataItem with both the interpreted and translated backends and compare the results.
+     *
+     * @param algorithm the algorithm to use
+     * @param dataItem  the DataItem supplying input values
+     * @return the Comparison
+     */
+    public AlgorithmBackendComparator.Comparison compareBackends(Algorithm algorithm, DataItem dataItem) {
+        Map<String, Object> values = getValues(dataItem, null, APIVersion.TWO);
+        return new AlgorithmBackendComparator(algorithmRunner).compare(algorithm, values);
+    }
+
     /**
      * Collect all relevant algorithm input values for a ProfileItem calculation.
      *
      * Profile item values override data item values which override item definition values.
      *
      * @param profileItem
+     * @param context     the CalculationContext holding values and finders shared with other calculations
+     * @param finders     true if the finders should be added to the values
      * @return
      */
-    private Map<String, Object> getValues(ProfileItem profileItem) {
+    private Map<String, Object> getValues(ProfileItem profileItem, CalculationContext context, boolean finders) {
 
         Map<ItemValueDefinition, InternalValue> collectedValues = new HashMap<ItemValueDefinition, InternalValue>();
 
         // Add ItemDefinition defaults.
         APIVersion apiVersion = profileItem.getProfile().getUser().getAPIVersion();
-        profileItem.getItemDefinition().appendInternalValues(collectedValues, apiVersion);
+        collectedValues.putAll(context.getItemDefinitionValues(profileItem.getItemDefinition(), apiVersion));
 
         // Add DataItem values, filtered by start and end dates of the ProfileItem (factoring in the query date range).
-        DataItem dataItem = profileItem.getDataItem();
-        dataItem.setEffectiveStartDate(profileItem.getEffectiveStartDate());
-        dataItem.setEffectiveEndDate(profileItem.getEffectiveEndDate());
-        appendInternalValues(dataItem, dataItemService, collectedValues);
+        collectedValues.putAll(context.getDataItemValues(
+                profileItem.getDataItem(), profileItem.getEffectiveStartDate(), profileItem.getEffectiveEndDate()));
 
         // Add the ProfileItem values.
         appendInternalValues(profileItem, profileItemService, collectedValues);
@@ -190,11 +425,18 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
         // Add actual values to return list based on InternalValues in values list.
         Map<String, Object> algorithmInputValues = new HashMap<String, Object>();
         for (Map.Entry<ItemValueDefinition, InternalValue> entry : collectedValues.entrySet()) {
-            algorithmInputValues.put(entry.getKey().getCanonicalPath(), entry.getValue().getValue());
+            Object value = entry.getValue().getValue();
+            if (value instanceof DataSeries) {
+                // DataSeries are mutable and the InternalValue may be shared with other calculations.
+                value = ((DataSeries) value).copy();
+            }
+            algorithmInputValues.put(entry.getKey().getCanonicalPath(), value);
         }
 
         // Initialise finders for algorithm.
-        initFinders(profileItem, algorithmInputValues);
+        if (finders) {
+            context.initFinders(profileItem, algorithmInputValues);
+        }
 
         return algorithmInputValues;
     }
@@ -243,33 +485,6 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
         }
     }
 
-    /**
-     * Add DataFinder, ProfileFinder and ServiceFinder to the algorithm values.
-     *
-     * @param profileItem to be used in finders
-     * @param values      to place finders into
-     */
-    private void initFinders(ProfileItem profileItem, Map<String, Object> values) {
-
-        // Configure and add DataFinder.
-        DataFinder dataFinder = (DataFinder) beanFactory.getBean("dataFinder");
-        dataFinder.setStartDate(profileItem.getStartDate());
-        dataFinder.setEndDate(profileItem.getEndDate());
-        values.put("dataFinder", dataFinder);
-
-        // Configure and add ProfileFinder.
-        ProfileFinder profileFinder = (ProfileFinder) beanFactory.getBean("profileFinder");
-        profileFinder.setProfileItem(profileItem);
-        profileFinder.setDataFinder(dataFinder);
-        values.put("profileFinder", profileFinder);
-
-        // Configure and add ServiceFinder.
-        ServiceFinder serviceFinder = (ServiceFinder) beanFactory.getBean("serviceFinder");
-        serviceFinder.setValues(values);
-        serviceFinder.setProfileFinder(profileFinder);
-        values.put("serviceFinder", serviceFinder);
-    }
-
     /**
      * Collect all relevant algorithm input values for a DataItem + user Choices calculation.
      *
@@ -364,6 +579,59 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
     public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
         this.beanFactory = beanFactory;
     }
+
+    /**
+     * Get the ScriptEngineProvider, which exposes engine utilisation, wait time and compiled script re-use.
+     *
+     * @return the ScriptEngineProvider
+     */
+    public ScriptEngineProvider getEngineProvider() {
+        return algorithmRunner.getEngineProvider();
+    }
+
+    /**
+     * Get the AlgorithmRunner, which exposes translated and fallback evaluation counts.
+     *
+     * @return the AlgorithmRunner
+     */
+    public AlgorithmRunner getAlgorithmRunner() {
+        return algorithmRunner;
+    }
+
+    @Value("${calculation.parallelism}")
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @Value("${calculation.requestParallelism}")
+    public void setRequestParallelism(Integer requestParallelism) {
+        this.requestParallelism = requestParallelism;
+    }
+
+    @Value("${calculation.parallelThreshold}")
+    public void setParallelThreshold(Integer parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @Value("${calculation.algorithmCacheSize}")
+    public void setAlgorithmCacheSize(Integer algorithmCacheSize) {
+        this.algorithmCacheSize = algorithmCacheSize;
+    }
+
+    @Value("${calculation.scriptEngineMode}")
+    public void setScriptEngineMode(String scriptEngineMode) {
+        this.scriptEngineMode = scriptEngineMode;
+    }
+
+    @Value("${calculation.scriptEnginePoolSize}")
+    public void setScriptEnginePoolSize(Integer scriptEnginePoolSize) {
+        this.scriptEnginePoolSize = scriptEnginePoolSize;
+    }
+
+    @Value("${calculation.scriptEnginePoolMaxWait}")
+    public void setScriptEnginePoolMaxWait(Long scriptEnginePoolMaxWait) {
+        this.scriptEnginePoolMaxWait = scriptEnginePoolMaxWait;
+    }
     
     private String getUnit(Choices userValueChoices, String path) {
         
@@ -398,4 +666,82 @@ public class CalculationService implements CO2CalculationService, BeanFactoryAwa
 
         return perUnit;
     }
+
+    /**
+     * Values and finders shared by the calculations in a batch. ItemDefinition and DataItem values are collected once
+     * per ItemDefinition and per DataItem (and effective date range). Finders are created once and re-configured for
+     * each ProfileItem.
+     * <p/>
+     * Not thread-safe.
+     */
+    private class CalculationContext {
+
+        private final Map<String, Map<ItemValueDefinition, InternalValue>> itemDefinitionValues =
+                new HashMap<String, Map<ItemValueDefinition, InternalValue>>();
+        private final Map<String, Map<ItemValueDefinition, InternalValue>> dataItemValues =
+                new HashMap<String, Map<ItemValueDefinition, InternalValue>>();
+
+        private DataFinder dataFinder;
+        private ProfileFinder profileFinder;
+        private ServiceFinder serviceFinder;
+
+        private Map<ItemValueDefinition, InternalValue> getItemDefinitionValues(
+                ItemDefinition itemDefinition, APIVersion apiVersion) {
+            String key = itemDefinition.getUid() + "/" + apiVersion;
+            Map<ItemValueDefinition, InternalValue> values = itemDefinitionValues.get(key);
+            if (values == null) {
+                values = new HashMap<ItemValueDefinition, InternalValue>();
+                itemDefinition.appendInternalValues(values, apiVersion);
+                itemDefinitionValues.put(key, values);
+            }
+            return values;
+        }
+
+        private Map<ItemValueDefinition, InternalValue> getDataItemValues(
+                DataItem dataItem, Date effectiveStartDate, Date effectiveEndDate) {
+            String key = dataItem.getUid() + "/" + getTime(effectiveStartDate) + "/" + getTime(effectiveEndDate);
+            Map<ItemValueDefinition, InternalValue> values = dataItemValues.get(key);
+            if (values == null) {
+                values = new HashMap<ItemValueDefinition, InternalValue>();
+                dataItem.setEffectiveStartDate(effectiveStartDate);
+                dataItem.setEffectiveEndDate(effectiveEndDate);
+                appendInternalValues(dataItem, dataItemService, values);
+                dataItemValues.put(key, values);
+            }
+            return values;
+        }
+
+        /**
+         * Add DataFinder, ProfileFinder and ServiceFinder to the algorithm values.
+         *
+         * @param profileItem to be used in finders
+         * @param values      to place finders into
+         */
+        private void initFinders(ProfileItem profileItem, Map<String, Object> values) {
+            if (dataFinder == null) {
+                dataFinder = (DataFinder) beanFactory.getBean("dataFinder");
+                profileFinder = (ProfileFinder) beanFactory.getBean("profileFinder");
+                serviceFinder = (ServiceFinder) beanFactory.getBean("serviceFinder");
+            }
+
+            // Configure and add DataFinder.
+            dataFinder.setStartDate(profileItem.getStartDate());
+            dataFinder.setEndDate(profileItem.getEndDate());
+            values.put("dataFinder", dataFinder);
+
+            // Configure and add ProfileFinder.
+            profileFinder.setProfileItem(profileItem);
+            profileFinder.setDataFinder(dataFinder);
+            values.put("profileFinder", profileFinder);
+
+            // Configure and add ServiceFinder.
+            serviceFinder.setValues(values);
+            serviceFinder.setProfileFinder(profileFinder);
+            values.put("serviceFinder", serviceFinder);
+        }
+
+        private String getTime(Date date) {
+            return date != null ? String.valueOf(date.getTime()) : "";
+        }
+    }
 }
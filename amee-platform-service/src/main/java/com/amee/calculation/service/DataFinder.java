@@ -19,12 +19,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class provides methods to be used by javascript algorithms for Data Item access.
  * An instance of this class is provided to the algorithm see: {@link CalculationService}
+ * <p/>
+ * Lookups are memoised for the lifetime of the instance, which is a single calculation or a calculation batch. The
+ * memo is keyed by the lookup arguments and the start (and end) date, and is discarded when a DataCategory or DataItem
+ * is invalidated. See {@link DataFinderMemoService}.
  */
 @Component
 @Scope("prototype")
@@ -41,9 +48,18 @@ public class DataFinder {
     @Autowired
     private DrillDownService drillDownService;
 
+    @Autowired
+    private DataFinderMemoService dataFinderMemoService;
+
     private Date startDate = new Date();
     private Date endDate;
 
+    // Results of previous lookups, and the DataFinderMemoService generation they belong to.
+    private final Map<List<Object>, Object> memo = new HashMap<List<Object>, Object>();
+    private long memoGeneration = -1;
+    private long memoHitCount;
+    private long memoMissCount;
+
     public DataFinder() {
         super();
     }
@@ -57,10 +73,24 @@ public class DataFinder {
      * @return a DataSeries for the DataItemValue.
      */
     public DataSeries getDataSeries(String path, String drillDown, String name) {
+        List<Object> key = Arrays.<Object>asList("series", path, drillDown, name, startDate, endDate);
+        DataSeries series;
+        if (hasMemo(key, true)) {
+            series = (DataSeries) memo.get(key);
+        } else {
+            series = loadDataSeries(path, drillDown, name);
+            memo.put(key, series);
+        }
+
+        // DataSeries are mutable so the memo holds a private copy.
+        return series.copy();
+    }
+
+    private DataSeries loadDataSeries(String path, String drillDown, String name) {
         DataSeries series = new DataSeries();
         series.setSeriesStartDate(new DateTime(startDate));
         series.setSeriesEndDate(new DateTime(endDate));
-        DataItem dataItem = getDataItem(path, drillDown);
+        DataItem dataItem = getDataItem(path, drillDown, false);
         if (dataItem != null) {
             // Get all the values
             List<BaseItemValue> itemValues = dataItemService.getAllItemValues(dataItem, name);
@@ -85,9 +115,13 @@ public class DataFinder {
      * @return the current value for the DataItemValue.
      */
     public String getDataItemValue(String path, String drillDown, String name) {
+        List<Object> key = Arrays.<Object>asList("value", path, drillDown, name, startDate);
+        if (hasMemo(key, true)) {
+            return (String) memo.get(key);
+        }
         String value = null;
         BaseItemValue itemValue;
-        DataItem dataItem = getDataItem(path, drillDown);
+        DataItem dataItem = getDataItem(path, drillDown, false);
         if (dataItem != null) {
             itemValue = dataItemService.getItemValue(dataItem, name);
             if (itemValue != null) {
@@ -96,10 +130,31 @@ public class DataFinder {
         }
         log.debug("getDataItemValue() - path: {}, drillDown: {}, name: {}, value: {}",
             new Object[] {path, drillDown, name, value});
+        memo.put(key, value);
         return value;
     }
 
     public DataItem getDataItem(String path, String drillDown) {
+        return getDataItem(path, drillDown, true);
+    }
+
+    /**
+     * Get the DataItem for a drill down selection.
+     *
+     * @param path      the DataCategory path
+     * @param drillDown comma separated drilldown selection
+     * @param count     true if this is the outer lookup and should be counted as a memo hit or miss
+     * @return the DataItem, or null if there is none
+     */
+    private DataItem getDataItem(String path, String drillDown, boolean count) {
+        List<Object> key = Arrays.<Object>asList("item", path, drillDown, startDate);
+        if (hasMemo(key, count)) {
+            DataItem dataItem = (DataItem) memo.get(key);
+            if (dataItem != null) {
+                dataItem.setEffectiveStartDate(startDate);
+            }
+            return dataItem;
+        }
         DataItem dataItem = null;
         Choices choices;
         IDataCategoryReference dataCategory = getDataCategory(path);
@@ -111,6 +166,7 @@ public class DataFinder {
                 dataItem.setEffectiveStartDate(startDate);
             }
         }
+        memo.put(key, dataItem);
         return dataItem;
     }
 
@@ -118,6 +174,42 @@ public class DataFinder {
         return dataService.getDataCategoryByFullPath(path);
     }
 
+    /**
+     * Returns true if the memo holds a result for the key. The memo is first discarded if a DataCategory or DataItem
+     * has been invalidated since it was created. Lookups made while answering another lookup are not counted, so
+     * that each call from an Algorithm counts as one hit or one miss.
+     *
+     * @param key   the lookup key
+     * @param count true if a hit or a miss should be counted
+     * @return true if the memo holds a result, which may be null
+     */
+    private boolean hasMemo(List<Object> key, boolean count) {
+        long generation = dataFinderMemoService.getGeneration();
+        if (generation != memoGeneration) {
+            memo.clear();
+            memoGeneration = generation;
+        }
+        boolean hit = memo.containsKey(key);
+        if (count) {
+            if (hit) {
+                memoHitCount++;
+                dataFinderMemoService.hit();
+            } else {
+                memoMissCount++;
+                dataFinderMemoService.miss();
+            }
+        }
+        return hit;
+    }
+
+    public long getMemoHitCount() {
+        return memoHitCount;
+    }
+
+    public long getMemoMissCount() {
+        return memoMissCount;
+    }
+
     public void setEndDate(Date endDate) {
         this.endDate = endDate;
     }
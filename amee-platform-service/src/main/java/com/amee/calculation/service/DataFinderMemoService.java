@@ -0,0 +1,65 @@
+package com.amee.calculation.service;
+
+import com.amee.domain.ObjectType;
+import com.amee.service.invalidation.InvalidationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Supports the lookup memos held by {@link DataFinder} instances.
+ * <p/>
+ * Each DataFinder memoises its own lookups for the lifetime of the DataFinder, which is a single calculation or a
+ * calculation batch. This service holds a generation number which is advanced when a DataCategory or DataItem is
+ * invalidated. A DataFinder discards its memo when it sees a new generation. This service also collects the hit and
+ * miss counts of all memos.
+ */
+@Service
+public class DataFinderMemoService implements ApplicationListener<InvalidationMessage> {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // Events
+
+    @Override
+    public void onApplicationEvent(InvalidationMessage invalidationMessage) {
+        if ((invalidationMessage.isLocal() || invalidationMessage.isFromOtherInstance()) &&
+                (invalidationMessage.getObjectType().equals(ObjectType.DC) ||
+                        invalidationMessage.getObjectType().equals(ObjectType.DI))) {
+            log.trace("onApplicationEvent() Handling InvalidationMessage.");
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the current generation. Memos created in an earlier generation are stale.
+     *
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public void hit() {
+        hitCount.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public void miss() {
+        missCount.incrementAndGet();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
@@ -0,0 +1,116 @@
+package com.amee.platform.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A Collector which counts the values of DataItem drill down fields over every hit of a search. Values are read from
+ * the per-segment {@link FieldCache} of the indexed <code>path_drill</code> fields, so no stored fields are loaded.
+ * Counts are kept against value ordinals while a segment is searched and only turned into values when the search
+ * moves on to the next segment.
+ * <p/>
+ * A DrillFacetCollector is used for a single search and is not thread safe.
+ */
+public class DrillFacetCollector extends Collector {
+
+    private final List<String> paths;
+
+    // Value counts keyed by drill down path then value.
+    private final Map<String, Map<String, Integer>> facets = new LinkedHashMap<String, Map<String, Integer>>();
+
+    // Field values and ordinal counts for the current segment, by path index. Null where the segment has no values.
+    private final FieldCache.StringIndex[] values;
+    private final int[][] counts;
+
+    /**
+     * @param paths the drill down paths to count values for
+     */
+    public DrillFacetCollector(Collection<String> paths) {
+        this.paths = new ArrayList<String>(paths);
+        for (String path : this.paths) {
+            facets.put(path, new TreeMap<String, Integer>());
+        }
+        values = new FieldCache.StringIndex[this.paths.size()];
+        counts = new int[this.paths.size()][];
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+        // Scores are not needed.
+    }
+
+    @Override
+    public void collect(int doc) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                counts[i][values[i].order[doc]]++;
+            }
+        }
+    }
+
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) throws IOException {
+        addSegmentCounts();
+        for (int i = 0; i < paths.size(); i++) {
+            String field = paths.get(i) + "_drill";
+            // Only load the FieldCache for fields the segment has, as a FieldCache entry is sized by maxDoc.
+            if (hasField(reader, field)) {
+                values[i] = FieldCache.DEFAULT.getStringIndex(reader, field);
+                counts[i] = new int[values[i].lookup.length];
+            }
+        }
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return true;
+    }
+
+    /**
+     * Returns the value counts for each requested path. Values are in natural order and those without hits are
+     * left out.
+     *
+     * @return value counts keyed by drill down path then value
+     */
+    public Map<String, Map<String, Integer>> getFacets() {
+        addSegmentCounts();
+        return facets;
+    }
+
+    /**
+     * Add the ordinal counts for the current segment to the value counts.
+     */
+    private void addSegmentCounts() {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                Map<String, Integer> pathFacets = facets.get(paths.get(i));
+                // Ordinal zero is for Documents without a value.
+                for (int ord = 1; ord < counts[i].length; ord++) {
+                    if (counts[i][ord] > 0) {
+                        String value = values[i].lookup[ord];
+                        Integer count = pathFacets.get(value);
+                        pathFacets.put(value, (count != null) ? count + counts[i][ord] : counts[i][ord]);
+                    }
+                }
+                values[i] = null;
+                counts[i] = null;
+            }
+        }
+    }
+
+    private static boolean hasField(IndexReader reader, String field) throws IOException {
+        TermEnum terms = reader.terms(new Term(field, ""));
+        try {
+            return (terms.term() != null) && terms.term().field().equals(field);
+        } finally {
+            terms.close();
+        }
+    }
+}
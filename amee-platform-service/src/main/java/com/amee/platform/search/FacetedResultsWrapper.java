@@ -0,0 +1,33 @@
+package com.amee.platform.search;
+
+import com.amee.base.domain.ResultsWrapper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ResultsWrapper which also holds counts of DataItem drill down values over every hit of a search, not just those
+ * in the results window.
+ *
+ * @param <E> the type of the results
+ */
+public class FacetedResultsWrapper<E> extends ResultsWrapper<E> {
+
+    private Map<String, Map<String, Integer>> facets;
+
+    public FacetedResultsWrapper(List<E> results, ResultsWrapper<?> resultsWrapper, Map<String, Map<String, Integer>> facets) {
+        super(results,
+                resultsWrapper.isTruncated(),
+                resultsWrapper.getResultStart(),
+                resultsWrapper.getResultLimit(),
+                resultsWrapper.getHits());
+        this.facets = facets;
+    }
+
+    /**
+     * @return value counts keyed by drill down path then value
+     */
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+}
@@ -0,0 +1,21 @@
+package com.amee.platform.search;
+
+import java.beans.PropertyEditorSupport;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class FacetsEditor extends PropertyEditorSupport {
+
+    @Override
+    public void setAsText(String text) {
+        if (text != null) {
+            Set<String> facets = new LinkedHashSet<String>();
+            for (String s : text.split(",")) {
+                if (!s.trim().isEmpty()) {
+                    facets.add(s.trim());
+                }
+            }
+            setValue(facets);
+        }
+    }
+}
@@ -9,6 +9,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -46,7 +48,11 @@ public class LuceneDrillDownService extends AbstractDrillDownService {
                 query.add(new TermQuery(new Term(choice.getName(), choice.getValue().toLowerCase())), BooleanClause.Occur.MUST);
             }
         }
-        ResultsWrapper<Document> results = luceneService.doSearch(query);
+        // Only load the fields needed for the choices.
+        FieldSelector fieldSelector = drillDownChoices.isEmpty() ?
+                new MapFieldSelector("entityUid") :
+                new MapFieldSelector("entityUid", drillDownChoices.get(0).getName() + "_drill");
+        ResultsWrapper<Document> results = luceneService.doSearch(query, LuceneServiceImpl.MAX_NUM_HITS, fieldSelector);
 
         // Create choices array.
         List<Choice> choices = new ArrayList<Choice>();
@@ -2,11 +2,14 @@ package com.amee.platform.search;
 
 import com.amee.base.domain.ResultsWrapper;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 
 import java.util.Collection;
+import java.util.concurrent.Future;
 
 public interface LuceneService {
 
@@ -16,10 +19,18 @@ public interface LuceneService {
 
     public ResultsWrapper<Document> doSearch(Query query, final int resultStart, final int resultLimit, final int maxNumHits, Sort sortField);
 
+    public ResultsWrapper<Document> doSearch(Query query, int resultStart, int resultLimit, int maxNumHits, Sort sortField, FieldSelector fieldSelector);
+
+    public ResultsWrapper<Document> doSearch(Query query, int resultStart, int resultLimit, int maxNumHits, Sort sortField, FieldSelector fieldSelector, Collector hitCollector);
+
     public ResultsWrapper<Document> doSearch(Query query);
 
     public ResultsWrapper<Document> doSearch(Query query, int maxNumHits);
 
+    public ResultsWrapper<Document> doSearch(Query query, int maxNumHits, FieldSelector fieldSelector);
+
+    public int getHitCount(Query query);
+
     public void deleteDocuments(Term... terms);
 
     public void deleteDocuments(Query q);
@@ -28,6 +39,8 @@ public interface LuceneService {
 
     public void addDocuments(Collection<Document> documents);
 
+    public Future<Integer> queueDocuments(Collection<Document> documents);
+
     public void closeEverything();
 
     public void prepareIndex();
@@ -38,8 +51,20 @@ public interface LuceneService {
 
     public void flush();
 
+    public void commit();
+
     public void takeSnapshot();
 
+    public void restoreSnapshot(String snapshotName);
+
+    public void startRebuild();
+
+    public boolean finishRebuild();
+
+    public boolean isRebuilding();
+
+    public void restorePreviousIndex();
+
     public boolean getClearIndex();
 
     public void setClearIndex(Boolean clearIndex);
@@ -1,27 +1,51 @@
 package com.amee.platform.search;
 
 import com.amee.base.domain.ResultsWrapper;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.comparator.LastModifiedFileComparator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexDeletionPolicy;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.KeepOnlyLastCommitDeletionPolicy;
+import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockReleaseFailedException;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.SimpleFSDirectory;
 import org.apache.lucene.util.Version;
+import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -29,6 +53,20 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 /**
  * LuceneIndexWrapper wraps a Lucene file system index and provides a simplified abstraction of
  * the Lucene API.
+ * <p/>
+ * On the master index node Searchers are opened from the IndexWriter (near-real-time), so index writes
+ * become visible to searches when the Searcher is next refreshed, without waiting for a commit. Commits
+ * make the writes durable and visible to other processes, such as the SnapShooter, and are made once
+ * enough changes are pending or enough time has passed since the last commit.
+ * <p/>
+ * Batches of Documents are added to the index by a single writer thread, fed through a bounded queue.
+ * Threads building Documents wait when the queue is full, so a rebuild cannot build Documents faster than
+ * they can be written. Whilst batches are waiting, commits are only made once commitInterval has passed.
+ * <p/>
+ * A complete new index can be built beside the live index with startRebuild and finishRebuild. Whilst it is
+ * built all writes go to the new index and searches continue against the live index. Once the new index passes
+ * a Document count check it replaces the live index and Searchers are reopened against it. The replaced index
+ * is kept beside the live index for restorePreviousIndex.
  */
 public class LuceneServiceImpl implements LuceneService {
 
@@ -41,9 +79,9 @@ public class LuceneServiceImpl implements LuceneService {
     public final static int MAX_NUM_HITS = 100000;
 
     /**
-     * Path to the SnapShooter script.
+     * Loads only the stored fields needed to find the entities of search results.
      */
-    private String snapShooterPath = "";
+    public final static FieldSelector ENTITY_FIELDS = new MapFieldSelector("entityType", "entityId", "entityUid");
 
     /**
      * Path to the dir containing lucene index and snapshots. Usually this is: lucene
@@ -56,16 +94,17 @@ public class LuceneServiceImpl implements LuceneService {
     private String lucenePath = "";
 
     /**
-     * The primary Lucene Searcher.
-     * Must be declared volatile for double-check locking.
+     * The Directory implementation used for the index, one of simple, nio or mmap.
+     * See getDirectory.
      */
-    private volatile IndexSearcher searcher;
+    private String directoryType = "simple";
 
     /**
-     * A Lucene Searcher used recently. A reference is kept to this when the primary Searcher
-     * is re-opened.
+     * Manages the shared Lucene Searcher. Searchers are acquired for each search and released afterwards,
+     * so a refreshed Searcher can replace the current one while searches are still using it.
+     * Must be declared volatile for double-check locking.
      */
-    private IndexSearcher lastSearcher;
+    private volatile SearcherManager searcherManager;
 
     /**
      * The shared Lucene Analyzer.
@@ -101,15 +140,93 @@ public class LuceneServiceImpl implements LuceneService {
     private Boolean snapshotEnabled = false;
 
     /**
-     * The time of the most recent index write.
+     * The number of snapshots to keep. Older snapshots are deleted after a snapshot is taken. Zero keeps all.
+     */
+    private int snapshotRetention = 3;
+
+    /**
+     * Holds the files of the commit being snapshotted until the snapshot is done. Set with the IndexWriter.
+     */
+    private volatile SnapshotDeletionPolicy snapshotDeletionPolicy;
+
+    /**
+     * The time of the most recent index commit.
+     */
+    private volatile long lastWriteTime = 0L;
+
+    /**
+     * The time the Searcher was last checked for refreshing.
+     */
+    private volatile long lastRefreshTime = 0L;
+
+    /**
+     * The time of the most recent commit attempt.
      */
-    private long lastWriteTime = 0L;
+    private volatile long lastCommitTime = System.currentTimeMillis();
 
     /**
-     * Should Searcher be checked after every commit? Useful for development & testing.
+     * The number of index changes made since the last commit.
+     */
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    /**
+     * The most milliseconds a search may use a Searcher that was checked for refreshing earlier.
+     */
+    private long refreshInterval = 1000L;
+
+    /**
+     * Pending changes are committed when this many milliseconds have passed since the last commit.
+     */
+    private long commitInterval = 60000L;
+
+    /**
+     * Pending changes are committed when there are this many.
+     */
+    private int commitMaxChanges = 1000;
+
+    /**
+     * Should Searcher be refreshed after every write? Useful for development & testing.
      */
     private boolean checkSearcherOnCommit = false;
 
+    /**
+     * Megabytes of added Documents the IndexWriter buffers before flushing them to a new segment.
+     */
+    private double ramBufferSizeMB = IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB;
+
+    /**
+     * The number of Document batches that may wait for the writer thread.
+     */
+    private int writeQueueSize = 16;
+
+    /**
+     * Batches of Documents waiting for the writer thread, created with the thread on first use.
+     * Must be declared volatile for double-check locking.
+     */
+    private volatile BlockingQueue<WriteBatch> writeQueue;
+
+    /**
+     * The writer thread taking batches from writeQueue.
+     */
+    private Thread writerThread;
+
+    /**
+     * A rebuilt index must have at least this fraction of the Documents in the live index to replace it.
+     */
+    private double rebuildMinDocRatio = 0.9;
+
+    /**
+     * The Directory and IndexWriter of the index being built by startRebuild, null when there is no rebuild.
+     * Whilst set all writes go to this IndexWriter.
+     */
+    private volatile Directory rebuildDirectory;
+    private volatile IndexWriter rebuildWriter;
+
+    /**
+     * Set whilst the live index is being replaced, so Searchers are not refreshed from the closed IndexWriter.
+     */
+    private volatile boolean swapping = false;
+
     /**
      * Lock objects for the index.
      *
@@ -119,7 +236,8 @@ public class LuceneServiceImpl implements LuceneService {
      *
      * As we are not always accessing the index via the single shared IndexWriter instance we must use external locking.
      * Those methods that use the shared IndexWriter should obtain a read lock and those methods that require
-     * exclusive access to the index should obtain a write lock.
+     * exclusive access to the index should obtain a write lock. Searches do not lock, they hold a reference to the
+     * Searcher they acquired instead.
      */
     private ReadWriteLock rwLock = new ReentrantReadWriteLock(true);
     private Lock rLock = rwLock.readLock();
@@ -161,8 +279,49 @@ public class LuceneServiceImpl implements LuceneService {
      */
     @Override
     public ResultsWrapper<Document> doSearch(Query query, final int resultStart, final int resultLimit, final int maxNumHits, Sort sortField) {
+        return doSearch(query, resultStart, resultLimit, maxNumHits, sortField, null);
+    }
 
-        rLock.lock();
+    /**
+     * Conduct a search in the Lucene index based on the supplied Query, constrained by resultStart and resultLimit.
+     * <p/>
+     * At most this will allow up to MAX_NUM_HITS search hits, with a return window based
+     * on resultStart and resultLimit. Only the Documents within the window are loaded.
+     *
+     * @param query         to search with
+     * @param resultStart   0 based index of first result
+     * @param resultLimit   results limit
+     * @param maxNumHits    maximum number of hits to return
+     * @param sortField     Sort object to sort by. This field must be indexed but not tokenized.
+     * @param fieldSelector the stored fields to load, or null for all fields
+     * @return a List of Lucene Documents
+     */
+    @Override
+    public ResultsWrapper<Document> doSearch(Query query, final int resultStart, final int resultLimit, final int maxNumHits, Sort sortField, FieldSelector fieldSelector) {
+        return doSearch(query, resultStart, resultLimit, maxNumHits, sortField, fieldSelector, null);
+    }
+
+    /**
+     * Conduct a search in the Lucene index based on the supplied Query, constrained by resultStart and resultLimit.
+     * <p/>
+     * At most this will allow up to MAX_NUM_HITS search hits, with a return window based
+     * on resultStart and resultLimit. Only the Documents within the window are loaded. The hitCollector is given
+     * every hit in the same pass, whatever the window, so it can gather things like facet counts.
+     *
+     * @param query         to search with
+     * @param resultStart   0 based index of first result
+     * @param resultLimit   results limit
+     * @param maxNumHits    maximum number of hits to return
+     * @param sortField     Sort object to sort by. This field must be indexed but not tokenized.
+     * @param fieldSelector the stored fields to load, or null for all fields
+     * @param hitCollector  a Collector to also give every hit to, or null
+     * @return a List of Lucene Documents
+     */
+    @Override
+    public ResultsWrapper<Document> doSearch(Query query, final int resultStart, final int resultLimit, final int maxNumHits, Sort sortField, FieldSelector fieldSelector, Collector hitCollector) {
+
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher searcher = acquireSearcher(manager);
 
         try {
 
@@ -170,18 +329,20 @@ public class LuceneServiceImpl implements LuceneService {
             log.info("doSearch() query='" + query.toString() + "', resultStart=" + resultStart + ", resultLimit=" + resultLimit);
             long start = System.currentTimeMillis();
 
-            // Cannot go above maxNumHits.
+            // Cannot go above maxNumHits or the number of Documents in the index.
             int numHits = resultStart + resultLimit;
             if (numHits > maxNumHits) {
                 numHits = maxNumHits;
             }
+            if (numHits > searcher.maxDoc()) {
+                numHits = searcher.maxDoc();
+            }
 
             // Get Collector limited to numHits + 1, so we can detect truncations.
             TopFieldCollector collector = TopFieldCollector.create(sortField, numHits + 1, false, false, false, false);
 
-            // Get the IndexSearcher and do the search.
-            Searcher searcher = getIndexSearcher();
-            searcher.search(query, collector);
+            // Do the search.
+            searcher.search(query, (hitCollector != null) ? MultiCollector.wrap(collector, hitCollector) : collector);
 
             // Get hits within our start and limit range.
             ScoreDoc[] hits;
@@ -190,7 +351,7 @@ public class LuceneServiceImpl implements LuceneService {
             // Assemble List of Documents.
             List<Document> documents = new ArrayList<Document>();
             for (ScoreDoc hit : hits) {
-                documents.add(searcher.doc(hit.doc));
+                documents.add(searcher.doc(hit.doc, fieldSelector));
             }
 
             // Trim resultLimit if we're close to maxNumHits.
@@ -221,7 +382,7 @@ public class LuceneServiceImpl implements LuceneService {
         } catch (IOException e) {
             throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
         } finally {
-            rLock.unlock();
+            releaseSearcher(manager, searcher);
         }
     }
 
@@ -248,21 +409,38 @@ public class LuceneServiceImpl implements LuceneService {
      */
     @Override
     public ResultsWrapper<Document> doSearch(Query query, final int maxNumHits) {
-        rLock.lock();
+        return doSearch(query, maxNumHits, null);
+    }
+
+    /**
+     * Conduct a search in the Lucene index based on the supplied Query (unconstrained).
+     * <p/>
+     * At most this will allow up to maxNumHits search hits.
+     *
+     * @param query         to search with
+     * @param maxNumHits    maximum number of hits to return
+     * @param fieldSelector the stored fields to load, or null for all fields
+     * @return a List of Lucene Documents
+     */
+    @Override
+    public ResultsWrapper<Document> doSearch(Query query, final int maxNumHits, FieldSelector fieldSelector) {
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher searcher = acquireSearcher(manager);
         try {
             log.info("doSearch() query='" + query.toString() + "'");
             long start = System.currentTimeMillis();
-            // Get Collector limited to numHits + 1, so we can detect truncations.
-            TopScoreDocCollector collector = TopScoreDocCollector.create(maxNumHits + 1, true);
-            // Get the IndexSearcher and do the search.
-            Searcher searcher = getIndexSearcher();
+            // Get Collector limited to numHits + 1, so we can detect truncations. There can be no more hits
+            // than Documents in the index.
+            int numHits = maxNumHits > searcher.maxDoc() ? searcher.maxDoc() : maxNumHits;
+            TopScoreDocCollector collector = TopScoreDocCollector.create(numHits + 1, true);
+            // Do the search.
             searcher.search(query, collector);
             // Get all hits.
             ScoreDoc[] hits = collector.topDocs().scoreDocs;
             // Assemble List of Documents.
             List<Document> documents = new ArrayList<Document>();
             for (ScoreDoc hit : hits) {
-                documents.add(searcher.doc(hit.doc));
+                documents.add(searcher.doc(hit.doc, fieldSelector));
             }
             // Create ResultsWrapper containing all Documents.
             ResultsWrapper<Document> results = new ResultsWrapper<Document>(
@@ -275,7 +453,30 @@ public class LuceneServiceImpl implements LuceneService {
         } catch (IOException e) {
             throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
         } finally {
-            rLock.unlock();
+            releaseSearcher(manager, searcher);
+        }
+    }
+
+    /**
+     * Count the Documents matching the supplied Query. No Documents are loaded.
+     *
+     * @param query to search with
+     * @return the number of matching Documents
+     */
+    @Override
+    public int getHitCount(Query query) {
+        SearcherManager manager = getSearcherManager();
+        IndexSearcher searcher = acquireSearcher(manager);
+        try {
+            TotalHitCountCollector collector = new TotalHitCountCollector();
+            searcher.search(query, collector);
+            return collector.getTotalHits();
+        } catch (ClosedByInterruptException e) {
+            throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        } finally {
+            releaseSearcher(manager, searcher);
         }
     }
 
@@ -284,41 +485,198 @@ public class LuceneServiceImpl implements LuceneService {
         if (!masterIndex || (document == null)) return;
         rLock.lock();
         try {
-            getIndexWriter().addDocument(document);
-            getIndexWriter().commit();
+            getWriter().addDocument(document);
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
         } finally {
-            lastWriteTime = System.currentTimeMillis();
             rLock.unlock();
         }
-        if (checkSearcherOnCommit) {
-            checkSearcher();
-        }
+        afterWrite(1);
     }
 
+    /**
+     * Add the Documents to the index through the writer thread, waiting until they have been added.
+     *
+     * @param documents to add
+     */
     @Override
     public void addDocuments(Collection<Document> documents) {
         if (!masterIndex || (documents == null) || documents.isEmpty()) return;
+        try {
+            queueDocuments(documents).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LuceneServiceException("Caught InterruptedException: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LuceneServiceException) {
+                throw new LuceneServiceException(e.getCause().getMessage(), e.getCause());
+            } else {
+                throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Queue the Documents to be added to the index by the writer thread. Waits only whilst the write queue
+     * is full.
+     *
+     * @param documents to add
+     * @return a Future for the number of Documents added, done once they have been added to the IndexWriter
+     */
+    @Override
+    public Future<Integer> queueDocuments(Collection<Document> documents) {
+        WriteBatch batch = new WriteBatch(documents);
+        if (!masterIndex || (documents == null) || documents.isEmpty()) {
+            batch.written(0);
+            return batch;
+        }
+        BlockingQueue<WriteBatch> queue = getWriteQueue();
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LuceneServiceException("Caught InterruptedException: " + e.getMessage(), e);
+        }
+        if ((queue != writeQueue) && queue.remove(batch)) {
+            // The writer thread was stopped before it took the batch.
+            batch.failed(new LuceneServiceException("The index was closed before the Documents were added."));
+        }
+        return batch;
+    }
+
+    /**
+     * Get the write queue, starting the writer thread if it does not yet exist.
+     *
+     * @return the write queue
+     */
+    private BlockingQueue<WriteBatch> getWriteQueue() {
+
+        // Note the usage of the local variable result which seems unnecessary.
+        // For some versions of the Java VM, it will make the code 25% faster and for others, it won't hurt.
+        // Joshua Bloch "Effective Java, Second Edition", p. 283
+        BlockingQueue<WriteBatch> result = writeQueue;
+        if (result == null) {
+            synchronized (this) {
+                result = writeQueue;
+                if (result == null) {
+                    final BlockingQueue<WriteBatch> queue = new ArrayBlockingQueue<WriteBatch>(writeQueueSize);
+                    Thread writer = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            writeBatches(queue);
+                        }
+                    }, "LuceneServiceImpl-writer");
+                    writer.setDaemon(true);
+                    // The writer thread stops once its queue is no longer the write queue, so set it first.
+                    writerThread = writer;
+                    writeQueue = result = queue;
+                    writer.start();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stop the writer thread, waiting for it to finish the batches it has taken. Batches still in the write
+     * queue are failed. A later write starts a new writer thread.
+     */
+    private void stopWriter() {
+        Thread writer;
+        BlockingQueue<WriteBatch> queue;
+        synchronized (this) {
+            writer = writerThread;
+            queue = writeQueue;
+            writerThread = null;
+            writeQueue = null;
+        }
+        if (writer == null) return;
+        // Wake the writer thread if it is waiting so it sees that its queue has been retired.
+        queue.offer(new WriteBatch(Collections.<Document>emptyList()));
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<WriteBatch> batches = new ArrayList<WriteBatch>();
+        queue.drainTo(batches);
+        for (WriteBatch batch : batches) {
+            batch.failed(new LuceneServiceException("The index was closed before the Documents were added."));
+        }
+    }
+
+    /**
+     * Loops until the queue is retired by stopWriter, or the thread is interrupted, adding queued batches of
+     * Documents to the index. All batches waiting when the writer is ready are added and then committed
+     * together. A batch that cannot be added fails on its own, though any of its Documents added before the
+     * failure stay in the index.
+     *
+     * @param queue the write queue
+     */
+    private void writeBatches(BlockingQueue<WriteBatch> queue) {
+        List<WriteBatch> batches = new ArrayList<WriteBatch>();
+        List<WriteBatch> written = new ArrayList<WriteBatch>();
+        while (queue == writeQueue) {
+            try {
+                batches.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batches);
+            int count = 0;
+            for (WriteBatch batch : batches) {
+                try {
+                    writeBatch(batch);
+                    written.add(batch);
+                    count += batch.documents.size();
+                } catch (RuntimeException e) {
+                    batch.failed(e);
+                } catch (Error e) {
+                    // Fail the batch rather than leave its caller waiting.
+                    log.error("writeBatches() Caught Error: " + e.getMessage(), e);
+                    batch.failed(new RuntimeException("Caught Error: " + e.getMessage(), e));
+                }
+            }
+            // The written batches share the commit, so they all fail if it does.
+            RuntimeException failure = null;
+            try {
+                afterWrite(count, !queue.isEmpty());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            for (WriteBatch batch : written) {
+                if (failure == null) {
+                    batch.written(batch.documents.size());
+                } else {
+                    batch.failed(failure);
+                }
+            }
+            batches.clear();
+            written.clear();
+        }
+    }
+
+    /**
+     * Add the Documents of a batch to the index.
+     *
+     * @param batch to add
+     */
+    private void writeBatch(WriteBatch batch) {
         rLock.lock();
         try {
-            for (Document document : documents) {
-                getIndexWriter().addDocument(document);
+            IndexWriter writer = getWriter();
+            for (Document document : batch.documents) {
+                writer.addDocument(document);
             }
-            getIndexWriter().commit();
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
         } finally {
-            lastWriteTime = System.currentTimeMillis();
             rLock.unlock();
         }
-        if (checkSearcherOnCommit) {
-            checkSearcher();
-        }
     }
 
     /**
@@ -338,20 +696,17 @@ public class LuceneServiceImpl implements LuceneService {
         }
         rLock.lock();
         try {
-            getIndexWriter().deleteDocuments(q);
-            getIndexWriter().addDocument(document);
-            getIndexWriter().commit();
+            IndexWriter writer = getWriter();
+            writer.deleteDocuments(q);
+            writer.addDocument(document);
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
         } finally {
-            lastWriteTime = System.currentTimeMillis();
             rLock.unlock();
         }
-        if (checkSearcherOnCommit) {
-            checkSearcher();
-        }
+        afterWrite(1);
     }
 
     @Override
@@ -371,19 +726,15 @@ public class LuceneServiceImpl implements LuceneService {
         if (!masterIndex) return;
         rLock.lock();
         try {
-            getIndexWriter().deleteDocuments(q);
-            getIndexWriter().commit();
+            getWriter().deleteDocuments(q);
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
         } finally {
-            lastWriteTime = System.currentTimeMillis();
             rLock.unlock();
         }
-        if (checkSearcherOnCommit) {
-            checkSearcher();
-        }
+        afterWrite(1);
     }
 
     /**
@@ -392,6 +743,7 @@ public class LuceneServiceImpl implements LuceneService {
      */
     @Override
     public void prepareIndex() {
+        recoverIndex();
         unlockIndex();
         if (clearIndex) {
             clearIndex();
@@ -406,11 +758,11 @@ public class LuceneServiceImpl implements LuceneService {
         wLock.lock();
         try {
             // Ensure everything is closed.
-            closeEverything();
+            closeIndex();
             // Ensure index is not locked (perhaps from a crash).
             unlockIndex();
             // Create a new index.
-            IndexWriter indexWriter = getNewIndexWriter(true);
+            IndexWriter indexWriter = getNewIndexWriter(true, new KeepOnlyLastCommitDeletionPolicy());
             // Close the index.
             indexWriter.commit();
             indexWriter.close();
@@ -464,15 +816,25 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Ensure all Lucene objects are closed.
+     * Ensure all Lucene objects are closed and the writer thread is stopped.
      */
     @Override
     public void closeEverything() {
+        // The writer thread is stopped first as it needs the read lock to finish its batches.
+        stopWriter();
+        closeIndex();
+    }
+
+    /**
+     * Close all Lucene objects. They are opened again when next used.
+     */
+    private void closeIndex() {
         wLock.lock();
         try {
-            closeLastSearcher();
-            closeSearcher();
+            // The IndexWriter is closed first as it may use the Searcher while it is flushed.
+            abandonRebuild();
             closeIndexWriter();
+            closeSearcherManager();
             unlockIndex();
             closeDirectory();
         } finally {
@@ -481,22 +843,28 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Get the Searcher.
+     * Get the SearcherManager. On the master index node Searchers are opened from the IndexWriter,
+     * otherwise they are opened from the Directory.
      *
-     * @return the Searcher
+     * @return the SearcherManager
      */
-    private IndexSearcher getIndexSearcher() {
+    private SearcherManager getSearcherManager() {
 
         // Note the usage of the local variable result which seems unnecessary.
         // For some versions of the Java VM, it will make the code 25% faster and for others, it won't hurt.
         // Joshua Bloch "Effective Java, Second Edition", p. 283
-        IndexSearcher result = searcher;
+        SearcherManager result = searcherManager;
         if (result == null) {
             synchronized (this) {
-                result = searcher;
+                result = searcherManager;
                 if (result == null) {
                     try {
-                        searcher = result = new IndexSearcher(getDirectory(), true);
+                        if (masterIndex) {
+                            searcherManager = result = new SearcherManager(getIndexWriter(), true, null);
+                        } else {
+                            searcherManager = result = new SearcherManager(getDirectory(), null);
+                        }
+                        lastRefreshTime = System.currentTimeMillis();
                     } catch (ClosedByInterruptException e) {
                         throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
                     } catch (IOException e) {
@@ -509,23 +877,35 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Check the Searcher to see if it needs re-opening.
-     * <p/>
-     * This method is called via cron.
+     * Acquire a Searcher for a search, first refreshing it if it has not been checked within the refresh interval.
+     * The Searcher must be released with releaseSearcher.
+     *
+     * @param manager the SearcherManager to acquire from
+     * @return the Searcher
      */
-    @Override
-    public void checkSearcher() {
+    private IndexSearcher acquireSearcher(SearcherManager manager) {
         try {
-            // Close the last Searcher.
-            closeLastSearcher();
-            // Should the current Searcher be re-opened?
-            if ((searcher != null) && !searcher.getIndexReader().isCurrent()) {
-                // Store the current Searcher so it can be closed later.
-                // This allows other threads using the Searcher to finish their work.
-                lastSearcher = searcher;
-                // Set the Searcher to null means a new instance will be created later in getSearcher().
-                searcher = null;
+            if ((System.currentTimeMillis() - lastRefreshTime) >= refreshInterval) {
+                refreshSearcher(manager);
             }
+            return manager.acquire();
+        } catch (AlreadyClosedException e) {
+            // The live index was replaced after the SearcherManager was got. Releasing a Searcher only decrements
+            // its reference count, so one from the new SearcherManager can still be released with the old one.
+            return getSearcherManager().acquire();
+        }
+    }
+
+    /**
+     * Release a Searcher acquired with acquireSearcher. The Searcher is closed once it has been released by
+     * all searches and has been replaced.
+     *
+     * @param manager  the SearcherManager the Searcher was acquired from
+     * @param searcher the Searcher
+     */
+    private void releaseSearcher(SearcherManager manager, IndexSearcher searcher) {
+        try {
+            manager.release(searcher);
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -534,13 +914,18 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Close the Searcher.
+     * Replace the Searcher if the index has changed. Searches continue with the current Searcher while
+     * this happens and if another thread is already refreshing this returns straight away.
+     *
+     * @param manager the SearcherManager to refresh
      */
-    private void closeSearcher() {
-        if (searcher == null) return;
+    private void refreshSearcher(SearcherManager manager) {
+        if (swapping) return;
+        lastRefreshTime = System.currentTimeMillis();
         try {
-            searcher.close();
-            searcher = null;
+            if (manager.maybeRefresh()) {
+                log.debug("refreshSearcher() Refreshed.");
+            }
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -549,13 +934,113 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Close the last Searcher.
+     * Check the Searcher to see if it needs refreshing and commit pending changes if a commit is due.
+     * Searches refresh the Searcher too, this ensures pending changes are committed while there are no writes.
+     * <p/>
+     * This method is called via cron.
+     */
+    @Override
+    public void checkSearcher() {
+        SearcherManager manager = searcherManager;
+        if (manager != null) {
+            refreshSearcher(manager);
+        }
+        if (isCommitDue()) {
+            commit(false);
+        }
+    }
+
+    /**
+     * Record index changes and commit them if a commit is due.
+     *
+     * @param changes the number of documents added, updated or deleted
+     */
+    private void afterWrite(int changes) {
+        afterWrite(changes, false);
+    }
+
+    /**
+     * Record index changes and commit them if a commit is due. Whilst more writes are waiting only
+     * commitInterval is considered, so a stream of writes is not slowed by frequent commits.
+     *
+     * @param changes the number of documents added, updated or deleted
+     * @param busy    are more writes waiting?
+     */
+    private void afterWrite(int changes, boolean busy) {
+        pendingChanges.addAndGet(changes);
+        if (busy ? isCommitIntervalDue() : isCommitDue()) {
+            commit(false);
+        }
+        if (checkSearcherOnCommit) {
+            refreshSearcher(getSearcherManager());
+        }
+    }
+
+    /**
+     * @return true if there are pending changes and either there are commitMaxChanges of them or
+     *         commitInterval has passed since the last commit
+     */
+    private boolean isCommitDue() {
+        return (pendingChanges.get() >= commitMaxChanges) || isCommitIntervalDue();
+    }
+
+    /**
+     * @return true if there are pending changes and commitInterval has passed since the last commit
+     */
+    private boolean isCommitIntervalDue() {
+        return (pendingChanges.get() > 0) && ((System.currentTimeMillis() - lastCommitTime) >= commitInterval);
+    }
+
+    /**
+     * Commit pending changes now, rather than after commitMaxChanges or commitInterval, so that changes reported
+     * as handled survive a crash. During a rebuild the changes are committed to the new index.
+     */
+    @Override
+    public void commit() {
+        commit(false);
+    }
+
+    /**
+     * Commit pending changes to the index.
+     *
+     * @param always commit even if there are no pending changes
+     */
+    private void commit(boolean always) {
+        if (!masterIndex) return;
+        rLock.lock();
+        try {
+            int pending = pendingChanges.getAndSet(0);
+            lastCommitTime = System.currentTimeMillis();
+            if ((pending > 0) || always) {
+                try {
+                    IndexWriter writer = getWriter();
+                    writer.commit();
+                    // Only changes to the live index make a snapshot due.
+                    if (writer != rebuildWriter) {
+                        lastWriteTime = System.currentTimeMillis();
+                    }
+                    log.debug("commit() Committed " + pending + " changes.");
+                } catch (ClosedByInterruptException e) {
+                    pendingChanges.addAndGet(pending);
+                    throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+                } catch (IOException e) {
+                    pendingChanges.addAndGet(pending);
+                    throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+                }
+            }
+        } finally {
+            rLock.unlock();
+        }
+    }
+
+    /**
+     * Close the SearcherManager. Searchers still in use are closed when they are released.
      */
-    private void closeLastSearcher() {
-        if (lastSearcher == null) return;
+    private synchronized void closeSearcherManager() {
+        if (searcherManager == null) return;
         try {
-            lastSearcher.close();
-            lastSearcher = null;
+            searcherManager.close();
+            searcherManager = null;
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -588,9 +1073,16 @@ public class LuceneServiceImpl implements LuceneService {
     /**
      * Gets the Directory. Will call createDirectory if it does not yet exist.
      *
-     * Creates a {@link SimpleFSDirectory} rather than using FSDirectory.open because
-     * {@link com.amee.base.resource.LocalResourceHandler#handleWithTimeout} can cause Exceptions with {@link org.apache.lucene.store.NIOFSDirectory}.
-     * 
+     * The Directory implementation is chosen with directoryType rather than using FSDirectory.open:
+     * <ul>
+     * <li>simple: {@link SimpleFSDirectory}, the default. Concurrent reads of a file are serialised.</li>
+     * <li>nio: {@link NIOFSDirectory}. Concurrent reads do not block each other, but
+     * {@link com.amee.base.resource.LocalResourceHandler#handleWithTimeout} can cause Exceptions as an interrupted
+     * read closes the shared file channel.</li>
+     * <li>mmap: {@link MMapDirectory}. Files are memory mapped and concurrent reads do not block each other. Needs
+     * address space for the whole index, so is best used on 64 bit JVMs.</li>
+     * </ul>
+     *
      * @return the Directory
      */
     private Directory getDirectory() {
@@ -604,7 +1096,7 @@ public class LuceneServiceImpl implements LuceneService {
                 result = directory;
                 if (result == null) {
                     try {
-                        directory = result = new SimpleFSDirectory(new File(lucenePath));
+                        directory = result = getNewDirectory(directoryType, new File(lucenePath));
                     } catch (ClosedByInterruptException e) {
                         throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
                     } catch (IOException e) {
@@ -616,6 +1108,26 @@ public class LuceneServiceImpl implements LuceneService {
         return result;
     }
 
+    /**
+     * Create a Directory of the given type.
+     *
+     * @param directoryType one of simple, nio or mmap
+     * @param path          the index directory
+     * @return the Directory
+     * @throws IOException if the Directory cannot be created
+     */
+    static Directory getNewDirectory(String directoryType, File path) throws IOException {
+        if (directoryType.equalsIgnoreCase("simple")) {
+            return new SimpleFSDirectory(path);
+        } else if (directoryType.equalsIgnoreCase("nio")) {
+            return new NIOFSDirectory(path);
+        } else if (directoryType.equalsIgnoreCase("mmap")) {
+            return new MMapDirectory(path);
+        } else {
+            throw new IllegalArgumentException("Unknown Directory type: " + directoryType);
+        }
+    }
+
     /**
      * Closes the Lucene directory.
      */
@@ -649,7 +1161,9 @@ public class LuceneServiceImpl implements LuceneService {
             synchronized (this) {
                 result = indexWriter;
                 if (result == null) {
-                    indexWriter = result = getNewIndexWriter(false);
+                    SnapshotDeletionPolicy policy = new SnapshotDeletionPolicy(new KeepOnlyLastCommitDeletionPolicy());
+                    indexWriter = result = getNewIndexWriter(false, policy);
+                    snapshotDeletionPolicy = policy;
                 }
             }
         }
@@ -661,16 +1175,13 @@ public class LuceneServiceImpl implements LuceneService {
      * <p/>
      * Later, closeIndexWriter must be called at least once.
      *
-     * @param create a new index if true
+     * @param create         a new index if true
+     * @param deletionPolicy decides when old commits are deleted
      * @return IndexWriter
      */
-    private IndexWriter getNewIndexWriter(boolean create) {
+    private IndexWriter getNewIndexWriter(boolean create, IndexDeletionPolicy deletionPolicy) {
         try {
-            return new IndexWriter(
-                    getDirectory(),
-                    getAnalyzer(),
-                    create,
-                    IndexWriter.MaxFieldLength.UNLIMITED);
+            return new IndexWriter(getDirectory(), getIndexWriterConfig(create, deletionPolicy));
         } catch (ClosedByInterruptException e) {
             throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
         } catch (IOException e) {
@@ -679,7 +1190,32 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Flush the IndexWriter. Will optimise and commit the index if appropriate.
+     * Create the configuration for a new IndexWriter.
+     *
+     * @param create         a new index if true
+     * @param deletionPolicy decides when old commits are deleted
+     * @return the IndexWriterConfig
+     */
+    private IndexWriterConfig getIndexWriterConfig(boolean create, IndexDeletionPolicy deletionPolicy) {
+        return new IndexWriterConfig(Version.LUCENE_31, getAnalyzer())
+                .setOpenMode(create ? IndexWriterConfig.OpenMode.CREATE : IndexWriterConfig.OpenMode.APPEND)
+                .setIndexDeletionPolicy(deletionPolicy)
+                .setRAMBufferSizeMB(ramBufferSizeMB);
+    }
+
+    /**
+     * Gets the IndexWriter that writes go to. This is the rebuild IndexWriter whilst an index is being rebuilt,
+     * otherwise the live IndexWriter. Callers must hold a read lock so a rebuild does not start or finish meanwhile.
+     *
+     * @return the IndexWriter
+     */
+    private IndexWriter getWriter() {
+        IndexWriter result = rebuildWriter;
+        return (result != null) ? result : getIndexWriter();
+    }
+
+    /**
+     * Flush the IndexWriter. Will optimise the index if appropriate and commit pending changes.
      */
     @Override
     public void flush() {
@@ -687,11 +1223,21 @@ public class LuceneServiceImpl implements LuceneService {
         rLock.lock();
         try {
             log.info("flush() Starting.");
-            if (!getIndexSearcher().getIndexReader().isOptimized()) {
+            SearcherManager manager = getSearcherManager();
+            refreshSearcher(manager);
+            IndexSearcher searcher = manager.acquire();
+            boolean optimized;
+            try {
+                optimized = searcher.getIndexReader().isOptimized();
+            } finally {
+                releaseSearcher(manager, searcher);
+            }
+            if (!optimized) {
                 getIndexWriter().optimize();
-                getIndexWriter().commit();
+                commit(true);
             } else {
                 log.info("flush() Index already optimized.");
+                commit(false);
             }
             log.info("flush() Done.");
         } catch (ClosedByInterruptException e) {
@@ -724,65 +1270,376 @@ public class LuceneServiceImpl implements LuceneService {
     }
 
     /**
-     * Takes a snapshot of the lucene index using the Solr SnapShooter shell script.
+     * Takes a snapshot of the lucene index, in the same layout as the Solr SnapShooter script.
      * http://wiki.apache.org/solr/SolrCollectionDistributionScripts
+     * <p/>
+     * The files of the latest commit are hard linked, or copied if links are not supported, into a
+     * snapshot.yyyyMMddHHmmss directory in indexPath. Index files are never changed once written, so the links
+     * cannot change either. The commit is held by the SnapshotDeletionPolicy until the links are made, so writes
+     * and merges can continue meanwhile. Snapshots beyond snapshotRetention are then deleted, oldest first.
      */
     @Override
     public void takeSnapshot() {
-        if (!snapshotEnabled) return;
-        Process p = null;
-        Timer timer;
-        String command;
-        InterruptTimerTask interrupter;
+        if (!snapshotEnabled || !masterIndex) return;
+        // The snapshot is of the files on disk, so commit pending changes first.
+        commit(false);
         // Only take a snapshot if it is due.
         if (isSnapshotDue()) {
-            // We need a write lock to ensure consistency.
-            wLock.lock();
-            // Setup time and command.
-            timer = new Timer(true);
-            command = snapShooterPath + " -d " + indexPath;
+            // We need a read lock so the IndexWriter is not closed meanwhile.
+            rLock.lock();
             try {
-                log.info("takeSnapshot() Executing: " + command);
-                // Invoke the SnapShooter.
-                p = Runtime.getRuntime().exec(command);
-                // Use a Timer to interrupt later on timeout.
-                interrupter = new InterruptTimerTask(Thread.currentThread());
-                timer.schedule(interrupter, 30 * 1000); // 30 second timeout.
-                // Wait for process to complete (or until timeout is reached).
-                p.waitFor();
-                // If we get here then the snapshot completed.
+                String name = "snapshot." + DateTime.now().toString("yyyyMMddHHmmss");
+                File snapshotDir = new File(indexPath, name);
+                if (snapshotDir.exists()) {
+                    log.info("takeSnapshot() Snapshot already exists: " + name);
+                    return;
+                }
+                log.info("takeSnapshot() Creating: " + snapshotDir);
+                getIndexWriter();
+                SnapshotDeletionPolicy policy = snapshotDeletionPolicy;
+                IndexCommit indexCommit = policy.snapshot(name);
+                try {
+                    // Create the snapshot under a temporary name so incomplete snapshots are never seen.
+                    File tempDir = new File(indexPath, "temp-" + name);
+                    Files.createDirectories(tempDir.toPath());
+                    for (String fileName : indexCommit.getFileNames()) {
+                        linkOrCopy(new File(lucenePath, fileName), new File(tempDir, fileName));
+                    }
+                    Files.move(tempDir.toPath(), snapshotDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    policy.release(name);
+                }
+                pruneSnapshots();
                 log.info("takeSnapshot() Done.");
             } catch (ClosedByInterruptException e) {
                 throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
             } catch (IOException e) {
                 log.error("takeSnapshot() Caught IOException: " + e.getMessage(), e);
-            } catch (InterruptedException e) {
-                p.destroy();
-                log.warn("takeSnapshot() Timed out.");
             } finally {
-                // Tidy up.
-                timer.cancel();
-                Thread.interrupted();
-                wLock.unlock();
+                rLock.unlock();
             }
         }
     }
 
     /**
-     * A TimerTask used by takeSnapshot().
+     * Replace the index with a snapshot taken by takeSnapshot. Changes not yet committed are discarded.
+     * The snapshot itself is left in place.
+     *
+     * @param snapshotName the name of the snapshot directory in indexPath, or null for the most recent snapshot
      */
-    private static class InterruptTimerTask extends TimerTask {
+    @Override
+    public void restoreSnapshot(String snapshotName) {
+        wLock.lock();
+        try {
+            File snapshotDir;
+            if (snapshotName != null) {
+                snapshotDir = new File(indexPath, snapshotName);
+            } else {
+                File[] snapshotDirs = getSnapshotDirs();
+                snapshotDir = snapshotDirs.length > 0 ? snapshotDirs[0] : null;
+            }
+            if ((snapshotDir == null) || !snapshotDir.isDirectory()) {
+                throw new IllegalArgumentException("Snapshot not found: " + snapshotName);
+            }
+            log.info("restoreSnapshot() Restoring: " + snapshotDir);
+            // Close everything without committing.
+            rollbackIndexWriter();
+            closeIndex();
+            // Replace the index files.
+            File indexDir = new File(lucenePath);
+            File[] indexFiles = indexDir.listFiles();
+            if (indexFiles != null) {
+                for (File indexFile : indexFiles) {
+                    if (indexFile.isFile()) {
+                        Files.delete(indexFile.toPath());
+                    }
+                }
+            }
+            Files.createDirectories(indexDir.toPath());
+            File[] snapshotFiles = snapshotDir.listFiles();
+            if (snapshotFiles != null) {
+                for (File snapshotFile : snapshotFiles) {
+                    linkOrCopy(snapshotFile, new File(indexDir, snapshotFile.getName()));
+                }
+            }
+            log.info("restoreSnapshot() Done.");
+        } catch (ClosedByInterruptException e) {
+            throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        } finally {
+            wLock.unlock();
+        }
+    }
 
-        private Thread thread;
+    /**
+     * Closes the IndexWriter, discarding changes made since the last commit.
+     */
+    private synchronized void rollbackIndexWriter() throws IOException {
+        if (indexWriter == null) return;
+        log.info("rollbackIndexWriter()");
+        pendingChanges.set(0);
+        indexWriter.rollback();
+        indexWriter = null;
+    }
 
-        public InterruptTimerTask(Thread t) {
-            this.thread = t;
+    /**
+     * Start building a new index beside the live index. Until finishRebuild is called all writes go to the new
+     * index, which starts empty, whilst searches continue against the live index. An index left by an earlier
+     * rebuild is deleted first.
+     */
+    @Override
+    public void startRebuild() {
+        if (!masterIndex) return;
+        wLock.lock();
+        try {
+            if (rebuildWriter != null) {
+                throw new IllegalStateException("An index rebuild is already in progress.");
+            }
+            // Searches need a live index, even an empty one.
+            if (!IndexReader.indexExists(getDirectory())) {
+                clearIndex();
+            }
+            // Later commits go to the new index, so commit the live index now.
+            commit(false);
+            File rebuildDir = getSiblingDir("rebuild");
+            FileUtils.deleteDirectory(rebuildDir);
+            log.info("startRebuild() Building a new index in: " + rebuildDir);
+            rebuildDirectory = getNewDirectory(directoryType, rebuildDir);
+            rebuildWriter = new IndexWriter(rebuildDirectory,
+                    getIndexWriterConfig(true, new KeepOnlyLastCommitDeletionPolicy()));
+            rebuildWriter.commit();
+        } catch (ClosedByInterruptException e) {
+            throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        } finally {
+            wLock.unlock();
         }
+    }
 
-        public void run() {
-            thread.interrupt();
+    /**
+     * Finish building the index started by startRebuild. The new index replaces the live index if it has at least
+     * rebuildMinDocRatio of the Documents in the live index, otherwise it is abandoned and left in place to be
+     * inspected. The replaced index is kept for restorePreviousIndex.
+     *
+     * @return true if the new index replaced the live index
+     */
+    @Override
+    public boolean finishRebuild() {
+        if (!masterIndex) return false;
+        wLock.lock();
+        try {
+            if (rebuildWriter == null) return false;
+            rebuildWriter.commit();
+            int rebuiltDocs = rebuildWriter.numDocs();
+            int liveDocs = getIndexWriter().numDocs();
+            if (rebuiltDocs < (liveDocs * rebuildMinDocRatio)) {
+                log.error("finishRebuild() Abandoning the rebuilt index as it has " + rebuiltDocs +
+                        " Documents and the live index has " + liveDocs + ".");
+                abandonRebuild();
+                return false;
+            }
+            log.info("finishRebuild() Replacing the live index of " + liveDocs + " Documents with the rebuilt index of " +
+                    rebuiltDocs + " Documents.");
+            rebuildWriter.close();
+            rebuildWriter = null;
+            closeRebuildDirectory();
+            replaceIndex(getSiblingDir("rebuild"));
+            log.info("finishRebuild() Done.");
+            return true;
+        } catch (ClosedByInterruptException e) {
+            throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        } finally {
+            wLock.unlock();
         }
+    }
 
+    @Override
+    public boolean isRebuilding() {
+        return rebuildWriter != null;
+    }
+
+    /**
+     * Replace the live index with the index it replaced, as kept by finishRebuild. The live index is kept in its
+     * place, so calling this again undoes it.
+     */
+    @Override
+    public void restorePreviousIndex() {
+        if (!masterIndex) return;
+        wLock.lock();
+        try {
+            if (rebuildWriter != null) {
+                throw new IllegalStateException("An index rebuild is in progress.");
+            }
+            File previousDir = getSiblingDir("previous");
+            if (!previousDir.isDirectory()) {
+                throw new IllegalArgumentException("Previous index not found: " + previousDir);
+            }
+            log.info("restorePreviousIndex() Restoring: " + previousDir);
+            replaceIndex(previousDir);
+            log.info("restorePreviousIndex() Done.");
+        } catch (ClosedByInterruptException e) {
+            throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        } finally {
+            wLock.unlock();
+        }
+    }
+
+    /**
+     * Replace the live index directory with another, moving the live index to the previous index directory. The
+     * live IndexWriter is committed and closed and a new SearcherManager is opened against the replacement.
+     * Searches in progress finish with their current Searcher, whose files stay open. The caller must hold the
+     * write lock.
+     *
+     * @param replacementDir the directory of the replacement index, which must not be open
+     * @throws IOException if the index cannot be committed or the directories cannot be moved
+     */
+    private void replaceIndex(File replacementDir) throws IOException {
+        File liveDir = new File(lucenePath);
+        File previousDir = getSiblingDir("previous");
+        File swapDir = getSiblingDir("swap");
+        // Move the replacement aside first, as it may be the previous index.
+        FileUtils.deleteDirectory(swapDir);
+        Files.move(replacementDir.toPath(), swapDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        swapping = true;
+        try {
+            synchronized (this) {
+                // Close the IndexWriter without flush, which would optimize the index being replaced.
+                if (indexWriter != null) {
+                    indexWriter.commit();
+                    indexWriter.close();
+                    indexWriter = null;
+                }
+                pendingChanges.set(0);
+                closeDirectory();
+                FileUtils.deleteDirectory(previousDir);
+                if (liveDir.exists()) {
+                    Files.move(liveDir.toPath(), previousDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.move(swapDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                // Open Searchers against the replacement before closing the old ones.
+                SearcherManager replaced = searcherManager;
+                searcherManager = null;
+                getSearcherManager();
+                if (replaced != null) {
+                    replaced.close();
+                }
+                lastWriteTime = System.currentTimeMillis();
+            }
+        } finally {
+            swapping = false;
+        }
+    }
+
+    /**
+     * Discard the index being rebuilt, if any, so writes go to the live index again. The rebuild directory is
+     * deleted by the next startRebuild.
+     */
+    private synchronized void abandonRebuild() {
+        if (rebuildWriter == null) return;
+        log.info("abandonRebuild()");
+        try {
+            pendingChanges.set(0);
+            rebuildWriter.rollback();
+            rebuildWriter = null;
+            closeRebuildDirectory();
+        } catch (ClosedByInterruptException e) {
+            throw new LuceneServiceException("Caught ClosedByInterruptException: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void closeRebuildDirectory() throws IOException {
+        if (rebuildDirectory == null) return;
+        rebuildDirectory.close();
+        rebuildDirectory = null;
+    }
+
+    /**
+     * Complete or undo a replacement of the live index that was interrupted by a crash, so there is a live index.
+     */
+    private void recoverIndex() {
+        File liveDir = new File(lucenePath);
+        if (liveDir.exists()) return;
+        try {
+            File swapDir = getSiblingDir("swap");
+            File previousDir = getSiblingDir("previous");
+            if (swapDir.isDirectory()) {
+                log.warn("recoverIndex() Completing an interrupted index replacement.");
+                Files.move(swapDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } else if (previousDir.isDirectory()) {
+                log.warn("recoverIndex() Restoring the previous index.");
+                Files.move(previousDir.toPath(), liveDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a directory beside the live index directory, named after it.
+     *
+     * @param suffix added to the name of the live index directory
+     * @return the directory
+     */
+    private File getSiblingDir(String suffix) {
+        File liveDir = new File(lucenePath).getAbsoluteFile();
+        return new File(liveDir.getParentFile(), liveDir.getName() + "." + suffix);
+    }
+
+    /**
+     * Hard link a file, or copy it if the file system cannot link it.
+     *
+     * @param source the existing file
+     * @param target the link or copy to create
+     * @throws IOException if the file cannot be linked or copied
+     */
+    private void linkOrCopy(File source, File target) throws IOException {
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (UnsupportedOperationException e) {
+            Files.copy(source.toPath(), target.toPath());
+        } catch (FileSystemException e) {
+            log.debug("linkOrCopy() Copying as the link failed: " + e.getMessage());
+            Files.copy(source.toPath(), target.toPath());
+        }
+    }
+
+    /**
+     * Delete the oldest snapshots so that no more than snapshotRetention remain.
+     *
+     * @throws IOException if a snapshot cannot be deleted
+     */
+    private void pruneSnapshots() throws IOException {
+        if (snapshotRetention <= 0) return;
+        File[] snapshotDirs = getSnapshotDirs();
+        for (int i = snapshotRetention; i < snapshotDirs.length; i++) {
+            log.info("pruneSnapshots() Deleting: " + snapshotDirs[i]);
+            FileUtils.deleteDirectory(snapshotDirs[i]);
+        }
+    }
+
+    /**
+     * @return the snapshot directories in indexPath, most recent first
+     */
+    private File[] getSnapshotDirs() {
+        File[] snapshotDirs = new File(indexPath).listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory() && file.getName().startsWith("snapshot.");
+            }
+        });
+        if (snapshotDirs == null) {
+            return new File[0];
+        }
+        // Names end with the time taken, so sort by name.
+        Arrays.sort(snapshotDirs, Collections.reverseOrder());
+        return snapshotDirs;
     }
 
     /**
@@ -846,13 +1703,119 @@ public class LuceneServiceImpl implements LuceneService {
         this.lucenePath = lucenePath;
     }
 
-    @Value("${index.snapshooterPath}")
-    public void setSnapShooterPath(String snapShooterPath) {
-        this.snapShooterPath = snapShooterPath;
+    @Value("${index.directory}")
+    public void setDirectoryType(String directoryType) {
+        this.directoryType = directoryType;
+    }
+
+    @Value("${index.snapshotRetention}")
+    public void setSnapshotRetention(Integer snapshotRetention) {
+        this.snapshotRetention = snapshotRetention;
     }
 
     @Value("${index.checkSearcherOnCommit}")
     public void setCheckSearcherOnCommit(Boolean checkSearcherOnCommit) {
         this.checkSearcherOnCommit = checkSearcherOnCommit;
     }
+
+    @Value("${index.refreshInterval}")
+    public void setRefreshInterval(Long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Value("${index.commitInterval}")
+    public void setCommitInterval(Long commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    @Value("${index.commitMaxChanges}")
+    public void setCommitMaxChanges(Integer commitMaxChanges) {
+        this.commitMaxChanges = commitMaxChanges;
+    }
+
+    @Value("${index.ramBufferSizeMB}")
+    public void setRamBufferSizeMB(Double ramBufferSizeMB) {
+        this.ramBufferSizeMB = ramBufferSizeMB;
+    }
+
+    @Value("${index.writeQueueSize}")
+    public void setWriteQueueSize(Integer writeQueueSize) {
+        this.writeQueueSize = writeQueueSize;
+    }
+
+    @Value("${index.rebuildMinDocRatio}")
+    public void setRebuildMinDocRatio(Double rebuildMinDocRatio) {
+        this.rebuildMinDocRatio = rebuildMinDocRatio;
+    }
+
+    /**
+     * A batch of Documents waiting for the writer thread. Done once the Documents have been added or have failed.
+     * A batch cannot be cancelled once queued.
+     */
+    private static class WriteBatch implements Future<Integer> {
+
+        private final Collection<Document> documents;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Integer count;
+        private Throwable failure;
+
+        private WriteBatch(Collection<Document> documents) {
+            this.documents = documents;
+        }
+
+        private void written(int count) {
+            complete(count, null);
+        }
+
+        private void failed(Throwable t) {
+            complete(null, t);
+        }
+
+        /**
+         * Complete the batch, unless it is already done.
+         */
+        private synchronized void complete(Integer count, Throwable failure) {
+            if (done.getCount() > 0) {
+                this.count = count;
+                this.failure = failure;
+                done.countDown();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public Integer get() throws InterruptedException, ExecutionException {
+            done.await();
+            return getResult();
+        }
+
+        @Override
+        public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        private synchronized Integer getResult() throws ExecutionException {
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return count;
+        }
+    }
 }
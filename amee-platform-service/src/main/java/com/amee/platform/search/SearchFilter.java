@@ -9,11 +9,13 @@ import org.apache.lucene.search.TermQuery;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public class SearchFilter extends QueryFilter {
 
     private Set<ObjectType> types = new HashSet<ObjectType>();
+    private Set<String> facets = new LinkedHashSet<String>();
 
     public SearchFilter() {
         super();
@@ -69,6 +71,39 @@ public class SearchFilter extends QueryFilter {
         }
     }
 
+    /**
+     * Returns the DataItem drill down paths to count values for over all hits.
+     *
+     * @return the drill down paths
+     */
+    public Set<String> getFacets() {
+        return facets;
+    }
+
+    public boolean hasFacets() {
+        return !facets.isEmpty();
+    }
+
+    /**
+     * Set the DataItem drill down paths to count values for. Only the first {@link #getFacetsMax()} are kept.
+     *
+     * @param facets the drill down paths
+     */
+    public void setFacets(Set<String> facets) {
+        if (facets != null) {
+            this.facets = new LinkedHashSet<String>();
+            for (String facet : facets) {
+                if (this.facets.size() < getFacetsMax()) {
+                    this.facets.add(facet);
+                }
+            }
+        }
+    }
+
+    public int getFacetsMax() {
+        return 10;
+    }
+
     public Query getQuery(ObjectType... types) {
         return getQuery(new HashSet<ObjectType>(Arrays.asList(types)));
     }
@@ -0,0 +1,360 @@
+package com.amee.platform.search;
+
+import com.amee.domain.ObjectType;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A durable, append-only journal of entities whose search index Documents need updating. Entries are appended as
+ * InvalidationMessages arrive and are read back in order by the {@link SearchManager}, which acknowledges them once
+ * they have been handled. The position of the first unacknowledged entry is kept in a checkpoint file beside the
+ * journal so entries recorded before a restart are replayed after it. The journal is truncated whenever all of its
+ * entries have been acknowledged, and compacted once the acknowledged entries at its start pass a size threshold, so it
+ * stays bounded while entries keep arriving.
+ * <p/>
+ * Each entry is a line of tab separated fields: the time the change was first recorded, the entity type, the entity
+ * UID and any invalidation options.
+ */
+public class SearchIndexJournal {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final static String CHARSET = "US-ASCII";
+
+    // The size of the acknowledged entries at the start of the journal at which it is compacted, in bytes.
+    public final static long DEFAULT_COMPACT_THRESHOLD = 1024 * 1024;
+
+    private final File journalFile;
+    private final File checkpointFile;
+    private final long compactThreshold;
+    private RandomAccessFile journal;
+
+    // Offset of the first unacknowledged entry.
+    private long checkpoint;
+
+    // The number of bytes removed from the start of the journal since it was opened. Entries hold their offset plus
+    // this so entries read before the journal is truncated or compacted can still be acknowledged.
+    private long removed;
+
+    public SearchIndexJournal(File journalFile) {
+        this(journalFile, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    public SearchIndexJournal(File journalFile, long compactThreshold) {
+        this.journalFile = journalFile;
+        this.checkpointFile = new File(journalFile.getPath() + ".checkpoint");
+        this.compactThreshold = compactThreshold;
+        open();
+    }
+
+    /**
+     * Open the journal and checkpoint files, discarding any entry left partly written by a crash.
+     */
+    private void open() {
+        try {
+            File parent = journalFile.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                FileUtils.forceMkdir(parent);
+            }
+            journal = new RandomAccessFile(journalFile, "rw");
+            long end = getEndOfLastEntry();
+            if (end < journal.length()) {
+                log.warn("open() Discarding a partial entry at the end of the journal.");
+                journal.setLength(end);
+            }
+            checkpoint = Math.min(readCheckpoint(), end);
+            log.info("open() Opened search index journal with " + (end - checkpoint) + " bytes of pending entries.");
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append an entry and force it to disk.
+     *
+     * @param entry to append
+     */
+    public void append(Entry entry) {
+        append(Collections.singletonList(entry));
+    }
+
+    /**
+     * Append the entries and force them to disk together.
+     *
+     * @param entries to append
+     */
+    public synchronized void append(Collection<Entry> entries) {
+        if (entries.isEmpty()) return;
+        StringBuilder lines = new StringBuilder();
+        for (Entry entry : entries) {
+            lines.append(entry.getTime()).append('\t')
+                    .append(entry.getObjectType().getName()).append('\t')
+                    .append(entry.getUid()).append('\t')
+                    .append(entry.getOptions()).append('\n');
+        }
+        try {
+            journal.seek(journal.length());
+            journal.write(lines.toString().getBytes(CHARSET));
+            journal.getChannel().force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read unacknowledged entries, oldest first. Entries stay in the journal until they are acknowledged.
+     *
+     * @param maxEntries the most entries to return
+     * @return a List of entries, empty if there are none
+     */
+    public List<Entry> read(int maxEntries) {
+        return read(maxEntries, null);
+    }
+
+    /**
+     * Read unacknowledged entries after an entry which has been handled but not yet acknowledged, oldest first.
+     *
+     * @param maxEntries the most entries to return
+     * @param after the last entry read, or null to read from the first unacknowledged entry
+     * @return a List of entries, empty if there are none
+     */
+    public synchronized List<Entry> read(int maxEntries, Entry after) {
+        List<Entry> entries = new ArrayList<Entry>();
+        try {
+            long position = (after != null) ? Math.max(checkpoint, after.end - removed) : checkpoint;
+            // The reader is not closed as that would close the journal.
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(journal.getChannel().position(position)), CHARSET));
+            String line;
+            while ((entries.size() < maxEntries) && ((line = reader.readLine()) != null)) {
+                position += line.length() + 1;
+                Entry entry = parse(line, removed + position);
+                if (entry != null) {
+                    entries.add(entry);
+                } else if (entries.isEmpty() && (after == null)) {
+                    // Skip the unreadable entry.
+                    acknowledge(position);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+        return entries;
+    }
+
+    /**
+     * Acknowledge that the entry and all those before it have been handled.
+     *
+     * @param entry the last handled entry
+     */
+    public synchronized void acknowledge(Entry entry) {
+        acknowledge(entry.end - removed);
+        try {
+            if ((checkpoint >= compactThreshold) && (checkpoint >= journal.length() - checkpoint)) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void acknowledge(long position) {
+        try {
+            if (position >= journal.length()) {
+                // Everything has been handled so start the journal again.
+                removed += journal.length();
+                journal.setLength(0);
+                checkpoint = 0;
+            } else {
+                checkpoint = Math.max(checkpoint, position);
+            }
+            writeCheckpoint();
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Remove the acknowledged entries from the start of the journal. The unacknowledged entries are copied to a
+     * temporary file which then replaces the journal. The checkpoint is reset first so a crash in between replays the
+     * acknowledged entries rather than skipping unacknowledged ones.
+     *
+     * @throws IOException if the journal cannot be compacted
+     */
+    private void compact() throws IOException {
+        File temp = new File(journalFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            FileChannel channel = journal.getChannel();
+            long position = checkpoint;
+            while (position < channel.size()) {
+                position += channel.transferTo(position, channel.size() - position, out.getChannel());
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        long compacted = checkpoint;
+        checkpoint = 0;
+        writeCheckpoint();
+        journal.close();
+        try {
+            Files.move(temp.toPath(), journalFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            removed += compacted;
+        } finally {
+            journal = new RandomAccessFile(journalFile, "rw");
+        }
+        log.debug("compact() Removed {} bytes of acknowledged entries from the journal.", compacted);
+    }
+
+    /**
+     * Returns the age of the oldest unacknowledged entry, which is how far the index lags behind the changes
+     * recorded in the journal.
+     *
+     * @return the age in milliseconds, or zero if there are no unacknowledged entries
+     */
+    public long getLag() {
+        List<Entry> oldest = read(1);
+        return oldest.isEmpty() ? 0L : Math.max(0L, System.currentTimeMillis() - oldest.get(0).getTime());
+    }
+
+    /**
+     * @return true if there are no unacknowledged entries
+     */
+    public synchronized boolean isEmpty() {
+        try {
+            return checkpoint >= journal.length();
+        } catch (IOException e) {
+            throw new RuntimeException("Caught IOException: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void close() {
+        IOUtils.closeQuietly(journal);
+    }
+
+    private Entry parse(String line, long end) {
+        String[] fields = line.split("\t", -1);
+        try {
+            if (fields.length == 4) {
+                return new Entry(Long.parseLong(fields[0]), ObjectType.valueOf(fields[1]), fields[2], fields[3], end);
+            }
+        } catch (IllegalArgumentException e) {
+            // Fall through.
+        }
+        log.warn("parse() Skipping an unreadable journal entry: " + line);
+        return null;
+    }
+
+    /**
+     * Returns the offset just after the last complete entry.
+     *
+     * @return the offset
+     * @throws IOException if the journal cannot be read
+     */
+    private long getEndOfLastEntry() throws IOException {
+        long end = journal.length();
+        while (end > 0) {
+            journal.seek(end - 1);
+            if (journal.read() == '\n') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (checkpointFile.exists()) {
+            try {
+                return Long.parseLong(FileUtils.readFileToString(checkpointFile, CHARSET).trim());
+            } catch (NumberFormatException e) {
+                log.warn("readCheckpoint() The journal checkpoint was unreadable, replaying the whole journal.");
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Write the checkpoint to a temporary file and move it into place so a crash leaves either the old or the new
+     * checkpoint.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    private void writeCheckpoint() throws IOException {
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(Long.toString(checkpoint).getBytes(CHARSET));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), checkpointFile.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * A change to an entity recorded in the journal.
+     */
+    public static class Entry {
+
+        private final long time;
+        private final ObjectType objectType;
+        private final String uid;
+        private final String options;
+
+        // Offset just after this entry in the journal.
+        private final long end;
+
+        public Entry(ObjectType objectType, String uid, String options) {
+            this(System.currentTimeMillis(), objectType, uid, options);
+        }
+
+        public Entry(long time, ObjectType objectType, String uid, String options) {
+            this(time, objectType, uid, options, -1L);
+        }
+
+        private Entry(long time, ObjectType objectType, String uid, String options, long end) {
+            this.time = time;
+            this.objectType = objectType;
+            this.uid = uid;
+            this.options = (options != null) ? options : "";
+            this.end = end;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public ObjectType getObjectType() {
+            return objectType;
+        }
+
+        public String getUid() {
+            return uid;
+        }
+
+        public String getOptions() {
+            return options;
+        }
+
+        public boolean hasOption(String option) {
+            return !options.isEmpty() && ArrayUtils.contains(options.split(","), option);
+        }
+    }
+}
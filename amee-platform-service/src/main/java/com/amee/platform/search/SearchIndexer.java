@@ -1,5 +1,7 @@
 package com.amee.platform.search;
 
+import java.util.Collection;
+
 public interface SearchIndexer {
 
     /**
@@ -14,4 +16,14 @@ public interface SearchIndexer {
      * @param documentContext the SearchIndexerContext describing the DataCategory to update.
      */
     void handleSearchIndexerContext(SearchIndexerContext documentContext);
+
+    /**
+     * Updates the Documents for individual DataItems, removing those for DataItems that no longer exist. DataItems
+     * in a DataCategory that is currently being indexed are left for later.
+     *
+     * @param dataItemUids UIDs of the DataItems to update
+     * @param deferredUids receives the UIDs of DataItems that were left for later
+     * @return the number of Documents updated or removed
+     */
+    int updateDataItems(Collection<String> dataItemUids, Collection<String> deferredUids);
 }
@@ -24,6 +24,9 @@ public class SearchIndexerContext {
     // Should DataItem documents be checked in detail.
     public boolean checkDataItems = false;
 
+    // Is this Data Category part of a full rebuild?
+    public boolean rebuild = false;
+
     // Work-in-progress List of Data Item Documents.
     public List<Document> dataItemDocs;
 
@@ -11,6 +11,7 @@ import com.amee.service.invalidation.InvalidationService;
 import com.amee.service.tag.TagService;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
@@ -23,11 +24,15 @@ import org.perf4j.slf4j.Slf4JStopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Encapsulates all logic for creating the Lucene search index. Implements {@link SearchIndexer} to provide the only
@@ -40,8 +45,17 @@ public class SearchIndexerImpl implements SearchIndexer {
 
     public final static DateTimeFormatter DATE_TO_SECOND = DateTimeFormat.forPattern("yyyyMMddHHmmss");
 
+    // The number of DataItem Documents handed to the index writer at a time when building a cleared index.
+    private final static int WRITE_BATCH_SIZE = 500;
+
     // Count of successfully indexed DataCategories.
-    private static long COUNT = 0L;
+    private final static AtomicLong COUNT = new AtomicLong();
+
+    // Count of DataCategories processed for a full rebuild, whether or not they needed indexing.
+    private final static AtomicLong PROCESSED_COUNT = new AtomicLong();
+
+    // Count of DataItem Documents created.
+    private final static AtomicLong DOCUMENT_COUNT = new AtomicLong();
 
     @Autowired
     private DataService dataService;
@@ -76,6 +90,9 @@ public class SearchIndexerImpl implements SearchIndexer {
     // The DataItems for the current DataCategory.
     private List<DataItem> dataItems;
 
+    // Do DataItem changes reach the index through the SearchIndexJournal?
+    private boolean incremental = false;
+
     @Override
     public void clear() {
         searchIndexerContext = null;
@@ -109,10 +126,92 @@ public class SearchIndexerImpl implements SearchIndexer {
         } finally {
 
             // We're done!
+            if (this.searchIndexerContext.rebuild) {
+                PROCESSED_COUNT.incrementAndGet();
+            }
             searchLog.info(this.searchIndexerContext.dataCategoryUid + "|Completed processing DataCategory.");
         }
     }
 
+    @Override
+    @AMEETransaction
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public int updateDataItems(Collection<String> dataItemUids, Collection<String> deferredUids) {
+        Slf4JStopWatch stopWatch = new Slf4JStopWatch("updateDataItems");
+        int count = 0;
+        // Group the DataItems by DataCategory and remove Documents for DataItems that no longer exist.
+        Map<DataCategory, List<DataItem>> dataItemsByCategory = new HashMap<DataCategory, List<DataItem>>();
+        for (String uid : dataItemUids) {
+            DataItem dataItem = dataItemService.getItemByUid(uid);
+            if (dataItem != null) {
+                List<DataItem> categoryDataItems = dataItemsByCategory.get(dataItem.getDataCategory());
+                if (categoryDataItems == null) {
+                    categoryDataItems = new ArrayList<DataItem>();
+                    dataItemsByCategory.put(dataItem.getDataCategory(), categoryDataItems);
+                }
+                categoryDataItems.add(dataItem);
+            } else {
+                searchLog.info(uid + "|DataItem not found, removing.");
+                luceneService.deleteDocuments(
+                        new Term("entityType", ObjectType.DI.getName()),
+                        new Term("entityUid", uid));
+                count++;
+            }
+        }
+        for (Map.Entry<DataCategory, List<DataItem>> entry : dataItemsByCategory.entrySet()) {
+            count += updateDataItems(entry.getKey(), entry.getValue(), deferredUids);
+        }
+        stopWatch.stop();
+        return count;
+    }
+
+    /**
+     * Update the Documents for some of the DataItems in a DataCategory. The DataItems are left for later if the
+     * DataCategory is being indexed, as that would replace all of its DataItem Documents.
+     *
+     * @param dataCategory the DataCategory of the DataItems
+     * @param dataItems    the DataItems to update
+     * @param deferredUids receives the UIDs of DataItems that were left for later
+     * @return the number of Documents updated
+     */
+    private int updateDataItems(DataCategory dataCategory, List<DataItem> dataItems, Collection<String> deferredUids) {
+        // DataItem Documents of trashed DataCategories are removed along with the DataCategory.
+        if (dataCategory.isTrash() || (dataCategory.getItemDefinition() == null)) {
+            return 0;
+        }
+        if (!SearchIndexerRunner.tryAcquire(dataCategory.getUid())) {
+            searchLog.info(dataCategory.getUid() + "|DataCategory is being indexed, deferring DataItem updates.");
+            for (DataItem dataItem : dataItems) {
+                deferredUids.add(dataItem.getUid());
+            }
+            return 0;
+        }
+        try {
+            // Pre-cache metadata and locales for the Data Items.
+            metadataService.loadMetadatasForItemValueDefinitions(dataCategory.getItemDefinition().getItemValueDefinitions());
+            localeService.loadLocaleNamesForItemValueDefinitions(dataCategory.getItemDefinition().getItemValueDefinitions());
+            metadataService.loadMetadatasForDataItems(dataItems);
+            for (DataItem dataItem : dataItems) {
+                SearchIndexerContext context = new SearchIndexerContext();
+                context.dataCategoryUid = dataCategory.getUid();
+                context.dataItem = dataItem;
+                context.dataItemDoc = getDocumentForDataItem(dataItem);
+                handleDataItemValues(context);
+                luceneService.updateDocument(
+                        context.dataItemDoc,
+                        new Term("entityType", ObjectType.DI.getName()),
+                        new Term("entityUid", dataItem.getUid()));
+            }
+            searchLog.info(dataCategory.getUid() + "|Updated " + dataItems.size() + " DataItem Documents.");
+            return dataItems.size();
+        } finally {
+            // Clear caches.
+            metadataService.clearMetadatas();
+            localeService.clearLocaleNames();
+            SearchIndexerRunner.release(dataCategory.getUid());
+        }
+    }
+
     /**
      * Insert, update or remove the Data Category & Data Items from the search index.
      *
@@ -225,8 +324,16 @@ public class SearchIndexerImpl implements SearchIndexer {
      */
     private boolean isDocumentOutOfDateForDataCategory(Document document) {
         DateTime modifiedInIndex = getDocumentModified(document);
-        DateTime modifiedInDatabase =
-                new DateTime(dataService.getDataCategoryModifiedDeep(dataCategory)).withMillisOfSecond(0);
+        DateTime modifiedInDatabase;
+        if (incremental) {
+            // DataItem changes are journaled, so only the DataCategory and its definitions count.
+            Date dataCategoryModified = dataCategory.getModified();
+            Date definitionsModified = getDefinitionsModified();
+            modifiedInDatabase = new DateTime(
+                    definitionsModified.after(dataCategoryModified) ? definitionsModified : dataCategoryModified).withMillisOfSecond(0);
+        } else {
+            modifiedInDatabase = new DateTime(dataService.getDataCategoryModifiedDeep(dataCategory)).withMillisOfSecond(0);
+        }
         return (modifiedInDatabase.isAfter(modifiedInIndex));
     }
 
@@ -239,11 +346,27 @@ public class SearchIndexerImpl implements SearchIndexer {
      */
     private boolean isDocumentOutOfDateForDataItems(Document document) {
         DateTime modifiedInIndex = getDocumentModified(document);
-        DateTime modifiedInDatabase =
-                new DateTime(dataService.getDataItemsModifiedDeep(dataCategory)).withMillisOfSecond(0);
+        DateTime modifiedInDatabase;
+        if (incremental) {
+            // DataItem changes are journaled, so only a definition (schema) change needs all DataItems re-indexed.
+            modifiedInDatabase = new DateTime(getDefinitionsModified()).withMillisOfSecond(0);
+        } else {
+            modifiedInDatabase = new DateTime(dataService.getDataItemsModifiedDeep(dataCategory)).withMillisOfSecond(0);
+        }
         return (modifiedInDatabase.isAfter(modifiedInIndex));
     }
 
+    /**
+     * Returns the most recent modified timestamp of the ItemDefinition for the current DataCategory and its
+     * dependent definitions.
+     *
+     * @return the modified timestamp, or the epoch if there is no ItemDefinition
+     */
+    private Date getDefinitionsModified() {
+        return dataCategory.isItemDefinitionPresent() ?
+                dataCategory.getItemDefinition().getModifiedDeep() : DataItemService.EPOCH;
+    }
+
     /**
      * Add Documents for the supplied Data Category and any associated Data Items to the Lucene index.
      */
@@ -289,8 +412,18 @@ public class SearchIndexerImpl implements SearchIndexer {
             localeService.loadLocaleNamesForItemValueDefinitions(dataCategory.getItemDefinition().getItemValueDefinitions());
             List<DataItem> dataItems = getDataItems();
             metadataService.loadMetadatasForDataItems(dataItems);
+            // When building a cleared index there are no old Documents to remove first. When rebuilding beside
+            // the live index the old Documents can be removed first, as nothing searches the new index. Either
+            // way full batches can be written whilst the next are built.
+            boolean rebuilding = searchIndexerContext.rebuild && luceneService.isRebuilding();
+            boolean stream = luceneService.getClearIndex() || rebuilding;
+            if (rebuilding) {
+                // Journaled Data Item updates may already have added Documents for this Data Category.
+                searchQueryService.removeDataItems(dataCategory);
+            }
             // Iterate over all Data Items and create Documents.
             searchIndexerContext.dataItemDocs = new ArrayList<Document>();
+            List<Future<Integer>> writes = new ArrayList<Future<Integer>>();
             Slf4JStopWatch stopWatch2 = new Slf4JStopWatch("handleDataItems:dataItemsLoop");
             for (DataItem dataItem : dataItems) {
                 searchIndexerContext.dataItem = dataItem;
@@ -299,18 +432,24 @@ public class SearchIndexerImpl implements SearchIndexer {
                 searchIndexerContext.dataItemDocs.add(searchIndexerContext.dataItemDoc);
                 // Handle the Data Item Values.
                 handleDataItemValues(searchIndexerContext);
+                DOCUMENT_COUNT.incrementAndGet();
+                if (stream && (searchIndexerContext.dataItemDocs.size() >= WRITE_BATCH_SIZE)) {
+                    writes.add(luceneService.queueDocuments(searchIndexerContext.dataItemDocs));
+                    searchIndexerContext.dataItemDocs = new ArrayList<Document>();
+                }
             }
             stopWatch2.stop();
             // Clear caches.
             metadataService.clearMetadatas();
             localeService.clearLocaleNames();
             // Are we working with an existing index?
-            if (!luceneService.getClearIndex()) {
+            if (!stream) {
                 // Clear existing Data ItemItem Documents for this DataCategory.
                 searchQueryService.removeDataItems(dataCategory);
             }
             // Add the new Data Item Documents to the index (if any).
-            luceneService.addDocuments(searchIndexerContext.dataItemDocs);
+            writes.add(luceneService.queueDocuments(searchIndexerContext.dataItemDocs));
+            awaitWrites(writes);
             log.info("handleDataItems() ...done (" + dataCategory.toString() + ").");
         } else {
             log.debug("handleDataItems() DataCategory does not have items: {}", dataCategory.toString());
@@ -320,6 +459,24 @@ public class SearchIndexerImpl implements SearchIndexer {
         stopWatch.stop();
     }
 
+    /**
+     * Wait until the queued Documents have been added to the index.
+     *
+     * @param writes Futures from LuceneService.queueDocuments
+     */
+    private void awaitWrites(List<Future<Integer>> writes) {
+        try {
+            for (Future<Integer> write : writes) {
+                write.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LuceneServiceException("Caught InterruptedException: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new LuceneServiceException("Caught ExecutionException: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
     // Lucene Document creation.
 
     /**
@@ -374,7 +531,8 @@ public class SearchIndexerImpl implements SearchIndexer {
             if (itemValue.isUsableValue()) {
                 if (itemValue.getItemValueDefinition().isDrillDown()) {
                     doc.add(new Field(itemValue.getDisplayPath(), itemValue.getValueAsString().toLowerCase(), Field.Store.NO, Field.Index.NOT_ANALYZED));
-                    doc.add(new Field(itemValue.getDisplayPath() + "_drill", itemValue.getValueAsString(), Field.Store.YES, Field.Index.NO));
+                    // The drill value is also indexed whole so it can be read from the FieldCache for facet counts.
+                    doc.add(new Field(itemValue.getDisplayPath() + "_drill", itemValue.getValueAsString(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
                 } else {
                     if (itemValue.isDouble()) {
                         try {
@@ -464,7 +622,9 @@ public class SearchIndexerImpl implements SearchIndexer {
             query.add(new TermQuery(new Term("entityType", ObjectType.DI.getName())), BooleanClause.Occur.MUST);
             query.add(new TermQuery(new Term("categoryUid", dataCategory.getEntityUid())), BooleanClause.Occur.MUST);
 
-            List<Document> dataItemDocuments = luceneService.doSearch(query).getResults();
+            // Only the modified timestamps are needed.
+            List<Document> dataItemDocuments = luceneService.doSearch(
+                    query, LuceneServiceImpl.MAX_NUM_HITS, new MapFieldSelector("entityModified")).getResults();
 
             // First: Are the correct number of Data Items in the index?
             long dataItemCount = dataItemService.getDataItemCount(dataCategory);
@@ -536,20 +696,45 @@ public class SearchIndexerImpl implements SearchIndexer {
      * @return count of DataCategories that have been indexed
      */
     public static long getCount() {
-        return COUNT;
+        return COUNT.get();
     }
 
     /**
-     * Reset the DataCategory index count.
+     * Return the count of DataCategories processed for a full rebuild, whether or not they needed indexing.
+     *
+     * @return count of DataCategories that have been processed
      */
-    public synchronized static void resetCount() {
-        COUNT = 0;
+    public static long getProcessedCount() {
+        return PROCESSED_COUNT.get();
+    }
+
+    /**
+     * Return the count of DataItem Documents created.
+     *
+     * @return count of DataItem Documents
+     */
+    public static long getDocumentCount() {
+        return DOCUMENT_COUNT.get();
+    }
+
+    /**
+     * Reset the DataCategory index, processed and Document counts.
+     */
+    public static void resetCount() {
+        COUNT.set(0);
+        PROCESSED_COUNT.set(0);
+        DOCUMENT_COUNT.set(0);
     }
 
     /**
      * Increment the DataCategory index count.
      */
-    private synchronized static void incrementCount() {
-        COUNT++;
+    private static void incrementCount() {
+        COUNT.incrementAndGet();
+    }
+
+    @Value("${index.incremental}")
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
     }
 }
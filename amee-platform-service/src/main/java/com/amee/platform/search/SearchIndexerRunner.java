@@ -85,6 +85,30 @@ public class SearchIndexerRunner implements Runnable {
         searchIndexer = null;
     }
 
+    /**
+     * Mark a Data Category as being indexed, unless it already is. Lets work other than a SearchIndexerRunner, such
+     * as updating individual Data Item Documents, avoid overlapping with a category being indexed.
+     *
+     * @param dataCategoryUid Data Category UID
+     * @return true if the category was marked, false if it is already being indexed
+     */
+    static boolean tryAcquire(String dataCategoryUid) {
+        synchronized (CURRENT_CATEGORY_UIDS) {
+            return CURRENT_CATEGORY_UIDS.add(dataCategoryUid);
+        }
+    }
+
+    /**
+     * Unmark a Data Category marked by tryAcquire.
+     *
+     * @param dataCategoryUid Data Category UID
+     */
+    static void release(String dataCategoryUid) {
+        synchronized (CURRENT_CATEGORY_UIDS) {
+            CURRENT_CATEGORY_UIDS.remove(dataCategoryUid);
+        }
+    }
+
     public void setSearchIndexerContext(SearchIndexerContext searchIndexerContext) {
         this.searchIndexerContext = searchIndexerContext;
     }
@@ -10,4 +10,24 @@ public interface SearchManager extends ApplicationListener<InvalidationMessage>
     public void updateAll();
 
     public void updateLoop();
+
+    /**
+     * Builds a complete new index beside the live index, which keeps serving searches, and swaps it in once all
+     * Data Categories have been indexed.
+     */
+    public void rebuildIndex();
+
+    /**
+     * Returns how far the index lags behind journaled changes, as the age of the oldest unhandled change.
+     *
+     * @return the lag in milliseconds, zero if there are no unhandled changes or changes are not journaled
+     */
+    public long getIndexingLag();
+
+    /**
+     * Returns the rate at which journaled changes have been written to the index.
+     *
+     * @return Documents updated per second of indexing time
+     */
+    public double getDocumentsPerSecond();
 }
@@ -1,14 +1,18 @@
 package com.amee.platform.search;
 
 import com.amee.base.transaction.AMEETransaction;
+import com.amee.domain.DataItemService;
 import com.amee.domain.ObjectType;
 import com.amee.domain.data.DataCategory;
+import com.amee.domain.item.data.DataItem;
 import com.amee.service.data.DataService;
 import com.amee.service.invalidation.InvalidationMessage;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.joda.time.DateTime;
+import org.joda.time.Period;
+import org.joda.time.format.PeriodFormat;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -17,18 +21,29 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SearchManagerImpl implements SearchManager, ApplicationContextAware {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    // The most journal entries handled by each pass of the update loop.
+    private final static int JOURNAL_BATCH_SIZE = 1000;
+
+    // Milliseconds between progress reports for a full rebuild.
+    private final static long PROGRESS_INTERVAL = 60000L;
+
     @Autowired
     private DataService dataService;
 
+    @Autowired
+    private DataItemService dataItemService;
+
     @Autowired
     private LuceneService luceneService;
 
@@ -57,6 +72,44 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
      */
     private String dataCategoryPathPrefix = null;
 
+    /**
+     * Should changed Data Items be journaled and updated individually, rather than re-indexing their Data Category?
+     */
+    private boolean incremental = false;
+
+    /**
+     * Path to the {@link SearchIndexJournal} file.
+     */
+    private String journalPath = null;
+
+    /**
+     * Should a cleared index be built beside the live index, which keeps serving searches until it is replaced?
+     */
+    private boolean rebuildOffline = false;
+
+    // Is a rebuild beside the live index in progress?
+    private volatile boolean offlineRebuild = false;
+
+    // The Data Categories of the rebuild beside the live index.
+    private Set<String> rebuildDataCategoryUids = null;
+
+    // The last journal entry written to the rebuild beside the live index, acknowledged once it replaces the live index.
+    private SearchIndexJournal.Entry rebuildJournalEntry = null;
+
+    // The journal of changed entities, created on first use.
+    private volatile SearchIndexJournal journal;
+
+    // Documents updated from the journal and the nanoseconds spent updating them.
+    private final AtomicLong journalDocumentCount = new AtomicLong();
+    private final AtomicLong journalNanos = new AtomicLong();
+
+    // The number of Data Categories in the current full rebuild, zero when there is none.
+    private volatile int rebuildTotal = 0;
+
+    // When the current full rebuild started and when its progress was last reported.
+    private volatile long rebuildStart = 0L;
+    private long lastProgressReport = 0L;
+
     /**
      * A {@link Queue} of {@link SearchIndexerContext}s waiting to be sent to a {@link SearchIndexer}. The
      * queue will only contain one {@link SearchIndexerContext} per Data Category.
@@ -80,6 +133,18 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
     @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
     public void onApplicationEvent(InvalidationMessage invalidationMessage) {
         if (masterIndex &&
+                incremental &&
+                !invalidationMessage.isLocal() &&
+                (invalidationMessage.getObjectType().equals(ObjectType.DI) ||
+                        (invalidationMessage.getObjectType().equals(ObjectType.DC) &&
+                                !invalidationMessage.hasOption("dataCategoryIndexed")))) {
+            log.trace("onApplicationEvent() Journaling InvalidationMessage.");
+            getJournal().append(new SearchIndexJournal.Entry(
+                    invalidationMessage.getObjectType(),
+                    invalidationMessage.getEntityUid(),
+                    invalidationMessage.getOptions()));
+            signalViaQueueLatch();
+        } else if (masterIndex &&
                 !invalidationMessage.isLocal() &&
                 invalidationMessage.getObjectType().equals(ObjectType.DC) &&
                 !invalidationMessage.hasOption("dataCategoryIndexed")) {
@@ -126,7 +191,8 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
 
     /**
      * Update all Data Categories & Data Items in the search index where the
-     * Data Items have been modified in the last one hour segment.
+     * Data Items have been modified in the last one hour segment. When incremental, only
+     * the modified Data Items are journaled for updating.
      */
     private void updateDataItems() {
         log.debug("updateDataItems()");
@@ -135,33 +201,68 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
                 anHourAgoRoundedUp.toDate(),
                 anHourAgoRoundedUp.plusHours(1).toDate());
         for (DataCategory dataCategory : dataCategories) {
-            SearchIndexerContext context = new SearchIndexerContext();
-            context.dataCategoryUid = dataCategory.getUid();
-            context.handleDataCategories = indexDataCategories;
-            context.handleDataItems = true;
-            addSearchIndexerContext(context);
+            if (incremental) {
+                journalDataItems(dataCategory, anHourAgoRoundedUp.toDate(), anHourAgoRoundedUp.plusHours(1).toDate());
+            } else {
+                SearchIndexerContext context = new SearchIndexerContext();
+                context.dataCategoryUid = dataCategory.getUid();
+                context.handleDataCategories = indexDataCategories;
+                context.handleDataItems = true;
+                addSearchIndexerContext(context);
+            }
+        }
+    }
+
+    /**
+     * Journal the Data Items of a Data Category which were modified within the supplied period.
+     *
+     * @param dataCategory Data Category to journal Data Items for
+     * @param from         start of the period
+     * @param to           end of the period
+     */
+    private void journalDataItems(DataCategory dataCategory, Date from, Date to) {
+        List<SearchIndexJournal.Entry> entries = new ArrayList<SearchIndexJournal.Entry>();
+        for (DataItem dataItem : dataItemService.getDataItems(dataCategory, false)) {
+            if (!dataItem.getModified().before(from) && !dataItem.getModified().after(to)) {
+                entries.add(new SearchIndexJournal.Entry(ObjectType.DI, dataItem.getUid(), null));
+            }
         }
+        log.debug("journalDataItems() Journaling {} Data Items for {}", entries.size(), dataCategory.getUid());
+        getJournal().append(entries);
     }
 
     // Index & Document management.
 
     /**
-     * Loops until the application stops (is interrupted). Calls consumeQueue, after
-     * a 10 second sleep OR the queue latch has been signalled, to handle any waiting {@link SearchIndexerContext}s.
+     * Loops until the application stops (is interrupted). Calls consumeJournal and consumeQueue, after
+     * a 10 second sleep OR the queue latch has been signalled, to handle any journaled changes and
+     * waiting {@link SearchIndexerContext}s. Whilst {@link SearchIndexerContext}s are waiting for the
+     * executor the sleep is 1 second, so a full rebuild keeps all SearchIndexers busy.
      */
     public void updateLoop() {
         log.info("updateLoop() Begin.");
+        boolean backlog = false;
         while (!Thread.currentThread().isInterrupted()) {
             try {
                 log.debug("updateLoop() Waiting.");
                 // Wait until:
-                //  * 10 seconds have elapsed OR
+                //  * 10 seconds (or 1 second with a backlog) have elapsed OR
                 //  * the queue latch reaches zero (this thread has been signalled).
-                queueLatch.await(10, TimeUnit.SECONDS);
+                queueLatch.await(backlog ? 1 : 10, TimeUnit.SECONDS);
+                // Consume the journal, which may add to the queue.
+                boolean journalFull = consumeJournal();
                 // Consume the queue.
-                consumeQueue();
+                backlog = consumeQueue();
                 // Having processed the queue we can reset the queue latch.
                 resetQueueLatch();
+                // Swap in a rebuild beside the live index once all of its Data Categories are done.
+                if (reportProgress() && offlineRebuild) {
+                    finishOfflineRebuild();
+                }
+                // Come straight back if there was more in the journal than one pass could handle.
+                if (journalFull) {
+                    signalViaQueueLatch();
+                }
             } catch (InterruptedException e) {
                 log.debug("updateLoop() Interrupted.");
                 return;
@@ -183,21 +284,74 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
     public void updateAll() {
         // Clear the SearchIndexer DataCategory count.
         SearchIndexerImpl.resetCount();
-        // Prepare the index; unlock it and potential clear it.
-        luceneService.prepareIndex();
-        // Check DataCategories?
-        if (checkDataCategories) {
-            buildDataCategories();
+        if (rebuildOffline && luceneService.getClearIndex() && checkDataCategories) {
+            // Build the new index beside the live index rather than clearing the live index.
+            luceneService.setClearIndex(false);
+            luceneService.prepareIndex();
+            rebuildIndex();
+        } else {
+            // Prepare the index; unlock it and potential clear it.
+            luceneService.prepareIndex();
+            // Check DataCategories?
+            if (checkDataCategories) {
+                buildDataCategories();
+            }
+        }
+    }
+
+    /**
+     * Will build a complete new index beside the live index. All Data Categories are indexed into the new index,
+     * along with any other changes meanwhile, and the new index replaces the live index once they are done.
+     */
+    @Override
+    @AMEETransaction
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public void rebuildIndex() {
+        if (!masterIndex) return;
+        if (offlineRebuild || luceneService.isRebuilding()) {
+            log.warn("rebuildIndex() A rebuild is already in progress.");
+            return;
+        }
+        log.info("rebuildIndex() Starting.");
+        SearchIndexerImpl.resetCount();
+        luceneService.startRebuild();
+        rebuildDataCategoryUids = getDataCategoryUids();
+        offlineRebuild = true;
+        if (!rebuildDataCategoryUids.isEmpty()) {
+            // The new index starts empty, so every Data Category and Data Item must be indexed.
+            buildDataCategories(rebuildDataCategoryUids, true, true);
+            signalViaQueueLatch();
+        } else {
+            finishOfflineRebuild();
         }
     }
 
+    /**
+     * Replace the live index with the index built by rebuildIndex and acknowledge the journal entries written to it.
+     * If the new index is abandoned, the changes written to it whilst it was built are missing from the live index,
+     * so all Data Categories are re-indexed in place and the unacknowledged journal entries are handled again.
+     */
+    private void finishOfflineRebuild() {
+        offlineRebuild = false;
+        if (luceneService.finishRebuild()) {
+            if (rebuildJournalEntry != null) {
+                getJournal().acknowledge(rebuildJournalEntry);
+            }
+        } else {
+            log.warn("finishOfflineRebuild() The rebuilt index was abandoned, re-indexing the live index.");
+            SearchIndexerImpl.resetCount();
+            buildDataCategories(rebuildDataCategoryUids, true, true);
+        }
+        rebuildDataCategoryUids = null;
+        rebuildJournalEntry = null;
+    }
+
     /**
      * Add all DataCategories to the index.
      */
     private void buildDataCategories() {
         log.debug("handleDataCategories()");
-        Set<String> dataCategoryUids = getDataCategoryUids();
-        buildDataCategories(dataCategoryUids);
+        buildDataCategories(getDataCategoryUids(), indexDataCategories, indexDataItems);
     }
 
     /**
@@ -221,28 +375,35 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
     }
 
     /**
-     * Add all DataCategories to the index.
+     * Add all DataCategories to the index, as a full rebuild whose progress is reported.
      *
-     * @param dataCategoryUids UIDs of Data Categories to index.
+     * @param dataCategoryUids     UIDs of Data Categories to index.
+     * @param handleDataCategories should Data Categories be re-indexed regardless of modification date?
+     * @param handleDataItems      should Data Items be re-indexed?
      */
-    private void buildDataCategories(Set<String> dataCategoryUids) {
+    private void buildDataCategories(Set<String> dataCategoryUids, boolean handleDataCategories, boolean handleDataItems) {
         log.debug("handleDataCategories()");
+        lastProgressReport = rebuildStart = System.currentTimeMillis();
+        rebuildTotal = dataCategoryUids.size();
         for (String uid : dataCategoryUids) {
-            buildDataCategory(uid);
+            buildDataCategory(uid, handleDataCategories, handleDataItems);
         }
     }
 
     /**
      * Create a {@link SearchIndexerContext} for the supplied Data Category UID and submit this to the queue.
      *
-     * @param dataCategoryUid Data Category UID
+     * @param dataCategoryUid      Data Category UID
+     * @param handleDataCategories should the Data Category be re-indexed regardless of modification date?
+     * @param handleDataItems      should the Data Items be re-indexed?
      */
-    private void buildDataCategory(String dataCategoryUid) {
+    private void buildDataCategory(String dataCategoryUid, boolean handleDataCategories, boolean handleDataItems) {
         log.debug("buildDataCategory()");
         SearchIndexerContext context = new SearchIndexerContext();
         context.dataCategoryUid = dataCategoryUid;
-        context.handleDataCategories = indexDataCategories;
-        context.handleDataItems = indexDataItems;
+        context.handleDataCategories = handleDataCategories;
+        context.handleDataItems = handleDataItems;
+        context.rebuild = true;
         addSearchIndexerContext(context);
     }
 
@@ -274,6 +435,11 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
                 if (signal) {
                     signalViaQueueLatch();
                 }
+            } else if (context.rebuild) {
+                // Replace the equivalent context so the Data Category is counted in the rebuild.
+                log.debug("addSearchIndexerContext() Replacing: {}", context.dataCategoryUid);
+                queue.remove(context);
+                queue.add(context);
             } else {
                 log.debug("addSearchIndexerContext() Skipping: {}", context.dataCategoryUid);
             }
@@ -283,8 +449,10 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
     /**
      * Loops over the queue and sends waiting {@link SearchIndexerContext}s to be
      * processed by {@link SearchIndexer}s. There are no items in the queue this will return immediately.
+     *
+     * @return true if {@link SearchIndexerContext}s are still waiting
      */
-    private void consumeQueue() {
+    private boolean consumeQueue() {
         if (!queue.isEmpty()) {
             log.debug("consumeQueue() Consuming.");
             Iterator<SearchIndexerContext> iterator = queue.iterator();
@@ -302,6 +470,116 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
         } else {
             log.debug("consumeQueue() Nothing to consume.");
         }
+        return !queue.isEmpty();
+    }
+
+    /**
+     * Log the progress of a full rebuild, with an estimate of the time remaining, every PROGRESS_INTERVAL
+     * and once it is complete. The estimate assumes the remaining Data Categories take as long as those done.
+     *
+     * @return true if the rebuild has just completed
+     */
+    private boolean reportProgress() {
+        if (rebuildTotal == 0) return false;
+        long now = System.currentTimeMillis();
+        long processed = Math.min(SearchIndexerImpl.getProcessedCount(), rebuildTotal);
+        boolean done = (processed == rebuildTotal);
+        if (!done && ((now - lastProgressReport) < PROGRESS_INTERVAL)) return false;
+        lastProgressReport = now;
+        long elapsed = now - rebuildStart;
+        long documents = SearchIndexerImpl.getDocumentCount();
+        long rate = (elapsed > 0) ? (documents * 1000 / elapsed) : 0;
+        if (done) {
+            log.info("reportProgress() Rebuilt " + rebuildTotal + " Data Categories and " + documents +
+                    " Data Item Documents in " + formatDuration(elapsed) + " (" + rate + "/s).");
+            rebuildTotal = 0;
+        } else {
+            log.info("reportProgress() Rebuilt " + processed + " of " + rebuildTotal + " Data Categories (" +
+                    (processed * 100 / rebuildTotal) + "%) and " + documents + " Data Item Documents (" + rate +
+                    "/s), ETA " + ((processed > 0) ? formatDuration(elapsed * (rebuildTotal - processed) / processed) : "unknown") + ".");
+        }
+        return done;
+    }
+
+    private static String formatDuration(long millis) {
+        return PeriodFormat.getDefault().print(new Period(millis - (millis % 1000)).normalizedStandard());
+    }
+
+    /**
+     * Handles a batch of entries from the {@link SearchIndexJournal}. Changed Data Items have their Documents
+     * updated individually and Data Categories are added to the queue. Data Items in Data Categories that are
+     * being indexed are journaled again to be handled on a later pass. Entries are only acknowledged once
+     * handled and committed, so they are retried if this fails or the process stops. During a rebuild beside the
+     * live index, entries are acknowledged once the new index replaces the live index.
+     *
+     * @return true if the batch was full and more entries may be waiting
+     */
+    private boolean consumeJournal() {
+        if (!incremental) {
+            return false;
+        }
+        SearchIndexJournal journal = getJournal();
+        List<SearchIndexJournal.Entry> entries = journal.read(JOURNAL_BATCH_SIZE, rebuildJournalEntry);
+        if (entries.isEmpty()) {
+            log.debug("consumeJournal() Nothing to consume.");
+            return false;
+        }
+        log.debug("consumeJournal() Consuming {} entries.", entries.size());
+
+        // Collect the changed Data Items, keeping the first entry for each, and queue the Data Categories.
+        Map<String, SearchIndexJournal.Entry> dataItemEntries = new LinkedHashMap<String, SearchIndexJournal.Entry>();
+        for (SearchIndexJournal.Entry entry : entries) {
+            if (entry.getObjectType().equals(ObjectType.DI)) {
+                if (!dataItemEntries.containsKey(entry.getUid())) {
+                    dataItemEntries.put(entry.getUid(), entry);
+                }
+            } else if (entry.getObjectType().equals(ObjectType.DC)) {
+                SearchIndexerContext context = new SearchIndexerContext();
+                context.dataCategoryUid = entry.getUid();
+                context.handleDataCategories = indexDataCategories;
+                context.handleDataItems = entry.hasOption("indexDataItems");
+                context.checkDataItems = entry.hasOption("checkDataItems");
+                addSearchIndexerContext(context);
+            }
+        }
+
+        // Update the Data Item Documents.
+        boolean rebuilding = luceneService.isRebuilding();
+        if (!dataItemEntries.isEmpty()) {
+            List<String> deferredUids = new ArrayList<String>();
+            SearchIndexer searchIndexer = applicationContext.getBean(SearchIndexer.class);
+            long start = System.nanoTime();
+            int count;
+            try {
+                count = searchIndexer.updateDataItems(dataItemEntries.keySet(), deferredUids);
+            } finally {
+                searchIndexer.clear();
+            }
+            long nanos = System.nanoTime() - start;
+            journalDocumentCount.addAndGet(count);
+            journalNanos.addAndGet(nanos);
+
+            // Journal deferred Data Items again with their original time so the lag stays accurate.
+            List<SearchIndexJournal.Entry> deferred = new ArrayList<SearchIndexJournal.Entry>();
+            for (String uid : deferredUids) {
+                SearchIndexJournal.Entry entry = dataItemEntries.get(uid);
+                deferred.add(new SearchIndexJournal.Entry(entry.getTime(), ObjectType.DI, uid, entry.getOptions()));
+            }
+            journal.append(deferred);
+            log.info("consumeJournal() Updated " + count + " Documents in " + (nanos / 1000000) + "ms (" +
+                    (nanos > 0 ? (long) (count * 1e9 / nanos) : 0) + "/s), deferred " + deferred.size() + ".");
+        }
+
+        SearchIndexJournal.Entry last = entries.get(entries.size() - 1);
+        if (rebuilding || luceneService.isRebuilding()) {
+            // The new index is discarded if the process stops, so hold the entries until it replaces the live index.
+            rebuildJournalEntry = last;
+        } else {
+            luceneService.commit();
+            journal.acknowledge(last);
+        }
+        log.debug("consumeJournal() Indexing lag is {}ms.", journal.getLag());
+        return entries.size() == JOURNAL_BATCH_SIZE;
     }
 
     /**
@@ -347,6 +625,41 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
         queueLatch.countDown();
     }
 
+    /**
+     * Get the {@link SearchIndexJournal}, opening it on first use.
+     *
+     * @return the SearchIndexJournal
+     */
+    private SearchIndexJournal getJournal() {
+
+        // Note the usage of the local variable result which seems unnecessary.
+        // For some versions of the Java VM, it will make the code 25% faster and for others, it won't hurt.
+        // Joshua Bloch "Effective Java, Second Edition", p. 283
+        SearchIndexJournal result = journal;
+        if (result == null) {
+            synchronized (this) {
+                result = journal;
+                if (result == null) {
+                    journal = result = new SearchIndexJournal(new File(journalPath));
+                }
+            }
+        }
+        return result;
+    }
+
+    // Statistics.
+
+    @Override
+    public long getIndexingLag() {
+        return incremental ? getJournal().getLag() : 0L;
+    }
+
+    @Override
+    public double getDocumentsPerSecond() {
+        long nanos = journalNanos.get();
+        return (nanos > 0) ? (journalDocumentCount.get() * 1e9 / nanos) : 0.0;
+    }
+
     // Properties.
 
     @Override
@@ -378,4 +691,19 @@ public class SearchManagerImpl implements SearchManager, ApplicationContextAware
     public void setDataCategoryPathPrefix(String dataCategoryPathPrefix) {
         this.dataCategoryPathPrefix = dataCategoryPathPrefix;
     }
+
+    @Value("${index.rebuildOffline}")
+    public void setRebuildOffline(Boolean rebuildOffline) {
+        this.rebuildOffline = rebuildOffline;
+    }
+
+    @Value("${index.incremental}")
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    @Value("${index.journalPath}")
+    public void setJournalPath(String journalPath) {
+        this.journalPath = journalPath;
+    }
 }
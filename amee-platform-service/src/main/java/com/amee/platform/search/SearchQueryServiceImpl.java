@@ -8,10 +8,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TermQuery;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -36,8 +38,19 @@ public class SearchQueryServiceImpl implements SearchQueryService {
         // Obtain Query.
         primaryQuery = filter.getQuery();
 
+        // Count drill down values over all hits in the same pass, if requested.
+        DrillFacetCollector facetCollector = filter.hasFacets() ? new DrillFacetCollector(filter.getFacets()) : null;
+
         // Get Lucene Documents matching query within page range.
-        ResultsWrapper<Document> pagedPrimaryResults = luceneService.doSearch(primaryQuery, filter.getResultStart(), filter.getResultLimit());
+        // Only the entity fields are needed to load the results.
+        ResultsWrapper<Document> pagedPrimaryResults = luceneService.doSearch(
+                primaryQuery,
+                filter.getResultStart(),
+                filter.getResultLimit(),
+                LuceneServiceImpl.MAX_NUM_HITS,
+                Sort.RELEVANCE,
+                LuceneServiceImpl.ENTITY_FIELDS,
+                facetCollector);
 
         // Would we like more results (not truncated)? Are we only searching for Data Categories?
         if (!pagedPrimaryResults.isTruncated() &&
@@ -46,13 +59,17 @@ public class SearchQueryServiceImpl implements SearchQueryService {
             // Attempt to supplement Data Category results with matches on Data Items.
             // Search for Data Items.
             ResultsWrapper<Document> allSecondaryResults =
-                    luceneService.doSearch(filter.getQuery(ObjectType.DI));
+                    luceneService.doSearch(
+                            filter.getQuery(ObjectType.DI),
+                            LuceneServiceImpl.MAX_NUM_HITS,
+                            new MapFieldSelector("entityUid", "categoryUid"));
 
             // Only handle secondary results if some were found.
             if (!allSecondaryResults.getResults().isEmpty()) {
 
                 // Get all Documents matching primary query (this is a duplicate of the search above).
-                ResultsWrapper<Document> allPrimaryResults = luceneService.doSearch(primaryQuery);
+                ResultsWrapper<Document> allPrimaryResults =
+                        luceneService.doSearch(primaryQuery, LuceneServiceImpl.MAX_NUM_HITS, LuceneServiceImpl.ENTITY_FIELDS);
 
                 // Collect primary results Data Category UIDs.
                 List<String> primaryDataCategoryUids = new ArrayList<String>();
@@ -119,6 +136,12 @@ public class SearchQueryServiceImpl implements SearchQueryService {
                 // NOTE: Our ResultsWrapper document list may now contain duplicates which need to be removed higher up the stack.
             }
         }
+
+        // Add the drill down value counts for the primary query.
+        if (facetCollector != null) {
+            return new FacetedResultsWrapper<Document>(
+                    pagedPrimaryResults.getResults(), pagedPrimaryResults, facetCollector.getFacets());
+        }
         return pagedPrimaryResults;
     }
 
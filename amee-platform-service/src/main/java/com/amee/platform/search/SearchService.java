@@ -101,17 +101,30 @@ public class SearchService {
     // Entity search.
 
     /**
+     * Search for entities. If the filter has facets the results will be a {@link FacetedResultsWrapper} holding
+     * the drill down value counts.
+     *
      * @param filter
      * @return
      */
     public ResultsWrapper<IAMEEEntity> getEntities(SearchFilter filter) {
 
         // Do search and fetch Lucene documents.
-        return getEntityResultsWrapper(
-                searchQueryService.doSearch(filter),
+        ResultsWrapper<Document> resultsWrapper = searchQueryService.doSearch(filter);
+        ResultsWrapper<IAMEEEntity> entityResultsWrapper = getEntityResultsWrapper(
+                resultsWrapper,
                 filter.isLoadEntityTags(),
                 filter.isLoadMetadatas(),
                 filter.isLoadDataItemValues());
+
+        // Pass on drill down value counts.
+        if (resultsWrapper instanceof FacetedResultsWrapper) {
+            return new FacetedResultsWrapper<IAMEEEntity>(
+                    entityResultsWrapper.getResults(),
+                    entityResultsWrapper,
+                    ((FacetedResultsWrapper<Document>) resultsWrapper).getFacets());
+        }
+        return entityResultsWrapper;
     }
 
     protected void addDataCategories(Map<ObjectType, Map<String, IAMEEEntity>> entities, Map<String, DataCategory> dataCategoriesMap) {
@@ -182,7 +195,8 @@ public class SearchService {
                         luceneService.doSearch(
                                 query,
                                 filter.getResultStart(),
-                                filter.getResultLimit(), LuceneServiceImpl.MAX_NUM_HITS, filter.getSort()),
+                                filter.getResultLimit(), LuceneServiceImpl.MAX_NUM_HITS, filter.getSort(),
+                                LuceneServiceImpl.ENTITY_FIELDS),
                         filter.isLoadEntityTags(),
                         filter.isLoadMetadatas(),
                         false));
@@ -255,7 +269,8 @@ public class SearchService {
                                 filter.getResultStart(),
                                 filter.getResultLimit(),
                                 LuceneServiceImpl.MAX_NUM_HITS,
-                                filter.getSort()),
+                                filter.getSort(),
+                                LuceneServiceImpl.ENTITY_FIELDS),
                         filter.isLoadEntityTags(),
                         filter.isLoadMetadatas(),
                         filter.isLoadDataItemValues()));
@@ -286,11 +301,16 @@ public class SearchService {
     // General entity search.
 
     /**
-     * @param resultsWrapper
-     * @param loadEntityTags
-     * @param loadMetadata
-     * @param loadItemValues
-     * @return
+     * Load the entities referenced by a page of Lucene Documents. The Documents are collated in a single pass into an
+     * ordered set of entity references, which drops duplicates while keeping relevance order. The entities, and their
+     * LocaleNames, EntityTags and Metadatas, are then bulk loaded with a fixed number of queries however many results
+     * are on the page. Entities missing from the database are skipped.
+     *
+     * @param resultsWrapper Lucene Documents in relevance order
+     * @param loadEntityTags true if EntityTags should be loaded for DataCategories
+     * @param loadMetadata   true if Metadatas should be loaded
+     * @param loadItemValues true if values should be loaded for DataItems
+     * @return the entities in relevance order
      */
     private ResultsWrapper<IAMEEEntity> getEntityResultsWrapper(
             ResultsWrapper<Document> resultsWrapper,
@@ -298,22 +318,29 @@ public class SearchService {
             boolean loadMetadata,
             boolean loadItemValues) {
 
-        // Collate entityIds against entityTypes.
+        // Collate entity references in relevance order and entityIds against entityTypes.
+        Set<AMEEEntityReference> references = new LinkedHashSet<AMEEEntityReference>();
         Map<ObjectType, Set<Long>> entityIds = new HashMap<ObjectType, Set<Long>>();
         for (Document document : resultsWrapper.getResults()) {
             Long entityId = new Long(document.getField("entityId").stringValue());
             ObjectType entityType = ObjectType.fromString(document.getField("entityType").stringValue());
-            Set<Long> idSet = entityIds.get(entityType);
-            if (idSet == null) {
-                idSet = new HashSet<Long>();
-                entityIds.put(entityType, idSet);
+            String entityUid = document.getField("entityUid").stringValue();
+            if (references.add(new AMEEEntityReference(entityType, entityId, entityUid))) {
+                Set<Long> idSet = entityIds.get(entityType);
+                if (idSet == null) {
+                    idSet = new HashSet<Long>();
+                    entityIds.put(entityType, idSet);
+                }
+                idSet.add(entityId);
             }
-            idSet.add(entityId);
         }
 
         // Collate AMEEEntities.
         Map<ObjectType, Map<String, IAMEEEntity>> entities = new HashMap<ObjectType, Map<String, IAMEEEntity>>();
 
+        // Entities to pre-load Metadatas for.
+        List<IAMEEEntityReference> metadataEntities = new ArrayList<IAMEEEntityReference>();
+
         // Load DataCategories.
         if (entityIds.containsKey(ObjectType.DC)) {
 
@@ -321,17 +348,17 @@ public class SearchService {
             Map<String, DataCategory> dataCategoriesMap = dataService.getDataCategoryMap(entityIds.get(ObjectType.DC));
             addDataCategories(entities, dataCategoriesMap);
 
-            // Pre-loading of EntityTags, LocaleNames & DataCategories.
+            // Pre-loading of EntityTags & LocaleNames.
             if (loadEntityTags) {
                 tagService.loadEntityTagsForDataCategories(dataCategoriesMap.values());
             }
             if (loadMetadata) {
-                metadataService.loadMetadatasForDataCategories(dataCategoriesMap.values());
+                metadataEntities.addAll(dataCategoriesMap.values());
             }
             localeService.loadLocaleNamesForDataCategories(dataCategoriesMap.values());
         }
 
-        // Load DataItems.
+        // Load DataItems, along with their LocaleNames.
         if (entityIds.containsKey(ObjectType.DI)) {
 
             // Load the items.
@@ -340,28 +367,25 @@ public class SearchService {
             // Add to map.
             addDataItems(entities, dataItemsMap);
 
-            // Pre-load Metadatas?
             if (loadMetadata) {
-                metadataService.loadMetadatasForDataItems(dataItemsMap.values());
+                metadataEntities.addAll(dataItemsMap.values());
             }
         }
 
-        // Create result list in relevance order.
-        List<IAMEEEntity> results = new ArrayList<IAMEEEntity>();
-        for (Document document : resultsWrapper.getResults()) {
-            String entityUid = document.getField("entityUid").stringValue();
-            ObjectType entityType = ObjectType.fromString(document.getField("entityType").stringValue());
-
-            // First attempt to find the result.
-            IAMEEEntity result = entities.containsKey(entityType) ? entities.get(entityType).get(entityUid) : null;
+        // Pre-load Metadatas for all entity types together.
+        if (!metadataEntities.isEmpty()) {
+            metadataService.loadMetadatas(entities.keySet(), metadataEntities);
+        }
 
-            // If we have a result and it is not a duplicate, add to the results list.
+        // Create result list in relevance order. Duplicates have already been removed.
+        List<IAMEEEntity> results = new ArrayList<IAMEEEntity>(references.size());
+        for (AMEEEntityReference reference : references) {
+            Map<String, IAMEEEntity> entitiesOfType = entities.get(reference.getObjectType());
+            IAMEEEntity result = (entitiesOfType != null) ? entitiesOfType.get(reference.getEntityUid()) : null;
             if (result != null) {
-                if (!results.contains(result)) {
-                    results.add(result);
-                }
+                results.add(result);
             } else {
-                log.warn("getEntities() Entity was missing: " + entityType + " / " + entityUid);
+                log.warn("getEntities() Entity was missing: " + reference.getObjectType() + " / " + reference.getEntityUid());
             }
         }
         return new ResultsWrapper<IAMEEEntity>(results, resultsWrapper.isTruncated());
@@ -37,7 +37,10 @@ public class AMEEStatisticsEventListener implements ApplicationListener {
                     ameeStatistics.resetThread();
                     break;
                 case END:
-                    log.trace("onApplicationEvent() END - {calculationDuration=" + ameeStatistics.getThreadCalculationDuration() + "}");
+                    log.trace("onApplicationEvent() END - {calculationDuration=" + ameeStatistics.getThreadCalculationDuration() +
+                            ", calculationElapsed=" + ameeStatistics.getThreadCalculationElapsed() +
+                            ", calculationCount=" + ameeStatistics.getThreadCalculationCount() +
+                            ", calculationSpeedUp=" + ameeStatistics.getThreadCalculationSpeedUp() + "}");
                     break;
                 default:
                     // Do nothing!
@@ -72,7 +72,12 @@ public abstract class AbstractDrillDownService implements DrillDownService {
 
     @Override
     public void clearDrillDownCache() {
-        cacheHelper.clearCache("DrillDownChoices");
+        cacheHelper.clearCache(DrillDownFactory.CACHE_NAME);
+    }
+
+    @Override
+    public int clearDrillDownCache(IDataCategoryReference dc) {
+        return cacheHelper.clearCache(DrillDownFactory.CACHE_NAME, DrillDownFactory.getKeyPrefix(dc));
     }
 
     private void matchSelectionOrderToDrillDownChoices(List<Choice> drillDownChoices, List<Choice> selections) {
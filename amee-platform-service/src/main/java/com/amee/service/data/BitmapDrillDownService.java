@@ -0,0 +1,167 @@
+package com.amee.service.data;
+
+import com.amee.domain.IDataCategoryReference;
+import com.amee.domain.LocaleHolder;
+import com.amee.domain.ObjectType;
+import com.amee.domain.sheet.Choice;
+import com.amee.service.invalidation.InvalidationMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A DrillDownService which answers drill downs from a {@link DrillDownIndex} held in memory for each DataCategory,
+ * so a drill down does not need a database round-trip.
+ * <p/>
+ * An index is loaded on the first drill down into a DataCategory and is discarded when the DataCategory is
+ * invalidated. At most maxIndexes indexes are held, the least recently used being discarded to make room for another.
+ * Drill downs in a non-default locale use localised values, which are not indexed, so they are answered
+ * by {@link DrillDownDAO} as in {@link SqlDrillDownService}.
+ */
+@Service
+public class BitmapDrillDownService extends AbstractDrillDownService implements ApplicationListener<InvalidationMessage> {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private DrillDownDAO drillDownDao;
+
+    public final static int DEFAULT_MAX_INDEXES = 500;
+
+    // DrillDownIndexes keyed by DataCategory UID, in access order.
+    private final Map<String, DrillDownIndex> indexes = new LinkedHashMap<String, DrillDownIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DrillDownIndex> eldest) {
+            return size() > maxIndexes;
+        }
+    };
+
+    private int maxIndexes = DEFAULT_MAX_INDEXES;
+
+    // Advanced on each invalidation so that an index loaded during an invalidation is not kept.
+    private final AtomicLong generation = new AtomicLong();
+
+    // Indexes removed because their DataCategory was invalidated.
+    private final AtomicLong indexEvictionCount = new AtomicLong();
+
+    @Override
+    public void onApplicationEvent(InvalidationMessage invalidationMessage) {
+        if ((invalidationMessage.isLocal() || invalidationMessage.isFromOtherInstance()) &&
+                invalidationMessage.getObjectType().equals(ObjectType.DC)) {
+            log.trace("onApplicationEvent() Handling InvalidationMessage.");
+            removeIndex(invalidationMessage.getEntityUid());
+        }
+    }
+
+    @Override
+    protected List<Choice> getDataItemChoices(
+        IDataCategoryReference dataCategory, List<Choice> selections, List<Choice> drillDownChoices) {
+
+        List<Choice> choices;
+        if (LocaleHolder.isDefaultLocale()) {
+            DrillDownIndex index = getIndex(dataCategory);
+            if (drillDownChoices.size() > 0) {
+                choices = index.getDataItemValueChoices(drillDownChoices.get(0).getName(), selections);
+            } else {
+                choices = index.getDataItemUIDChoices(selections);
+            }
+        } else if (drillDownChoices.size() > 0) {
+            choices = drillDownDao.getDataItemValueChoices(dataCategory, drillDownChoices.get(0).getName(), selections);
+        } else {
+            choices = drillDownDao.getDataItemUIDChoices(dataCategory, selections);
+        }
+        Collections.sort(choices);
+        return choices;
+    }
+
+    @Override
+    public void clearDrillDownCache() {
+        synchronized (indexes) {
+            generation.incrementAndGet();
+            indexes.clear();
+        }
+        super.clearDrillDownCache();
+    }
+
+    /**
+     * Clears the cached drill down choices and the index for a single data category. The index is not counted in the
+     * number returned but in {@link #getIndexEvictionCount()}.
+     *
+     * @param dc the DataCategory to clear drill downs for.
+     * @return the number of cache entries removed.
+     */
+    @Override
+    public int clearDrillDownCache(IDataCategoryReference dc) {
+        removeIndex(dc.getEntityUid());
+        return super.clearDrillDownCache(dc);
+    }
+
+    private void removeIndex(String dataCategoryUid) {
+        synchronized (indexes) {
+            generation.incrementAndGet();
+            if (indexes.remove(dataCategoryUid) != null) {
+                indexEvictionCount.incrementAndGet();
+                log.debug("removeIndex() Removed index for {}.", dataCategoryUid);
+            }
+        }
+    }
+
+    /**
+     * Get the DrillDownIndex for a DataCategory, loading it if needed.
+     *
+     * @param dataCategory the DataCategory
+     * @return the DrillDownIndex
+     */
+    private DrillDownIndex getIndex(IDataCategoryReference dataCategory) {
+        long loadGeneration;
+        synchronized (indexes) {
+            DrillDownIndex index = indexes.get(dataCategory.getEntityUid());
+            if (index != null) {
+                return index;
+            }
+            loadGeneration = generation.get();
+        }
+
+        // Load outside of the lock so drill downs into other DataCategories are not blocked.
+        DrillDownIndex index = drillDownDao.getDrillDownIndex(dataCategory);
+        synchronized (indexes) {
+            DrillDownIndex existing = indexes.get(dataCategory.getEntityUid());
+            if (existing != null) {
+                index = existing;
+            } else if (generation.get() == loadGeneration) {
+                // Not invalidated while loading.
+                indexes.put(dataCategory.getEntityUid(), index);
+            }
+        }
+        log.debug("getIndex() Loaded index for {} with {} DataItems.",
+                dataCategory.getEntityUid(), index.getDataItemCount());
+        return index;
+    }
+
+    public int getIndexCount() {
+        synchronized (indexes) {
+            return indexes.size();
+        }
+    }
+
+    public long getIndexEvictionCount() {
+        return indexEvictionCount.get();
+    }
+
+    @Value("${drillDown.maxIndexes}")
+    public void setMaxIndexes(Integer maxIndexes) {
+        if (maxIndexes < 1) {
+            throw new IllegalArgumentException("maxIndexes must be greater than zero.");
+        }
+        this.maxIndexes = maxIndexes;
+    }
+}
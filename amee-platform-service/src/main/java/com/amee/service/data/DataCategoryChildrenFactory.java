@@ -3,10 +3,17 @@ package com.amee.service.data;
 import com.amee.domain.IDataCategoryReference;
 import com.amee.domain.cache.CacheableFactory;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
 public class DataCategoryChildrenFactory implements CacheableFactory {
 
+    public static final String CACHE_NAME = "DataCategoryChildren";
+
     private IDataCategoryReference dc;
     private DataServiceDAO dao;
+    private ConcurrentMap<String, String> parentUids;
+    private ConcurrentMap<String, String> fullPaths;
 
     public DataCategoryChildrenFactory(IDataCategoryReference dc, DataServiceDAO dao) {
         super();
@@ -14,9 +21,32 @@ public class DataCategoryChildrenFactory implements CacheableFactory {
         this.dao = dao;
     }
 
+    /**
+     * @param dc         the parent DataCategory
+     * @param dao        the DataServiceDAO
+     * @param parentUids a map to record the parent UID of each child UID in when the children are loaded
+     * @param fullPaths  a map to record the full path of each child UID in when the children are loaded
+     */
+    public DataCategoryChildrenFactory(
+            IDataCategoryReference dc,
+            DataServiceDAO dao,
+            ConcurrentMap<String, String> parentUids,
+            ConcurrentMap<String, String> fullPaths) {
+        this(dc, dao);
+        this.parentUids = parentUids;
+        this.fullPaths = fullPaths;
+    }
+
     @Override
     public Object create() {
-        return dao.getDataCategories(dc);
+        Map<String, IDataCategoryReference> children = dao.getDataCategories(dc);
+        if (parentUids != null) {
+            for (IDataCategoryReference child : children.values()) {
+                parentUids.put(child.getEntityUid(), dc.getEntityUid());
+                fullPaths.put(child.getEntityUid(), child.getFullPath());
+            }
+        }
+        return children;
     }
 
     @Override
@@ -26,6 +56,6 @@ public class DataCategoryChildrenFactory implements CacheableFactory {
 
     @Override
     public String getCacheName() {
-        return "DataCategoryChildren";
+        return CACHE_NAME;
     }
-}
\ No newline at end of file
+}
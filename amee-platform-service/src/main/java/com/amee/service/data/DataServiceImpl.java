@@ -4,6 +4,7 @@ import com.amee.base.domain.ResultsWrapper;
 import com.amee.base.transaction.AMEETransaction;
 import com.amee.base.utils.UidGen;
 import com.amee.domain.AMEEEntityReference;
+import com.amee.domain.AMEEStatistics;
 import com.amee.domain.AMEEStatus;
 import com.amee.domain.APIVersion;
 import com.amee.domain.DataItemService;
@@ -20,9 +21,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -52,8 +56,17 @@ public class DataServiceImpl implements DataService, IDataService {
     @Autowired
     private DataServiceDAO dao;
 
+    @Autowired
+    private AMEEStatistics ameeStatistics;
+
     private CacheHelper cacheHelper = CacheHelper.getInstance();
 
+    // Parent DataCategory UIDs keyed by child DataCategory UID, recorded as DataCategoryChildren are cached.
+    private final ConcurrentMap<String, String> parentUids = new ConcurrentHashMap<String, String>();
+
+    // Full paths keyed by child DataCategory UID, as held in the cached DataCategoryChildren.
+    private final ConcurrentMap<String, String> fullPaths = new ConcurrentHashMap<String, String>();
+
     @Override
     @AMEETransaction
     @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
@@ -216,7 +229,7 @@ public class DataServiceImpl implements DataService, IDataService {
     public Map<String, IDataCategoryReference> getDataCategories(IDataCategoryReference dataCategoryReference) {
         log.debug("getDataCategories() {}", dataCategoryReference.getFullPath());
         Map<String, IDataCategoryReference> dataCategories =
-                (Map<String, IDataCategoryReference>) cacheHelper.getCacheable(new DataCategoryChildrenFactory(dataCategoryReference, dao));
+                (Map<String, IDataCategoryReference>) cacheHelper.getCacheable(new DataCategoryChildrenFactory(dataCategoryReference, dao, parentUids, fullPaths));
         localeService.loadLocaleNamesForDataCategoryReferences(dataCategories.values());
         return dataCategories;
     }
@@ -322,14 +335,73 @@ public class DataServiceImpl implements DataService, IDataService {
     @Override
     public void clearCaches(DataCategory dataCategory) {
         log.info("clearCaches() dataCategory: " + dataCategory.getUid());
-        drillDownService.clearDrillDownCache();
+        int drillDownEvictions = drillDownService.clearDrillDownCache(dataCategory);
         dao.invalidate(dataCategory);
-        cacheHelper.clearCache("DataCategoryChildren");
+        int childrenEvictions = clearDataCategoryChildren(dataCategory);
+        ameeStatistics.addToCacheEvictionCount(DrillDownFactory.CACHE_NAME, drillDownEvictions);
+        ameeStatistics.addToCacheEvictionCount(DataCategoryChildrenFactory.CACHE_NAME, childrenEvictions);
+        log.debug("clearCaches() Evicted {} drill downs and {} child lists.", drillDownEvictions, childrenEvictions);
         // TODO: Metadata?
         // TODO: Locales?
         // TODO: What else?
     }
 
+    /**
+     * Evict the cached children of a DataCategory and the cached children lists it appears in. These are those of the
+     * current parent and, if the DataCategory has moved, of the parent it was cached under.
+     * <p/>
+     * The cached children hold their full paths. So if the DataCategory has moved or its path has changed, the
+     * cached children of all of its descendants are evicted too.
+     *
+     * @param dataCategory the DataCategory
+     * @return the number of cache entries removed
+     */
+    private int clearDataCategoryChildren(DataCategory dataCategory) {
+        Set<String> keys = new HashSet<String>();
+        keys.add(dataCategory.getUid());
+        String parentUid = dataCategory.getDataCategory() != null ? dataCategory.getDataCategory().getUid() : null;
+        if (parentUid != null) {
+            keys.add(parentUid);
+        }
+        String cachedParentUid = parentUids.remove(dataCategory.getUid());
+        if (cachedParentUid != null) {
+            keys.add(cachedParentUid);
+        }
+        String cachedFullPath = fullPaths.remove(dataCategory.getUid());
+        if (((cachedParentUid != null) && !cachedParentUid.equals(parentUid)) ||
+                ((cachedFullPath != null) && !cachedFullPath.equals(dataCategory.getFullPath()))) {
+            addDescendantUids(dataCategory.getUid(), keys);
+        }
+        int removed = 0;
+        for (String key : keys) {
+            if (cacheHelper.remove(DataCategoryChildrenFactory.CACHE_NAME, key)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Add the UIDs of the descendants of a DataCategory known from the cached DataCategoryChildren, forgetting their
+     * parents and full paths as their children are to be evicted.
+     *
+     * @param uid  of the DataCategory
+     * @param uids to add the descendant UIDs to
+     */
+    private void addDescendantUids(String uid, Set<String> uids) {
+        List<String> parents = new ArrayList<String>();
+        parents.add(uid);
+        for (int i = 0; i < parents.size(); i++) {
+            for (Map.Entry<String, String> entry : parentUids.entrySet()) {
+                if (entry.getValue().equals(parents.get(i)) && parentUids.remove(entry.getKey(), entry.getValue())) {
+                    fullPaths.remove(entry.getKey());
+                    uids.add(entry.getKey());
+                    parents.add(entry.getKey());
+                }
+            }
+        }
+    }
+
     // API Versions
 
     @Override
@@ -1,13 +1,16 @@
 package com.amee.service.data;
 
+import static org.hibernate.type.StandardBasicTypes.DOUBLE;
 import static org.hibernate.type.StandardBasicTypes.LONG;
 import static org.hibernate.type.StandardBasicTypes.STRING;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.EntityManager;
@@ -142,6 +145,99 @@ class DrillDownDAO {
         return choices;
     }
 
+    /**
+     * Loads the drill down values of all DataItems in a {@link com.amee.domain.data.DataCategory} into a
+     * {@link DrillDownIndex}. This takes three queries, however many DataItems there are.
+     *
+     * @param dc the {@link com.amee.domain.data.DataCategory} to index (required)
+     * @return the {@link DrillDownIndex}
+     */
+    @SuppressWarnings(value = "unchecked")
+    public DrillDownIndex getDrillDownIndex(IDataCategoryReference dc) {
+
+        // check arguments
+        if ((dc == null) || (!dc.isItemDefinitionPresent())) {
+            throw new IllegalArgumentException("A required argument is missing.");
+        }
+
+        // Get the Data Category and the drill down Item Value Definitions.
+        DataCategory dataCategory = dataServiceDao.getDataCategory(dc);
+        ItemDefinition itemDefinition = dataCategory.getItemDefinition();
+        DrillDownIndex.Builder builder = new DrillDownIndex.Builder();
+        Map<Long, String> paths = new HashMap<Long, String>();
+        for (Choice choice : itemDefinition.getDrillDownChoices()) {
+            ItemValueDefinition itemValueDefinition = itemDefinition.getItemValueDefinition(choice.getName());
+            if (itemValueDefinition != null) {
+                builder.addPath(choice.getName());
+                paths.put(itemValueDefinition.getId(), choice.getName());
+            }
+        }
+
+        // create query for Data Items
+        Session session = (Session) entityManager.getDelegate();
+        StringBuilder sql = new StringBuilder();
+        sql.append("SELECT ID, UID ");
+        sql.append("FROM DATA_ITEM ");
+        sql.append("WHERE STATUS != :trash ");
+        sql.append("AND DATA_CATEGORY_ID = :dataCategoryId ");
+        sql.append("AND ITEM_DEFINITION_ID = :itemDefinitionId");
+        SQLQuery query = session.createSQLQuery(sql.toString());
+        query.addScalar("ID", LONG);
+        query.addScalar("UID", STRING);
+        query.setInteger("trash", AMEEStatus.TRASH.ordinal());
+        query.setLong("dataCategoryId", dataCategory.getId());
+        query.setLong("itemDefinitionId", itemDefinition.getId());
+        for (Object[] row : (List<Object[]>) query.list()) {
+            builder.addDataItem((Long) row[0], (String) row[1]);
+        }
+
+        if (!paths.isEmpty()) {
+
+            // create query for number values
+            sql = new StringBuilder();
+            sql.append("SELECT v.DATA_ITEM_ID ID, v.ITEM_VALUE_DEFINITION_ID IVD_ID, v.VALUE VALUE, CAST(v.VALUE AS CHAR) DISPLAY_VALUE ");
+            sql.append("FROM DATA_ITEM_NUMBER_VALUE v, DATA_ITEM di ");
+            sql.append("WHERE v.DATA_ITEM_ID = di.ID ");
+            sql.append("AND di.DATA_CATEGORY_ID = :dataCategoryId ");
+            sql.append("AND v.STATUS != :trash ");
+            sql.append("AND v.ITEM_VALUE_DEFINITION_ID IN (:itemValueDefinitionIds)");
+            query = session.createSQLQuery(sql.toString());
+            query.addScalar("ID", LONG);
+            query.addScalar("IVD_ID", LONG);
+            query.addScalar("VALUE", DOUBLE);
+            query.addScalar("DISPLAY_VALUE", STRING);
+            query.setInteger("trash", AMEEStatus.TRASH.ordinal());
+            query.setLong("dataCategoryId", dataCategory.getId());
+            query.setParameterList("itemValueDefinitionIds", paths.keySet(), LONG);
+            for (Object[] row : (List<Object[]>) query.list()) {
+                builder.addNumberValue((Long) row[0], paths.get(row[1]), (Double) row[2], (String) row[3]);
+            }
+
+            // create query for text values
+            sql = new StringBuilder();
+            sql.append("SELECT v.DATA_ITEM_ID ID, v.ITEM_VALUE_DEFINITION_ID IVD_ID, v.VALUE VALUE ");
+            sql.append("FROM DATA_ITEM_TEXT_VALUE v, DATA_ITEM di ");
+            sql.append("WHERE v.DATA_ITEM_ID = di.ID ");
+            sql.append("AND di.DATA_CATEGORY_ID = :dataCategoryId ");
+            sql.append("AND v.STATUS != :trash ");
+            sql.append("AND v.ITEM_VALUE_DEFINITION_ID IN (:itemValueDefinitionIds)");
+            query = session.createSQLQuery(sql.toString());
+            query.addScalar("ID", LONG);
+            query.addScalar("IVD_ID", LONG);
+            query.addScalar("VALUE", STRING);
+            query.setInteger("trash", AMEEStatus.TRASH.ordinal());
+            query.setLong("dataCategoryId", dataCategory.getId());
+            query.setParameterList("itemValueDefinitionIds", paths.keySet(), LONG);
+            for (Object[] row : (List<Object[]>) query.list()) {
+                builder.addTextValue((Long) row[0], paths.get(row[1]), (String) row[2]);
+            }
+        }
+
+        DrillDownIndex index = builder.build();
+        log.debug("getDrillDownIndex() results: {}", index.getDataItemCount());
+        return index;
+    }
+
     @SuppressWarnings(value = "unchecked")
     private Collection<String> getDataItemUIDs(Collection<Long> dataItemIds) {
 
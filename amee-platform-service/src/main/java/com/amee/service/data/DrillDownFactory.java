@@ -12,6 +12,8 @@ import java.util.List;
 
 public class DrillDownFactory implements CacheableFactory {
 
+    public static final String CACHE_NAME = "DrillDownChoices";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private DrillDownDAO drillDownDao;
@@ -72,6 +74,17 @@ public class DrillDownFactory implements CacheableFactory {
     }
 
     public String getCacheName() {
-        return "DrillDownChoices";
+        return CACHE_NAME;
+    }
+
+    /**
+     * Get the prefix shared by the keys of all drill downs for a DataCategory. The UID is followed by a selection
+     * ("_SL_") or the locale ("__L__") in every key, so the prefix includes the separator.
+     *
+     * @param dataCategory the DataCategory
+     * @return the key prefix
+     */
+    public static String getKeyPrefix(IDataCategoryReference dataCategory) {
+        return "DrillDown_" + dataCategory.getEntityUid() + "_";
     }
 }
@@ -0,0 +1,262 @@
+package com.amee.service.data;
+
+import com.amee.domain.sheet.Choice;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable in-memory inverted index of the drill down values of the DataItems in a single DataCategory.
+ * <p/>
+ * Each DataItem is given an ordinal. For each drill down path the index maps each value to a bitmap of the ordinals of
+ * the DataItems with that value. A set of selections is answered by intersecting bitmaps, and the next choices by
+ * finding the values whose bitmaps intersect the result.
+ * <p/>
+ * Values are matched as {@link DrillDownDAO} matches them: text values must be equal under the collation of the
+ * database and number values must be numerically equal. The collation is a case and accent insensitive one which
+ * ignores trailing spaces, as the MySQL utf8_general_ci default. Number values are presented in the form the database
+ * casts them to, and where values are equal under the collation only the first one loaded is presented, as the
+ * DISTINCT in the SQL would.
+ */
+public class DrillDownIndex {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TRAILING_SPACES = Pattern.compile(" +$");
+
+    // DataItem UIDs by ordinal.
+    private final String[] uids;
+
+    // Columns keyed by lower case drill down path.
+    private final Map<String, Column> columns;
+
+    private DrillDownIndex(String[] uids, Map<String, Column> columns) {
+        this.uids = uids;
+        this.columns = columns;
+    }
+
+    /**
+     * Get the value choices for a drill down path.
+     *
+     * @param path       the drill down path to get values for
+     * @param selections the current selections
+     * @return the distinct values, sorted case insensitively
+     */
+    public List<Choice> getDataItemValueChoices(String path, List<Choice> selections) {
+        Column column = columns.get(path.toLowerCase());
+        if (column == null) {
+            throw new IllegalArgumentException("ItemValueDefinition not found: " + path);
+        }
+        BitSet dataItems = getDataItems(selections);
+        List<String> values = new ArrayList<String>();
+        if (!dataItems.isEmpty()) {
+            for (DisplayValue displayValue : column.displayValues.values()) {
+                if (displayValue.dataItems.intersects(dataItems)) {
+                    values.add(displayValue.value);
+                }
+            }
+        }
+        Collections.sort(values, String.CASE_INSENSITIVE_ORDER);
+        List<Choice> choices = new ArrayList<Choice>(values.size());
+        for (String value : values) {
+            choices.add(new Choice(value));
+        }
+        return choices;
+    }
+
+    /**
+     * Get the UID choices of the DataItems matching the selections.
+     *
+     * @param selections the current selections
+     * @return the UID choices
+     */
+    public List<Choice> getDataItemUIDChoices(List<Choice> selections) {
+        BitSet dataItems = getDataItems(selections);
+        List<Choice> choices = new ArrayList<Choice>(dataItems.cardinality());
+        for (int i = dataItems.nextSetBit(0); i >= 0; i = dataItems.nextSetBit(i + 1)) {
+            choices.add(new Choice(uids[i]));
+        }
+        return choices;
+    }
+
+    /**
+     * Get the DataItems matching all selections.
+     *
+     * @param selections the selections
+     * @return a new bitmap of DataItem ordinals
+     */
+    private BitSet getDataItems(List<Choice> selections) {
+        BitSet dataItems = new BitSet(uids.length);
+        dataItems.set(0, uids.length);
+        for (Choice selection : selections) {
+            Column column = columns.get(selection.getName().toLowerCase());
+            if (column == null) {
+                throw new IllegalArgumentException("Could not locate ItemValueDefinition: " + selection.getName());
+            }
+            column.retainMatching(dataItems, selection.getValue());
+            if (dataItems.isEmpty()) {
+                break;
+            }
+        }
+        return dataItems;
+    }
+
+    public int getDataItemCount() {
+        return uids.length;
+    }
+
+    /**
+     * Get the key under which a text value is held, so that values equal under the collation share a key.
+     *
+     * @param value the text value
+     * @return the collation key
+     */
+    static String getCollationKey(String value) {
+        String key = TRAILING_SPACES.matcher(value).replaceFirst("");
+        key = COMBINING_MARKS.matcher(Normalizer.normalize(key, Normalizer.Form.NFD)).replaceAll("");
+        return key.toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The bitmaps for one drill down path.
+     */
+    private static class Column {
+
+        // Bitmaps keyed by the collation key of text values and by number values.
+        private final Map<String, BitSet> textValues = new HashMap<String, BitSet>();
+        private final Map<Double, BitSet> numberValues = new HashMap<Double, BitSet>();
+
+        // Presented values keyed by the collation key of the presented value.
+        private final Map<String, DisplayValue> displayValues = new HashMap<String, DisplayValue>();
+
+        private void retainMatching(BitSet dataItems, String value) {
+            BitSet matching = new BitSet();
+            BitSet textMatching = textValues.get(getCollationKey(value));
+            if (textMatching != null) {
+                matching.or(textMatching);
+            }
+            try {
+                BitSet numberMatching = numberValues.get(Double.valueOf(value));
+                if (numberMatching != null) {
+                    matching.or(numberMatching);
+                }
+            } catch (NumberFormatException e) {
+                // Not a number so only text values can match.
+            }
+            dataItems.and(matching);
+        }
+
+        private static void add(Map<?, BitSet> bitmaps, Object key, int ordinal) {
+            @SuppressWarnings("unchecked")
+            Map<Object, BitSet> map = (Map<Object, BitSet>) bitmaps;
+            BitSet bitmap = map.get(key);
+            if (bitmap == null) {
+                bitmap = new BitSet();
+                map.put(key, bitmap);
+            }
+            bitmap.set(ordinal);
+        }
+
+        private void addDisplayValue(String value, int ordinal) {
+            String key = getCollationKey(value);
+            DisplayValue displayValue = displayValues.get(key);
+            if (displayValue == null) {
+                displayValue = new DisplayValue(value);
+                displayValues.put(key, displayValue);
+            }
+            displayValue.dataItems.set(ordinal);
+        }
+    }
+
+    /**
+     * A presented value and the bitmap of the DataItems with a value equal to it under the collation.
+     */
+    private static class DisplayValue {
+
+        private final String value;
+        private final BitSet dataItems = new BitSet();
+
+        private DisplayValue(String value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Builds a DrillDownIndex. A Builder is not thread-safe and must not be used after build() is called.
+     */
+    public static class Builder {
+
+        private final Map<Long, Integer> ordinals = new HashMap<Long, Integer>();
+        private final List<String> uids = new ArrayList<String>();
+        private final Map<String, Column> columns = new HashMap<String, Column>();
+
+        /**
+         * Add a drill down path. Values can only be added for known paths.
+         *
+         * @param path the drill down path
+         * @return this Builder
+         */
+        public Builder addPath(String path) {
+            if (!columns.containsKey(path.toLowerCase())) {
+                columns.put(path.toLowerCase(), new Column());
+            }
+            return this;
+        }
+
+        /**
+         * Add a DataItem.
+         *
+         * @param id  the DataItem ID
+         * @param uid the DataItem UID
+         * @return this Builder
+         */
+        public Builder addDataItem(Long id, String uid) {
+            if (!ordinals.containsKey(id)) {
+                ordinals.put(id, uids.size());
+                uids.add(uid);
+            }
+            return this;
+        }
+
+        /**
+         * Add a text value. Values for unknown DataItems or paths are ignored.
+         *
+         * @param id    the DataItem ID
+         * @param path  the drill down path
+         * @param value the value
+         * @return this Builder
+         */
+        public Builder addTextValue(Long id, String path, String value) {
+            Integer ordinal = ordinals.get(id);
+            Column column = columns.get(path.toLowerCase());
+            if ((ordinal != null) && (column != null) && (value != null)) {
+                Column.add(column.textValues, getCollationKey(value), ordinal);
+                column.addDisplayValue(value, ordinal);
+            }
+            return this;
+        }
+
+        /**
+         * Add a number value. Values for unknown DataItems or paths are ignored.
+         *
+         * @param id           the DataItem ID
+         * @param path         the drill down path
+         * @param value        the value
+         * @param displayValue the value as presented in choices
+         * @return this Builder
+         */
+        public Builder addNumberValue(Long id, String path, Double value, String displayValue) {
+            Integer ordinal = ordinals.get(id);
+            Column column = columns.get(path.toLowerCase());
+            if ((ordinal != null) && (column != null) && (value != null)) {
+                Column.add(column.numberValues, value, ordinal);
+                column.addDisplayValue(displayValue, ordinal);
+            }
+            return this;
+        }
+
+        public DrillDownIndex build() {
+            return new DrillDownIndex(uids.toArray(new String[uids.size()]), new HashMap<String, Column>(columns));
+        }
+    }
+}
@@ -18,4 +18,12 @@ public interface DrillDownService {
     Choices getChoices(IDataCategoryReference dc, List<Choice> selections);
 
     void clearDrillDownCache();
+
+    /**
+     * Clears the cached drill down choices for a single data category.
+     *
+     * @param dc the DataCategory to clear drill downs for.
+     * @return the number of cache entries removed.
+     */
+    int clearDrillDownCache(IDataCategoryReference dc);
 }
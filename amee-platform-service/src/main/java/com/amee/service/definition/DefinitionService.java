@@ -53,6 +53,13 @@ public interface DefinitionService extends ApplicationListener<InvalidationMessa
 
     public void clearCaches(ItemDefinition itemDefinition);
 
+    /**
+     * Invalidate an Algorithm. Any cached compiled form of the Algorithm will be evicted.
+     *
+     * @param algorithm the Algorithm to invalidate.
+     */
+    public void invalidate(Algorithm algorithm);
+
     public ItemValueDefinition getItemValueDefinitionByUid(ItemDefinition itemDefinition, String uid);
 
     public ItemValueDefinition getItemValueDefinitionByUid(String uid);
@@ -163,6 +163,17 @@ public class DefinitionServiceImpl implements DefinitionService {
         }
     }
 
+    /**
+     * Invalidate an Algorithm. This will send an invalidation message via the InvalidationService.
+     *
+     * @param algorithm to invalidate
+     */
+    @Override
+    public void invalidate(Algorithm algorithm) {
+        log.info("invalidate() algorithm: " + algorithm.getUid());
+        invalidationService.add(algorithm);
+    }
+
     /**
      * Clears all caches related to the supplied ItemDefinition.
      *
@@ -169,9 +169,7 @@ public abstract class AbstractItemService implements ItemService, ApplicationLis
     @Override
     public ItemValueMap getItemValuesMap(BaseItem item) {
         ItemValueMap itemValuesMap = new ItemValueMap();
-        for (BaseItemValue itemValue : getActiveItemValues(item)) {
-            itemValuesMap.put(itemValue.getDisplayPath(), itemValue);
-        }
+        itemValuesMap.putAll(getActiveItemValues(item));
         return itemValuesMap;
     }
 
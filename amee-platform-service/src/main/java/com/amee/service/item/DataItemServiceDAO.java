@@ -17,6 +17,8 @@ public interface DataItemServiceDAO extends ItemServiceDAO {
 
     List<DataItem> getDataItems(IDataCategoryReference dataCategory);
 
+    List<DataItem> getDataItems(IDataCategoryReference dataCategory, int maxResults);
+
     List<DataItem> getDataItems(Set<Long> dataItemIds);
 
     @Override
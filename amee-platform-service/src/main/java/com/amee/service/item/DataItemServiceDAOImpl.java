@@ -13,6 +13,7 @@ import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.springframework.stereotype.Repository;
@@ -55,6 +56,25 @@ public class DataItemServiceDAOImpl extends ItemServiceDAOImpl implements DataIt
         return criteria.list();
     }
 
+    /**
+     * Return at most maxResults non-trashed DataItems for the given IDataCategoryReference, in ID order.
+     *
+     * @param dataCategory to get DataItems for
+     * @param maxResults   the most DataItems to return
+     * @return the DataItems
+     */
+    @Override
+    @SuppressWarnings(value = "unchecked")
+    public List<DataItem> getDataItems(IDataCategoryReference dataCategory, int maxResults) {
+        Session session = (Session) entityManager.getDelegate();
+        Criteria criteria = session.createCriteria(DataItem.class);
+        criteria.add(Restrictions.eq("dataCategory.id", dataCategory.getEntityId()));
+        criteria.add(Restrictions.ne("status", AMEEStatus.TRASH));
+        criteria.addOrder(Order.asc("id"));
+        criteria.setMaxResults(maxResults);
+        return criteria.list();
+    }
+
     @Override
     @SuppressWarnings(value = "unchecked")
     public List<DataItem> getDataItems(Set<Long> dataItemIds) {
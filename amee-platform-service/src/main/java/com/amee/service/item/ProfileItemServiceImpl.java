@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -479,13 +480,23 @@ public class ProfileItemServiceImpl extends AbstractItemService implements Profi
         // The requested interval to prorata the values over.
         Interval requestInterval = getInterval(startDate, endDate);
 
+        // Update ProfileItems with start and end dates and find those with perTime ItemValues.
+        Set<ProfileItem> perTimeItems = new LinkedHashSet<ProfileItem>();
+        List<ProfileItem> unprocessedItems = new ArrayList<ProfileItem>();
         for (ProfileItem pi : profileItems) {
-
-            // Update ProfileItem with start and end dates.
             pi.setEffectiveStartDate(startDate);
             pi.setEffectiveEndDate(endDate);
+            if (hasNonZeroPerTimeValues(pi)) {
+                perTimeItems.add(pi);
+            } else if (!pi.hasAmounts()) {
+                unprocessedItems.add(pi);
+            }
+        }
+
+        // Calculate the un-prorated Amounts in one batch.
+        calculationService.calculateAll(unprocessedItems);
 
-            log.debug("prorataProfileItems() - ProfileItem: {} has un-prorated Amounts: {}", pi.getName(), pi.getAmounts());
+        for (ProfileItem pi : profileItems) {
 
             // Find the intersection of the profile item with the requested window.
             Interval intersect = requestInterval;
@@ -498,7 +509,7 @@ public class ProfileItemServiceImpl extends AbstractItemService implements Profi
 
             log.debug("prorataProfileItems() - request interval: {}, intersect: {}", intersect);
 
-            if (hasNonZeroPerTimeValues(pi)) {
+            if (perTimeItems.contains(pi)) {
 
                 // The ProfileItem has perTime ItemValues. In this case, the ItemValues are multiplied by
                 // the (intersect/PerTime) ratio and the CO2 value recalculated.
@@ -522,14 +533,12 @@ public class ProfileItemServiceImpl extends AbstractItemService implements Profi
                     }
                 }
 
-                // Perform the calculation using the prorated values.
-                calculationService.calculate(pi);
-
-                log.debug("prorataProfileItems() - ProfileItem: {}. Adding prorated Amounts: {}", pi.getName(), pi.getAmounts());
-
+                // The calculation using the prorated values is performed in a batch below.
                 requestedItems.add(pi);
             } else if (pi.getEndDate() != null) {
 
+                log.debug("prorataProfileItems() - ProfileItem: {} has un-prorated Amounts: {}", pi.getName(), pi.getAmounts());
+
                 // The ProfileItem has no perTime ItemValues and is bounded.
                 // In this case, the CO2 value is multiplied by the (intersection/item duration) ratio.
 
@@ -561,6 +570,12 @@ public class ProfileItemServiceImpl extends AbstractItemService implements Profi
             }
         }
 
+        // Perform the calculations using the prorated values in one batch.
+        calculationService.calculateAll(perTimeItems);
+        for (ProfileItem pi : perTimeItems) {
+            log.debug("prorataProfileItems() - ProfileItem: {}. Adding prorated Amounts: {}", pi.getName(), pi.getAmounts());
+        }
+
         log.debug("prorataProfileItems() done ({})", requestedItems.size());
 
         return requestedItems;
@@ -13,6 +13,8 @@ public interface LocaleServiceDAO {
 
     public List<LocaleName> getLocaleNames(ObjectType objectType, Collection<IAMEEEntityReference> entities);
 
+    public List<LocaleName> getLocaleNames(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities);
+
     public void persist(LocaleName localeName);
 
     public void remove(LocaleName localeName);
@@ -12,6 +12,7 @@ import org.hibernate.criterion.Restrictions;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -41,8 +42,22 @@ public class LocaleServiceDAOImpl implements LocaleServiceDAO {
      * Note: This can return LocaleNames associated with various types of entities.
      */
     @Override
-    @SuppressWarnings(value = "unchecked")
     public List<LocaleName> getLocaleNames(ObjectType objectType, Collection<IAMEEEntityReference> entities) {
+        return getLocaleNames(Collections.singleton(objectType), entities);
+    }
+
+    /**
+     * Fetch the LocaleNames for entities of several types in a single query.
+     * <p/>
+     * Note: This can return LocaleNames associated with any of the types whose entity ID matches one of the entities.
+     */
+    @Override
+    @SuppressWarnings(value = "unchecked")
+    public List<LocaleName> getLocaleNames(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities) {
+        Set<String> entityTypes = new HashSet<String>();
+        for (ObjectType objectType : objectTypes) {
+            entityTypes.add(objectType.getName());
+        }
         Set<Long> entityIds = new HashSet<Long>();
         entityIds.add(0L);
         for (IAMEEEntityReference entity : entities) {
@@ -51,7 +66,7 @@ public class LocaleServiceDAOImpl implements LocaleServiceDAO {
         Session session = (Session) entityManager.getDelegate();
         Criteria criteria = session.createCriteria(LocaleName.class);
         criteria.add(Restrictions.in("entity.entityId", entityIds));
-        criteria.add(Restrictions.eq("entity.entityType", objectType.getName()));
+        criteria.add(Restrictions.in("entity.entityType", entityTypes));
         criteria.add(Restrictions.ne("status", AMEEStatus.TRASH));
         criteria.setFlushMode(FlushMode.MANUAL);
         return criteria.list();
@@ -23,6 +23,11 @@ public class LocaleServiceDAONoOpImpl implements LocaleServiceDAO {
         return new ArrayList<LocaleName>();
     }
 
+    @Override
+    public List<LocaleName> getLocaleNames(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities) {
+        return new ArrayList<LocaleName>();
+    }
+
     @Override
     public void persist(LocaleName localeName) {
         // Do nothing.
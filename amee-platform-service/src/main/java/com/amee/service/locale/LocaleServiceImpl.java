@@ -131,12 +131,13 @@ public class LocaleServiceImpl implements LocaleService, ApplicationListener {
 
     @Override
     public void loadLocaleNamesForDataItems(Collection<DataItem> dataItems, Set<BaseItemValue> values) {
-        loadLocaleNames(ObjectType.DI, new HashSet<IAMEEEntityReference>(dataItems));
         if ((values != null) && (!values.isEmpty())) {
-            Set<IAMEEEntityReference> itemValueRefs = new HashSet<IAMEEEntityReference>();
-            itemValueRefs.addAll(values);
-            loadLocaleNames(ObjectType.DITV, itemValueRefs);
-            loadLocaleNames(ObjectType.DITVH, itemValueRefs);
+            // Load the LocaleNames for the DataItems and their values together.
+            Set<IAMEEEntityReference> entities = new HashSet<IAMEEEntityReference>(dataItems);
+            entities.addAll(values);
+            loadLocaleNames(EnumSet.of(ObjectType.DI, ObjectType.DITV, ObjectType.DITVH), entities);
+        } else {
+            loadLocaleNames(ObjectType.DI, new HashSet<IAMEEEntityReference>(dataItems));
         }
     }
 
@@ -147,6 +148,17 @@ public class LocaleServiceImpl implements LocaleService, ApplicationListener {
 
     @Override
     public void loadLocaleNames(ObjectType objectType, Collection<IAMEEEntityReference> entities) {
+        loadLocaleNames(Collections.singleton(objectType), entities);
+    }
+
+    /**
+     * Load the LocaleNames for entities of several types with a single query.
+     *
+     * @param objectTypes the types of the entities
+     * @param entities    to load LocaleNames for
+     */
+    @Override
+    public void loadLocaleNames(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities) {
         // A null entry for when there are no LocaleNames for the entity.
         // Ensure a null entry exists for all entities.
         for (IAMEEEntityReference entity : entities) {
@@ -156,7 +168,7 @@ public class LocaleServiceImpl implements LocaleService, ApplicationListener {
         }
         // Store LocaleNames against entities.
         // If there are no LocaleNames for an entity the entry will remain null.
-        for (LocaleName localeName : dao.getLocaleNames(objectType, entities)) {
+        for (LocaleName localeName : dao.getLocaleNames(objectTypes, entities)) {
             List<LocaleName> localeNames = LOCALE_NAMES.get().get(localeName.getEntityReference().toString());
             if (localeNames == null) {
                 localeNames = new ArrayList<LocaleName>();
@@ -15,6 +15,8 @@ public interface MetadataServiceDAO {
 
     public List<Metadata> getMetadatas(ObjectType objectType, Collection<IAMEEEntityReference> entities);
 
+    public List<Metadata> getMetadatas(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities);
+
     public void persist(Metadata metadata);
 
     public void remove(Metadata metadata);
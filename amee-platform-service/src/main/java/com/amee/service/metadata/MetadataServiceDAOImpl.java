@@ -14,6 +14,7 @@ import org.springframework.stereotype.Repository;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -58,8 +59,22 @@ public class MetadataServiceDAOImpl implements MetadataServiceDAO {
     }
 
     @Override
-    @SuppressWarnings(value = "unchecked")
     public List<Metadata> getMetadatas(ObjectType objectType, Collection<IAMEEEntityReference> entities) {
+        return getMetadatas(Collections.singleton(objectType), entities);
+    }
+
+    /**
+     * Fetch the Metadatas for entities of several types in a single query.
+     * <p/>
+     * Note: This can return Metadatas associated with any of the types whose entity ID matches one of the entities.
+     */
+    @Override
+    @SuppressWarnings(value = "unchecked")
+    public List<Metadata> getMetadatas(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities) {
+        Set<String> entityTypes = new HashSet<String>();
+        for (ObjectType objectType : objectTypes) {
+            entityTypes.add(objectType.getName());
+        }
         Set<Long> entityIds = new HashSet<Long>();
         entityIds.add(0L);
         for (IAMEEEntityReference entity : entities) {
@@ -68,7 +83,7 @@ public class MetadataServiceDAOImpl implements MetadataServiceDAO {
         Session session = (Session) entityManager.getDelegate();
         Criteria criteria = session.createCriteria(Metadata.class);
         criteria.add(Restrictions.in("entityReference.entityId", entityIds));
-        criteria.add(Restrictions.eq("entityReference.entityType", objectType.getName()));
+        criteria.add(Restrictions.in("entityReference.entityType", entityTypes));
         criteria.add(Restrictions.ne("status", AMEEStatus.TRASH));
         criteria.setFlushMode(FlushMode.MANUAL);
         return criteria.list();
@@ -17,6 +17,7 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Service;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -104,6 +105,17 @@ public class MetadataServiceImpl implements MetadataService, ApplicationListener
 
     @Override
     public void loadMetadatas(ObjectType objectType, Collection<IAMEEEntityReference> entities) {
+        loadMetadatas(Collections.singleton(objectType), entities);
+    }
+
+    /**
+     * Load the Metadatas for entities of several types with a single query.
+     *
+     * @param objectTypes the types of the entities
+     * @param entities    to load Metadatas for
+     */
+    @Override
+    public void loadMetadatas(Collection<ObjectType> objectTypes, Collection<IAMEEEntityReference> entities) {
         // A null entry for when there is no Metadata for the entity.
         // Ensure a null entry exists for all entities.
         for (IAMEEEntityReference entity : entities) {
@@ -113,7 +125,7 @@ public class MetadataServiceImpl implements MetadataService, ApplicationListener
         }
         // Store Metadata against entities.
         // If there is no Metadata for an entity the entry will remain null.
-        for (Metadata metadata : dao.getMetadatas(objectType, entities)) {
+        for (Metadata metadata : dao.getMetadatas(objectTypes, entities)) {
             Map<String, Metadata> metadatas = METADATAS.get().get(metadata.getEntityReference().toString());
             if (metadatas == null) {
                 metadatas = new HashMap<String, Metadata>();
@@ -0,0 +1,85 @@
+package com.amee.calculation.service;
+
+import com.amee.domain.AMEEEntityReference;
+import com.amee.domain.DataItemService;
+import com.amee.domain.ObjectType;
+import com.amee.domain.algorithm.Algorithm;
+import com.amee.domain.data.DataCategory;
+import com.amee.domain.data.ItemDefinition;
+import com.amee.domain.item.data.DataItem;
+import com.amee.service.data.DataService;
+import com.amee.service.definition.DefinitionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AlgorithmBackendVerifierTest {
+
+    private AlgorithmBackendVerifier verifier;
+    private CalculationService calculationService;
+    private DataService dataService;
+    private DataItemService dataItemService;
+    private DefinitionService definitionService;
+    private ItemDefinition itemDefinition;
+
+    @Before
+    public void setUp() {
+        calculationService = mock(CalculationService.class);
+        dataService = mock(DataService.class);
+        dataItemService = mock(DataItemService.class);
+        definitionService = mock(DefinitionService.class);
+        verifier = new AlgorithmBackendVerifier();
+        ReflectionTestUtils.setField(verifier, "calculationService", calculationService);
+        ReflectionTestUtils.setField(verifier, "dataService", dataService);
+        ReflectionTestUtils.setField(verifier, "dataItemService", dataItemService);
+        ReflectionTestUtils.setField(verifier, "definitionService", definitionService);
+
+        Algorithm algorithm = mock(Algorithm.class);
+        when(algorithm.getUid()).thenReturn("ALGORITHM_UID");
+        when(algorithm.getFullContent()).thenReturn("distance * 2");
+        Set<Algorithm> algorithms = new HashSet<Algorithm>();
+        algorithms.add(algorithm);
+        itemDefinition = mock(ItemDefinition.class);
+        when(itemDefinition.getUid()).thenReturn("ITEM_DEFINITION_UID");
+        when(itemDefinition.getActiveAlgorithms()).thenReturn(algorithms);
+        when(itemDefinition.getAlgorithmBackendVerified()).thenReturn("");
+        when(itemDefinition.getAlgorithmBackend()).thenReturn("translated");
+        when(definitionService.getItemDefinitions()).thenReturn(Collections.singletonList(itemDefinition));
+    }
+
+    @Test
+    public void isVerifiedShouldNotEvaluate() {
+        assertFalse(verifier.isVerified(itemDefinition));
+        verifyZeroInteractions(calculationService, dataService, dataItemService);
+    }
+
+    @Test
+    public void noComparisonsShouldNotPass() {
+        DataCategory dataCategory = mock(DataCategory.class);
+        when(dataCategory.getItemDefinition()).thenReturn(itemDefinition);
+        when(dataService.getDataCategoryReferences(itemDefinition)).thenReturn(Collections.singleton(
+                new AMEEEntityReference(ObjectType.DC, "DATA_CATEGORY_UID")));
+        when(dataService.getDataCategoryByUid(anyString())).thenReturn(dataCategory);
+        when(dataItemService.getDataItems(dataCategory, AlgorithmBackendVerifier.DEFAULT_MAX_DATA_ITEMS))
+                .thenReturn(new ArrayList<DataItem>());
+
+        assertEquals(0, verifier.verifyAll());
+
+        // Only the first DataItems are loaded and the translated backend is switched off.
+        verify(dataItemService).getDataItems(dataCategory, AlgorithmBackendVerifier.DEFAULT_MAX_DATA_ITEMS);
+        verifyZeroInteractions(calculationService);
+        verify(itemDefinition, never()).setAlgorithmBackendVerified(anyString());
+        verify(itemDefinition).setAlgorithmBackend("interpreted");
+        verify(definitionService).invalidate(itemDefinition);
+    }
+}
@@ -0,0 +1,41 @@
+package com.amee.calculation.service;
+
+import com.amee.domain.DataItemService;
+import com.amee.service.data.DataService;
+import com.amee.service.data.DrillDownService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+public class DataFinderTest {
+
+    private DataFinder dataFinder;
+    private DataFinderMemoService dataFinderMemoService;
+
+    @Before
+    public void setUp() {
+        dataFinderMemoService = new DataFinderMemoService();
+        dataFinder = new DataFinder();
+        ReflectionTestUtils.setField(dataFinder, "dataService", mock(DataService.class));
+        ReflectionTestUtils.setField(dataFinder, "dataItemService", mock(DataItemService.class));
+        ReflectionTestUtils.setField(dataFinder, "drillDownService", mock(DrillDownService.class));
+        ReflectionTestUtils.setField(dataFinder, "dataFinderMemoService", dataFinderMemoService);
+    }
+
+    @Test
+    public void eachLookupShouldCountOnce() {
+        assertNull(dataFinder.getDataItemValue("home/energy/electricity", "country=Albania", "kgCO2PerKWh"));
+        assertNull(dataFinder.getDataItemValue("home/energy/electricity", "country=Albania", "kgCO2PerKWh"));
+        // The DataItem lookup made for the first value is not counted separately.
+        assertNull(dataFinder.getDataItem("home/energy/electricity", "country=Albania"));
+
+        assertEquals(2, dataFinder.getMemoHitCount());
+        assertEquals(1, dataFinder.getMemoMissCount());
+        assertEquals(2, dataFinderMemoService.getHitCount());
+        assertEquals(1, dataFinderMemoService.getMissCount());
+    }
+}
@@ -0,0 +1,714 @@
+package com.amee.platform.search;
+
+import com.amee.base.domain.ResultsWrapper;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LuceneServiceImplTest {
+
+    private File indexPath;
+    private File lucenePath;
+    private LuceneServiceImpl luceneService;
+
+    @Before
+    public void setUp() throws Exception {
+        indexPath = new File(System.getProperty("java.io.tmpdir"), "lucene-service-" + System.nanoTime());
+        lucenePath = new File(indexPath, "index");
+        luceneService = getLuceneService("simple", true);
+    }
+
+    private LuceneServiceImpl getLuceneService(String directoryType, boolean clearIndex) {
+        LuceneServiceImpl luceneService = new LuceneServiceImpl();
+        luceneService.setDirectoryType(directoryType);
+        luceneService.setLucenePath(lucenePath.getAbsolutePath());
+        luceneService.setIndexPath(indexPath.getAbsolutePath());
+        luceneService.setMasterIndex(true);
+        luceneService.setClearIndex(clearIndex);
+        luceneService.setRefreshInterval(0L);
+        luceneService.setCommitInterval(60000L);
+        luceneService.setCommitMaxChanges(3);
+        luceneService.prepareIndex();
+        return luceneService;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        luceneService.closeEverything();
+        FileUtils.deleteDirectory(indexPath);
+    }
+
+    @Test
+    public void writesShouldBeSearchableBeforeCommit() throws Exception {
+        luceneService.addDocument(getDocument("1", "one"));
+        assertEquals(1, luceneService.doSearch(new TermQuery(new Term("name", "one"))).getResults().size());
+        assertEquals(0, getCommittedCount());
+
+        luceneService.updateDocument(getDocument("1", "uno"), new Term("uid", "1"));
+        assertEquals(0, luceneService.doSearch(new TermQuery(new Term("name", "one"))).getResults().size());
+        assertEquals(1, luceneService.doSearch(new TermQuery(new Term("name", "uno"))).getResults().size());
+        assertEquals(0, getCommittedCount());
+    }
+
+    @Test
+    public void writesShouldBeCommittedInBatches() throws Exception {
+        luceneService.addDocument(getDocument("1", "one"));
+        luceneService.addDocument(getDocument("2", "two"));
+        assertEquals(0, getCommittedCount());
+
+        // The third change reaches commitMaxChanges.
+        luceneService.addDocument(getDocument("3", "three"));
+        assertEquals(3, getCommittedCount());
+
+        // Pending changes are committed by flush.
+        luceneService.deleteDocuments(new Term("uid", "1"));
+        assertEquals(3, getCommittedCount());
+        luceneService.flush();
+        assertEquals(2, getCommittedCount());
+    }
+
+    @Test
+    public void writesShouldBeCommittedAfterCommitInterval() throws Exception {
+        luceneService.setCommitInterval(0L);
+        luceneService.addDocument(getDocument("1", "one"));
+        assertEquals(1, getCommittedCount());
+    }
+
+    @Test
+    public void searchesShouldOnlyLoadSelectedFields() throws Exception {
+        addEntities(luceneService, 20);
+        Query query = new TermQuery(new Term("entityType", "DI"));
+
+        ResultsWrapper<Document> page = luceneService.doSearch(
+                query, 5, 5, LuceneServiceImpl.MAX_NUM_HITS, Sort.RELEVANCE, LuceneServiceImpl.ENTITY_FIELDS);
+        assertEquals(5, page.getResults().size());
+        assertEquals(20, page.getHits());
+        assertTrue(page.isTruncated());
+        for (Document document : page.getResults()) {
+            assertEquals(3, document.getFields().size());
+            assertNull(document.get("label"));
+        }
+
+        ResultsWrapper<Document> all = luceneService.doSearch(
+                query, LuceneServiceImpl.MAX_NUM_HITS, new MapFieldSelector("entityUid"));
+        assertEquals(20, all.getResults().size());
+        assertEquals(1, all.getResults().get(0).getFields().size());
+
+        // All fields are loaded without a FieldSelector.
+        assertEquals(6, luceneService.doSearch(query, 0, 1).getResults().get(0).getFields().size());
+    }
+
+    @Test
+    public void facetsShouldCountDrillValuesOfAllHits() throws Exception {
+        // Add the Documents in several commits so the index has more than one segment.
+        for (int category = 0; category < 3; category++) {
+            List<Document> documents = new ArrayList<Document>();
+            for (int item = 0; item < 40; item++) {
+                documents.add(getDataItemDocument(category, item));
+            }
+            luceneService.addDocuments(documents);
+            luceneService.flush();
+        }
+        Query query = new TermQuery(new Term("categoryUid", String.format("%012X", 1)));
+
+        DrillFacetCollector facetCollector = new DrillFacetCollector(Arrays.asList("fuel", "size"));
+        ResultsWrapper<Document> page = luceneService.doSearch(
+                query, 0, 5, LuceneServiceImpl.MAX_NUM_HITS, Sort.RELEVANCE, LuceneServiceImpl.ENTITY_FIELDS, facetCollector);
+        assertEquals(5, page.getResults().size());
+
+        // Counts are over every hit in the category, not just the page.
+        Map<String, Integer> fuels = facetCollector.getFacets().get("fuel");
+        assertEquals(20, fuels.size());
+        assertEquals(Integer.valueOf(2), fuels.get("fuel0"));
+        assertEquals(Integer.valueOf(2), fuels.get("fuel19"));
+        assertEquals("fuel0", fuels.keySet().iterator().next());
+
+        // There are no Documents with a size drill value.
+        assertTrue(facetCollector.getFacets().get("size").isEmpty());
+    }
+
+    @Test
+    public void hitCountShouldMatchSearch() throws Exception {
+        addEntities(luceneService, 20);
+        assertEquals(20, luceneService.getHitCount(new TermQuery(new Term("entityType", "DI"))));
+        assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("entityType", "DC"))));
+    }
+
+    @Test
+    public void queuedDocumentsShouldBeAddedOnceWritten() throws Exception {
+        List<Future<Integer>> writes = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            writes.add(luceneService.queueDocuments(Arrays.asList(getDocument(Integer.toString(i), "queued"))));
+        }
+        for (Future<Integer> write : writes) {
+            assertEquals(1, (int) write.get());
+        }
+        assertEquals(10, luceneService.getHitCount(new TermQuery(new Term("name", "queued"))));
+    }
+
+    @Test
+    public void fullWriteQueueShouldMakeCallersWait() throws Exception {
+        luceneService.setWriteQueueSize(1);
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Document blocking = getDocument("0", "blocking");
+        blocking.add(new Field("body", new Reader() {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+
+        // The writer waits on the first batch and the second fills the queue.
+        Future<Integer> first = luceneService.queueDocuments(Arrays.asList(blocking));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        Future<Integer> second = luceneService.queueDocuments(Arrays.asList(getDocument("1", "queued")));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Future<Integer>> third = executor.submit(new Callable<Future<Integer>>() {
+            @Override
+            public Future<Integer> call() {
+                return luceneService.queueDocuments(Arrays.asList(getDocument("2", "queued")));
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(third.isDone());
+
+        release.countDown();
+        assertEquals(1, (int) third.get(10, TimeUnit.SECONDS).get());
+        assertTrue(first.isDone() && second.isDone());
+        assertEquals(2, luceneService.getHitCount(new TermQuery(new Term("name", "queued"))));
+        executor.shutdown();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void writeFailuresShouldReachCaller() throws Exception {
+        luceneService.addDocuments(Arrays.asList(getUnreadableDocument("0")));
+    }
+
+    @Test
+    public void writeFailureShouldOnlyFailItsBatch() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Document blocking = getDocument("0", "queued");
+        blocking.add(new Field("body", new Reader() {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+
+        // The failing batch and the one after it are written together once the writer is released.
+        Future<Integer> first = luceneService.queueDocuments(Arrays.asList(blocking));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+        Future<Integer> failing = luceneService.queueDocuments(Arrays.asList(getUnreadableDocument("1")));
+        Future<Integer> last = luceneService.queueDocuments(Arrays.asList(getDocument("2", "queued")));
+        release.countDown();
+
+        assertEquals(1, (int) first.get(10, TimeUnit.SECONDS));
+        assertEquals(1, (int) last.get(10, TimeUnit.SECONDS));
+        try {
+            failing.get(10, TimeUnit.SECONDS);
+            fail("The unreadable Document should fail its batch.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+        assertEquals(2, luceneService.getHitCount(new TermQuery(new Term("name", "queued"))));
+    }
+
+    @Test
+    public void closeEverythingShouldStopWriterThread() throws Exception {
+        assertEquals(1, (int) luceneService.queueDocuments(Arrays.asList(getDocument("1", "queued"))).get());
+        assertTrue(isWriterRunning());
+
+        luceneService.closeEverything();
+        assertFalse(isWriterRunning());
+    }
+
+    @Test
+    public void rebuiltIndexShouldReplaceLiveIndexWhenFinished() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            luceneService.addDocument(getDocument(Integer.toString(i), "old"));
+        }
+        luceneService.startRebuild();
+        assertTrue(luceneService.isRebuilding());
+        luceneService.addDocuments(Arrays.asList(getDocument("0", "new"), getDocument("1", "new")));
+        luceneService.updateDocument(getDocument("2", "new"), new Term("uid", "2"));
+
+        // Searches use the live index until the rebuild is finished.
+        assertEquals(3, luceneService.getHitCount(new TermQuery(new Term("name", "old"))));
+        assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("name", "new"))));
+
+        assertTrue(luceneService.finishRebuild());
+        assertFalse(luceneService.isRebuilding());
+        assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("name", "old"))));
+        assertEquals(3, luceneService.getHitCount(new TermQuery(new Term("name", "new"))));
+        assertEquals(3, getCommittedCount());
+
+        // The replaced index is kept and can be restored.
+        luceneService.restorePreviousIndex();
+        assertEquals(3, luceneService.getHitCount(new TermQuery(new Term("name", "old"))));
+        assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("name", "new"))));
+        luceneService.addDocument(getDocument("3", "old"));
+        assertEquals(4, luceneService.getHitCount(new TermQuery(new Term("name", "old"))));
+    }
+
+    @Test
+    public void undersizedRebuiltIndexShouldBeAbandoned() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            luceneService.addDocument(getDocument(Integer.toString(i), "old"));
+        }
+        luceneService.startRebuild();
+        for (int i = 0; i < 8; i++) {
+            luceneService.addDocument(getDocument(Integer.toString(i), "new"));
+        }
+        assertFalse(luceneService.finishRebuild());
+        assertFalse(luceneService.isRebuilding());
+        assertEquals(10, luceneService.getHitCount(new TermQuery(new Term("name", "old"))));
+        assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("name", "new"))));
+
+        // Writes go to the live index again.
+        luceneService.addDocument(getDocument("10", "old"));
+        assertEquals(11, luceneService.getHitCount(new TermQuery(new Term("name", "old"))));
+    }
+
+    @Test
+    public void interruptedReplacementShouldBeCompletedOnPrepare() throws Exception {
+        luceneService.addDocument(getDocument("1", "old"));
+        luceneService.startRebuild();
+        // The third change is committed.
+        for (int i = 0; i < 3; i++) {
+            luceneService.addDocument(getDocument(Integer.toString(i), "new"));
+        }
+        luceneService.closeEverything();
+
+        // Simulate a crash after the rebuilt index was moved aside and the live index was moved away.
+        FileUtils.moveDirectory(new File(indexPath, "index.rebuild"), new File(indexPath, "index.swap"));
+        FileUtils.moveDirectory(lucenePath, new File(indexPath, "index.previous"));
+        luceneService = getLuceneService("simple", false);
+        assertEquals(3, luceneService.getHitCount(new TermQuery(new Term("name", "new"))));
+    }
+
+    /**
+     * Times a rebuild of 500 categories of 1000 Data Items. First each category's Documents are built serially and
+     * added in one call, as the single SearchIndexer thread did, then categories are built by several threads which
+     * queue batches of Documents for the writer. Building Documents is modelled as waiting 10ms for the database
+     * for every 100 Documents.
+     */
+    @Ignore("Used for performance testing of index rebuilds.")
+    @Test
+    public void testRebuildThroughput() throws Exception {
+        for (int threads : new int[]{1, 4, 8}) {
+            luceneService.closeEverything();
+            FileUtils.deleteDirectory(indexPath);
+            luceneService = getLuceneService("simple", true);
+            luceneService.setCommitMaxChanges(1000);
+            luceneService.setRamBufferSizeMB((threads == 1) ? 16.0 : 64.0);
+            long start = System.currentTimeMillis();
+            rebuild(luceneService, threads, 500, 1000);
+            luceneService.flush();
+            long duration = System.currentTimeMillis() - start;
+            System.out.println(threads + " threads: " + duration + " ms (" +
+                    (luceneService.getHitCount(new MatchAllDocsQuery()) * 1000L / duration) + " Documents/s)");
+        }
+    }
+
+    /**
+     * Build and add categories of Data Item Documents from a number of threads. A single thread adds each category
+     * in one call, otherwise Documents are queued in batches of 500.
+     *
+     * @param luceneService the LuceneService to add to
+     * @param threads       the number of threads
+     * @param categories    the number of categories
+     * @param items         the number of Data Items in each category
+     */
+    private void rebuild(final LuceneServiceImpl luceneService, final int threads, int categories, final int items)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int c = 0; c < categories; c++) {
+            final int category = c;
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    List<Future<Integer>> writes = new ArrayList<Future<Integer>>();
+                    List<Document> documents = new ArrayList<Document>();
+                    for (int i = 0; i < items; i++) {
+                        if ((i % 100) == 0) {
+                            Thread.sleep(10);
+                        }
+                        documents.add(getDataItemDocument(category, i));
+                        if ((threads > 1) && (documents.size() == 500)) {
+                            writes.add(luceneService.queueDocuments(documents));
+                            documents = new ArrayList<Document>();
+                        }
+                    }
+                    if (threads > 1) {
+                        writes.add(luceneService.queueDocuments(documents));
+                        for (Future<Integer> write : writes) {
+                            write.get();
+                        }
+                    } else {
+                        luceneService.addDocuments(documents);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private Document getDataItemDocument(int category, int item) {
+        Document document = new Document();
+        document.add(new Field("entityType", "DI", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("entityUid", String.format("%06X%06X", category, item), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("categoryUid", String.format("%012X", category), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("name", "Data Item " + item + " of category " + category, Field.Store.NO, Field.Index.ANALYZED));
+        document.add(new Field("fuel", "fuel" + (item % 20), Field.Store.NO, Field.Index.NOT_ANALYZED));
+        document.add(new Field("fuel_drill", "fuel" + (item % 20), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+        document.add(new Field("label", "fuel " + (item % 20) + ", size " + (item % 5), Field.Store.NO, Field.Index.ANALYZED));
+        return document;
+    }
+
+    /**
+     * Times paging through a large index with and without a FieldSelector, and counting the hits.
+     */
+    @Ignore("Used for performance testing of stored field loading.")
+    @Test
+    public void testTiming() throws Exception {
+        luceneService.setCommitMaxChanges(Integer.MAX_VALUE);
+        addEntities(luceneService, 1000000);
+        Query query = new MatchAllDocsQuery();
+        for (int i = 0; i < 2; i++) {
+            long start = System.currentTimeMillis();
+            luceneService.doSearch(query, 500000, 10, LuceneServiceImpl.MAX_NUM_HITS, Sort.RELEVANCE, null);
+            long pageAllFields = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            luceneService.doSearch(
+                    query, 500000, 10, LuceneServiceImpl.MAX_NUM_HITS, Sort.RELEVANCE, LuceneServiceImpl.ENTITY_FIELDS);
+            long pageEntityFields = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            luceneService.doSearch(query, LuceneServiceImpl.MAX_NUM_HITS, null);
+            long allFields = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            luceneService.doSearch(query, LuceneServiceImpl.MAX_NUM_HITS, LuceneServiceImpl.ENTITY_FIELDS);
+            long entityFields = System.currentTimeMillis() - start;
+            start = System.currentTimeMillis();
+            int hits = luceneService.getHitCount(query);
+            long hitCount = System.currentTimeMillis() - start;
+
+            System.out.println("Page of 10, all fields: " + pageAllFields + " ms");
+            System.out.println("Page of 10, entity fields: " + pageEntityFields + " ms");
+            System.out.println("MAX_NUM_HITS, all fields: " + allFields + " ms");
+            System.out.println("MAX_NUM_HITS, entity fields: " + entityFields + " ms");
+            System.out.println("Hit count (" + hits + "): " + hitCount + " ms");
+            System.out.println("***************************************");
+        }
+    }
+
+    @Test
+    public void directoryTypesShouldBehaveAlike() throws Exception {
+        for (String directoryType : new String[]{"simple", "nio", "mmap"}) {
+            luceneService.closeEverything();
+
+            // Documents are kept when the index is reopened.
+            luceneService = getLuceneService(directoryType, false);
+            luceneService.addDocument(getDocument("1", directoryType));
+            luceneService.closeEverything();
+            luceneService = getLuceneService(directoryType, false);
+            assertEquals(1, luceneService.getHitCount(new TermQuery(new Term("name", directoryType))));
+
+            // Pending changes are committed before a snapshot.
+            luceneService.setSnapshotEnabled(true);
+            luceneService.addDocument(getDocument("2", directoryType));
+            luceneService.takeSnapshot();
+            assertEquals(2, getCommittedCount());
+            luceneService.closeEverything();
+
+            // Documents are removed when the index is cleared.
+            luceneService = getLuceneService(directoryType, true);
+            assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("name", directoryType))));
+            assertEquals(0, getCommittedCount());
+        }
+    }
+
+    @Test
+    public void snapshotsShouldBeReadableWhileWritesContinue() throws Exception {
+        luceneService.setSnapshotEnabled(true);
+        luceneService.setSnapshotRetention(1);
+        addEntities(luceneService, 100);
+
+        // Keep adding and merging documents meanwhile.
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> writer = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int count = 0;
+                while (writing.get()) {
+                    luceneService.addDocument(getDocument(Integer.toString(count), "written"));
+                    if (++count % 50 == 0) {
+                        luceneService.flush();
+                    }
+                }
+                return count;
+            }
+        });
+
+        luceneService.takeSnapshot();
+        File[] snapshots = getSnapshots();
+        assertEquals(1, snapshots.length);
+        assertEquals(100, getSnapshotCount(snapshots[0], new TermQuery(new Term("entityType", "DI"))));
+
+        // Snapshots are named to the second, so wait for the next one.
+        Thread.sleep(1100);
+        luceneService.takeSnapshot();
+        writing.set(false);
+        assertTrue(writer.get() > 0);
+        executor.shutdown();
+
+        // Only the most recent snapshot is kept.
+        File[] pruned = getSnapshots();
+        assertEquals(1, pruned.length);
+        assertTrue(pruned[0].getName().compareTo(snapshots[0].getName()) > 0);
+        assertEquals(100, getSnapshotCount(pruned[0], new TermQuery(new Term("entityType", "DI"))));
+        int written = getSnapshotCount(pruned[0], new TermQuery(new Term("name", "written")));
+        assertTrue(written > 0);
+
+        // Restoring discards later changes.
+        luceneService.addDocument(getDocument("restored", "written"));
+        luceneService.restoreSnapshot(null);
+        assertEquals(100 + written, luceneService.getHitCount(new MatchAllDocsQuery()));
+        assertEquals(0, luceneService.getHitCount(new TermQuery(new Term("uid", "restored"))));
+
+        // Writes continue after the restore.
+        luceneService.addDocument(getDocument("restored", "written"));
+        assertEquals(1, luceneService.getHitCount(new TermQuery(new Term("uid", "restored"))));
+    }
+
+    private File[] getSnapshots() {
+        File[] snapshots = indexPath.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().startsWith("snapshot");
+            }
+        });
+        Arrays.sort(snapshots);
+        return snapshots;
+    }
+
+    private int getSnapshotCount(File snapshot, Query query) throws IOException {
+        Directory directory = new SimpleFSDirectory(snapshot);
+        try {
+            IndexSearcher searcher = new IndexSearcher(directory, true);
+            try {
+                TotalHitCountCollector collector = new TotalHitCountCollector();
+                searcher.search(query, collector);
+                return collector.getTotalHits();
+            } finally {
+                searcher.close();
+            }
+        } finally {
+            directory.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDirectoryTypeShouldFail() throws Exception {
+        LuceneServiceImpl.getNewDirectory("ram", lucenePath);
+    }
+
+    /**
+     * Times concurrent searches with each Directory type.
+     */
+    @Ignore("Used for performance testing of Directory types.")
+    @Test
+    public void testSearchThroughput() throws Exception {
+        for (String directoryType : new String[]{"simple", "nio", "mmap"}) {
+            luceneService.closeEverything();
+            luceneService = getLuceneService(directoryType, true);
+            luceneService.setCommitMaxChanges(Integer.MAX_VALUE);
+            addEntities(luceneService, 200000);
+            luceneService.flush();
+            for (int threads : new int[]{1, 8, 64}) {
+                long start = System.currentTimeMillis();
+                int searches = doSearches(luceneService, threads, 12800);
+                long duration = System.currentTimeMillis() - start;
+                System.out.println(directoryType + " with " + threads + " threads: " +
+                        (searches * 1000L / Math.max(duration, 1)) + " searches/s");
+            }
+            System.out.println("***************************************");
+        }
+    }
+
+    /**
+     * Search for random entities and pages of the index from a number of threads.
+     *
+     * @param luceneService the LuceneService to search
+     * @param threads       the number of threads
+     * @param searches      the number of searches to share between the threads
+     * @return the number of searches done
+     */
+    private int doSearches(final LuceneServiceImpl luceneService, int threads, final int searches) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < threads; i++) {
+            final int count = searches / threads;
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    Random random = new Random();
+                    for (int j = 0; j < count; j++) {
+                        int id = random.nextInt(200000);
+                        luceneService.doSearch(new TermQuery(new Term("entityUid", String.format("%012X", id))), 0, 1);
+                        luceneService.doSearch(
+                                new TermQuery(new Term("label", Integer.toString(id))), 0, 10,
+                                LuceneServiceImpl.MAX_NUM_HITS, Sort.RELEVANCE, LuceneServiceImpl.ENTITY_FIELDS);
+                    }
+                    return count * 2;
+                }
+            }));
+        }
+        int done = 0;
+        for (Future<Integer> future : futures) {
+            done += future.get();
+        }
+        executor.shutdown();
+        return done;
+    }
+
+    /**
+     * Add Data Item Documents with entity fields and other stored fields.
+     *
+     * @param luceneService the LuceneService to add to
+     * @param count         the number of Documents to add
+     */
+    private void addEntities(LuceneServiceImpl luceneService, int count) {
+        List<Document> documents = new ArrayList<Document>();
+        for (int i = 0; i < count; i++) {
+            Document document = new Document();
+            document.add(new Field("entityType", "DI", Field.Store.YES, Field.Index.NOT_ANALYZED));
+            document.add(new Field("entityId", Integer.toString(i), Field.Store.YES, Field.Index.NOT_ANALYZED));
+            document.add(new Field("entityUid", String.format("%012X", i), Field.Store.YES, Field.Index.NOT_ANALYZED));
+            document.add(new Field("categoryUid", "0123456789AB", Field.Store.YES, Field.Index.NOT_ANALYZED));
+            document.add(new Field("label", "Data Item number " + i + " of " + count, Field.Store.YES, Field.Index.ANALYZED));
+            document.add(new Field("wikiDoc", "A longer description of Data Item number " + i +
+                    ", which is stored but which is not needed to page through results.", Field.Store.YES, Field.Index.ANALYZED));
+            documents.add(document);
+            if (documents.size() == 10000) {
+                luceneService.addDocuments(documents);
+                documents.clear();
+            }
+        }
+        luceneService.addDocuments(documents);
+    }
+
+    private Document getDocument(String uid, String name) {
+        Document document = new Document();
+        document.add(new Field("uid", uid, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("name", name, Field.Store.YES, Field.Index.NOT_ANALYZED));
+        return document;
+    }
+
+    private Document getUnreadableDocument(String uid) {
+        Document document = getDocument(uid, "failing");
+        document.add(new Field("body", new Reader() {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                throw new IOException("Unreadable.");
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+        return document;
+    }
+
+    private static boolean isWriterRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("LuceneServiceImpl-writer")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of documents in the index on disk, as another process would see it
+     */
+    private int getCommittedCount() throws IOException {
+        Directory directory = new SimpleFSDirectory(lucenePath);
+        try {
+            IndexReader reader = IndexReader.open(directory, true);
+            try {
+                return reader.numDocs();
+            } finally {
+                reader.close();
+            }
+        } finally {
+            directory.close();
+        }
+    }
+}
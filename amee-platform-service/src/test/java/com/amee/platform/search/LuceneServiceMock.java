@@ -2,11 +2,14 @@ package com.amee.platform.search;
 
 import com.amee.base.domain.ResultsWrapper;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 
 import java.util.*;
+import java.util.concurrent.Future;
 
 public class LuceneServiceMock implements LuceneService {
 
@@ -58,6 +61,16 @@ public class LuceneServiceMock implements LuceneService {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public ResultsWrapper<Document> doSearch(Query query, int resultStart, int resultLimit, int maxNumHits, Sort sortField, FieldSelector fieldSelector) {
+        return doSearch(query, resultStart, resultLimit, maxNumHits);
+    }
+
+    @Override
+    public ResultsWrapper<Document> doSearch(Query query, int resultStart, int resultLimit, int maxNumHits, Sort sortField, FieldSelector fieldSelector, Collector hitCollector) {
+        return doSearch(query, resultStart, resultLimit, maxNumHits);
+    }
+
     @Override
     public ResultsWrapper<Document> doSearch(Query query) {
         return doSearch(query, MAX_NUM_HITS);
@@ -80,6 +93,16 @@ public class LuceneServiceMock implements LuceneService {
         }
     }
 
+    @Override
+    public ResultsWrapper<Document> doSearch(Query query, int maxNumHits, FieldSelector fieldSelector) {
+        return doSearch(query, maxNumHits);
+    }
+
+    @Override
+    public int getHitCount(Query query) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void deleteDocuments(Term... terms) {
         throw new UnsupportedOperationException();
@@ -100,6 +123,11 @@ public class LuceneServiceMock implements LuceneService {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Future<Integer> queueDocuments(Collection<Document> documents) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void closeEverything() {
         throw new UnsupportedOperationException();
@@ -125,11 +153,41 @@ public class LuceneServiceMock implements LuceneService {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void commit() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void takeSnapshot() {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void restoreSnapshot(String snapshotName) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void startRebuild() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean finishRebuild() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isRebuilding() {
+        return false;
+    }
+
+    @Override
+    public void restorePreviousIndex() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean getClearIndex() {
         throw new UnsupportedOperationException();
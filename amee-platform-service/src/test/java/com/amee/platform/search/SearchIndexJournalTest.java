@@ -0,0 +1,178 @@
+package com.amee.platform.search;
+
+import com.amee.domain.ObjectType;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexJournalTest {
+
+    private File dir;
+    private File journalFile;
+    private SearchIndexJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("journal", "");
+        dir.delete();
+        journalFile = new File(dir, "journal");
+        journal = new SearchIndexJournal(journalFile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void entriesShouldBeReadUntilAcknowledged() {
+        journal.append(new SearchIndexJournal.Entry(ObjectType.DI, "0123456789AB", null));
+        journal.append(new SearchIndexJournal.Entry(ObjectType.DC, "0123456789AC", "indexDataItems,checkDataItems"));
+        journal.append(new SearchIndexJournal.Entry(ObjectType.DI, "0123456789AD", ""));
+
+        List<SearchIndexJournal.Entry> entries = journal.read(2);
+        assertEquals(2, entries.size());
+        assertEquals(ObjectType.DI, entries.get(0).getObjectType());
+        assertEquals("0123456789AB", entries.get(0).getUid());
+        assertTrue(entries.get(1).hasOption("indexDataItems"));
+        assertTrue(entries.get(1).hasOption("checkDataItems"));
+        assertFalse(entries.get(0).hasOption("indexDataItems"));
+
+        // Reading again returns the same entries.
+        assertEquals("0123456789AB", journal.read(2).get(0).getUid());
+
+        journal.acknowledge(entries.get(1));
+        entries = journal.read(10);
+        assertEquals(1, entries.size());
+        assertEquals("0123456789AD", entries.get(0).getUid());
+        journal.acknowledge(entries.get(0));
+        assertTrue(journal.isEmpty());
+
+        // The journal starts again once everything is acknowledged.
+        assertEquals(0, journalFile.length());
+    }
+
+    @Test
+    public void unacknowledgedEntriesShouldBeReplayedAfterRestart() {
+        List<SearchIndexJournal.Entry> appended = new ArrayList<SearchIndexJournal.Entry>();
+        for (int i = 0; i < 5; i++) {
+            appended.add(new SearchIndexJournal.Entry(ObjectType.DI, "00000000000" + i, null));
+        }
+        journal.append(appended);
+        journal.acknowledge(journal.read(2).get(1));
+        journal.close();
+
+        journal = new SearchIndexJournal(journalFile);
+        List<SearchIndexJournal.Entry> entries = journal.read(10);
+        assertEquals(3, entries.size());
+        assertEquals("000000000002", entries.get(0).getUid());
+        assertEquals("000000000004", entries.get(2).getUid());
+    }
+
+    @Test
+    public void entriesHandledButNotAcknowledgedShouldBeReplayedAfterRestart() {
+        for (int i = 0; i < 4; i++) {
+            journal.append(new SearchIndexJournal.Entry(ObjectType.DI, "00000000000" + i, null));
+        }
+        SearchIndexJournal.Entry handled = journal.read(2).get(1);
+
+        // Reading after the handled entry moves on without acknowledging.
+        List<SearchIndexJournal.Entry> entries = journal.read(10, handled);
+        assertEquals(2, entries.size());
+        assertEquals("000000000002", entries.get(0).getUid());
+        assertEquals("000000000000", journal.read(1).get(0).getUid());
+        journal.close();
+
+        journal = new SearchIndexJournal(journalFile);
+        assertEquals(4, journal.read(10).size());
+    }
+
+    @Test
+    public void partialEntryShouldBeDiscardedOnOpen() throws Exception {
+        journal.append(new SearchIndexJournal.Entry(ObjectType.DI, "0123456789AB", null));
+        journal.close();
+
+        // Simulate a crash part way through writing an entry.
+        FileOutputStream out = new FileOutputStream(journalFile, true);
+        out.write("1350000000000\tDI\t01234".getBytes("US-ASCII"));
+        out.close();
+
+        journal = new SearchIndexJournal(journalFile);
+        List<SearchIndexJournal.Entry> entries = journal.read(10);
+        assertEquals(1, entries.size());
+        assertEquals("0123456789AB", entries.get(0).getUid());
+
+        // New entries follow the last complete entry.
+        journal.append(new SearchIndexJournal.Entry(ObjectType.DI, "0123456789AC", null));
+        assertEquals("0123456789AC", journal.read(10).get(1).getUid());
+    }
+
+    @Test
+    public void journalShouldStayBoundedWhileEntriesKeepArriving() {
+        journal.close();
+        journal = new SearchIndexJournal(journalFile, 1024);
+
+        // Keep a few entries pending so the journal is never empty and is never simply truncated.
+        for (int i = 0; i < 5; i++) {
+            journal.append(new SearchIndexJournal.Entry(ObjectType.DI, String.format("%012d", i), null));
+        }
+        long maxLength = 0;
+        for (int i = 5; i < 2000; i++) {
+            journal.append(new SearchIndexJournal.Entry(ObjectType.DI, String.format("%012d", i), null));
+            SearchIndexJournal.Entry oldest = journal.read(1).get(0);
+            assertEquals(String.format("%012d", i - 5), oldest.getUid());
+            journal.acknowledge(oldest);
+            maxLength = Math.max(maxLength, journalFile.length());
+        }
+        assertTrue("Journal grew to " + maxLength + " bytes.", maxLength < 4096);
+
+        // The pending entries survive compaction and a restart.
+        journal.close();
+        journal = new SearchIndexJournal(journalFile, 1024);
+        List<SearchIndexJournal.Entry> entries = journal.read(10);
+        assertEquals(5, entries.size());
+        assertEquals("000000001995", entries.get(0).getUid());
+        assertEquals("000000001999", entries.get(4).getUid());
+    }
+
+    @Test
+    public void entriesReadBeforeCompactionShouldBeAcknowledged() {
+        journal.close();
+        journal = new SearchIndexJournal(journalFile, 64);
+        for (int i = 0; i < 6; i++) {
+            journal.append(new SearchIndexJournal.Entry(ObjectType.DI, String.format("%012d", i), null));
+        }
+        List<SearchIndexJournal.Entry> entries = journal.read(6);
+        journal.acknowledge(entries.get(1));
+        long length = journalFile.length();
+
+        // Acknowledging the next entry passes the threshold and compacts the journal.
+        journal.acknowledge(entries.get(3));
+        assertTrue(journalFile.length() < length);
+        assertEquals("000000000004", journal.read(1).get(0).getUid());
+        assertEquals("000000000005", journal.read(1, entries.get(4)).get(0).getUid());
+        journal.acknowledge(entries.get(4));
+        assertEquals("000000000005", journal.read(10).get(0).getUid());
+        assertEquals(1, journal.read(10).size());
+    }
+
+    @Test
+    public void lagShouldBeAgeOfOldestEntry() {
+        assertEquals(0, journal.getLag());
+        long time = System.currentTimeMillis() - 5000;
+        journal.append(new SearchIndexJournal.Entry(time, ObjectType.DI, "0123456789AB", null));
+        journal.append(new SearchIndexJournal.Entry(ObjectType.DI, "0123456789AC", null));
+        assertTrue(journal.getLag() >= 5000);
+        journal.acknowledge(journal.read(1).get(0));
+        assertTrue(journal.getLag() < 5000);
+    }
+}
@@ -0,0 +1,186 @@
+package com.amee.platform.search;
+
+import com.amee.base.domain.ResultsWrapper;
+import com.amee.domain.DataItemService;
+import com.amee.domain.IAMEEEntity;
+import com.amee.domain.IAMEEEntityReference;
+import com.amee.domain.LocaleService;
+import com.amee.domain.MetadataService;
+import com.amee.domain.ObjectType;
+import com.amee.domain.data.DataCategory;
+import com.amee.domain.item.data.DataItem;
+import com.amee.service.data.DataService;
+import com.amee.service.tag.TagService;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class SearchServiceTest {
+
+    private SearchService searchService;
+    private SearchQueryService searchQueryService;
+    private DataService dataService;
+    private DataItemService dataItemService;
+    private MetadataService metadataService;
+    private LocaleService localeService;
+    private TagService tagService;
+
+    private Map<String, DataCategory> dataCategories;
+    private Map<String, DataItem> dataItems;
+    private List<Document> documents;
+
+    @Before
+    public void setUp() {
+        searchQueryService = mock(SearchQueryService.class);
+        dataService = mock(DataService.class);
+        dataItemService = mock(DataItemService.class);
+        metadataService = mock(MetadataService.class);
+        localeService = mock(LocaleService.class);
+        tagService = mock(TagService.class);
+        searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "searchQueryService", searchQueryService);
+        ReflectionTestUtils.setField(searchService, "dataService", dataService);
+        ReflectionTestUtils.setField(searchService, "dataItemService", dataItemService);
+        ReflectionTestUtils.setField(searchService, "metadataService", metadataService);
+        ReflectionTestUtils.setField(searchService, "localeService", localeService);
+        ReflectionTestUtils.setField(searchService, "tagService", tagService);
+
+        dataCategories = new HashMap<String, DataCategory>();
+        dataItems = new HashMap<String, DataItem>();
+        documents = new ArrayList<Document>();
+        when(dataService.getDataCategoryMap(anySet())).thenReturn(dataCategories);
+        when(dataItemService.getDataItemMap(anySet(), anyBoolean())).thenReturn(dataItems);
+    }
+
+    @Test
+    public void entitiesShouldBeReturnedInRelevanceOrderWithoutDuplicates() {
+        addDataCategory(1L);
+        addDataItem(2L);
+        addDataItem(3L);
+        addDocument(ObjectType.DI, 3L);
+        addDocument(ObjectType.DC, 1L);
+        addDocument(ObjectType.DI, 3L);
+        addDocument(ObjectType.DI, 2L);
+        addDocument(ObjectType.DC, 1L);
+
+        List<IAMEEEntity> results = getEntities().getResults();
+        assertEquals(3, results.size());
+        assertSame(dataItems.get(uid(3L)), results.get(0));
+        assertSame(dataCategories.get(uid(1L)), results.get(1));
+        assertSame(dataItems.get(uid(2L)), results.get(2));
+    }
+
+    @Test
+    public void missingEntitiesShouldBeSkipped() {
+        addDataItem(1L);
+        addDocument(ObjectType.DI, 2L);
+        addDocument(ObjectType.DI, 1L);
+        addDocument(ObjectType.DC, 3L);
+
+        List<IAMEEEntity> results = getEntities().getResults();
+        assertEquals(1, results.size());
+        assertSame(dataItems.get(uid(1L)), results.get(0));
+    }
+
+    @Test
+    @SuppressWarnings(value = "unchecked")
+    public void entitiesShouldBeLoadedWithFixedNumberOfCalls() {
+        for (long id = 1; id <= 1000; id++) {
+            if (id % 10 == 0) {
+                addDataCategory(id);
+                addDocument(ObjectType.DC, id);
+            } else {
+                addDataItem(id);
+                addDocument(ObjectType.DI, id);
+            }
+        }
+
+        assertEquals(1000, getEntities().getResults().size());
+        verify(dataService, times(1)).getDataCategoryMap(anySet());
+        verify(dataItemService, times(1)).getDataItemMap(anySet(), anyBoolean());
+        verify(tagService, times(1)).loadEntityTagsForDataCategories(anyCollection());
+        verify(localeService, times(1)).loadLocaleNamesForDataCategories(anyCollection());
+        verify(metadataService, times(1)).loadMetadatas(
+                eq(EnumSet.of(ObjectType.DC, ObjectType.DI)), anyCollectionOf(IAMEEEntityReference.class));
+        verifyNoMoreInteractions(dataService, dataItemService, tagService, localeService, metadataService);
+    }
+
+    @Test
+    public void facetsShouldBePassedOn() {
+        addDataItem(1L);
+        addDocument(ObjectType.DI, 1L);
+        Map<String, Map<String, Integer>> facets = new HashMap<String, Map<String, Integer>>();
+        facets.put("fuel", Collections.singletonMap("petrol", 1));
+        when(searchQueryService.doSearch(any(SearchFilter.class))).thenReturn(new FacetedResultsWrapper<Document>(
+                documents, new ResultsWrapper<Document>(documents, false), facets));
+
+        ResultsWrapper<IAMEEEntity> results = searchService.getEntities(new SearchFilter());
+        assertEquals(1, results.getResults().size());
+        assertTrue(results instanceof FacetedResultsWrapper);
+        assertEquals(facets, ((FacetedResultsWrapper<IAMEEEntity>) results).getFacets());
+    }
+
+    @Ignore("Used for performance testing of result collation.")
+    @Test
+    public void testCollationTiming() {
+        for (long id = 1; id <= 10000; id++) {
+            addDataItem(id);
+            addDocument(ObjectType.DI, id);
+        }
+        // Some duplicate hits, as when an entity has been indexed twice.
+        for (long id = 1; id <= 1000; id++) {
+            addDocument(ObjectType.DI, id);
+        }
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            int results = getEntities().getResults().size();
+            System.out.println("Collated " + results + " entities from " + documents.size() + " Documents in " +
+                    ((System.nanoTime() - start) / 1000000) + " ms");
+        }
+    }
+
+    private ResultsWrapper<IAMEEEntity> getEntities() {
+        SearchFilter filter = new SearchFilter();
+        filter.setLoadEntityTags(true);
+        filter.setLoadMetadatas(true);
+        when(searchQueryService.doSearch(any(SearchFilter.class)))
+                .thenReturn(new ResultsWrapper<Document>(documents, false));
+        return searchService.getEntities(filter);
+    }
+
+    private void addDataCategory(long id) {
+        DataCategory dataCategory = new DataCategory("Category " + id, "category" + id);
+        dataCategory.setId(id);
+        dataCategory.setUid(uid(id));
+        dataCategories.put(dataCategory.getUid(), dataCategory);
+    }
+
+    private void addDataItem(long id) {
+        DataItem dataItem = new DataItem();
+        dataItem.setId(id);
+        dataItem.setUid(uid(id));
+        dataItems.put(dataItem.getUid(), dataItem);
+    }
+
+    private void addDocument(ObjectType entityType, long id) {
+        Document document = new Document();
+        document.add(new Field("entityType", entityType.getName(), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("entityId", Long.toString(id), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("entityUid", uid(id), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        documents.add(document);
+    }
+
+    private static String uid(long id) {
+        return String.format("%012X", id);
+    }
+}
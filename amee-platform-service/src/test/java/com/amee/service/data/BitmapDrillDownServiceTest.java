@@ -0,0 +1,314 @@
+package com.amee.service.data;
+
+import com.amee.domain.AMEEStatus;
+import com.amee.domain.IDataCategoryReference;
+import com.amee.domain.LocaleConstants;
+import com.amee.domain.LocaleHolder;
+import com.amee.domain.ObjectType;
+import com.amee.domain.ValueDefinition;
+import com.amee.domain.ValueType;
+import com.amee.domain.data.DataCategory;
+import com.amee.domain.data.ItemDefinition;
+import com.amee.domain.data.ItemValueDefinition;
+import com.amee.domain.sheet.Choice;
+import com.amee.domain.sheet.Choices;
+import com.amee.service.invalidation.InvalidationMessage;
+import net.sf.ehcache.CacheManager;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that {@link BitmapDrillDownService} gives the same results as {@link SqlDrillDownService}.
+ * <p/>
+ * Both services use a {@link DrillDownDAO} running its own queries against the DATA_ITEM, DATA_ITEM_NUMBER_VALUE and
+ * DATA_ITEM_TEXT_VALUE tables in an in-memory H2 database. H2 is set to compare text case insensitively, as MySQL does.
+ */
+public class BitmapDrillDownServiceTest {
+
+    private static final String[] TYPES = {"Car", "Van", "car", "Truck"};
+    private static final Double[] SIZES = {1.0, 1.5, 2.0, 10.0};
+    private static final String[] FUELS = {"petrol", "diesel", "", "LPG", null};
+
+    private SessionFactory sessionFactory;
+    private Session session;
+    private DataCategory dataCategory;
+    private DataServiceDAO dataServiceDao;
+    private CountingDrillDownDAO drillDownDao;
+    private SqlDrillDownService sqlDrillDownService;
+    private BitmapDrillDownService bitmapDrillDownService;
+
+    @Before
+    public void init() {
+        LocaleHolder.set(Locale.class, LocaleConstants.DEFAULT_LOCALE);
+
+        Configuration configuration = new Configuration()
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:drilldown;MODE=MySQL;IGNORECASE=TRUE")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build());
+        session = sessionFactory.openSession();
+        execute("CREATE TABLE DATA_ITEM (ID BIGINT PRIMARY KEY, UID VARCHAR(12), STATUS INT, " +
+                "DATA_CATEGORY_ID BIGINT, ITEM_DEFINITION_ID BIGINT)");
+        execute("CREATE TABLE DATA_ITEM_NUMBER_VALUE (ID BIGINT AUTO_INCREMENT PRIMARY KEY, STATUS INT, " +
+                "VALUE DOUBLE, ITEM_VALUE_DEFINITION_ID BIGINT, DATA_ITEM_ID BIGINT)");
+        execute("CREATE TABLE DATA_ITEM_TEXT_VALUE (ID BIGINT AUTO_INCREMENT PRIMARY KEY, STATUS INT, " +
+                "VALUE VARCHAR(255), ITEM_VALUE_DEFINITION_ID BIGINT, DATA_ITEM_ID BIGINT)");
+
+        ItemDefinition itemDefinition = new ItemDefinition("Vehicles");
+        itemDefinition.setId(1L);
+        itemDefinition.setDrillDown("type,size,fuel");
+        addItemValueDefinition(itemDefinition, 1L, "type", ValueType.TEXT);
+        addItemValueDefinition(itemDefinition, 2L, "size", ValueType.DOUBLE);
+        addItemValueDefinition(itemDefinition, 3L, "fuel", ValueType.TEXT);
+        dataCategory = new DataCategory("Vehicles", "vehicles");
+        dataCategory.setId(1L);
+        dataCategory.setItemDefinition(itemDefinition);
+
+        dataServiceDao = mock(DataServiceDAO.class);
+        when(dataServiceDao.getDataCategory(any(IDataCategoryReference.class))).thenReturn(dataCategory);
+
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.getDelegate()).thenReturn(session);
+        drillDownDao = new CountingDrillDownDAO();
+        ReflectionTestUtils.setField(drillDownDao, "entityManager", entityManager);
+        ReflectionTestUtils.setField(drillDownDao, "dataServiceDao", dataServiceDao);
+        for (long i = 1; i <= 300; i++) {
+            addDataItem(dataCategory, i, i % 37 != 0);
+            addTextValue(i, 1L, TYPES[(int) i % TYPES.length], i % 53 != 0);
+            addNumberValue(i, 2L, SIZES[(int) (i / 4) % SIZES.length]);
+            addTextValue(i, 3L, FUELS[(int) (i / 7) % FUELS.length], true);
+        }
+
+        sqlDrillDownService = new SqlDrillDownService();
+        ReflectionTestUtils.setField(sqlDrillDownService, "drillDownDao", drillDownDao);
+        ReflectionTestUtils.setField(sqlDrillDownService, "dataServiceDao", dataServiceDao);
+        bitmapDrillDownService = new BitmapDrillDownService();
+        ReflectionTestUtils.setField(bitmapDrillDownService, "drillDownDao", drillDownDao);
+        ReflectionTestUtils.setField(bitmapDrillDownService, "dataServiceDao", dataServiceDao);
+    }
+
+    @After
+    public void clear() {
+        LocaleHolder.clear();
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void choicesShouldMatchSqlDrillDownService() {
+        int compared = compare(new ArrayList<Choice>());
+        assertEquals(1, drillDownDao.indexCount);
+        assertEquals(true, compared > 20);
+    }
+
+    @Test
+    public void selectionsShouldMatchNumbersNumerically() {
+        List<Choice> selections = new ArrayList<Choice>();
+        selections.add(new Choice("type", "Van"));
+        selections.add(new Choice("size", "1.50"));
+        assertChoicesEqual(
+                sqlDrillDownService.getChoices(dataCategory, new ArrayList<Choice>(selections)),
+                bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>(selections)));
+    }
+
+    @Test
+    public void selectionsShouldMatchTextCaseInsensitively() {
+        List<Choice> selections = new ArrayList<Choice>();
+        selections.add(new Choice("type", "CAR"));
+        Choices expected = sqlDrillDownService.getChoices(dataCategory, new ArrayList<Choice>(selections));
+        assertTrue(!expected.getChoices().isEmpty());
+        assertChoicesEqual(expected, bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>(selections)));
+    }
+
+    @Test
+    public void valuesShouldBeEqualUnderCollation() {
+        DrillDownIndex index = new DrillDownIndex.Builder()
+                .addPath("name")
+                .addDataItem(1L, "DI1").addDataItem(2L, "DI2").addDataItem(3L, "DI3")
+                .addTextValue(1L, "name", "Caf\u00e9")
+                .addTextValue(2L, "name", "cafe  ")
+                .addTextValue(3L, "name", " CAFE")
+                .build();
+        List<Choice> values = index.getDataItemValueChoices("name", new ArrayList<Choice>());
+        assertEquals(2, values.size());
+        assertEquals(" CAFE", values.get(0).getValue());
+        assertEquals("Caf\u00e9", values.get(1).getValue());
+        List<Choice> selections = new ArrayList<Choice>();
+        selections.add(new Choice("name", "CAFE"));
+        assertEquals(2, index.getDataItemUIDChoices(selections).size());
+    }
+
+    @Test
+    public void leastRecentlyUsedIndexShouldBeDiscarded() {
+        DataCategory otherDataCategory = new DataCategory("Other Vehicles", "otherVehicles");
+        otherDataCategory.setId(2L);
+        otherDataCategory.setItemDefinition(dataCategory.getItemDefinition());
+        when(dataServiceDao.getDataCategory(otherDataCategory)).thenReturn(otherDataCategory);
+        addDataItem(otherDataCategory, 1000L, true);
+        addTextValue(1000L, 1L, "Bus", true);
+        addDataItem(otherDataCategory, 1001L, true);
+        addTextValue(1001L, 1L, "Coach", true);
+        bitmapDrillDownService.setMaxIndexes(1);
+
+        bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>());
+        Choices choices = bitmapDrillDownService.getChoices(otherDataCategory, new ArrayList<Choice>());
+        assertEquals(1, bitmapDrillDownService.getIndexCount());
+        assertEquals(2, choices.getChoices().size());
+        assertEquals("Bus", choices.getChoices().get(0).getValue());
+        bitmapDrillDownService.getChoices(otherDataCategory, new ArrayList<Choice>());
+        assertEquals(2, drillDownDao.indexCount);
+        bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>());
+        assertEquals(3, drillDownDao.indexCount);
+    }
+
+    @Test
+    public void indexShouldBeReloadedAfterInvalidation() {
+        bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>());
+        bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>());
+        assertEquals(1, drillDownDao.indexCount);
+
+        // Other types are ignored.
+        bitmapDrillDownService.onApplicationEvent(
+                new InvalidationMessage(this, ObjectType.DI, 1L, dataCategory.getUid()));
+        bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>());
+        assertEquals(1, drillDownDao.indexCount);
+
+        bitmapDrillDownService.onApplicationEvent(
+                new InvalidationMessage(this, ObjectType.DC, 1L, dataCategory.getUid()));
+        assertEquals(0, bitmapDrillDownService.getIndexCount());
+        assertEquals(1, bitmapDrillDownService.getIndexEvictionCount());
+        addDataItem(dataCategory, 1000L, true);
+        addTextValue(1000L, 1L, "Bus", true);
+        Choices choices = bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>());
+        assertEquals(2, drillDownDao.indexCount);
+        assertEquals("Bus", choices.getChoices().get(0).getValue());
+    }
+
+    @Test
+    public void clearDrillDownCacheShouldOnlyEvictCategory() {
+        CacheManager cacheManager = CacheManager.getInstance();
+        cacheManager.addCache(DrillDownFactory.CACHE_NAME);
+        try {
+            DataCategory otherDataCategory = new DataCategory("Other Vehicles", "otherVehicles");
+            otherDataCategory.setId(2L);
+            otherDataCategory.setItemDefinition(dataCategory.getItemDefinition());
+            when(dataServiceDao.getDataCategory(otherDataCategory)).thenReturn(otherDataCategory);
+            compare(new ArrayList<Choice>());
+            sqlDrillDownService.getChoices(otherDataCategory, new ArrayList<Choice>());
+            int cached = cacheManager.getEhcache(DrillDownFactory.CACHE_NAME).getSize();
+
+            int removed = bitmapDrillDownService.clearDrillDownCache(dataCategory);
+            assertEquals(0, bitmapDrillDownService.getIndexCount());
+            int remaining = cacheManager.getEhcache(DrillDownFactory.CACHE_NAME).getSize();
+            assertTrue(remaining > 0);
+            assertEquals(cached - remaining, removed);
+            assertEquals(1, bitmapDrillDownService.getIndexEvictionCount());
+            assertEquals(0, sqlDrillDownService.clearDrillDownCache(dataCategory));
+            assertEquals(remaining, sqlDrillDownService.clearDrillDownCache(otherDataCategory));
+        } finally {
+            cacheManager.removeCache(DrillDownFactory.CACHE_NAME);
+        }
+    }
+
+    /**
+     * Compare the choices for the selections, then for each of the choices in turn.
+     *
+     * @param selections the selections to compare
+     * @return the number of drill downs compared
+     */
+    private int compare(List<Choice> selections) {
+        Choices expected = sqlDrillDownService.getChoices(dataCategory, new ArrayList<Choice>(selections));
+        Choices actual = bitmapDrillDownService.getChoices(dataCategory, new ArrayList<Choice>(selections));
+        assertChoicesEqual(expected, actual);
+        int compared = 1;
+        if (!expected.getName().equals("uid")) {
+            for (Choice choice : expected.getChoices()) {
+                List<Choice> next = new ArrayList<Choice>(selections);
+                next.add(new Choice(expected.getName(), choice.getValue()));
+                compared += compare(next);
+            }
+        }
+        return compared;
+    }
+
+    private void assertChoicesEqual(Choices expected, Choices actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(toString(expected.getChoices()), toString(actual.getChoices()));
+    }
+
+    /**
+     * Which of the values equal under the collation the database presents is not defined, so choices are compared by
+     * their collation keys.
+     */
+    private List<String> toString(List<Choice> choices) {
+        List<String> strings = new ArrayList<String>();
+        for (Choice choice : choices) {
+            strings.add(DrillDownIndex.getCollationKey(choice.getName()) + ":" +
+                    DrillDownIndex.getCollationKey(choice.getValue()));
+        }
+        return strings;
+    }
+
+    private void addItemValueDefinition(ItemDefinition itemDefinition, Long id, String path, ValueType valueType) {
+        ItemValueDefinition itemValueDefinition = new ItemValueDefinition(itemDefinition, path);
+        itemValueDefinition.setId(id);
+        itemValueDefinition.setPath(path);
+        itemValueDefinition.setValueDefinition(new ValueDefinition(path, valueType));
+    }
+
+    private void addDataItem(DataCategory dc, Long id, boolean active) {
+        execute("INSERT INTO DATA_ITEM (ID, UID, STATUS, DATA_CATEGORY_ID, ITEM_DEFINITION_ID) VALUES (" + id +
+                ", '" + String.format("DI%010d", id) + "', " + status(active) + ", " + dc.getId() + ", " +
+                dc.getItemDefinition().getId() + ")");
+    }
+
+    private void addNumberValue(Long dataItemId, Long itemValueDefinitionId, Double value) {
+        execute("INSERT INTO DATA_ITEM_NUMBER_VALUE (STATUS, VALUE, ITEM_VALUE_DEFINITION_ID, DATA_ITEM_ID) " +
+                "VALUES (" + status(true) + ", " + value + ", " + itemValueDefinitionId + ", " + dataItemId + ")");
+    }
+
+    private void addTextValue(Long dataItemId, Long itemValueDefinitionId, String value, boolean active) {
+        if (value != null) {
+            execute("INSERT INTO DATA_ITEM_TEXT_VALUE (STATUS, VALUE, ITEM_VALUE_DEFINITION_ID, DATA_ITEM_ID) " +
+                    "VALUES (" + status(active) + ", '" + value + "', " + itemValueDefinitionId + ", " + dataItemId + ")");
+        }
+    }
+
+    private void execute(String sql) {
+        session.createSQLQuery(sql).executeUpdate();
+    }
+
+    private static int status(boolean active) {
+        return (active ? AMEEStatus.ACTIVE : AMEEStatus.TRASH).ordinal();
+    }
+
+    /**
+     * A DrillDownDAO which counts the DrillDownIndexes it loads.
+     */
+    private static class CountingDrillDownDAO extends DrillDownDAO {
+
+        private int indexCount = 0;
+
+        @Override
+        public DrillDownIndex getDrillDownIndex(IDataCategoryReference dc) {
+            indexCount++;
+            return super.getDrillDownIndex(dc);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.amee.service.data;
+
+import com.amee.domain.AMEEStatistics;
+import com.amee.domain.IDataCategoryReference;
+import com.amee.domain.LocaleService;
+import com.amee.domain.data.DataCategory;
+import com.amee.domain.data.DataCategoryReference;
+import net.sf.ehcache.CacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static junit.framework.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that the cached DataCategoryChildren held by {@link DataServiceImpl} follow changes to DataCategories.
+ */
+public class DataServiceImplTest {
+
+    private DataServiceImpl dataService;
+
+    // The children of each DataCategory, by parent UID, as the DataServiceDAO would load them.
+    private Map<String, List<DataCategory>> children = new HashMap<String, List<DataCategory>>();
+
+    @Before
+    public void init() {
+        CacheManager.getInstance().addCache(DataCategoryChildrenFactory.CACHE_NAME);
+        DataServiceDAO dao = mock(DataServiceDAO.class);
+        when(dao.getDataCategories(any(IDataCategoryReference.class))).thenAnswer(
+                new Answer<Map<String, IDataCategoryReference>>() {
+                    @Override
+                    public Map<String, IDataCategoryReference> answer(InvocationOnMock invocation) {
+                        IDataCategoryReference parent = (IDataCategoryReference) invocation.getArguments()[0];
+                        Map<String, IDataCategoryReference> references =
+                                new TreeMap<String, IDataCategoryReference>(String.CASE_INSENSITIVE_ORDER);
+                        if (children.containsKey(parent.getEntityUid())) {
+                            for (DataCategory dc : children.get(parent.getEntityUid())) {
+                                references.put(dc.getPath(), new DataCategoryReference(dc));
+                            }
+                        }
+                        return references;
+                    }
+                });
+        dataService = new DataServiceImpl();
+        ReflectionTestUtils.setField(dataService, "dao", dao);
+        ReflectionTestUtils.setField(dataService, "drillDownService", mock(DrillDownService.class));
+        ReflectionTestUtils.setField(dataService, "localeService", mock(LocaleService.class));
+        ReflectionTestUtils.setField(dataService, "ameeStatistics", mock(AMEEStatistics.class));
+    }
+
+    @After
+    public void clear() {
+        CacheManager.getInstance().removeCache(DataCategoryChildrenFactory.CACHE_NAME);
+    }
+
+    @Test
+    public void renamingCategoryShouldUpdateDescendantPaths() {
+        DataCategory root = addDataCategory(null, "ROOT", "");
+        DataCategory transport = addDataCategory(root, "TRANSPORT", "transport");
+        DataCategory car = addDataCategory(transport, "CAR", "car");
+        addDataCategory(car, "GENERIC", "generic");
+
+        // Cache the children down to the grandchild of transport.
+        dataService.getDataCategories(new DataCategoryReference(root));
+        dataService.getDataCategories(new DataCategoryReference(transport));
+        assertEquals("/transport/car/generic", getChild(car, "generic").getFullPath());
+
+        // Rename transport, reloading the categories as a new request would.
+        children.clear();
+        root = addDataCategory(null, "ROOT", "");
+        transport = addDataCategory(root, "TRANSPORT", "travel");
+        car = addDataCategory(transport, "CAR", "car");
+        addDataCategory(car, "GENERIC", "generic");
+        dataService.clearCaches(transport);
+
+        assertEquals("/travel/car", getChild(transport, "car").getFullPath());
+        assertEquals("/travel/car/generic", getChild(car, "generic").getFullPath());
+    }
+
+    @Test
+    public void changingCategoryNameShouldKeepDescendantChildren() {
+        DataCategory root = addDataCategory(null, "ROOT", "");
+        DataCategory transport = addDataCategory(root, "TRANSPORT", "transport");
+        DataCategory car = addDataCategory(transport, "CAR", "car");
+        addDataCategory(car, "GENERIC", "generic");
+        dataService.getDataCategories(new DataCategoryReference(root));
+        dataService.getDataCategories(new DataCategoryReference(transport));
+        dataService.getDataCategories(new DataCategoryReference(car));
+
+        // The path is unchanged, so only the lists of transport and its parent are evicted.
+        transport.setName("Transport and travel");
+        dataService.clearCaches(transport);
+        assertEquals(1, CacheManager.getInstance().getEhcache(DataCategoryChildrenFactory.CACHE_NAME).getSize());
+    }
+
+    private IDataCategoryReference getChild(DataCategory parent, String path) {
+        return dataService.getDataCategories(new DataCategoryReference(parent)).get(path);
+    }
+
+    private DataCategory addDataCategory(DataCategory parent, String uid, String path) {
+        DataCategory dataCategory = parent != null ? new DataCategory(parent, uid, path) : new DataCategory(uid, path);
+        dataCategory.setUid(uid);
+        String parentUid = parent != null ? parent.getUid() : null;
+        if (!children.containsKey(parentUid)) {
+            children.put(parentUid, new ArrayList<DataCategory>());
+        }
+        children.get(parentUid).add(dataCategory);
+        return dataCategory;
+    }
+}